@@ -0,0 +1,172 @@
+package io.github.giuliapais.adminserver;
+
+import io.github.giuliapais.commons.MessagePrinter;
+import org.glassfish.grizzly.http.KeepAlive;
+import org.glassfish.grizzly.http.server.HttpServer;
+import org.glassfish.grizzly.http.server.NetworkListener;
+import org.glassfish.grizzly.nio.transport.TCPNIOTransport;
+import org.glassfish.jersey.grizzly2.httpserver.GrizzlyHttpServerFactory;
+import org.glassfish.jersey.jackson.JacksonFeature;
+import org.glassfish.jersey.server.ResourceConfig;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The HTTP server of the REST API (Grizzly and Jersey).
+ * <p>
+ * Grizzly accepts connections and reads requests with a few selector threads, then runs the Jersey resources on
+ * worker threads. The workers are given by the {@link ExecutionMode}: Grizzly's own pool, a pool of fixed size with
+ * a bounded queue, or a virtual thread per request. Except for Grizzly's pool the workers are instrumented, see
+ * {@link #workerMetrics()}.
+ */
+public class AdminHttpServer {
+    private final HttpServer httpServer;
+    private final InstrumentedExecutor workers;
+    private final ExecutionMode mode;
+    private final URI uri;
+
+    public enum ExecutionMode {
+        /* The default worker pool of Grizzly */
+        GRIZZLY,
+        /* A fixed number of worker threads with a bounded queue of requests */
+        POOL,
+        /* A new virtual thread per request (Java 21+) */
+        VIRTUAL;
+
+        public static ExecutionMode parse(String value) {
+            try {
+                return valueOf(value.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unknown HTTP execution mode: " + value, e);
+            }
+        }
+    }
+
+    /**
+     * @param uri                  base URI of the API
+     * @param mode                 how the resources are run
+     * @param workers              worker threads of the {@link ExecutionMode#POOL} mode
+     * @param queueCapacity        requests that can wait for a worker in the {@link ExecutionMode#POOL} mode
+     * @param selectors            selector threads, 0 for Grizzly's default (one per processor)
+     * @param keepAliveTimeout     seconds an idle connection is kept open, -1 to never close it
+     * @param keepAliveMaxRequests requests served on a connection before closing it, -1 for no limit
+     */
+    public record Settings(URI uri, ExecutionMode mode, int workers, int queueCapacity, int selectors,
+                           int keepAliveTimeout, int keepAliveMaxRequests) {
+    }
+
+    private AdminHttpServer(HttpServer httpServer, InstrumentedExecutor workers, ExecutionMode mode, URI uri) {
+        this.httpServer = httpServer;
+        this.workers = workers;
+        this.mode = mode;
+        this.uri = uri;
+    }
+
+    public static ResourceConfig resourceConfig() {
+        return new ResourceConfig()
+                .packages("io.github.giuliapais.api",
+                        "io.github.giuliapais.exceptions")
+                .register(JacksonFeature.class);
+    }
+
+    /**
+     * Creates and starts the server.
+     */
+    public static AdminHttpServer start(Settings settings) throws IOException {
+        ExecutionMode mode = settings.mode();
+        InstrumentedExecutor workers = null;
+        if (mode == ExecutionMode.VIRTUAL) {
+            ExecutorService virtualThreads = virtualThreadExecutor();
+            if (virtualThreads != null) {
+                workers = new InstrumentedExecutor(virtualThreads);
+            } else {
+                MessagePrinter.printMessage("Virtual threads are not available in Java " +
+                                Runtime.version().feature() + ", using a pool of " + settings.workers() + " workers",
+                        MessagePrinter.WARNING_FORMAT, true);
+                mode = ExecutionMode.POOL;
+            }
+        }
+        if (mode == ExecutionMode.POOL) {
+            workers = new InstrumentedExecutor(workerPool(settings.workers(), settings.queueCapacity()));
+        }
+
+        HttpServer httpServer = GrizzlyHttpServerFactory.createHttpServer(settings.uri(), resourceConfig(), false);
+        for (NetworkListener listener : httpServer.getListeners()) {
+            TCPNIOTransport transport = listener.getTransport();
+            if (settings.selectors() > 0) {
+                transport.setSelectorRunnersCount(settings.selectors());
+            }
+            if (workers != null) {
+                transport.setWorkerThreadPool(workers);
+            }
+            KeepAlive keepAlive = listener.getKeepAlive();
+            keepAlive.setIdleTimeoutInSeconds(settings.keepAliveTimeout());
+            keepAlive.setMaxRequestsCount(settings.keepAliveMaxRequests());
+        }
+        try {
+            httpServer.start();
+        } catch (IOException e) {
+            if (workers != null) {
+                workers.shutdownNow();
+            }
+            throw e;
+        }
+        return new AdminHttpServer(httpServer, workers, mode, settings.uri());
+    }
+
+    /* Executors.newVirtualThreadPerTaskExecutor() if the running Java has it, null otherwise */
+    private static ExecutorService virtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException | UnsupportedOperationException e) {
+            return null;
+        }
+    }
+
+    private static ThreadPoolExecutor workerPool(int size, int queueCapacity) {
+        if (size <= 0 || queueCapacity <= 0) {
+            throw new IllegalArgumentException("The HTTP workers and their queue capacity must be positive");
+        }
+        AtomicInteger count = new AtomicInteger();
+        return new ThreadPoolExecutor(size, size, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), task -> {
+            Thread thread = new Thread(task, "http-worker-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public URI getUri() {
+        return uri;
+    }
+
+    /**
+     * Returns the mode the resources are run with, which is {@link ExecutionMode#POOL} if virtual threads were
+     * requested but are not available.
+     */
+    public ExecutionMode getMode() {
+        return mode;
+    }
+
+    /**
+     * Returns the counters of the requests run by the workers, null in the {@link ExecutionMode#GRIZZLY} mode.
+     */
+    public InstrumentedExecutor.Metrics workerMetrics() {
+        return workers == null ? null : workers.metrics();
+    }
+
+    public void shutdownNow() {
+        httpServer.shutdownNow();
+        if (workers != null) {
+            workers.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package io.github.giuliapais.adminserver;
+
+import io.github.giuliapais.commons.GreenfieldMap;
+import io.github.giuliapais.structures.RetentionPolicy;
+
+import java.net.URI;
+import java.nio.file.Path;
+
+/**
+ * Settings of the administrator server, read from system properties prefixed with {@code guard.}
+ * (e.g. {@code ./gradlew admin-server:run -Dguard.retention.raw=30}).
+ */
+public final class AdminServerConfig {
+    private static final long MINUTE = 60_000;
+    private static final long HOUR = 60 * MINUTE;
+
+    /* Minutes of raw pollution readings kept, all of them if not set */
+    public static final String RAW_RETENTION = "guard.retention.raw";
+    /* Minutes of 1-minute pollution rollups kept, all of them if not set */
+    public static final String MINUTE_RETENTION = "guard.retention.minutes";
+    /* Hours of 1-hour pollution rollups kept, all of them if not set */
+    public static final String HOUR_RETENTION = "guard.retention.hours";
+    /* Directory for the write-ahead log and snapshots of pollution data, empty to disable persistence */
+    public static final String DATA_DIRECTORY = "guard.data.dir";
+    /* Milliseconds between flushes of the write-ahead log */
+    public static final String WAL_FLUSH_INTERVAL = "guard.wal.flush-interval";
+    /* Seconds between snapshots of pollution data */
+    public static final String SNAPSHOT_INTERVAL = "guard.snapshot.interval";
+    /* Messages that can wait in the ingestion queue */
+    public static final String INGEST_QUEUE_CAPACITY = "guard.ingest.queue-capacity";
+    /* Threads inserting queued messages into the store */
+    public static final String INGEST_CONSUMERS = "guard.ingest.consumers";
+    /* Maximum messages inserted by a consumer at a time */
+    public static final String INGEST_BATCH_SIZE = "guard.ingest.batch-size";
+    /* Milliseconds a message waits for space in a full queue before being dropped, negative (default) to never drop */
+    public static final String INGEST_OFFER_TIMEOUT = "guard.ingest.offer-timeout";
+    /* MQTT clients receiving pollution messages */
+    public static final String MQTT_WORKERS = "guard.mqtt.workers";
+    /* Shared subscription group of the MQTT workers, empty to partition the districts between them */
+    public static final String MQTT_SHARED_GROUP = "guard.mqtt.shared-group";
+    /* Latest changes of the robots list kept for the clients of the changes stream */
+    public static final String ROBOT_CHANGE_LOG_SIZE = "guard.robots.change-log-size";
+    /* Clients of the changes stream served at a time, the others are turned away */
+    public static final String ROBOT_CHANGE_STREAMS = "guard.robots.change-streams";
+    /* Size and districts of the city map, see GreenfieldMap.parse */
+    public static final String MAP = "guard.map";
+    /* Base URI of the REST API */
+    public static final String HTTP_URI = "guard.http.uri";
+    /* How the REST resources are run: grizzly, pool or virtual */
+    public static final String HTTP_EXECUTION = "guard.http.execution";
+    /* Worker threads of the pool execution mode */
+    public static final String HTTP_WORKERS = "guard.http.workers";
+    /* Requests that can wait for a worker in the pool execution mode */
+    public static final String HTTP_QUEUE_CAPACITY = "guard.http.queue-capacity";
+    /* Threads accepting connections and reading requests, 0 for one per processor */
+    public static final String HTTP_SELECTORS = "guard.http.selectors";
+    /* Seconds an idle connection is kept open, -1 to never close it */
+    public static final String HTTP_KEEP_ALIVE_TIMEOUT = "guard.http.keep-alive.timeout";
+    /* Requests served on a connection before closing it, -1 for no limit */
+    public static final String HTTP_KEEP_ALIVE_MAX_REQUESTS = "guard.http.keep-alive.max-requests";
+
+    private AdminServerConfig() {
+    }
+
+    /**
+     * Returns the retention of the pollution history: the whole history is kept unless a retention is set, so that
+     * the readings returned by the server don't depend on how long it has been running.
+     */
+    public static RetentionPolicy retentionPolicy() {
+        return new RetentionPolicy(
+                getRetention(RAW_RETENTION, MINUTE),
+                getRetention(MINUTE_RETENTION, MINUTE),
+                getRetention(HOUR_RETENTION, HOUR)
+        );
+    }
+
+    /**
+     * Returns the directory where pollution data is persisted, {@code null} if persistence is disabled.
+     */
+    public static Path dataDirectory() {
+        String value = System.getProperty(DATA_DIRECTORY, "data").trim();
+        return value.isEmpty() ? null : Path.of(value);
+    }
+
+    public static long walFlushInterval() {
+        return getLong(WAL_FLUSH_INTERVAL, 200);
+    }
+
+    public static long snapshotInterval() {
+        return getLong(SNAPSHOT_INTERVAL, 300);
+    }
+
+    public static int ingestQueueCapacity() {
+        return (int) getLong(INGEST_QUEUE_CAPACITY, 1 << 16);
+    }
+
+    public static int ingestConsumers() {
+        return (int) getLong(INGEST_CONSUMERS, 2);
+    }
+
+    public static int ingestBatchSize() {
+        return (int) getLong(INGEST_BATCH_SIZE, 256);
+    }
+
+    public static long ingestOfferTimeout() {
+        return getLong(INGEST_OFFER_TIMEOUT, -1);
+    }
+
+    public static int mqttWorkers() {
+        return (int) getLong(MQTT_WORKERS, 1);
+    }
+
+    public static String mqttSharedGroup() {
+        return System.getProperty(MQTT_SHARED_GROUP, "").trim();
+    }
+
+    public static int robotChangeLogSize() {
+        return (int) getLong(ROBOT_CHANGE_LOG_SIZE, 10_000);
+    }
+
+    public static int robotChangeStreams() {
+        return (int) getLong(ROBOT_CHANGE_STREAMS, 64);
+    }
+
+    /**
+     * Returns the map of the city, which the robots must be launched with too.
+     */
+    public static GreenfieldMap greenfieldMap() {
+        return GreenfieldMap.parse(System.getProperty(MAP, GreenfieldMap.DEFAULT));
+    }
+
+    public static AdminHttpServer.Settings httpSettings() {
+        return new AdminHttpServer.Settings(
+                URI.create(System.getProperty(HTTP_URI, "http://localhost:9090/api").trim()),
+                AdminHttpServer.ExecutionMode.parse(System.getProperty(HTTP_EXECUTION, "grizzly")),
+                (int) getLong(HTTP_WORKERS, 64),
+                (int) getLong(HTTP_QUEUE_CAPACITY, 10_000),
+                (int) getLong(HTTP_SELECTORS, 0),
+                (int) getLong(HTTP_KEEP_ALIVE_TIMEOUT, 30),
+                (int) getLong(HTTP_KEEP_ALIVE_MAX_REQUESTS, 256)
+        );
+    }
+
+    private static long getRetention(String property, long unit) {
+        return System.getProperty(property) == null ? Long.MAX_VALUE : getLong(property, 0) * unit;
+    }
+
+    static long getLong(String property, long defaultValue) {
+        String value = System.getProperty(property);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid value for " + property + ": " + value, e);
+        }
+    }
+}
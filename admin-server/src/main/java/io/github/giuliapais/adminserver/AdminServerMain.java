@@ -1,37 +1,59 @@
 package io.github.giuliapais.adminserver;
 
+import io.github.giuliapais.api.services.PollutionDataService;
 import io.github.giuliapais.commons.MessagePrinter;
 import org.eclipse.paho.client.mqttv3.MqttException;
-import org.glassfish.grizzly.http.server.HttpServer;
-import org.glassfish.jersey.grizzly2.httpserver.GrizzlyHttpServerFactory;
-import org.glassfish.jersey.jackson.JacksonFeature;
-import org.glassfish.jersey.server.ResourceConfig;
 
 import java.io.BufferedReader;
 import java.io.IOException;
-import java.net.URI;
+import java.util.concurrent.TimeUnit;
 
 public class AdminServerMain {
     private static PollutionMonitor pollutionMonitor;
 
-    private static HttpServer launchHttpServer() throws IOException {
-        ResourceConfig config = new ResourceConfig()
-                .packages("io.github.giuliapais.api",
-                        "io.github.giuliapais.exceptions")
-                .register(JacksonFeature.class);
-        URI uri = URI.create("http://localhost:9090/api");
-        HttpServer httpServer = GrizzlyHttpServerFactory.createHttpServer(uri, config);
-        httpServer.start();
-        MessagePrinter.printHTTPServerInitMessage(uri);
+    private static AdminHttpServer launchHttpServer() throws IOException {
+        AdminHttpServer httpServer = AdminHttpServer.start(AdminServerConfig.httpSettings());
+        MessagePrinter.printHTTPServerInitMessage(httpServer.getUri());
         return (httpServer);
     }
 
+    private static void printIngestionMetrics(IngestionPipeline.Metrics metrics) {
+        MessagePrinter.printMessage(String.format(
+                "Messages received: %d, stored: %d, dropped: %d, failed: %d%n" +
+                        "Submissions blocked on a full queue: %d%n" +
+                        "Queued: %d (max %d) of %d",
+                metrics.received(), metrics.processed(), metrics.dropped(), metrics.failed(), metrics.blocked(),
+                metrics.queued(), metrics.maxQueued(), metrics.capacity()
+        ), MessagePrinter.INFO_FORMAT, true);
+    }
+
+    private static void printHttpMetrics(AdminHttpServer httpServer) {
+        InstrumentedExecutor.Metrics metrics = httpServer.workerMetrics();
+        if (metrics == null) {
+            MessagePrinter.printMessage("HTTP requests run on the Grizzly worker pool (not instrumented)",
+                    MessagePrinter.INFO_FORMAT, true);
+            return;
+        }
+        long meanMicros = metrics.completed() == 0 ? 0 :
+                TimeUnit.NANOSECONDS.toMicros(metrics.busyNanos() / metrics.completed());
+        MessagePrinter.printMessage(String.format(
+                "HTTP requests (%s workers) submitted: %d, completed: %d, rejected: %d%n" +
+                        "Running: %d (max %d), queued: %d, mean time: %d us",
+                httpServer.getMode().name().toLowerCase(), metrics.submitted(), metrics.completed(),
+                metrics.rejected(), metrics.active(), metrics.maxActive(), metrics.queued(), meanMicros
+        ), MessagePrinter.INFO_FORMAT, true);
+    }
+
     public static void main(String[] args) {
         MessagePrinter.printServerWelcomeMessage();
         BufferedReader reader = new BufferedReader(new java.io.InputStreamReader(System.in));
 
+        /* Pollution data recovery phase */
+        PollutionDataService pollutionDataService = PollutionDataService.getInstance();
+        IngestionPipeline ingestionPipeline = new IngestionPipeline(pollutionDataService);
+
         /* HTTP server initialization phase */
-        HttpServer httpServer = null;
+        AdminHttpServer httpServer = null;
         try {
             httpServer = launchHttpServer();
         } catch (IOException e) {
@@ -40,7 +62,7 @@ public class AdminServerMain {
 
         /* MQTT client initialization phase */
         try {
-            pollutionMonitor = new PollutionMonitor();
+            pollutionMonitor = new PollutionMonitor(ingestionPipeline);
         } catch (MqttException e) {
             MessagePrinter.printMessage(
                     "Could not connect to MQTT broker, shutting down...",
@@ -55,13 +77,20 @@ public class AdminServerMain {
             try {
                 System.out.print(">:");
                 String line = reader.readLine();
+                if (line != null && line.equals("metrics")) {
+                    printIngestionMetrics(ingestionPipeline.metrics());
+                    printHttpMetrics(httpServer);
+                }
                 if (line != null && line.equals("quit")) {
                     MessagePrinter.printStopServerMessage();
                     httpServer.shutdownNow();
+                    // Queued messages are acknowledged as they are stored, so the clients disconnect afterwards
+                    ingestionPipeline.shutdown();
                     pollutionMonitor.disconnect();
+                    pollutionDataService.shutdown();
                     break;
                 }
-            } catch (IOException | MqttException e) {
+            } catch (IOException | MqttException | InterruptedException e) {
                 throw new RuntimeException(e);
             }
         }
@@ -0,0 +1,297 @@
+package io.github.giuliapais.adminserver;
+
+import io.github.giuliapais.api.services.PollutionDataService;
+import io.github.giuliapais.commons.MessagePrinter;
+import io.github.giuliapais.commons.models.SensorType;
+import io.github.giuliapais.structures.SensorDataBatch;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bounded queue between the MQTT callback thread and the pollution store.
+ * <p>
+ * Messages are copied into a preallocated ring buffer of primitive slots and inserted into the store in batches by
+ * a pool of consumer threads, so the callback thread only pays for the copy. A message is acknowledged to the
+ * broker only once the batch containing it has been added to the store and its write-ahead log records have been
+ * forced to disk, with one write for the whole batch: a message acknowledged before a crash is recovered from the
+ * log, the ones still waiting in the queue are delivered again by the broker. With persistence disabled, the
+ * acknowledged messages are only in memory.
+ * <p>
+ * When the ring is full the callback thread waits for space (backpressure towards the broker). Only if an offer
+ * timeout is configured, the messages that still find no space when it expires are dropped: they are counted in
+ * the {@link Metrics} and reported, once per period in which the queue stays full.
+ */
+public class IngestionPipeline {
+    /* Parts of a message: the PM10 averages and the series of each sensor */
+    public static final int MAX_MESSAGE_PARTS = 1 + SensorType.values().length;
+
+    private final PollutionDataService service;
+    private final SensorDataBatch ring;
+    // For each slot, whether it holds the last part of a message and the acknowledgement of the message
+    private final boolean[] messageEnds;
+    private final Runnable[] acknowledgements;
+    private final int batchSize;
+    private final long offerTimeout;
+    private final Thread[] consumers;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+    /* Ring state, guarded by lock */
+    private int head;
+    private int count;
+    private int maxQueued;
+    private boolean running = true;
+    // Whether messages have been dropped since the queue last had space
+    private boolean dropping;
+    /* Metrics */
+    private final LongAdder received = new LongAdder();
+    private final LongAdder processed = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder blocked = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+
+    /**
+     * Counters of the messages that went through the pipeline since it started.
+     *
+     * @param received  messages submitted
+     * @param processed messages inserted into the store
+     * @param dropped   messages discarded because the queue was full (or the pipeline stopped)
+     * @param blocked   submissions that found the queue full and had to wait
+     * @param failed    messages not acknowledged because the store rejected their batch or couldn't persist it
+     * @param queued    messages currently waiting in the queue
+     * @param maxQueued highest number of messages that waited in the queue at the same time
+     * @param capacity  capacity of the queue
+     */
+    public record Metrics(long received, long processed, long dropped, long blocked, long failed,
+                          int queued, int maxQueued, int capacity) {
+    }
+
+    public IngestionPipeline(PollutionDataService service) {
+        this(service, AdminServerConfig.ingestQueueCapacity(), AdminServerConfig.ingestConsumers(),
+                AdminServerConfig.ingestBatchSize(), AdminServerConfig.ingestOfferTimeout());
+    }
+
+    /**
+     * @param capacity      maximum number of messages waiting to be inserted
+     * @param consumerCount number of threads inserting messages into the store
+     * @param batchSize     maximum number of messages inserted by a consumer at a time
+     * @param offerTimeout  milliseconds a submission waits for space before the message is dropped, a negative
+     *                      value (the default) waits until there is space
+     */
+    public IngestionPipeline(PollutionDataService service, int capacity, int consumerCount, int batchSize,
+                             long offerTimeout) {
+        if (capacity <= 0 || consumerCount <= 0 || batchSize <= 0) {
+            throw new IllegalArgumentException("Capacity, consumers and batch size must be positive");
+        }
+        this.service = service;
+        this.ring = new SensorDataBatch(capacity);
+        this.messageEnds = new boolean[capacity];
+        this.acknowledgements = new Runnable[capacity];
+        this.batchSize = Math.min(batchSize, capacity);
+        this.offerTimeout = offerTimeout < 0 ? -1 : TimeUnit.MILLISECONDS.toNanos(offerTimeout);
+        consumers = new Thread[consumerCount];
+        for (int i = 0; i < consumerCount; i++) {
+            consumers[i] = new Thread(this::consume, "pollution-ingestion-" + i);
+            consumers[i].setDaemon(true);
+            consumers[i].start();
+        }
+    }
+
+    /**
+     * Queues a copy of a message of PM10 averages, waiting for space if the queue is full.
+     *
+     * @return false if the message was dropped
+     */
+    public boolean submit(int robotId, long timestamp, double[] averages, int length) {
+        return submit(robotId, timestamp, SensorType.PM10, averages, length);
+    }
+
+    /**
+     * Queues a copy of a message, waiting for space if the queue is full.
+     *
+     * @return false if the message was dropped
+     */
+    public boolean submit(int robotId, long timestamp, SensorType type, double[] averages, int length) {
+        received.increment();
+        lock.lock();
+        try {
+            if (!awaitSpace(1)) {
+                return false;
+            }
+            put(robotId, timestamp, type, averages, length, true, null);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            dropped.increment();
+            return false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Queues a copy of all the parts of a message, which are inserted into the store in the same batch, waiting for
+     * space if the queue is full. The acknowledgement is run by the consumer once the batch is on disk, or right
+     * away if the message is dropped because the offer timeout expired; it isn't run if the message is lost (the
+     * pipeline stopped, or the store rejected or couldn't persist the batch), so that the broker delivers it again.
+     *
+     * @return false if the message was dropped
+     * @throws IllegalArgumentException if the message is empty, has more than {@link #MAX_MESSAGE_PARTS} parts or
+     *                                  doesn't fit in the queue
+     */
+    public boolean submit(SensorDataBatch message, Runnable acknowledgement) {
+        int parts = message.size();
+        if (parts == 0 || parts > MAX_MESSAGE_PARTS || parts > ring.capacity()) {
+            throw new IllegalArgumentException("Invalid number of message parts: " + parts);
+        }
+        received.add(parts);
+        boolean queued;
+        boolean stopped;
+        lock.lock();
+        try {
+            queued = awaitSpace(parts);
+            stopped = !running;
+            if (queued) {
+                for (int i = 0; i < parts; i++) {
+                    boolean last = i == parts - 1;
+                    put(message.robotId(i), message.timestamp(i), message.type(i), message.readings(i),
+                            message.length(i), last, last ? acknowledgement : null);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            dropped.add(parts);
+            return false;
+        } finally {
+            lock.unlock();
+        }
+        if (!queued && !stopped) {
+            // Dropped on purpose, the broker must not deliver it again
+            acknowledgement.run();
+        }
+        return queued;
+    }
+
+    /**
+     * Waits until the ring has space for {@code slots} messages, or until the offer timeout expires. Called holding
+     * the lock.
+     *
+     * @return false if the messages must be dropped, after counting them
+     */
+    private boolean awaitSpace(int slots) throws InterruptedException {
+        if (ring.capacity() - count < slots && running) {
+            blocked.increment();
+            long nanos = offerTimeout;
+            while (ring.capacity() - count < slots && running) {
+                if (offerTimeout < 0) {
+                    notFull.await();
+                } else if (nanos > 0) {
+                    nanos = notFull.awaitNanos(nanos);
+                } else {
+                    dropped.add(slots);
+                    if (!dropping) {
+                        dropping = true;
+                        MessagePrinter.printMessage("Ingestion queue full, dropping pollution messages (" +
+                                dropped.sum() + " dropped so far)", MessagePrinter.WARNING_FORMAT, true);
+                    }
+                    return false;
+                }
+            }
+        }
+        if (!running) {
+            dropped.add(slots);
+            return false;
+        }
+        dropping = false;
+        return true;
+    }
+
+    private void put(int robotId, long timestamp, SensorType type, double[] averages, int length, boolean last,
+                     Runnable acknowledgement) {
+        int slot = (head + count) % ring.capacity();
+        ring.set(slot, robotId, timestamp, type, averages, length);
+        messageEnds[slot] = last;
+        acknowledgements[slot] = acknowledgement;
+        count++;
+        maxQueued = Math.max(maxQueued, count);
+        notEmpty.signal();
+    }
+
+    private void consume() {
+        // Whole messages are taken, so a batch can exceed the batch size by the parts of its last message
+        SensorDataBatch batch = new SensorDataBatch(batchSize + MAX_MESSAGE_PARTS - 1);
+        Runnable[] batchAcknowledgements = new Runnable[batch.capacity()];
+        while (true) {
+            int acknowledgementCount = 0;
+            lock.lock();
+            try {
+                while (count == 0 && running) {
+                    notEmpty.awaitUninterruptibly();
+                }
+                if (count == 0) {
+                    // Stopped and drained
+                    return;
+                }
+                boolean messageEnd = false;
+                while (count > 0 && (batch.size() < batchSize || !messageEnd)) {
+                    batch.take(ring, head);
+                    messageEnd = messageEnds[head];
+                    if (acknowledgements[head] != null) {
+                        batchAcknowledgements[acknowledgementCount++] = acknowledgements[head];
+                        acknowledgements[head] = null;
+                    }
+                    head = (head + 1) % ring.capacity();
+                    count--;
+                }
+                notFull.signalAll();
+            } finally {
+                lock.unlock();
+            }
+            try {
+                service.addSensorData(batch);
+                service.sync();
+                processed.add(batch.size());
+                for (int i = 0; i < acknowledgementCount; i++) {
+                    batchAcknowledgements[i].run();
+                }
+            } catch (RuntimeException e) {
+                failed.add(batch.size());
+                MessagePrinter.printMessage("Could not store " + batch.size() + " pollution messages: " +
+                        e.getMessage(), MessagePrinter.ERROR_FORMAT, true);
+            }
+            Arrays.fill(batchAcknowledgements, 0, acknowledgementCount, null);
+            batch.clear();
+        }
+    }
+
+    public Metrics metrics() {
+        lock.lock();
+        try {
+            return new Metrics(received.sum(), processed.sum(), dropped.sum(), blocked.sum(), failed.sum(),
+                    count, maxQueued, ring.capacity());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Stops accepting messages and waits for the consumers to insert the queued ones.
+     */
+    public void shutdown() throws InterruptedException {
+        lock.lock();
+        try {
+            running = false;
+            notEmpty.signalAll();
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        for (Thread consumer : consumers) {
+            consumer.join();
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package io.github.giuliapais.adminserver;
+
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * An executor that counts the tasks run by another one: how many were submitted, rejected and completed, how many
+ * are running and how long they took. Used for the worker threads of the HTTP server, whatever they are.
+ */
+public class InstrumentedExecutor extends AbstractExecutorService {
+    private final ExecutorService delegate;
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicInteger maxActive = new AtomicInteger();
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder busyNanos = new LongAdder();
+
+    /**
+     * Counters of the tasks since the executor was created.
+     *
+     * @param submitted tasks given to the executor
+     * @param rejected  tasks the executor could not accept (e.g. because its queue was full)
+     * @param completed tasks that finished running
+     * @param active    tasks running now
+     * @param maxActive highest number of tasks that ran at the same time
+     * @param queued    tasks waiting for a thread, 0 if the executor does not queue tasks
+     * @param busyNanos total time spent running the completed tasks
+     */
+    public record Metrics(long submitted, long rejected, long completed, int active, int maxActive, int queued,
+                          long busyNanos) {
+    }
+
+    public InstrumentedExecutor(ExecutorService delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        submitted.increment();
+        try {
+            delegate.execute(() -> run(command));
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            throw e;
+        }
+    }
+
+    private void run(Runnable command) {
+        int running = active.incrementAndGet();
+        maxActive.accumulateAndGet(running, Math::max);
+        long start = System.nanoTime();
+        try {
+            command.run();
+        } finally {
+            busyNanos.add(System.nanoTime() - start);
+            active.decrementAndGet();
+            completed.increment();
+        }
+    }
+
+    public Metrics metrics() {
+        int queued = delegate instanceof ThreadPoolExecutor pool ? pool.getQueue().size() : 0;
+        return new Metrics(submitted.sum(), rejected.sum(), completed.sum(), active.get(), maxActive.get(), queued,
+                busyNanos.sum());
+    }
+
+    @Override
+    public void shutdown() {
+        delegate.shutdown();
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        return delegate.shutdownNow();
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return delegate.isShutdown();
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return delegate.isTerminated();
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return delegate.awaitTermination(timeout, unit);
+    }
+}
@@ -1,38 +1,101 @@
 package io.github.giuliapais.adminserver;
 
+import io.github.giuliapais.commons.MessagePrinter;
 import org.eclipse.paho.client.mqttv3.MqttAsyncClient;
 import org.eclipse.paho.client.mqttv3.MqttConnectOptions;
 import org.eclipse.paho.client.mqttv3.MqttException;
 
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Receives the pollution messages published by the robots through one or more MQTT clients (workers), each with
+ * its own connection and callback thread. All workers feed the same {@link IngestionPipeline}.
+ * <p>
+ * With more than one worker, the districts are either partitioned between the workers (each subscribes to the
+ * topics of its districts) or, if a shared subscription group is configured, all workers join an MQTT shared
+ * subscription and the broker balances the messages between them.
+ */
 public class PollutionMonitor {
     private final String MQTT_BROKER_ADDRESS = "tcp://localhost:1883";
-    private MqttAsyncClient mqttClient;
+    private static final String CLIENT_ID = "ADMIN-SERVER";
+    private static final String POLLUTION_TOPIC = "greenfield/pollution";
+    private final IngestionPipeline pipeline;
+    private final List<MqttAsyncClient> mqttClients = new ArrayList<>();
+
+    public PollutionMonitor(IngestionPipeline pipeline) throws MqttException {
+        this(pipeline, AdminServerConfig.mqttWorkers(), AdminServerConfig.mqttSharedGroup());
+    }
 
-    public PollutionMonitor() throws MqttException {
-        initMqttClient();
+    /**
+     * @param workers     number of MQTT clients receiving messages
+     * @param sharedGroup name of the shared subscription group, empty to partition the districts between workers
+     */
+    public PollutionMonitor(IngestionPipeline pipeline, int workers, String sharedGroup) throws MqttException {
+        this.pipeline = pipeline;
+        int districts = AdminServerConfig.greenfieldMap().getDistricts().length;
+        if (sharedGroup.isEmpty() && workers > districts) {
+            MessagePrinter.printMessage("Only " + districts + " MQTT workers can partition " + districts +
+                    " districts, use a shared subscription group for more", MessagePrinter.WARNING_FORMAT, true);
+        }
+        List<List<String>> subscriptions = subscriptionTopics(workers, sharedGroup, districts);
+        for (int i = 0; i < subscriptions.size(); i++) {
+            String clientId = subscriptions.size() == 1 ? CLIENT_ID : CLIENT_ID + "-" + (i + 1);
+            initMqttClient(clientId, subscriptions.get(i));
+        }
     }
 
-    private void initMqttClient() throws MqttException {
-        mqttClient = new MqttAsyncClient(
+    /**
+     * Returns the topic filters each worker subscribes to. Binary messages are published on a subtopic of the
+     * district topic, which the {@code /#} filters include.
+     */
+    static List<List<String>> subscriptionTopics(int workers, String sharedGroup, int districts) {
+        if (workers <= 0) {
+            throw new IllegalArgumentException("The number of MQTT workers must be positive");
+        }
+        List<List<String>> topics = new ArrayList<>();
+        if (workers == 1) {
+            topics.add(List.of(POLLUTION_TOPIC + "/#"));
+        } else if (!sharedGroup.isEmpty()) {
+            for (int i = 0; i < workers; i++) {
+                topics.add(List.of("$share/" + sharedGroup + "/" + POLLUTION_TOPIC + "/#"));
+            }
+        } else {
+            workers = Math.min(workers, districts);
+            for (int i = 0; i < workers; i++) {
+                topics.add(new ArrayList<>());
+            }
+            for (int district = 1; district <= districts; district++) {
+                topics.get((district - 1) % workers).add(POLLUTION_TOPIC + "/district" + district + "/#");
+            }
+        }
+        return topics;
+    }
+
+    private void initMqttClient(String clientId, List<String> topics) throws MqttException {
+        MqttAsyncClient mqttClient = new MqttAsyncClient(
                 MQTT_BROKER_ADDRESS,
-                "ADMIN-SERVER");
+                clientId);
         MqttConnectOptions options = new MqttConnectOptions();
         options.setAutomaticReconnect(true);
         options.setCleanSession(false);
-        // Set the callbacks
-        mqttClient.setCallback(new PollutionMonitorCallback());
+        // Set the callbacks, messages are acknowledged once stored
+        mqttClient.setManualAcks(true);
+        mqttClient.setCallback(new PollutionMonitorCallback(pipeline, mqttClient));
         mqttClient.connect(options).waitForCompletion();
-        subscribeToPollutionTopic();
-    }
-
-    private void subscribeToPollutionTopic() throws MqttException {
-        mqttClient.subscribe("greenfield/pollution/#", 1).waitForCompletion();
+        mqttClients.add(mqttClient);
+        for (String topic : topics) {
+            mqttClient.subscribe(topic, 1).waitForCompletion();
+        }
     }
 
     public void disconnect() throws MqttException {
-        mqttClient.unsubscribe("#");
-        mqttClient.disconnect();
-        mqttClient.close();
+        // The subscriptions are kept (persistent sessions), so the broker queues the messages published while
+        // the server is down and delivers them when it restarts
+        for (MqttAsyncClient mqttClient : mqttClients) {
+            mqttClient.disconnect().waitForCompletion();
+            mqttClient.close();
+        }
     }
 
 }
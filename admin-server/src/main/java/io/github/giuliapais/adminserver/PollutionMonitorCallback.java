@@ -1,27 +1,95 @@
 package io.github.giuliapais.adminserver;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
-import io.github.giuliapais.api.services.PollutionDataService;
-import io.github.giuliapais.commons.models.SensorAverages;
+import io.github.giuliapais.commons.MessagePrinter;
+import io.github.giuliapais.commons.SensorAveragesCodec;
+import io.github.giuliapais.commons.SensorAveragesConsumer;
+import io.github.giuliapais.commons.models.SensorType;
+import io.github.giuliapais.structures.SensorDataBatch;
+import org.eclipse.paho.client.mqttv3.IMqttAsyncClient;
 import org.eclipse.paho.client.mqttv3.IMqttDeliveryToken;
 import org.eclipse.paho.client.mqttv3.MqttCallback;
+import org.eclipse.paho.client.mqttv3.MqttException;
 import org.eclipse.paho.client.mqttv3.MqttMessage;
 
+import java.io.IOException;
+
+/**
+ * Forwards the messages received by an MQTT client to the {@link IngestionPipeline}. The client must use manual
+ * acknowledgements: messages are acknowledged once the pipeline has stored them, instead of when this callback
+ * returns.
+ */
 public class PollutionMonitorCallback implements MqttCallback {
+    private final SensorAveragesReader reader = new SensorAveragesReader();
+    private final SensorAveragesConsumer consumer;
+    private final IngestionPipeline pipeline;
+    private final IMqttAsyncClient client;
+    // Parts of the message being read, reused as the callback thread handles one message at a time
+    private final SensorDataBatch parts = new SensorDataBatch(IngestionPipeline.MAX_MESSAGE_PARTS);
+
+    public PollutionMonitorCallback(IngestionPipeline pipeline, IMqttAsyncClient client) {
+        this.pipeline = pipeline;
+        this.client = client;
+        // Created once, so that handling a message doesn't allocate a new consumer. Sensors without averages (as
+        // the PM10 of older robots that don't have it, which sent it empty) have nothing to store
+        this.consumer = new SensorAveragesConsumer() {
+            @Override
+            public void accept(int robotId, long timestamp, double[] averages, int length) {
+                if (length > 0) {
+                    parts.add(robotId, timestamp, averages, length);
+                }
+            }
+
+            @Override
+            public void acceptSeries(int robotId, long timestamp, SensorType type, double[] averages, int length) {
+                if (length > 0) {
+                    parts.add(robotId, timestamp, type, averages, length);
+                }
+            }
+        };
+    }
+
     @Override
     public void connectionLost(Throwable cause) {
     }
 
     @Override
-    public void messageArrived(String topic, MqttMessage message) throws Exception {
-        PollutionDataService service = PollutionDataService.getInstance();
-        String payload = new String(message.getPayload());
-        SensorAverages averages = new ObjectMapper().readValue(payload, SensorAverages.class);
-        service.addSensorData(averages);
+    public void messageArrived(String topic, MqttMessage message) {
+        parts.clear();
+        try {
+            if (topic.endsWith(SensorAveragesCodec.TOPIC_SUFFIX)) {
+                reader.readBinary(message.getPayload(), consumer);
+            } else {
+                reader.read(message.getPayload(), consumer);
+            }
+        } catch (IOException | IllegalStateException e) {
+            // A malformed message is dropped, throwing would make the client disconnect
+            MessagePrinter.printMessage("Discarded malformed message on " + topic + ": " + e.getMessage(),
+                    MessagePrinter.ERROR_FORMAT, true);
+            acknowledge(message);
+            return;
+        }
+        if (parts.size() == 0) {
+            acknowledge(message);
+            return;
+        }
+        pipeline.submit(parts, () -> acknowledge(message));
     }
 
     @Override
     public void deliveryComplete(IMqttDeliveryToken token) {
 
     }
+
+    private void acknowledge(MqttMessage message) {
+        if (message.getQos() == 0) {
+            return;
+        }
+        try {
+            client.messageArrivedComplete(message.getId(), message.getQos());
+        } catch (MqttException e) {
+            // Not acknowledged, the broker delivers the message again and the store replaces the readings
+            MessagePrinter.printMessage("Could not acknowledge pollution message " + message.getId() + ": " +
+                    e.getMessage(), MessagePrinter.ERROR_FORMAT, true);
+        }
+    }
 }
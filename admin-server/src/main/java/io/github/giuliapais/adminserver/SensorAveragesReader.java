@@ -0,0 +1,152 @@
+package io.github.giuliapais.adminserver;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.StreamReadFeature;
+import io.github.giuliapais.commons.SensorAveragesCodec;
+import io.github.giuliapais.commons.SensorAveragesConsumer;
+import io.github.giuliapais.commons.models.SensorAverages;
+import io.github.giuliapais.commons.models.SensorType;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Reads the {@link SensorAverages} messages published by the robots, in JSON with a streaming parser or in the
+ * {@link SensorAveragesCodec binary format}, straight from the payload bytes into primitives. No String, tree or
+ * {@code List<Double>} is built for a message, and the averages are read into a per-thread buffer reused for every
+ * message: what is left to allocate is the JSON parser itself. Instances are thread-safe and meant to be shared.
+ */
+public final class SensorAveragesReader {
+    private static final int INITIAL_CAPACITY = 16;
+    private static final SensorType[] TYPES = SensorType.values();
+    // The fast double parser reads the digits in place instead of building a String for each average
+    private final JsonFactory factory = JsonFactory.builder()
+            .enable(StreamReadFeature.USE_FAST_DOUBLE_PARSER)
+            .build();
+    private final ThreadLocal<Scratch> scratches = ThreadLocal.withInitial(Scratch::new);
+
+    /* What a thread reads a message into: the averages of all the sensors, one after the other */
+    private static final class Scratch {
+        double[] values = new double[INITIAL_CAPACITY];
+        /* Start and number of the averages of each sensor in values, by ordinal */
+        final int[] starts = new int[TYPES.length];
+        final int[] lengths = new int[TYPES.length];
+        /* Sensors of the series object, in the order they appear */
+        final SensorType[] series = new SensorType[TYPES.length];
+    }
+
+    /**
+     * Parses a JSON message and passes its content to the consumer: the PM10 averages, then each of the series of
+     * the other sensors. Unknown fields and sensors are ignored, missing fields are read as 0 (or no averages), as
+     * the data binding of {@link SensorAverages} would do.
+     *
+     * @throws IOException if the payload is not a valid message
+     */
+    public void read(byte[] payload, SensorAveragesConsumer consumer) throws IOException {
+        int robotId = 0;
+        long timestamp = 0;
+        Scratch scratch = scratches.get();
+        int pm10 = SensorType.PM10.ordinal();
+        scratch.starts[pm10] = 0;
+        scratch.lengths[pm10] = 0;
+        int seriesCount = 0;
+        int end = 0;
+        try (JsonParser parser = factory.createParser(payload)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new JsonParseException(parser, "Expected a sensor averages object");
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                // Field names are canonicalized by the factory, so reading them doesn't allocate
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+                switch (field) {
+                    case "robotId" -> robotId = parser.getIntValue();
+                    case "timestamp" -> timestamp = parser.getLongValue();
+                    case "averages" -> end = readAverages(parser, value, scratch, pm10, end);
+                    case "series" -> {
+                        if (value == JsonToken.VALUE_NULL) {
+                            break;
+                        }
+                        if (value != JsonToken.START_OBJECT) {
+                            throw new JsonParseException(parser, "Expected an object of series");
+                        }
+                        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                            SensorType type = seriesType(parser.currentName());
+                            JsonToken values = parser.nextToken();
+                            if (type == null || values == JsonToken.VALUE_NULL) {
+                                parser.skipChildren();
+                                continue;
+                            }
+                            for (int i = 0; i < seriesCount; i++) {
+                                if (scratch.series[i] == type) {
+                                    throw new JsonParseException(parser, "Repeated series: " + type);
+                                }
+                            }
+                            scratch.series[seriesCount++] = type;
+                            end = readAverages(parser, values, scratch, type.ordinal(), end);
+                        }
+                    }
+                    default -> parser.skipChildren();
+                }
+            }
+        }
+        double[] values = scratch.values;
+        if (scratch.starts[pm10] == 0) {
+            consumer.accept(robotId, timestamp, values, scratch.lengths[pm10]);
+        } else {
+            // The averages came after the series, which the robots don't do
+            consumer.accept(robotId, timestamp, Arrays.copyOfRange(values, scratch.starts[pm10],
+                    scratch.starts[pm10] + scratch.lengths[pm10]), scratch.lengths[pm10]);
+        }
+        // Each series is after the previous one, moving it to the start overwrites only the ones already passed
+        for (int i = 0; i < seriesCount; i++) {
+            int type = scratch.series[i].ordinal();
+            System.arraycopy(values, scratch.starts[type], values, 0, scratch.lengths[type]);
+            consumer.acceptSeries(robotId, timestamp, scratch.series[i], values, scratch.lengths[type]);
+        }
+    }
+
+    /* Reads an array of averages (or null for none) after the given end of the values, returns the new end */
+    private int readAverages(JsonParser parser, JsonToken value, Scratch scratch, int type, int end)
+            throws IOException {
+        scratch.starts[type] = end;
+        scratch.lengths[type] = 0;
+        if (value == JsonToken.VALUE_NULL) {
+            return end;
+        }
+        if (value != JsonToken.START_ARRAY) {
+            throw new JsonParseException(parser, "Expected an array of averages");
+        }
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            if (end == scratch.values.length) {
+                scratch.values = Arrays.copyOf(scratch.values, 2 * end);
+            }
+            scratch.values[end++] = parser.getDoubleValue();
+        }
+        scratch.lengths[type] = end - scratch.starts[type];
+        return end;
+    }
+
+    /* The sensor of a series, null if unknown: PM10 is not a series, its averages are the main ones */
+    private static SensorType seriesType(String name) {
+        for (SensorType type : TYPES) {
+            if (type != SensorType.PM10 && type.name().equals(name)) {
+                return type;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Decodes a message in the {@link SensorAveragesCodec binary format} and passes its content to the consumer.
+     *
+     * @throws IOException if the payload is not a valid message
+     */
+    public void readBinary(byte[] payload, SensorAveragesConsumer consumer) throws IOException {
+        Scratch scratch = scratches.get();
+        scratch.values = SensorAveragesCodec.decode(payload, scratch.values, consumer);
+    }
+}
@@ -0,0 +1,34 @@
+package io.github.giuliapais.api.models;
+
+import io.github.giuliapais.commons.models.MapPosition;
+import jakarta.xml.bind.annotation.XmlRootElement;
+
+@XmlRootElement
+public class RegisteredRobot {
+    private Robot identity;
+    private MapPosition mapPosition;
+
+    public RegisteredRobot() {
+    }
+
+    public RegisteredRobot(Robot identity, MapPosition mapPosition) {
+        this.identity = identity;
+        this.mapPosition = mapPosition;
+    }
+
+    public Robot getIdentity() {
+        return identity;
+    }
+
+    public void setIdentity(Robot identity) {
+        this.identity = identity;
+    }
+
+    public MapPosition getMapPosition() {
+        return mapPosition;
+    }
+
+    public void setMapPosition(MapPosition mapPosition) {
+        this.mapPosition = mapPosition;
+    }
+}
@@ -0,0 +1,35 @@
+package io.github.giuliapais.api.models;
+
+import jakarta.xml.bind.annotation.XmlRootElement;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Response to the registration of a fleet of robots: the robots that were already active, shared by all the robots
+ * of the fleet, and the position assigned to each of them.
+ */
+@XmlRootElement
+public class RobotBulkCreateResponse {
+    private Collection<Robot> activeRobots;
+    private List<RegisteredRobot> registered;
+
+    public RobotBulkCreateResponse() {
+    }
+
+    public Collection<Robot> getActiveRobots() {
+        return activeRobots;
+    }
+
+    public void setActiveRobots(Collection<Robot> activeRobots) {
+        this.activeRobots = activeRobots;
+    }
+
+    public List<RegisteredRobot> getRegistered() {
+        return registered;
+    }
+
+    public void setRegistered(List<RegisteredRobot> registered) {
+        this.registered = registered;
+    }
+}
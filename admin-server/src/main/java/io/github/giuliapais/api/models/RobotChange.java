@@ -0,0 +1,98 @@
+package io.github.giuliapais.api.models;
+
+import io.github.giuliapais.commons.models.MapPosition;
+import jakarta.xml.bind.annotation.XmlRootElement;
+
+/**
+ * A change of the list of robots: a robot was added, removed or moved to another position. Only the id is set for
+ * a removed robot, the position is not set for an added one whose position isn't known yet.
+ */
+@XmlRootElement
+public class RobotChange {
+    public enum Type {
+        ADDED,
+        REMOVED,
+        MOVED
+    }
+
+    private long sequence;
+    private Type type;
+    private int robotId;
+    private String ipAddress;
+    private int port;
+    private MapPosition mapPosition;
+
+    public RobotChange() {
+    }
+
+    public RobotChange(Type type, int robotId, String ipAddress, int port, MapPosition mapPosition) {
+        this.type = type;
+        this.robotId = robotId;
+        this.ipAddress = ipAddress;
+        this.port = port;
+        this.mapPosition = mapPosition;
+    }
+
+    public static RobotChange added(Robot robot, MapPosition mapPosition) {
+        return new RobotChange(Type.ADDED, robot.getId(), robot.getIpAddress(), robot.getPort(), mapPosition);
+    }
+
+    public static RobotChange removed(int robotId) {
+        return new RobotChange(Type.REMOVED, robotId, null, 0, null);
+    }
+
+    public static RobotChange moved(int robotId, MapPosition mapPosition) {
+        return new RobotChange(Type.MOVED, robotId, null, 0, mapPosition);
+    }
+
+    /**
+     * Position of the change in the sequence of all changes, assigned when the change is logged.
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    public void setSequence(long sequence) {
+        this.sequence = sequence;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public void setType(Type type) {
+        this.type = type;
+    }
+
+    public int getRobotId() {
+        return robotId;
+    }
+
+    public void setRobotId(int robotId) {
+        this.robotId = robotId;
+    }
+
+    public String getIpAddress() {
+        return ipAddress;
+    }
+
+    public void setIpAddress(String ipAddress) {
+        this.ipAddress = ipAddress;
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    public void setPort(int port) {
+        this.port = port;
+    }
+
+    public MapPosition getMapPosition() {
+        return mapPosition;
+    }
+
+    public void setMapPosition(MapPosition mapPosition) {
+        this.mapPosition = mapPosition;
+    }
+}
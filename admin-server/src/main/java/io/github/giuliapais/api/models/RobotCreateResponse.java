@@ -3,12 +3,14 @@ package io.github.giuliapais.api.models;
 import io.github.giuliapais.commons.models.MapPosition;
 import jakarta.xml.bind.annotation.XmlRootElement;
 
-import java.util.List;
+import java.util.Collection;
 
 @XmlRootElement
 public class RobotCreateResponse {
     private MapPosition mapPosition;
-    private List<Robot> activeRobots;
+    private Collection<Robot> activeRobots;
+    // Number of the robots that were active, which activeRobots can list only in part
+    private int activeRobotsCount;
     private Robot identity;
 
     public RobotCreateResponse() {
@@ -22,14 +24,22 @@ public class RobotCreateResponse {
         this.mapPosition = mapPosition;
     }
 
-    public List<Robot> getActiveRobots() {
+    public Collection<Robot> getActiveRobots() {
         return activeRobots;
     }
 
-    public void setActiveRobots(List<Robot> activeRobots) {
+    public void setActiveRobots(Collection<Robot> activeRobots) {
         this.activeRobots = activeRobots;
     }
 
+    public int getActiveRobotsCount() {
+        return activeRobotsCount;
+    }
+
+    public void setActiveRobotsCount(int activeRobotsCount) {
+        this.activeRobotsCount = activeRobotsCount;
+    }
+
     public Robot getIdentity() {
         return identity;
     }
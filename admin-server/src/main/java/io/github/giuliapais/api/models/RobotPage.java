@@ -0,0 +1,40 @@
+package io.github.giuliapais.api.models;
+
+import io.github.giuliapais.commons.models.RobotInfo;
+import jakarta.xml.bind.annotation.XmlRootElement;
+
+import java.util.List;
+
+/**
+ * A page of the list of robots, in ascending order of id (as unsigned ints).
+ */
+@XmlRootElement
+public class RobotPage {
+    private List<RobotInfo> robots;
+    // Cursor of the next page (the id of the last robot of this page), null if this is the last page
+    private Integer after;
+
+    public RobotPage() {
+    }
+
+    public RobotPage(List<RobotInfo> robots, Integer after) {
+        this.robots = robots;
+        this.after = after;
+    }
+
+    public List<RobotInfo> getRobots() {
+        return robots;
+    }
+
+    public void setRobots(List<RobotInfo> robots) {
+        this.robots = robots;
+    }
+
+    public Integer getAfter() {
+        return after;
+    }
+
+    public void setAfter(Integer after) {
+        this.after = after;
+    }
+}
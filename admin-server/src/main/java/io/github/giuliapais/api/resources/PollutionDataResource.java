@@ -1,6 +1,7 @@
 package io.github.giuliapais.api.resources;
 
 import io.github.giuliapais.api.services.PollutionDataService;
+import io.github.giuliapais.commons.models.SensorType;
 import jakarta.ws.rs.*;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
@@ -15,12 +16,14 @@ public class PollutionDataResource {
     @Path("{id}")
     public Response getLastNAverage(
             @PathParam("id") int id,
-            @QueryParam("n") int n
+            @QueryParam("n") int n,
+            @QueryParam("type") @DefaultValue("PM10") String type
     ) {
-        if (n <= 0) {
+        SensorType sensorType = parseType(type);
+        if (n <= 0 || sensorType == null) {
             return Response.status(Response.Status.BAD_REQUEST).build();
         }
-        double average = pollutionDataService.getAverage(id, n);
+        double average = pollutionDataService.getAverage(sensorType, id, n);
         Response response;
         if (average != -1) {
             response = Response.ok(average).build();
@@ -33,15 +36,28 @@ public class PollutionDataResource {
     @GET
     public Response getAverageBetween(
             @QueryParam("t1") long t1,
-            @QueryParam("t2") long t2
+            @QueryParam("t2") long t2,
+            @QueryParam("type") @DefaultValue("PM10") String type
     ) {
+        SensorType sensorType = parseType(type);
+        if (sensorType == null) {
+            return Response.status(Response.Status.BAD_REQUEST).build();
+        }
         double average;
         if (t1 < t2) {
-            average = pollutionDataService.getAverageBetweenTimestamps(t1, t2);
+            average = pollutionDataService.getAverageBetweenTimestamps(sensorType, t1, t2);
         } else {
-            average = pollutionDataService.getAverageBetweenTimestamps(t2, t1);
+            average = pollutionDataService.getAverageBetweenTimestamps(sensorType, t2, t1);
         }
         return Response.ok(average).build();
     }
 
+    /* Unknown sensor types are a bad request, not a missing resource (what Jersey answers for an invalid enum) */
+    private static SensorType parseType(String type) {
+        try {
+            return SensorType.valueOf(type);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
 }
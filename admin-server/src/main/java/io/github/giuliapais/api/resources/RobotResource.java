@@ -1,32 +1,180 @@
 package io.github.giuliapais.api.resources;
 
+import io.github.giuliapais.adminserver.AdminServerConfig;
 import io.github.giuliapais.api.models.Robot;
+import io.github.giuliapais.api.models.RobotBulkCreateResponse;
+import io.github.giuliapais.api.models.RobotChange;
 import io.github.giuliapais.api.models.RobotCreateResponse;
+import io.github.giuliapais.api.models.RobotPage;
 import io.github.giuliapais.api.services.RobotService;
 import io.github.giuliapais.commons.MessagePrinter;
-import io.github.giuliapais.commons.models.RobotInfo;
 import io.github.giuliapais.commons.models.RobotPosUpdate;
 import io.github.giuliapais.exceptions.IdPresentException;
 import jakarta.ws.rs.*;
+import jakarta.ws.rs.core.Context;
+import jakarta.ws.rs.core.EntityTag;
+import jakarta.ws.rs.core.HttpHeaders;
 import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Request;
 import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.sse.OutboundSseEvent;
+import jakarta.ws.rs.sse.Sse;
+import jakarta.ws.rs.sse.SseEventSink;
 
 import java.util.List;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 @Path("robots")
 @Consumes(MediaType.APPLICATION_JSON)
 @Produces(MediaType.APPLICATION_JSON)
 public class RobotResource {
+    private static final int DEFAULT_PAGE_SIZE = 100;
+    private static final int MAX_PAGE_SIZE = 1000;
+    private static final long HEARTBEAT_INTERVAL = 15_000;
+    // Seconds after which a client turned away from the changes stream can try again
+    private static final long STREAM_RETRY_AFTER = 30;
+    // Each client of the changes stream has a thread waiting for the changes and sending them, up to a maximum
+    // number of clients: the ones that come after are turned away instead of waiting for a thread
+    private static final ThreadPoolExecutor CHANGE_STREAMS = changeStreams(AdminServerConfig.robotChangeStreams());
     RobotService robotService = RobotService.getInstance();
 
+    /**
+     * Returns the list of robots, encoded only once per version of the list. A tag of the version is sent as the
+     * ETag of the response: a request with a matching If-None-Match header gets a 304 response without a body.
+     * <p>
+     * If {@code after} or {@code limit} is given, returns instead a page of the list, see
+     * {@link RobotService#getRobotsPage(Integer, int)}.
+     */
     @GET
-    public List<RobotInfo> getAll() {
-        return robotService.getAllRobots();
+    public Response getAll(@Context Request request,
+                           @QueryParam("after") Integer after,
+                           @QueryParam("limit") Integer limit) {
+        if (after != null || limit != null) {
+            return Response.ok(getPage(after, limit)).build();
+        }
+        RobotService.EncodedRobots robots = robotService.getEncodedRobots();
+        EntityTag tag = new EntityTag(robots.tag());
+        Response.ResponseBuilder notModified = request.evaluatePreconditions(tag);
+        if (notModified != null) {
+            return notModified.build();
+        }
+        return Response.ok(robots.json()).tag(tag).build();
+    }
+
+    /**
+     * Streams the changes of the list of robots as server-sent events, named after the type of change
+     * ({@code added}, {@code removed} or {@code moved}) and with a {@link RobotChange} as data. The id of each event
+     * is the ETag of the list after the change: a client that read the list (or the events up to a given one) can
+     * resume from there with the {@code since} query parameter or the Last-Event-ID header. Without either, the
+     * stream starts from the current list.
+     * <p>
+     * If the changes to resume from are no longer available, a {@code reset} event is sent first: the client has
+     * to read the list again, after which the following events apply to it.
+     *
+     * @throws ServiceUnavailableException if the maximum number of clients of the stream are already served
+     */
+    @GET
+    @Path("changes")
+    @Produces(MediaType.SERVER_SENT_EVENTS)
+    public void streamChanges(@Context SseEventSink sink, @Context Sse sse,
+                              @QueryParam("since") String since,
+                              @HeaderParam(HttpHeaders.LAST_EVENT_ID_HEADER) String lastEventId) {
+        String resumeTag = since != null ? since : lastEventId;
+        long version = resumeTag == null
+                ? robotService.getVersion()
+                : robotService.parseTag(resumeTag.replace("\"", ""));
+        try {
+            CHANGE_STREAMS.execute(() -> streamChanges(sink, sse, version));
+        } catch (RejectedExecutionException e) {
+            throw new ServiceUnavailableException("Too many clients of the changes stream", STREAM_RETRY_AFTER);
+        }
+    }
+
+    private void streamChanges(SseEventSink sink, Sse sse, long version) {
+        try (sink) {
+            List<RobotChange> changes = version < 0 ? null : List.of();
+            while (!sink.isClosed()) {
+                if (changes == null) {
+                    // Continues from the current version, that the client will read
+                    version = robotService.getVersion();
+                    send(sink, sse.newEventBuilder()
+                            .name("reset")
+                            .id(robotService.getTag(version))
+                            .data("")
+                            .build());
+                } else if (changes.isEmpty()) {
+                    // Heartbeat, which detects the clients that left (also sent first, so that the client gets the
+                    // response headers right away)
+                    send(sink, sse.newEventBuilder().comment("").build());
+                } else {
+                    for (RobotChange change : changes) {
+                        send(sink, sse.newEventBuilder()
+                                .name(change.getType().name().toLowerCase())
+                                .id(robotService.getTag(change.getSequence()))
+                                .mediaType(MediaType.APPLICATION_JSON_TYPE)
+                                .data(RobotChange.class, change)
+                                .build());
+                    }
+                    version = changes.get(changes.size() - 1).getSequence();
+                }
+                changes = robotService.awaitChanges(version, HEARTBEAT_INTERVAL);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (CompletionException e) {
+            // The client closed the connection
+        }
+    }
+
+    private static ThreadPoolExecutor changeStreams(int size) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("The clients of the changes stream must be positive");
+        }
+        return new ThreadPoolExecutor(0, size, 60, TimeUnit.SECONDS, new SynchronousQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, "robot-changes-stream");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    private static void send(SseEventSink sink, OutboundSseEvent event) {
+        sink.send(event).toCompletableFuture().join();
+    }
+
+    private RobotPage getPage(Integer after, Integer limit) {
+        if (limit != null && limit <= 0) {
+            throw new BadRequestException("The limit must be positive");
+        }
+        return robotService.getRobotsPage(after, limit == null ? DEFAULT_PAGE_SIZE : Math.min(limit, MAX_PAGE_SIZE));
     }
 
+    /**
+     * Registers a robot. If {@code neighbors} is given, the response lists only that number of active robots, the
+     * closest to the new one, see {@link RobotService#addRobot(Robot, int)}.
+     */
     @POST
-    public RobotCreateResponse register(Robot robot) throws IdPresentException {
-        return robotService.addRobot(robot);
+    public RobotCreateResponse register(Robot robot, @QueryParam("neighbors") @DefaultValue("0") int neighbors)
+            throws IdPresentException {
+        if (neighbors < 0) {
+            throw new BadRequestException("The number of neighbors must not be negative");
+        }
+        return robotService.addRobot(robot, neighbors);
+    }
+
+    /**
+     * Registers a fleet of robots in a single request, see {@link RobotService#addRobots(List)}.
+     */
+    @POST
+    @Path("bulk")
+    public RobotBulkCreateResponse registerBulk(List<Robot> robots) throws IdPresentException {
+        if (robots == null || robots.isEmpty() || robots.contains(null)) {
+            throw new BadRequestException("Expected a non-empty list of robots");
+        }
+        return robotService.addRobots(robots);
     }
 
     @DELETE
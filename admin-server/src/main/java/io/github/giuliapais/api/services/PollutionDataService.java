@@ -1,13 +1,77 @@
 package io.github.giuliapais.api.services;
 
-import io.github.giuliapais.commons.models.SensorAverages;
+import io.github.giuliapais.adminserver.AdminServerConfig;
+import io.github.giuliapais.commons.MessagePrinter;
+import io.github.giuliapais.commons.models.SensorType;
 import io.github.giuliapais.structures.PollutionDataStore;
+import io.github.giuliapais.structures.PollutionSnapshot;
+import io.github.giuliapais.structures.SensorDataBatch;
+import io.github.giuliapais.structures.WriteAheadLog;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 public class PollutionDataService {
+    private static final String SNAPSHOT_FILE = "pollution.snapshot";
+    private static final String WAL_DIRECTORY = "wal";
     private static volatile PollutionDataService instance;
-    private final PollutionDataStore pollutionDataStore = new PollutionDataStore();
+    private final PollutionDataStore pollutionDataStore;
+    /* Persistence, null if disabled */
+    private final Path snapshotFile;
+    private final WriteAheadLog writeAheadLog;
+    private final ScheduledExecutorService persistenceExecutor;
+    // Data is added under the read lock (concurrently), snapshots are copied under the write lock
+    private final ReadWriteLock snapshotLock = new ReentrantReadWriteLock();
 
     private PollutionDataService() {
+        this(new PollutionDataStore(AdminServerConfig.retentionPolicy()), AdminServerConfig.dataDirectory(),
+                AdminServerConfig.walFlushInterval(), AdminServerConfig.snapshotInterval());
+    }
+
+    /**
+     * Creates the service, recovering the data persisted in {@code dataDirectory} (if not null) from the last
+     * snapshot and the write-ahead log records that follow it. The server uses the instance returned by
+     * {@link #getInstance()}, this constructor is meant for tests and benchmarks.
+     *
+     * @param flushInterval    milliseconds between flushes of the write-ahead log
+     * @param snapshotInterval seconds between snapshots
+     */
+    public PollutionDataService(PollutionDataStore store, Path dataDirectory, long flushInterval, long snapshotInterval) {
+        this.pollutionDataStore = store;
+        if (dataDirectory == null) {
+            snapshotFile = null;
+            writeAheadLog = null;
+            persistenceExecutor = null;
+            return;
+        }
+        snapshotFile = dataDirectory.resolve(SNAPSHOT_FILE);
+        try {
+            long sequence = PollutionSnapshot.load(store, snapshotFile);
+            writeAheadLog = WriteAheadLog.open(dataDirectory.resolve(WAL_DIRECTORY), sequence, store::addData);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        persistenceExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "pollution-persistence");
+            thread.setDaemon(true);
+            return thread;
+        });
+        persistenceExecutor.scheduleWithFixedDelay(this::flush, flushInterval, flushInterval,
+                TimeUnit.MILLISECONDS);
+        persistenceExecutor.scheduleWithFixedDelay(() -> {
+            try {
+                saveSnapshot();
+            } catch (UncheckedIOException e) {
+                MessagePrinter.printMessage("Could not save the pollution data snapshot: " + e.getMessage(),
+                        MessagePrinter.ERROR_FORMAT, true);
+            }
+        }, snapshotInterval, snapshotInterval, TimeUnit.SECONDS);
     }
 
     public static PollutionDataService getInstance() {
@@ -21,16 +85,136 @@ public class PollutionDataService {
         return instance;
     }
 
-    public void addSensorData(SensorAverages data) {
-        pollutionDataStore.addData(data.getRobotId(), data.getTimestamp(), data.getAverages());
+    public void addSensorData(int robotId, long timestamp, double[] readings, int length) {
+        addSensorData(robotId, timestamp, SensorType.PM10, readings, length);
+    }
+
+    public void addSensorData(int robotId, long timestamp, SensorType type, double[] readings, int length) {
+        if (writeAheadLog == null) {
+            pollutionDataStore.addData(robotId, timestamp, type, readings, length);
+            return;
+        }
+        snapshotLock.readLock().lock();
+        try {
+            writeAheadLog.append(robotId, timestamp, type, readings, length);
+            pollutionDataStore.addData(robotId, timestamp, type, readings, length);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            snapshotLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Adds all the messages of a batch, taking the locks of the write-ahead log once for the whole batch.
+     */
+    public void addSensorData(SensorDataBatch batch) {
+        if (writeAheadLog == null) {
+            addToStore(batch);
+            return;
+        }
+        snapshotLock.readLock().lock();
+        try {
+            writeAheadLog.append(batch);
+            addToStore(batch);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            snapshotLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Forces the messages added so far to disk, so that they survive a crash: until then, the write-ahead log holds
+     * them in memory and writes them only at the next periodic flush. Does nothing if persistence is disabled.
+     *
+     * @throws UncheckedIOException if the write-ahead log could not be written
+     */
+    public void sync() {
+        if (writeAheadLog == null) {
+            return;
+        }
+        try {
+            writeAheadLog.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void addToStore(SensorDataBatch batch) {
+        for (int i = 0; i < batch.size(); i++) {
+            pollutionDataStore.addData(batch.robotId(i), batch.timestamp(i), batch.type(i), batch.readings(i),
+                    batch.length(i));
+        }
     }
 
     public double getAverage(int robotId, int n) {
-        return pollutionDataStore.getAverageOfLastNReadings(robotId, n);
+        return getAverage(SensorType.PM10, robotId, n);
+    }
+
+    public double getAverage(SensorType type, int robotId, int n) {
+        return pollutionDataStore.sensor(type).getAverageOfLastNReadings(robotId, n);
     }
 
     public double getAverageBetweenTimestamps(long t1, long t2) {
-        return pollutionDataStore.getAverageBetweenTimestamps(t1, t2);
+        return getAverageBetweenTimestamps(SensorType.PM10, t1, t2);
+    }
+
+    public double getAverageBetweenTimestamps(SensorType type, long t1, long t2) {
+        return pollutionDataStore.sensor(type).getAverageBetweenTimestamps(t1, t2);
+    }
+
+    /**
+     * Saves a snapshot of the data and deletes the write-ahead log segments it makes obsolete. Ingestion is paused
+     * only while the data is copied in memory: the copy, which takes as much memory as the store, is then saved
+     * while ingestion goes on.
+     */
+    public void saveSnapshot() {
+        if (writeAheadLog == null) {
+            return;
+        }
+        long sequence;
+        PollutionDataStore copy;
+        snapshotLock.writeLock().lock();
+        try {
+            sequence = writeAheadLog.lastSequence();
+            copy = pollutionDataStore.copy();
+        } finally {
+            snapshotLock.writeLock().unlock();
+        }
+        try {
+            PollutionSnapshot.save(copy, snapshotFile, sequence);
+            writeAheadLog.deleteUpTo(sequence);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
     }
 
+    /**
+     * Stops the periodic tasks and saves a last snapshot, so the next start doesn't have to replay the log.
+     */
+    public void shutdown() {
+        if (writeAheadLog == null) {
+            return;
+        }
+        persistenceExecutor.shutdown();
+        try {
+            persistenceExecutor.awaitTermination(10, TimeUnit.SECONDS);
+            saveSnapshot();
+            writeAheadLog.close();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void flush() {
+        try {
+            writeAheadLog.flush();
+        } catch (IOException e) {
+            MessagePrinter.printMessage("Could not flush the pollution write-ahead log: " + e.getMessage(),
+                    MessagePrinter.ERROR_FORMAT, true);
+        }
+    }
 }
@@ -1,16 +1,27 @@
 package io.github.giuliapais.api.services;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.github.giuliapais.adminserver.AdminServerConfig;
 import io.github.giuliapais.commons.models.MapPosition;
+import io.github.giuliapais.api.models.RegisteredRobot;
 import io.github.giuliapais.api.models.Robot;
+import io.github.giuliapais.api.models.RobotBulkCreateResponse;
+import io.github.giuliapais.api.models.RobotChange;
 import io.github.giuliapais.api.models.RobotCreateResponse;
+import io.github.giuliapais.api.models.RobotPage;
 import io.github.giuliapais.commons.models.RobotInfo;
 import io.github.giuliapais.commons.models.RobotPosUpdate;
 import io.github.giuliapais.exceptions.IdPresentException;
 import io.github.giuliapais.commons.DistrictBalancer;
+import io.github.giuliapais.structures.PersistentIntMap;
+import io.github.giuliapais.structures.RobotChangeLog;
 import io.github.giuliapais.structures.RobotHashMap;
 import io.github.giuliapais.commons.MessagePrinter;
 
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -20,9 +31,29 @@ import java.util.Map;
  */
 public class RobotService {
 
+    /**
+     * The list of robots encoded in JSON, as returned by a GET of the robots.
+     *
+     * @param version the version of the robots list it was encoded from
+     * @param tag     identifies the version, also across restarts of the server (which start again from 0)
+     * @param json    the encoded list, must not be modified
+     */
+    public record EncodedRobots(long version, String tag, byte[] json) {
+    }
+
     private static volatile RobotService instance = null;
+    private static final ObjectMapper MAPPER = new ObjectMapper();
     private final RobotHashMap robots = new RobotHashMap();
-    private final DistrictBalancer districtBalancer = new DistrictBalancer();
+    private final DistrictBalancer districtBalancer = new DistrictBalancer(AdminServerConfig.greenfieldMap());
+    // Every change of the robots list (registration, removal, position update), the version of the list is the
+    // sequence number of the last one
+    private final RobotChangeLog changeLog = new RobotChangeLog(AdminServerConfig.robotChangeLogSize());
+    // Held while changing the robots and logging the change, so that the changes are logged in the order they are
+    // made (e.g. a robot is never logged as removed before being logged as added)
+    private final Object changeLock = new Object();
+    private final Object encodingLock = new Object();
+    private final String startTime = Long.toString(System.currentTimeMillis(), Character.MAX_RADIX);
+    private volatile EncodedRobots encodedRobots = new EncodedRobots(-1, null, null);
 
     private RobotService() {
     }
@@ -52,20 +83,90 @@ public class RobotService {
      * @throws IdPresentException If the robot id is already present in the grid
      */
     public RobotCreateResponse addRobot(Robot robot) throws IdPresentException {
-        List<Robot> activeRobots = null;
-        synchronized (this) {
-            activeRobots = List.copyOf(robots.getMap().values());
-            robots.put(robot); // Raises exception if robot already present
+        return addRobot(robot, 0);
+    }
+
+    /**
+     * Adds a robot as {@link #addRobot(Robot)} does, but includes in the response only the given number of active
+     * robots, the closest to the new one (see {@link DistrictBalancer#getNearestRobots(int, int)}). The others can
+     * be fetched with {@link #getRobotsPage(Integer, int)}.
+     *
+     * @param robot     The robot to be added
+     * @param neighbors The maximum number of active robots in the response, 0 to include all of them
+     * @return A response containing the robot's position and the list of its neighbors
+     * @throws IdPresentException If the robot id is already present in the grid
+     */
+    public RobotCreateResponse addRobot(Robot robot, int neighbors) throws IdPresentException {
+        RobotHashMap.Snapshot snapshot;
+        MapPosition mapPosition;
+        synchronized (changeLock) {
+            // Raises exception if robot already present
+            snapshot = robots.put(robot);
+            districtBalancer.addRobot(robot.getId());
+            mapPosition = districtBalancer.getRobotPosition(robot.getId());
+            changeLog.append(List.of(RobotChange.added(robot, new MapPosition(mapPosition))));
+        }
+        // The robots active before this one, a view of the immutable snapshot (nothing is copied)
+        PersistentIntMap<Robot> active = snapshot.robots().remove(robot.getId());
+        Collection<Robot> activeRobots = active.values();
+        if (neighbors > 0 && neighbors < active.size()) {
+            List<Robot> nearest = new ArrayList<>(neighbors);
+            for (int id : districtBalancer.getNearestRobots(robot.getId(), neighbors)) {
+                // Robots that registered after this one are left out, they will introduce themselves to it
+                Robot neighbor = active.get(id);
+                if (neighbor != null) {
+                    nearest.add(neighbor);
+                }
+            }
+            activeRobots = nearest;
         }
-        districtBalancer.addRobot(robot.getId());
-        MapPosition mapPosition = districtBalancer.getRobotPosition(robot.getId());
         RobotCreateResponse response = new RobotCreateResponse();
         response.setMapPosition(mapPosition);
         response.setActiveRobots(activeRobots);
+        response.setActiveRobotsCount(active.size());
         response.setIdentity(robot);
         return response;
     }
 
+    /**
+     * Registers a fleet of robots at once. The robots are added to the active robots in a single atomic change
+     * (either all of them or none, if an id is already present or repeated) and placed in the grid in a single
+     * balancing step, as if they registered one after the other.
+     * The list of the robots that were already active is included only once in the response.
+     *
+     * @param fleet The robots to be added
+     * @return A response containing the robots already active and the position of each new robot
+     * @throws IdPresentException If the id of one of the robots is already present or repeated
+     */
+    public RobotBulkCreateResponse addRobots(List<Robot> fleet) throws IdPresentException {
+        List<Integer> ids = new ArrayList<>(fleet.size());
+        for (Robot robot : fleet) {
+            ids.add(robot.getId());
+        }
+        RobotHashMap.Snapshot snapshot;
+        List<RegisteredRobot> registered = new ArrayList<>(fleet.size());
+        synchronized (changeLock) {
+            // Raises exception if a robot is already present, in which case none is added
+            snapshot = robots.putAll(fleet);
+            HashMap<Integer, MapPosition> positions = districtBalancer.addRobots(ids);
+            List<RobotChange> changes = new ArrayList<>(fleet.size());
+            for (Robot robot : fleet) {
+                MapPosition position = positions.get(robot.getId());
+                registered.add(new RegisteredRobot(robot, position));
+                changes.add(RobotChange.added(robot, position));
+            }
+            changeLog.append(changes);
+        }
+        PersistentIntMap<Robot> activeRobots = snapshot.robots();
+        for (int id : ids) {
+            activeRobots = activeRobots.remove(id);
+        }
+        RobotBulkCreateResponse response = new RobotBulkCreateResponse();
+        response.setActiveRobots(activeRobots.values());
+        response.setRegistered(registered);
+        return response;
+    }
+
     /**
      * Removes a robot from the active robots list and from the grid.
      *
@@ -73,30 +174,149 @@ public class RobotService {
      * @return True if the robot was removed from either the active robots or the grid, false otherwise
      */
     public boolean removeRobot(int id) {
-        boolean mapRemoved = robots.remove(id);
-        boolean districtRemoved = districtBalancer.removeRobot(id);
-        return mapRemoved || districtRemoved;
+        synchronized (changeLock) {
+            boolean mapRemoved = robots.remove(id);
+            boolean districtRemoved = districtBalancer.removeRobot(id);
+            if (mapRemoved || districtRemoved) {
+                changeLog.append(List.of(RobotChange.removed(id)));
+                return true;
+            }
+            return false;
+        }
     }
 
     public List<RobotInfo> getAllRobots() {
         // Gets robots ids, ipAddress and port
-        HashMap<Integer, Robot> map = robots.getMap();
+        PersistentIntMap<Robot> map = robots.snapshot().robots();
         // Gets robot positions
         HashMap<Integer, MapPosition> positions = districtBalancer.getRobotPositions();
         // Creates a list
-        List<RobotInfo> robotsInfo = new ArrayList<>();
-        for (Integer key : map.keySet()) {
-            Robot robot = map.get(key);
-            MapPosition position = positions.get(key);
+        List<RobotInfo> robotsInfo = new ArrayList<>(map.size());
+        for (Robot robot : map.values()) {
+            MapPosition position = positions.get(robot.getId());
             robotsInfo.add(new RobotInfo(robot.getId(), robot.getIpAddress(), robot.getPort(), position));
         }
         return robotsInfo;
     }
 
+    /**
+     * Returns a page of the list of robots, in ascending order of id (as unsigned ints, so negative ids come last).
+     * A page costs the same whatever the number of robots, so large fleets can be listed (or a robot can learn
+     * about its peers) incrementally.
+     *
+     * @param after the id of the last robot of the previous page, null for the first page
+     * @param limit the maximum number of robots in the page
+     * @return the page, with the cursor of the next page
+     */
+    public RobotPage getRobotsPage(Integer after, int limit) {
+        PersistentIntMap<Robot> map = robots.snapshot().robots();
+        List<Robot> page = after == null ? map.firstValues(limit) : map.valuesAfter(after, limit);
+        List<Integer> ids = new ArrayList<>(page.size());
+        for (Robot robot : page) {
+            ids.add(robot.getId());
+        }
+        HashMap<Integer, MapPosition> positions = districtBalancer.getRobotPositions(ids);
+        List<RobotInfo> robotsInfo = new ArrayList<>(page.size());
+        for (Robot robot : page) {
+            robotsInfo.add(new RobotInfo(robot.getId(), robot.getIpAddress(), robot.getPort(),
+                    positions.get(robot.getId())));
+        }
+        Integer next = null;
+        if (!page.isEmpty() && !map.valuesAfter(ids.get(ids.size() - 1), 1).isEmpty()) {
+            next = ids.get(ids.size() - 1);
+        }
+        return new RobotPage(robotsInfo, next);
+    }
+
     public void updateRobotPositions(List<RobotPosUpdate> changes) {
         HashMap<Integer, MapPosition> changesMap = changes.stream()
                 .collect(HashMap::new, (m, v) -> m.put(v.getRobotId(), v.getMapPosition()), HashMap::putAll);
-        districtBalancer.updatePositions(changesMap);
+        synchronized (changeLock) {
+            districtBalancer.updatePositions(changesMap);
+            // Updates of robots that are not registered are ignored by the balancer
+            PersistentIntMap<Robot> registeredRobots = robots.snapshot().robots();
+            List<RobotChange> moves = new ArrayList<>(changesMap.size());
+            for (Map.Entry<Integer, MapPosition> entry : changesMap.entrySet()) {
+                if (registeredRobots.containsKey(entry.getKey())) {
+                    moves.add(RobotChange.moved(entry.getKey(), new MapPosition(entry.getValue())));
+                }
+            }
+            if (!moves.isEmpty()) {
+                changeLog.append(moves);
+            }
+        }
+    }
+
+    /**
+     * Returns the version of the robots list, which changes every time a robot is added, removed or moved.
+     */
+    public long getVersion() {
+        return changeLog.lastSequence();
+    }
+
+    /**
+     * Returns the tag of the given version of the robots list, which identifies it also across restarts of the
+     * server. The tag of the current version is the ETag of the robots list.
+     */
+    public String getTag(long version) {
+        return startTime + "-" + version;
+    }
+
+    /**
+     * Returns the version of the robots list identified by the tag, or -1 if the tag is not one of a version of
+     * this run of the server.
+     */
+    public long parseTag(String tag) {
+        String prefix = startTime + "-";
+        if (tag == null || !tag.startsWith(prefix)) {
+            return -1;
+        }
+        try {
+            long version = Long.parseLong(tag.substring(prefix.length()));
+            return version <= getVersion() ? version : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Waits for the changes of the robots list that follow the given version.
+     *
+     * @param version the version of the list the changes start from
+     * @param timeout maximum milliseconds to wait
+     * @return the changes in order, empty if there were none before the timeout, or null if they are no longer
+     * available (the list must be read again)
+     */
+    public List<RobotChange> awaitChanges(long version, long timeout) throws InterruptedException {
+        return changeLog.awaitChangesAfter(version, timeout);
+    }
+
+    /**
+     * Returns the list of robots encoded in JSON. The encoded list is cached and only encoded again after the
+     * robots list changes, so repeated requests of an unchanged list don't build or serialize anything.
+     */
+    public EncodedRobots getEncodedRobots() {
+        long current = getVersion();
+        EncodedRobots cached = encodedRobots;
+        if (cached.version() == current) {
+            return cached;
+        }
+        // Only one thread encodes each version, the others wait for it and take the result
+        synchronized (encodingLock) {
+            cached = encodedRobots;
+            if (cached.version() >= current) {
+                return cached;
+            }
+            // The list is read after the version, so it is at least as recent as the version it is cached with
+            try {
+                byte[] json = MAPPER.writeValueAsBytes(getAllRobots());
+                cached = new EncodedRobots(current, getTag(current), json);
+            } catch (JsonProcessingException e) {
+                throw new UncheckedIOException(e);
+            }
+            encodedRobots = cached;
+            return cached;
+        }
     }
 
     public void printGridStatus() {
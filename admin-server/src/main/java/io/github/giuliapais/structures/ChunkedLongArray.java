@@ -0,0 +1,204 @@
+package io.github.giuliapais.structures;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Growable array of primitive longs stored in fixed-size segments.
+ * <p>
+ * Appending never copies previously written segments (only the first, partially filled segment grows by
+ * doubling until it reaches the segment size), so large series do not produce the latency spikes and transient
+ * double-memory of a single growing array. Removing elements from the head (to enforce retention) releases
+ * whole segments without copying. Not thread-safe: callers are expected to guard access.
+ *
+ * @see ChunkedDoubleArray
+ */
+final class ChunkedLongArray {
+    static final int CHUNK_SHIFT = 9;
+    static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+    private static final int INITIAL_CAPACITY = 8;
+
+    private long[][] chunks = new long[4][];
+    // Physical position of the first element in the first segment
+    private int offset;
+    private int size;
+
+    ChunkedLongArray() {
+        chunks[0] = new long[INITIAL_CAPACITY];
+    }
+
+    int size() {
+        return size;
+    }
+
+    long get(int index) {
+        int position = offset + index;
+        return chunks[position >>> CHUNK_SHIFT][position & CHUNK_MASK];
+    }
+
+    void set(int index, long value) {
+        int position = offset + index;
+        chunks[position >>> CHUNK_SHIFT][position & CHUNK_MASK] = value;
+    }
+
+    void add(long value) {
+        ensureCapacity(offset + size + 1);
+        set(size++, value);
+    }
+
+    /**
+     * Inserts {@code length} slots at the given index, shifting the tail to the right. The new slots keep
+     * whatever value was previously stored there and must be overwritten by the caller.
+     */
+    void openGap(int index, int length) {
+        ensureCapacity(offset + size + length);
+        for (int i = size - 1; i >= index; i--) {
+            set(i + length, get(i));
+        }
+        size += length;
+    }
+
+    /**
+     * Removes {@code length} elements starting at the given index, shifting the tail to the left.
+     */
+    void remove(int index, int length) {
+        for (int i = index + length; i < size; i++) {
+            set(i - length, get(i));
+        }
+        size -= length;
+    }
+
+    /**
+     * Removes the first {@code length} elements, releasing the segments that become empty.
+     */
+    void removeHead(int length) {
+        offset += length;
+        size -= length;
+        int released = offset >>> CHUNK_SHIFT;
+        if (released > 0) {
+            System.arraycopy(chunks, released, chunks, 0, chunks.length - released);
+            Arrays.fill(chunks, chunks.length - released, chunks.length, null);
+            offset &= CHUNK_MASK;
+            if (chunks[0] == null) {
+                chunks[0] = new long[CHUNK_SIZE];
+            }
+        }
+    }
+
+    /**
+     * Returns the index of the first element greater than or equal to {@code key}, assuming the array is sorted
+     * in ascending order.
+     */
+    int lowerBound(long key) {
+        return search(key, false);
+    }
+
+    /**
+     * Returns the index of the first element strictly greater than {@code key}, assuming the array is sorted
+     * in ascending order.
+     */
+    int upperBound(long key) {
+        return search(key, true);
+    }
+
+    private int search(long key, boolean skipEqual) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            long value = get(mid);
+            if (value < key || (skipEqual && value == key)) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Returns the number of bytes written by {@link #writeTo(WindowedBuffer)}.
+     */
+    long serializedSize() {
+        return Integer.BYTES + (long) size * Long.BYTES;
+    }
+
+    /**
+     * Writes the size and the elements to the buffer, one segment at a time.
+     */
+    void writeTo(WindowedBuffer out) {
+        out.reserve(Integer.BYTES).putInt(size);
+        int position = offset;
+        int remaining = size;
+        while (remaining > 0) {
+            int length = Math.min(remaining, CHUNK_SIZE - (position & CHUNK_MASK));
+            ByteBuffer buffer = out.reserve(length * Long.BYTES);
+            buffer.asLongBuffer().put(chunks[position >>> CHUNK_SHIFT], position & CHUNK_MASK, length);
+            buffer.position(buffer.position() + length * Long.BYTES);
+            position += length;
+            remaining -= length;
+        }
+    }
+
+    /**
+     * Appends the elements written by {@link #writeTo(WindowedBuffer)}.
+     */
+    void readFrom(WindowedBuffer in) {
+        int count = in.reserve(Integer.BYTES).getInt();
+        if (count < 0 || (long) count * Long.BYTES > in.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        ensureCapacity(offset + size + count);
+        int position = offset + size;
+        int remaining = count;
+        while (remaining > 0) {
+            int length = Math.min(remaining, CHUNK_SIZE - (position & CHUNK_MASK));
+            ByteBuffer buffer = in.reserve(length * Long.BYTES);
+            buffer.asLongBuffer().get(chunks[position >>> CHUNK_SHIFT], position & CHUNK_MASK, length);
+            buffer.position(buffer.position() + length * Long.BYTES);
+            position += length;
+            remaining -= length;
+        }
+        size += count;
+    }
+
+    /**
+     * Returns a copy of the elements, which doesn't share any segment with this array.
+     */
+    ChunkedLongArray copy() {
+        ChunkedLongArray copy = new ChunkedLongArray();
+        copy.chunks = new long[chunks.length][];
+        for (int i = 0; i < chunks.length; i++) {
+            if (chunks[i] != null) {
+                copy.chunks[i] = chunks[i].clone();
+            }
+        }
+        copy.offset = offset;
+        copy.size = size;
+        return copy;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= CHUNK_SIZE && chunks[0].length < CHUNK_SIZE) {
+            if (capacity > chunks[0].length) {
+                int newLength = Math.min(CHUNK_SIZE, Math.max(capacity, chunks[0].length * 2));
+                chunks[0] = Arrays.copyOf(chunks[0], newLength);
+            }
+            return;
+        }
+        if (chunks[0].length < CHUNK_SIZE) {
+            chunks[0] = Arrays.copyOf(chunks[0], CHUNK_SIZE);
+        }
+        int neededChunks = ((capacity - 1) >>> CHUNK_SHIFT) + 1;
+        if (neededChunks > chunks.length) {
+            chunks = Arrays.copyOf(chunks, Math.max(neededChunks, chunks.length * 2));
+        }
+        for (int i = 1; i < neededChunks; i++) {
+            if (chunks[i] == null) {
+                chunks[i] = new long[CHUNK_SIZE];
+            }
+        }
+    }
+}
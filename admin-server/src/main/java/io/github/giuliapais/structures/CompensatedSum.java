@@ -0,0 +1,63 @@
+package io.github.giuliapais.structures;
+
+/**
+ * Mutable double-double accumulator: the sum is kept as an unevaluated pair {@code hi + lo}, where {@code lo}
+ * holds the rounding error of {@code hi}. This gives roughly twice the precision of a plain double, enough for
+ * sums computed as the difference of two running totals to agree with the ones computed by streaming the readings
+ * ({@link java.util.stream.DoubleStream#sum()} also uses compensated summation).
+ */
+final class CompensatedSum {
+    private double hi;
+    private double lo;
+
+    CompensatedSum() {
+    }
+
+    CompensatedSum(double hi, double lo) {
+        this.hi = hi;
+        this.lo = lo;
+    }
+
+    double hi() {
+        return hi;
+    }
+
+    double lo() {
+        return lo;
+    }
+
+    double value() {
+        return hi + lo;
+    }
+
+    void set(double hi, double lo) {
+        this.hi = hi;
+        this.lo = lo;
+    }
+
+    void set(CompensatedSum other) {
+        set(other.hi, other.lo);
+    }
+
+    void add(double value) {
+        add(value, 0);
+    }
+
+    void add(CompensatedSum other) {
+        add(other.hi, other.lo);
+    }
+
+    void subtract(CompensatedSum other) {
+        add(-other.hi, -other.lo);
+    }
+
+    void add(double otherHi, double otherLo) {
+        // Knuth's two-sum of the high parts, then renormalization
+        double sum = hi + otherHi;
+        double virtual = sum - hi;
+        double error = (hi - (sum - virtual)) + (otherHi - virtual);
+        error += lo + otherLo;
+        hi = sum + error;
+        lo = error - (hi - sum);
+    }
+}
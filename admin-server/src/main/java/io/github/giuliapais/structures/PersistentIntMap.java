@@ -0,0 +1,321 @@
+package io.github.giuliapais.structures;
+
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * An immutable map with int keys. Updates return a new map that shares all the unchanged nodes with the previous
+ * one (a hash array mapped trie, with the key itself as the hash), so they copy at most one node per level instead
+ * of the whole map.
+ * <p>
+ * Keys are split in groups of 5 bits starting from the most significant ones, so the values are iterated in
+ * ascending order of the keys (as unsigned ints). A node has up to 32 slots, only the occupied ones are stored.
+ *
+ * @param <V> type of the values
+ */
+public final class PersistentIntMap<V> {
+    private static final int BITS = 5;
+    private static final int MASK = (1 << BITS) - 1;
+    /* Shift of the first level, the 2 most significant bits */
+    private static final int ROOT_SHIFT = 30;
+
+    private static final PersistentIntMap<?> EMPTY = new PersistentIntMap<>(new Node(0, new Object[0]), 0);
+
+    private final Node root;
+    private final int size;
+
+    private PersistentIntMap(Node root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <V> PersistentIntMap<V> empty() {
+        return (PersistentIntMap<V>) EMPTY;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Returns the value associated with the key, or null if the key is not present.
+     */
+    @SuppressWarnings("unchecked")
+    public V get(int key) {
+        Node node = root;
+        for (int shift = ROOT_SHIFT; ; shift -= BITS) {
+            int bit = 1 << (key >>> shift & MASK);
+            if ((node.bitmap & bit) == 0) {
+                return null;
+            }
+            Object slot = node.slots[node.index(bit)];
+            if (slot instanceof Leaf leaf) {
+                return leaf.key == key ? (V) leaf.value : null;
+            }
+            node = (Node) slot;
+        }
+    }
+
+    public boolean containsKey(int key) {
+        return get(key) != null;
+    }
+
+    /**
+     * Returns a map with the given association, replacing the previous value of the key if present.
+     *
+     * @throws NullPointerException if the value is null
+     */
+    public PersistentIntMap<V> put(int key, V value) {
+        if (value == null) {
+            throw new NullPointerException();
+        }
+        boolean added = !containsKey(key);
+        Node newRoot = put(root, key, value, ROOT_SHIFT);
+        return newRoot == root ? this : new PersistentIntMap<>(newRoot, added ? size + 1 : size);
+    }
+
+    /**
+     * Returns a map without the given key, or this map if the key is not present.
+     */
+    public PersistentIntMap<V> remove(int key) {
+        if (!containsKey(key)) {
+            return this;
+        }
+        Object newRoot = remove(root, key, ROOT_SHIFT);
+        if (newRoot instanceof Leaf leaf) {
+            // The root is never collapsed into a leaf
+            int bit = 1 << (leaf.key >>> ROOT_SHIFT & MASK);
+            newRoot = new Node(bit, new Object[]{leaf});
+        }
+        return new PersistentIntMap<>(newRoot == null ? empty().root : (Node) newRoot, size - 1);
+    }
+
+    /**
+     * Returns an unmodifiable view of the values, in ascending order of the keys. The view is created in constant
+     * time and, like the map, never changes.
+     */
+    public Collection<V> values() {
+        return new AbstractCollection<>() {
+            @Override
+            public Iterator<V> iterator() {
+                return new ValueIterator<>(root);
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    /**
+     * Returns at most {@code limit} values with the smallest keys, in the order of {@link #values()}. Together with
+     * {@link #valuesAfter(int, int)}, pages through all the values.
+     */
+    public List<V> firstValues(int limit) {
+        List<V> values = new ArrayList<>(Math.max(0, Math.min(limit, size)));
+        if (limit > 0) {
+            collectAfter(root, ROOT_SHIFT, 0, false, limit, values);
+        }
+        return values;
+    }
+
+    /**
+     * Returns at most {@code limit} values whose keys follow the given one, in the order of {@link #values()}. Keys
+     * are compared as unsigned ints, so negative keys follow all the others. Only the branches of the trie that can
+     * contain such keys are visited, so a page costs O(limit + depth) whatever the size of the map.
+     *
+     * @param after the key before the first returned value, any int
+     */
+    public List<V> valuesAfter(int after, int limit) {
+        List<V> values = new ArrayList<>(Math.max(0, Math.min(limit, size)));
+        if (limit > 0) {
+            collectAfter(root, ROOT_SHIFT, after, true, limit, values);
+        }
+        return values;
+    }
+
+    /* Trie operations */
+
+    /*
+     * Adds to values the values of the node, in order, whose keys follow the given one. If bounded is false, all
+     * the keys of the node follow it. Returns false when the limit is reached.
+     */
+    @SuppressWarnings("unchecked")
+    private static <V> boolean collectAfter(Node node, int shift, int after, boolean bounded, int limit,
+                                            List<V> values) {
+        int afterIndex = after >>> shift & MASK;
+        for (int index = 0, slot = 0; slot < node.slots.length; index++) {
+            if ((node.bitmap & 1 << index) == 0) {
+                continue;
+            }
+            Object child = node.slots[slot++];
+            if (bounded && index < afterIndex) {
+                continue;
+            }
+            boolean childBounded = bounded && index == afterIndex;
+            if (child instanceof Leaf leaf) {
+                if (!childBounded || Integer.compareUnsigned(leaf.key, after) > 0) {
+                    values.add((V) leaf.value);
+                    if (values.size() == limit) {
+                        return false;
+                    }
+                }
+            } else if (!collectAfter((Node) child, shift - BITS, after, childBounded, limit, values)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Node put(Node node, int key, Object value, int shift) {
+        int bit = 1 << (key >>> shift & MASK);
+        int index = node.index(bit);
+        if ((node.bitmap & bit) == 0) {
+            return node.insert(bit, index, new Leaf(key, value));
+        }
+        Object slot = node.slots[index];
+        if (slot instanceof Leaf leaf) {
+            if (leaf.key == key) {
+                return leaf.value == value ? node : node.replace(index, new Leaf(key, value));
+            }
+            return node.replace(index, split(leaf, new Leaf(key, value), shift - BITS));
+        }
+        Node child = (Node) slot;
+        Node newChild = put(child, key, value, shift - BITS);
+        return newChild == child ? node : node.replace(index, newChild);
+    }
+
+    /* Creates the nodes needed to separate two leaves whose keys share the bits above the given shift */
+    private static Node split(Leaf first, Leaf second, int shift) {
+        int firstIndex = first.key >>> shift & MASK;
+        int secondIndex = second.key >>> shift & MASK;
+        if (firstIndex == secondIndex) {
+            return new Node(1 << firstIndex, new Object[]{split(first, second, shift - BITS)});
+        }
+        return firstIndex < secondIndex
+                ? new Node(1 << firstIndex | 1 << secondIndex, new Object[]{first, second})
+                : new Node(1 << firstIndex | 1 << secondIndex, new Object[]{second, first});
+    }
+
+    /*
+     * Returns the node without the key, a single leaf if only one is left (so that it can be moved up a level)
+     * or null if the node is empty. The key must be present.
+     */
+    private static Object remove(Node node, int key, int shift) {
+        int bit = 1 << (key >>> shift & MASK);
+        int index = node.index(bit);
+        Object slot = node.slots[index];
+        Object newSlot = slot instanceof Leaf ? null : remove((Node) slot, key, shift - BITS);
+        if (newSlot == null) {
+            if (node.slots.length == 1) {
+                return null;
+            }
+            Node newNode = node.delete(bit, index);
+            return newNode.slots.length == 1 && newNode.slots[0] instanceof Leaf ? newNode.slots[0] : newNode;
+        }
+        if (newSlot instanceof Leaf && node.slots.length == 1) {
+            return newSlot;
+        }
+        return node.replace(index, newSlot);
+    }
+
+    private record Leaf(int key, Object value) {
+    }
+
+    private static final class Node {
+        /* Bit i is set if slot i is occupied, slots[k] is the k-th occupied slot */
+        final int bitmap;
+        final Object[] slots;
+
+        Node(int bitmap, Object[] slots) {
+            this.bitmap = bitmap;
+            this.slots = slots;
+        }
+
+        int index(int bit) {
+            return Integer.bitCount(bitmap & (bit - 1));
+        }
+
+        Node insert(int bit, int index, Object slot) {
+            Object[] newSlots = new Object[slots.length + 1];
+            System.arraycopy(slots, 0, newSlots, 0, index);
+            newSlots[index] = slot;
+            System.arraycopy(slots, index, newSlots, index + 1, slots.length - index);
+            return new Node(bitmap | bit, newSlots);
+        }
+
+        Node replace(int index, Object slot) {
+            Object[] newSlots = slots.clone();
+            newSlots[index] = slot;
+            return new Node(bitmap, newSlots);
+        }
+
+        Node delete(int bit, int index) {
+            Object[] newSlots = new Object[slots.length - 1];
+            System.arraycopy(slots, 0, newSlots, 0, index);
+            System.arraycopy(slots, index + 1, newSlots, index, slots.length - index - 1);
+            return new Node(bitmap & ~bit, newSlots);
+        }
+    }
+
+    /* Depth-first traversal of the trie, visiting the slots of each node in order */
+    private static final class ValueIterator<V> implements Iterator<V> {
+        /* Keys have 7 groups of bits, so the trie has at most 7 levels */
+        private final Node[] nodes = new Node[7];
+        private final int[] positions = new int[7];
+        private int depth;
+        private Leaf next;
+
+        ValueIterator(Node root) {
+            nodes[0] = root;
+            advance();
+        }
+
+        private void advance() {
+            next = null;
+            while (depth >= 0) {
+                Node node = nodes[depth];
+                int position = positions[depth];
+                if (position == node.slots.length) {
+                    depth--;
+                    continue;
+                }
+                positions[depth]++;
+                Object slot = node.slots[position];
+                if (slot instanceof Leaf leaf) {
+                    next = leaf;
+                    return;
+                }
+                depth++;
+                nodes[depth] = (Node) slot;
+                positions[depth] = 0;
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public V next() {
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            V value = (V) next.value;
+            advance();
+            return value;
+        }
+    }
+}
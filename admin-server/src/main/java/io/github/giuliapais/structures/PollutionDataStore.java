@@ -1,70 +1,288 @@
 package io.github.giuliapais.structures;
 
-import java.util.*;
+import io.github.giuliapais.commons.models.SensorType;
 
+import java.nio.ByteBuffer;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-memory store for the pollution averages published by the robots.
+ * <p>
+ * Readings are kept per robot in a {@link RobotTimeSeries}: primitive columns split in fixed-size segments, so
+ * that ingesting a message does not allocate tree nodes, records, lists or boxed doubles. Both the per-robot
+ * readings and the global {@link TimeIndex time indexes} are stored as running totals, so queries cost two lookups
+ * (plus a binary search for time ranges) independently of the length of the history.
+ * <p>
+ * Besides the raw readings, all readings are rolled up in 1-minute and 1-hour buckets (sum and count). Each tier
+ * is kept according to the {@link RetentionPolicy}, so memory stays bounded in long-running deployments. Averages
+ * between timestamps are computed from the coarsest buckets that fall entirely in the range, using finer tiers only
+ * at its edges; where the raw readings have already been removed, the edges are approximated with the finest
+ * buckets still available.
+ * <p>
+ * The store is thread-safe without a store-wide lock: each robot series and each stripe of the time indexes have
+ * their own lock, so ingestion for one robot seldom waits on another robot, and queries are served with optimistic
+ * reads that don't block ingestion nor each other.
+ * <p>
+ * The store holds the PM10 readings, the main ones: the readings of the other sensors are kept in a store of their
+ * own for each {@link SensorType}, see {@link #sensor(SensorType)}.
+ */
 public class PollutionDataStore {
-    private final Map<Integer, TreeMap<Long, DataEntry>> robotDataMap = new HashMap<>();
+    static final long MINUTE = 60_000;
+    static final long HOUR = 60 * MINUTE;
+    // Retention is enforced at most once per minute of data time
+    private static final long RETENTION_INTERVAL = MINUTE;
+    // Bound for the timestamps in queries, so that aligning them to buckets can't overflow
+    private static final long MAX_TIME = 1L << 62;
+    private static final int RAW = 0;
+    private static final int MINUTES = 1;
+    private static final int HOURS = 2;
+
+    private final Map<Integer, RobotTimeSeries> robotDataMap = new ConcurrentHashMap<>();
+    // From the finest to the coarsest
+    private final TimeIndex[] tiers = {new TimeIndex(1), new TimeIndex(MINUTE), new TimeIndex(HOUR)};
+    private final RetentionPolicy retentionPolicy;
+    private final AtomicLong latestTimestamp = new AtomicLong(Long.MIN_VALUE);
+    private final AtomicLong nextRetention = new AtomicLong(Long.MIN_VALUE);
+    private final SensorType sensorType;
+    /* Stores of the other sensors, by type, empty in the stores of the other sensors themselves */
+    private final Map<SensorType, PollutionDataStore> sensorStores = new EnumMap<>(SensorType.class);
 
-    private record DataEntry(List<Double> pollutionData) {
+    public PollutionDataStore() {
+        this(RetentionPolicy.UNLIMITED);
+    }
 
-        public double getSum(int n, boolean descending) {
-            if (n >= size()) {
-                return pollutionData.stream().mapToDouble(Double::doubleValue).sum();
-            } else {
-                return descending
-                        ? pollutionData.stream().skip(size() - n).mapToDouble(Double::doubleValue).sum()
-                        : pollutionData.stream().limit(n).mapToDouble(Double::doubleValue).sum();
+    public PollutionDataStore(RetentionPolicy retentionPolicy) {
+        this(retentionPolicy, SensorType.PM10);
+        for (SensorType type : SensorType.values()) {
+            if (type != SensorType.PM10) {
+                sensorStores.put(type, new PollutionDataStore(retentionPolicy, type));
             }
         }
+    }
+
+    private PollutionDataStore(RetentionPolicy retentionPolicy, SensorType sensorType) {
+        this.retentionPolicy = retentionPolicy;
+        this.sensorType = sensorType;
+    }
 
-        public int size() {
-            return pollutionData.size();
+    /**
+     * Returns the store of the readings of the given sensor, this store for PM10. The stores of all the sensors
+     * share the retention policy and are saved in the same snapshot, but ingest and enforce retention independently.
+     *
+     * @throws IllegalArgumentException if called on the store of another sensor
+     */
+    public PollutionDataStore sensor(SensorType type) {
+        PollutionDataStore store = type == sensorType ? this : sensorStores.get(type);
+        if (store == null) {
+            throw new IllegalArgumentException("No " + type + " readings in the " + sensorType + " store");
         }
+        return store;
     }
 
-    public synchronized void addData(int robotId, long timestamp, List<Double> pollutionData) {
-        robotDataMap
-                .computeIfAbsent(robotId, k -> new TreeMap<>())
-                .put(timestamp, new DataEntry(pollutionData));
+    public void addData(int robotId, long timestamp, List<Double> pollutionData) {
+        double[] data = new double[pollutionData.size()];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = pollutionData.get(i);
+        }
+        addData(robotId, timestamp, data, data.length);
     }
 
-    public synchronized double getAverageOfLastNReadings(int robotId, int n) {
-        TreeMap<Long, DataEntry> robotData = robotDataMap.get(robotId);
+    /**
+     * Stores the first {@code length} readings of {@code data}, which is not retained by the store.
+     */
+    public void addData(int robotId, long timestamp, double[] data, int length) {
+        if (timestamp < tiers[HOURS].retainedFrom()) {
+            return; // Older than all the history kept
+        }
+        CompensatedSum delta = new CompensatedSum();
+        int countDelta = RobotTimeSeries.RETIRED;
+        if (timestamp >= tiers[RAW].retainedFrom()) {
+            while (countDelta == RobotTimeSeries.RETIRED) {
+                // Retried if retention removes the series in the meantime
+                countDelta = robotDataMap.computeIfAbsent(robotId, k -> new RobotTimeSeries())
+                        .put(timestamp, data, length, delta);
+            }
+        } else {
+            // Too late for the raw readings, only the rollups are updated
+            for (int i = 0; i < length; i++) {
+                delta.add(data[i]);
+            }
+            countDelta = length;
+        }
+        for (TimeIndex tier : tiers) {
+            if (timestamp >= tier.retainedFrom()) {
+                tier.add(robotId, timestamp, delta, countDelta);
+            }
+        }
+
+        long latest = latestTimestamp.accumulateAndGet(timestamp, Math::max);
+        long next = nextRetention.get();
+        if (latest >= next && nextRetention.compareAndSet(next, latest + RETENTION_INTERVAL)) {
+            enforceRetention();
+        }
+    }
+
+    /**
+     * Stores the readings of the given sensor, as {@code sensor(type).addData(robotId, timestamp, data, length)}.
+     */
+    public void addData(int robotId, long timestamp, SensorType type, double[] data, int length) {
+        sensor(type).addData(robotId, timestamp, data, length);
+    }
+
+    public double getAverageOfLastNReadings(int robotId, int n) {
+        RobotTimeSeries robotData = robotDataMap.get(robotId);
         if (robotData == null) {
             return -1; // No data available for the robot
         }
+        return robotData.averageOfLast(n);
+    }
 
-        double sum = 0;
-        int count = 0;
-        int entrySize;
-        Iterator<Map.Entry<Long, DataEntry>> descendingIterator = robotData.descendingMap().entrySet().iterator();
+    public double getAverageBetweenTimestamps(long t1, long t2) {
+        long from = Math.max(t1, -MAX_TIME);
+        long to = Math.min(t2, MAX_TIME) + 1;
+        // Times from which the minute buckets and the raw readings are complete, aligned to the coarser tier
+        long minutesFrom = ceil(Math.max(tiers[MINUTES].retainedFrom(), -MAX_TIME), HOUR);
+        long rawFrom = Math.max(minutesFrom, ceil(Math.max(tiers[RAW].retainedFrom(), -MAX_TIME), MINUTE));
 
-        while (descendingIterator.hasNext() && count < n) {
-            DataEntry entry = descendingIterator.next().getValue();
-            entrySize = entry.size();
-            sum += entry.getSum(n - count, true);
-            if (entrySize > (n - count)) {
-                count += (n - count);
-            } else {
-                count += entrySize;
-            }
+        CompensatedSum sum = new CompensatedSum();
+        long count = collect(HOURS, HOURS, from, Math.min(to, minutesFrom), sum)
+                + collect(HOURS, MINUTES, Math.max(from, minutesFrom), Math.min(to, rawFrom), sum)
+                + collect(HOURS, RAW, Math.max(from, rawFrom), to, sum);
+        return count > 0 ? sum.value() / count : 0;
+    }
+
+    /**
+     * Removes the readings and the buckets that are older than the retention of their tier, relative to the most
+     * recent timestamp received. Called automatically while ingesting data.
+     */
+    public void enforceRetention() {
+        long latest = latestTimestamp.get();
+        if (latest == Long.MIN_VALUE) {
+            return;
         }
+        if (retentionPolicy.raw() != Long.MAX_VALUE) {
+            long cutoff = latest - retentionPolicy.raw();
+            // The series of the robots that haven't published since the cutoff are removed
+            robotDataMap.keySet().forEach(robotId -> robotDataMap.computeIfPresent(robotId,
+                    (id, robotData) -> robotData.removeBefore(cutoff) ? null : robotData));
+            tiers[RAW].removeBefore(cutoff);
+        }
+        if (retentionPolicy.minutes() != Long.MAX_VALUE) {
+            tiers[MINUTES].removeBefore(Math.floorDiv(latest - retentionPolicy.minutes(), MINUTE) * MINUTE);
+        }
+        if (retentionPolicy.hours() != Long.MAX_VALUE) {
+            tiers[HOURS].removeBefore(Math.floorDiv(latest - retentionPolicy.hours(), HOUR) * HOUR);
+        }
+        sensorStores.values().forEach(PollutionDataStore::enforceRetention);
+    }
 
-        return count > 0 ? sum / count : 0;
+    /**
+     * Returns a copy of the content of the store (and of the stores of the other sensors), sharing nothing with it:
+     * taking a copy is much faster than saving it, so ingestion needs to be paused only for the copy to save a
+     * consistent snapshot. Must not be called concurrently with addData, for the copy to be consistent.
+     */
+    public PollutionDataStore copy() {
+        PollutionDataStore copy = new PollutionDataStore(retentionPolicy, sensorType);
+        robotDataMap.forEach((robotId, robotData) -> copy.robotDataMap.put(robotId, robotData.copy()));
+        for (int i = 0; i < tiers.length; i++) {
+            copy.tiers[i] = tiers[i].copy();
+        }
+        copy.latestTimestamp.set(latestTimestamp.get());
+        copy.nextRetention.set(nextRetention.get());
+        sensorStores.forEach((type, store) -> copy.sensorStores.put(type, store.copy()));
+        return copy;
     }
 
-    public synchronized double getAverageBetweenTimestamps(long t1, long t2) {
-        double sum = 0;
-        int count = 0;
+    /* The following methods are used by PollutionSnapshot and must not be called concurrently with addData */
+
+    long serializedSize() {
+        long size = 2 * Long.BYTES + Integer.BYTES;
+        for (RobotTimeSeries robotData : robotDataMap.values()) {
+            size += Integer.BYTES + robotData.serializedSize();
+        }
+        for (TimeIndex tier : tiers) {
+            size += tier.serializedSize();
+        }
+        for (PollutionDataStore store : sensorStores.values()) {
+            size += store.serializedSize();
+        }
+        return size;
+    }
 
-        for (TreeMap<Long, DataEntry> robotData : robotDataMap.values()) {
-            NavigableMap<Long, DataEntry> subMap = robotData.subMap(t1, true, t2, true);
-            for (DataEntry entry : subMap.values()) {
-                sum += entry.getSum(entry.size(), false);
-                count += entry.size();
+    void writeTo(WindowedBuffer out) {
+        out.reserve(2 * Long.BYTES + Integer.BYTES)
+                .putLong(latestTimestamp.get())
+                .putLong(nextRetention.get())
+                .putInt(robotDataMap.size());
+        robotDataMap.forEach((robotId, robotData) -> {
+            out.reserve(Integer.BYTES).putInt(robotId);
+            robotData.writeTo(out);
+        });
+        for (TimeIndex tier : tiers) {
+            tier.writeTo(out);
+        }
+        // The stores of the other sensors follow, in the order of the types
+        for (PollutionDataStore store : sensorStores.values()) {
+            store.writeTo(out);
+        }
+    }
+
+    /**
+     * @param version the version of the {@link PollutionSnapshot snapshot} format the content was written with
+     */
+    void readFrom(WindowedBuffer in, int version) {
+        if (!robotDataMap.isEmpty()) {
+            throw new IllegalStateException("Data can only be restored into an empty store");
+        }
+        ByteBuffer header = in.reserve(2 * Long.BYTES + Integer.BYTES);
+        latestTimestamp.set(header.getLong());
+        nextRetention.set(header.getLong());
+        int robots = header.getInt();
+        for (int i = 0; i < robots; i++) {
+            int robotId = in.reserve(Integer.BYTES).getInt();
+            robotDataMap.put(robotId, RobotTimeSeries.readFrom(in));
+        }
+        for (TimeIndex tier : tiers) {
+            tier.readFrom(in, version);
+        }
+        // Absent from the snapshots taken before the other sensors were added
+        if (version > PollutionSnapshot.PM10_ONLY_VERSION) {
+            for (PollutionDataStore store : sensorStores.values()) {
+                store.readFrom(in, version);
             }
         }
+    }
+
+    /**
+     * Adds to {@code sum} the readings in {@code [from, to)}, using the buckets of the given tier that fall entirely
+     * in the range and descending to finer tiers for the edges, down to the {@code finest} tier. The edges that are
+     * not aligned to the buckets of the finest tier are approximated with the whole buckets containing them.
+     *
+     * @return the number of readings added
+     */
+    private long collect(int tier, int finest, long from, long to, CompensatedSum sum) {
+        if (from >= to) {
+            return 0;
+        }
+        long resolution = tiers[tier].resolution();
+        if (tier == finest) {
+            return tiers[tier].collect(Math.floorDiv(from, resolution) * resolution, ceil(to, resolution) - 1, sum);
+        }
+        long start = ceil(from, resolution);
+        long end = Math.floorDiv(to, resolution) * resolution;
+        if (start >= end) {
+            return collect(tier - 1, finest, from, to, sum);
+        }
+        return collect(tier - 1, finest, from, start, sum)
+                + tiers[tier].collect(start, end - 1, sum)
+                + collect(tier - 1, finest, end, to, sum);
+    }
 
-        return count > 0 ? sum / count : 0;
+    private static long ceil(long time, long resolution) {
+        return -Math.floorDiv(-time, resolution) * resolution;
     }
 }
@@ -0,0 +1,132 @@
+package io.github.giuliapais.structures;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32C;
+
+/**
+ * Compact snapshot of a {@link PollutionDataStore} in a memory-mapped file.
+ * <p>
+ * The file holds a fixed header (magic number, format version, the sequence number of the last
+ * {@link WriteAheadLog} record included, size and checksum of the body) followed by the primitive columns of the
+ * store, copied segment by segment, and then of the stores of the other sensors (from version 2). Restoring a
+ * snapshot maps the file and copies the columns back, without parsing or re-ingesting individual messages.
+ * <p>
+ * The file is mapped in windows of {@link WindowedBuffer#WINDOW_SIZE} bytes, one after the other, so the size of a
+ * snapshot isn't bounded by the 2 GB of a single mapping.
+ * <p>
+ * Snapshots are written to a temporary file and atomically moved in place once flushed to disk, so a crash while
+ * saving leaves the previous snapshot intact.
+ */
+public final class PollutionSnapshot {
+    private static final int MAGIC = 0x47534e50; // "GSNP"
+    static final int VERSION = 4;
+    /* Snapshots without the stores of the sensors other than PM10 */
+    static final int PM10_ONLY_VERSION = 1;
+    /* Last version with the minimum and maximum of the minute and hour buckets, skipped when loading */
+    static final int EXTREMES_VERSION = 2;
+    /* Last version with the time indexes in a single stripe */
+    static final int UNSTRIPED_VERSION = 3;
+    private static final int HEADER_SIZE = 2 * Integer.BYTES + 2 * Long.BYTES + Integer.BYTES;
+
+    private PollutionSnapshot() {
+    }
+
+    /**
+     * Saves the content of the store. Must not be called while data is being added to the store: to keep ingesting
+     * while the snapshot is saved, save a {@link PollutionDataStore#copy() copy}.
+     *
+     * @param sequence the sequence number of the last write-ahead log record applied to the store
+     */
+    public static void save(PollutionDataStore store, Path file, long sequence) throws IOException {
+        save(store, file, sequence, WindowedBuffer.WINDOW_SIZE);
+    }
+
+    /**
+     * Saves the content of the store, mapping the file in windows of the given size.
+     */
+    static void save(PollutionDataStore store, Path file, long sequence, long windowSize) throws IOException {
+        long bodySize = store.serializedSize();
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            WindowedBuffer body = WindowedBuffer.map(channel, FileChannel.MapMode.READ_WRITE, HEADER_SIZE,
+                    HEADER_SIZE + bodySize, windowSize);
+            try {
+                store.writeTo(body);
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            int checksum = body.finish();
+            MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE);
+            header.putInt(MAGIC);
+            header.putInt(VERSION);
+            header.putLong(sequence);
+            header.putLong(bodySize);
+            header.putInt(checksum);
+            header.force();
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Restores a snapshot into an empty store.
+     *
+     * @return the sequence number of the last write-ahead log record included in the snapshot, or -1 if the file
+     * doesn't exist
+     */
+    public static long load(PollutionDataStore store, Path file) throws IOException {
+        return load(store, file, WindowedBuffer.WINDOW_SIZE);
+    }
+
+    /**
+     * Restores a snapshot into an empty store, mapping the file in windows of the given size.
+     */
+    static long load(PollutionDataStore store, Path file, long windowSize) throws IOException {
+        if (!Files.exists(file)) {
+            return -1;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_SIZE) {
+                throw new IOException("Truncated pollution snapshot " + file);
+            }
+            MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+            int magic = header.getInt();
+            int version = header.getInt();
+            if (magic != MAGIC || version < PM10_ONLY_VERSION || version > VERSION) {
+                throw new IOException("Unsupported pollution snapshot " + file);
+            }
+            long sequence = header.getLong();
+            long bodySize = header.getLong();
+            int expectedChecksum = header.getInt();
+            if (HEADER_SIZE + bodySize != channel.size()) {
+                throw new IOException("Truncated pollution snapshot " + file);
+            }
+            // The whole body is checked before restoring anything
+            CRC32C checksum = new CRC32C();
+            for (long position = HEADER_SIZE; position < channel.size(); position += windowSize) {
+                checksum.update(channel.map(FileChannel.MapMode.READ_ONLY, position,
+                        Math.min(windowSize, channel.size() - position)));
+            }
+            if ((int) checksum.getValue() != expectedChecksum) {
+                throw new IOException("Corrupted pollution snapshot " + file);
+            }
+            try {
+                store.readFrom(WindowedBuffer.map(channel, FileChannel.MapMode.READ_ONLY, HEADER_SIZE,
+                        channel.size(), windowSize), version);
+            } catch (BufferUnderflowException e) {
+                throw new IOException("Corrupted pollution snapshot " + file, e);
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            return sequence;
+        }
+    }
+}
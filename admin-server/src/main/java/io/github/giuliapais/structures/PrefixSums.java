@@ -0,0 +1,151 @@
+package io.github.giuliapais.structures;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Sequence of values stored as running totals: entry {@code i} holds the sum of the values {@code 0..i}, so that
+ * the sum of any contiguous range is the difference of two entries.
+ * <p>
+ * Totals are kept in double-double precision (see {@link CompensatedSum}) as two parallel primitive columns, so
+ * differences of large totals do not lose the precision of the values they contain. Changing or inserting a
+ * value in the middle updates all the following totals, which is cheap in the common case where values are
+ * appended or changed near the end. Not thread-safe: callers are expected to guard access.
+ */
+final class PrefixSums {
+    private final ChunkedDoubleArray hi;
+    private final ChunkedDoubleArray lo;
+    // Total of the values removed from the head
+    private final CompensatedSum base = new CompensatedSum();
+
+    PrefixSums() {
+        this(new ChunkedDoubleArray(), new ChunkedDoubleArray());
+    }
+
+    private PrefixSums(ChunkedDoubleArray hi, ChunkedDoubleArray lo) {
+        this.hi = hi;
+        this.lo = lo;
+    }
+
+    int size() {
+        return hi.size();
+    }
+
+    /**
+     * Stores in {@code out} the sum of the first {@code count} values.
+     */
+    void prefix(int count, CompensatedSum out) {
+        if (count == 0) {
+            out.set(base);
+        } else {
+            out.set(hi.get(count - 1), lo.get(count - 1));
+        }
+    }
+
+    /**
+     * Returns the sum of the values in {@code [from, to)}.
+     */
+    double sum(int from, int to) {
+        if (from >= to) {
+            return 0;
+        }
+        CompensatedSum sum = new CompensatedSum(hi.get(to - 1), lo.get(to - 1));
+        if (from > 0) {
+            sum.add(-hi.get(from - 1), -lo.get(from - 1));
+        } else {
+            sum.subtract(base);
+        }
+        return sum.value();
+    }
+
+    /**
+     * Replaces the {@code oldLength} values starting at {@code index} with the first {@code length} values of
+     * {@code data}, shifting the following values as needed.
+     *
+     * @param delta receives the difference between the sum of the new values and the sum of the replaced ones
+     */
+    void replace(int index, int oldLength, double[] data, int length, CompensatedSum delta) {
+        CompensatedSum running = new CompensatedSum();
+        prefix(index, running);
+        prefix(index + oldLength, delta);
+        if (oldLength > length) {
+            hi.remove(index + length, oldLength - length);
+            lo.remove(index + length, oldLength - length);
+        } else if (oldLength < length) {
+            hi.openGap(index + oldLength, length - oldLength);
+            lo.openGap(index + oldLength, length - oldLength);
+        }
+        for (int i = 0; i < length; i++) {
+            running.add(data[i]);
+            hi.set(index + i, running.hi());
+            lo.set(index + i, running.lo());
+        }
+        running.subtract(delta);
+        delta.set(running);
+        add(index + length, delta);
+    }
+
+    /**
+     * Removes the first {@code count} values.
+     */
+    void removeHead(int count) {
+        if (count > 0) {
+            prefix(count, base);
+            hi.removeHead(count);
+            lo.removeHead(count);
+        }
+    }
+
+    /**
+     * Inserts a zero value at the given index.
+     */
+    void insertZero(int index) {
+        CompensatedSum total = new CompensatedSum();
+        prefix(index, total);
+        hi.openGap(index, 1);
+        lo.openGap(index, 1);
+        hi.set(index, total.hi());
+        lo.set(index, total.lo());
+    }
+
+    /**
+     * Adds {@code delta} to the value at {@code index} (and so to all the totals from {@code index} onwards).
+     */
+    void add(int index, CompensatedSum delta) {
+        if (delta.hi() == 0 && delta.lo() == 0) {
+            return;
+        }
+        CompensatedSum total = new CompensatedSum();
+        for (int i = index; i < size(); i++) {
+            total.set(hi.get(i), lo.get(i));
+            total.add(delta);
+            hi.set(i, total.hi());
+            lo.set(i, total.lo());
+        }
+    }
+
+    long serializedSize() {
+        return 2 * Double.BYTES + hi.serializedSize() + lo.serializedSize();
+    }
+
+    void writeTo(WindowedBuffer out) {
+        out.reserve(2 * Double.BYTES).putDouble(base.hi()).putDouble(base.lo());
+        hi.writeTo(out);
+        lo.writeTo(out);
+    }
+
+    /**
+     * Restores the values written by {@link #writeTo(WindowedBuffer)}, must be called on an empty instance.
+     */
+    void readFrom(WindowedBuffer in) {
+        ByteBuffer buffer = in.reserve(2 * Double.BYTES);
+        base.set(buffer.getDouble(), buffer.getDouble());
+        hi.readFrom(in);
+        lo.readFrom(in);
+    }
+
+    PrefixSums copy() {
+        PrefixSums copy = new PrefixSums(hi.copy(), lo.copy());
+        copy.base.set(base);
+        return copy;
+    }
+}
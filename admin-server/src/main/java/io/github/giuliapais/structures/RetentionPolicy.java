@@ -0,0 +1,21 @@
+package io.github.giuliapais.structures;
+
+/**
+ * How long {@link PollutionDataStore} keeps each tier of pollution history, in milliseconds of data time (relative
+ * to the most recent timestamp received).
+ *
+ * @param raw     retention of the individual readings
+ * @param minutes retention of the 1-minute rollup buckets
+ * @param hours   retention of the 1-hour rollup buckets
+ */
+public record RetentionPolicy(long raw, long minutes, long hours) {
+    public static final RetentionPolicy UNLIMITED =
+            new RetentionPolicy(Long.MAX_VALUE, Long.MAX_VALUE, Long.MAX_VALUE);
+
+    public RetentionPolicy {
+        if (raw <= 0 || minutes < raw || hours < minutes) {
+            throw new IllegalArgumentException(
+                    "Retention must be positive and not decreasing from raw readings to hourly buckets");
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package io.github.giuliapais.structures;
+
+import io.github.giuliapais.api.models.RobotChange;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Thread-safe log of the latest changes of the list of robots. Each logged change gets the next sequence number
+ * (starting from 1), so the sequence number of the last change identifies the state of the list.
+ * <p>
+ * Only the given number of changes is kept, in a ring buffer: readers further behind than that can't resume from
+ * the log and have to read the whole list again.
+ */
+public class RobotChangeLog {
+    private final RobotChange[] ring;
+    // Written while holding the lock, read without
+    private volatile long lastSequence;
+
+    /**
+     * @param capacity maximum number of changes kept
+     */
+    public RobotChangeLog(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("The capacity of the change log must be positive");
+        }
+        ring = new RobotChange[capacity];
+    }
+
+    /**
+     * Returns the sequence number of the last change, 0 if there are none.
+     */
+    public long lastSequence() {
+        return lastSequence;
+    }
+
+    /**
+     * Logs the changes, in order, and wakes up the readers waiting for them.
+     *
+     * @return the sequence number of the last change
+     */
+    public synchronized long append(List<RobotChange> changes) {
+        long sequence = lastSequence;
+        for (RobotChange change : changes) {
+            sequence++;
+            change.setSequence(sequence);
+            ring[(int) ((sequence - 1) % ring.length)] = change;
+        }
+        lastSequence = sequence;
+        notifyAll();
+        return sequence;
+    }
+
+    /**
+     * Returns the changes that follow the given sequence number.
+     *
+     * @return the changes, empty if there are none, or null if some of them are no longer in the log (or the
+     * sequence number is not one of this log)
+     */
+    public synchronized List<RobotChange> changesAfter(long sequence) {
+        if (sequence < lastSequence - ring.length || sequence > lastSequence || sequence < 0) {
+            return null;
+        }
+        List<RobotChange> changes = new ArrayList<>((int) (lastSequence - sequence));
+        for (long s = sequence + 1; s <= lastSequence; s++) {
+            changes.add(ring[(int) ((s - 1) % ring.length)]);
+        }
+        return changes;
+    }
+
+    /**
+     * Waits until there are changes after the given sequence number, then returns them as
+     * {@link #changesAfter(long)} does.
+     *
+     * @param timeout maximum milliseconds to wait, after which an empty list is returned
+     */
+    public synchronized List<RobotChange> awaitChangesAfter(long sequence, long timeout) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeout;
+        long remaining = timeout;
+        while (lastSequence == sequence && remaining > 0) {
+            wait(remaining);
+            remaining = deadline - System.currentTimeMillis();
+        }
+        return changesAfter(sequence);
+    }
+}
@@ -3,28 +3,64 @@ package io.github.giuliapais.structures;
 import io.github.giuliapais.api.models.Robot;
 import io.github.giuliapais.exceptions.IdPresentException;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
- * A thread-safe HashMap that stores Robots.
+ * A thread-safe registry of Robots.
+ * <p>
+ * The robots are kept in an immutable {@link PersistentIntMap}: every change publishes a new {@link Snapshot} with
+ * an incremented version, so readers take the current snapshot without locking or copying and see a consistent
+ * view that never changes. Writers build the new map from the current one (sharing all the unchanged nodes) and
+ * publish it with a compare-and-set, retrying if another writer published first.
+ * <p>
+ * The stored robots are never modified: they are copied when added and replaced with a new object when updated.
+ * Callers must not modify the robots obtained from a snapshot.
  *
  * @see Robot
  */
 public class RobotHashMap {
-    private final HashMap<Integer, Robot> internalMap = new HashMap<>();
+    /**
+     * An immutable view of the registry.
+     *
+     * @param version number of changes made to the registry before this snapshot
+     * @param robots  the registered robots by id
+     */
+    public record Snapshot(long version, PersistentIntMap<Robot> robots) {
+    }
+
+    private final AtomicReference<Snapshot> current =
+            new AtomicReference<>(new Snapshot(0, PersistentIntMap.empty()));
 
     public RobotHashMap() {
     }
 
     /**
-     * Returns a deep copy of the internal HashMap.
+     * Returns the current snapshot of the registry.
+     */
+    public Snapshot snapshot() {
+        return current.get();
+    }
+
+    /**
+     * Returns the version of the current snapshot, which changes every time a robot is added, removed or updated.
+     */
+    public long version() {
+        return current.get().version();
+    }
+
+    /**
+     * Returns a deep copy of the robots as a HashMap. Prefer {@link #snapshot()}, which does not copy.
      *
-     * @return a deep copy of the internal HashMap<Integer, Robot>
+     * @return a deep copy of the robots as a HashMap<Integer, Robot>
      */
     public HashMap<Integer, Robot> getMap() {
         HashMap<Integer, Robot> copy = new HashMap<>();
-        synchronized (this) {
-            internalMap.forEach((key, value) -> copy.put(key, new Robot(value)));
+        for (Robot robot : snapshot().robots().values()) {
+            copy.put(robot.getId(), new Robot(robot));
         }
         return copy;
     }
@@ -36,46 +72,88 @@ public class RobotHashMap {
      * id presence.
      *
      * @param value a {@link Robot} object to be added to the map
+     * @return the snapshot that contains the robot
      * @throws NullPointerException if value is null
      * @throws IdPresentException   if a robot with the same id is already present
      */
-    public void put(Robot value) throws IdPresentException {
+    public Snapshot put(Robot value) throws IdPresentException {
         if (value == null) {
             throw new NullPointerException();
         }
-        synchronized (this) {
-            if (internalMap.containsKey(value.getId())) {
-                throw new IdPresentException("Robot with id " + value.getId() + " already present");
+        Robot robot = new Robot(value);
+        while (true) {
+            Snapshot snapshot = current.get();
+            if (snapshot.robots().containsKey(robot.getId())) {
+                throw new IdPresentException("Robot with id " + robot.getId() + " already present");
+            }
+            Snapshot next = new Snapshot(snapshot.version() + 1, snapshot.robots().put(robot.getId(), robot));
+            if (current.compareAndSet(snapshot, next)) {
+                return next;
             }
-            internalMap.put(value.getId(), value);
         }
     }
 
-    public synchronized boolean remove(int key) {
-        return internalMap.remove(key) != null;
-    }
-
-    public synchronized boolean update(int key, Robot newValue) {
-        if (!internalMap.containsKey(key)) {
-            return false;
+    /**
+     * Adds all the robots in a single change: either all of them are added, or none is if one of their ids is
+     * already present (or repeated in the given robots).
+     *
+     * @param values the robots to add
+     * @return the snapshot that contains the robots
+     * @throws NullPointerException if values or one of the robots is null
+     * @throws IdPresentException   if a robot with the same id as one of the given robots is already present
+     */
+    public Snapshot putAll(Collection<Robot> values) throws IdPresentException {
+        List<Robot> copies = new ArrayList<>(values.size());
+        for (Robot value : values) {
+            copies.add(new Robot(value));
         }
-        Robot old = internalMap.get(key);
-        if (old.equals(newValue)) {
-            return false;
+        while (true) {
+            Snapshot snapshot = current.get();
+            PersistentIntMap<Robot> robots = snapshot.robots();
+            for (Robot robot : copies) {
+                if (robots.containsKey(robot.getId())) {
+                    throw new IdPresentException("Robot with id " + robot.getId() + " already present");
+                }
+                robots = robots.put(robot.getId(), robot);
+            }
+            Snapshot next = new Snapshot(snapshot.version() + 1, robots);
+            if (current.compareAndSet(snapshot, next)) {
+                return next;
+            }
         }
-        if (newValue.getIpAddress() != null &&
-                !newValue.getIpAddress().equals(old.getIpAddress())) {
-            old.setIpAddress(newValue.getIpAddress());
-        } else {
-            old.setIpAddress(old.getIpAddress());
+    }
+
+    public boolean remove(int key) {
+        while (true) {
+            Snapshot snapshot = current.get();
+            if (!snapshot.robots().containsKey(key)) {
+                return false;
+            }
+            Snapshot next = new Snapshot(snapshot.version() + 1, snapshot.robots().remove(key));
+            if (current.compareAndSet(snapshot, next)) {
+                return true;
+            }
         }
-        if (newValue.getPort() != 0 &&
-                newValue.getPort() != old.getPort()) {
-            old.setPort(newValue.getPort());
-        } else {
-            old.setPort(old.getPort());
+    }
+
+    public boolean update(int key, Robot newValue) {
+        while (true) {
+            Snapshot snapshot = current.get();
+            Robot old = snapshot.robots().get(key);
+            if (old == null || old.equals(newValue)) {
+                return false;
+            }
+            Robot updated = new Robot(old);
+            if (newValue.getIpAddress() != null) {
+                updated.setIpAddress(newValue.getIpAddress());
+            }
+            if (newValue.getPort() != 0) {
+                updated.setPort(newValue.getPort());
+            }
+            Snapshot next = new Snapshot(snapshot.version() + 1, snapshot.robots().put(key, updated));
+            if (current.compareAndSet(snapshot, next)) {
+                return true;
+            }
         }
-        internalMap.replace(key, old);
-        return true;
     }
 }
@@ -0,0 +1,185 @@
+package io.github.giuliapais.structures;
+
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Pollution readings of a single robot, stored column-wise and kept sorted by timestamp.
+ * <p>
+ * Each message takes one slot in the message columns (its timestamp and the end of its readings) and the readings
+ * are stored as {@link PrefixSums running totals}, so the sum of the last {@code n} readings is the difference of
+ * two totals regardless of how much history is stored.
+ * <p>
+ * Readings published with the same timestamp belong to the same message: publishing again with an existing
+ * timestamp replaces the previous readings, mirroring the semantics of a map keyed by timestamp.
+ * Messages normally arrive in order and are simply appended; late messages are inserted at their position.
+ * <p>
+ * Writes are serialized by a {@link StampedLock}; reads are first attempted optimistically, without blocking
+ * writers, and retried under the read lock only if a write happened in the meantime.
+ */
+final class RobotTimeSeries {
+    /* Returned by put when the series has been retired */
+    static final int RETIRED = Integer.MIN_VALUE;
+
+    private final ChunkedLongArray timestamps;
+    // Number of readings stored up to the end of each message, including the ones removed by retention
+    private final ChunkedLongArray ends;
+    private final PrefixSums readings;
+    private long removed;
+    // Emptied by retention and removed from the store, doesn't take readings anymore
+    private boolean retired;
+    private final StampedLock lock = new StampedLock();
+
+    RobotTimeSeries() {
+        this(new ChunkedLongArray(), new ChunkedLongArray(), new PrefixSums());
+    }
+
+    private RobotTimeSeries(ChunkedLongArray timestamps, ChunkedLongArray ends, PrefixSums readings) {
+        this.timestamps = timestamps;
+        this.ends = ends;
+        this.readings = readings;
+    }
+
+    /**
+     * Stores the readings of a message, replacing any reading previously stored with the same timestamp.
+     *
+     * @param timestamp the timestamp of the message
+     * @param data      the readings
+     * @param length    the number of readings to take from {@code data}
+     * @param delta     receives the change in the sum of the stored readings
+     * @return the change in the number of stored readings, {@link #RETIRED} (storing nothing) if the series has
+     * been retired by {@link #removeBefore(long)}
+     */
+    int put(long timestamp, double[] data, int length, CompensatedSum delta) {
+        long stamp = lock.writeLock();
+        try {
+            if (retired) {
+                return RETIRED;
+            }
+            return store(timestamp, data, length, delta);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Returns the average of the most recent {@code n} readings (or of all readings if fewer are stored), 0 if
+     * there are none.
+     */
+    double averageOfLast(int n) {
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0) {
+            try {
+                double average = computeAverageOfLast(n);
+                if (lock.validate(stamp)) {
+                    return average;
+                }
+            } catch (RuntimeException e) {
+                // Inconsistent state seen during a concurrent write, retry under the read lock
+            }
+        }
+        stamp = lock.readLock();
+        try {
+            return computeAverageOfLast(n);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Removes the messages with timestamp strictly lower than {@code cutoff}. A series left empty is retired: it
+     * must be removed from the store, and doesn't take readings anymore (a writer that got it before the removal
+     * must take the series now in the store).
+     *
+     * @return whether the series has been retired
+     */
+    boolean removeBefore(long cutoff) {
+        long stamp = lock.writeLock();
+        try {
+            int messages = timestamps.lowerBound(cutoff);
+            if (messages > 0) {
+                long end = ends.get(messages - 1);
+                readings.removeHead((int) (end - removed));
+                removed = end;
+                timestamps.removeHead(messages);
+                ends.removeHead(messages);
+            }
+            retired = timestamps.size() == 0;
+            return retired;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    long serializedSize() {
+        long stamp = lock.readLock();
+        try {
+            return Long.BYTES + timestamps.serializedSize() + ends.serializedSize() + readings.serializedSize();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    void writeTo(WindowedBuffer out) {
+        long stamp = lock.readLock();
+        try {
+            out.reserve(Long.BYTES).putLong(removed);
+            timestamps.writeTo(out);
+            ends.writeTo(out);
+            readings.writeTo(out);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    static RobotTimeSeries readFrom(WindowedBuffer in) {
+        RobotTimeSeries series = new RobotTimeSeries();
+        series.removed = in.reserve(Long.BYTES).getLong();
+        series.timestamps.readFrom(in);
+        series.ends.readFrom(in);
+        series.readings.readFrom(in);
+        return series;
+    }
+
+    RobotTimeSeries copy() {
+        long stamp = lock.readLock();
+        try {
+            RobotTimeSeries copy = new RobotTimeSeries(timestamps.copy(), ends.copy(), readings.copy());
+            copy.removed = removed;
+            copy.retired = retired;
+            return copy;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    private int store(long timestamp, double[] data, int length, CompensatedSum delta) {
+        int messages = timestamps.size();
+        int message = messages == 0 || timestamp > timestamps.get(messages - 1)
+                ? messages
+                : timestamps.lowerBound(timestamp);
+        long start = message == 0 ? removed : ends.get(message - 1);
+        int oldLength = 0;
+        if (message < messages && timestamps.get(message) == timestamp) {
+            oldLength = (int) (ends.get(message) - start);
+        } else {
+            timestamps.openGap(message, 1);
+            timestamps.set(message, timestamp);
+            ends.openGap(message, 1);
+            ends.set(message, start);
+        }
+        readings.replace((int) (start - removed), oldLength, data, length, delta);
+        int change = length - oldLength;
+        if (change != 0) {
+            for (int i = message; i < ends.size(); i++) {
+                ends.set(i, ends.get(i) + change);
+            }
+        }
+        return change;
+    }
+
+    private double computeAverageOfLast(int n) {
+        int size = readings.size();
+        int count = Math.min(n, size);
+        return count > 0 ? readings.sum(size - count, size) / count : 0;
+    }
+}
@@ -0,0 +1,134 @@
+package io.github.giuliapais.structures;
+
+import io.github.giuliapais.commons.models.SensorType;
+
+import java.util.Arrays;
+
+/**
+ * A reusable batch of pollution messages, stored in parallel primitive arrays. The readings array of each message
+ * is owned by the batch: messages move between batches with {@link #take}, which exchanges the arrays instead of
+ * copying the readings.
+ */
+public final class SensorDataBatch {
+    private static final int INITIAL_READINGS = 8;
+    private final int[] robotIds;
+    private final long[] timestamps;
+    private final SensorType[] types;
+    private final double[][] readings;
+    private final int[] lengths;
+    private int size;
+
+    public SensorDataBatch(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Batch capacity must be positive");
+        }
+        robotIds = new int[capacity];
+        timestamps = new long[capacity];
+        types = new SensorType[capacity];
+        readings = new double[capacity][];
+        lengths = new int[capacity];
+        for (int i = 0; i < capacity; i++) {
+            readings[i] = new double[INITIAL_READINGS];
+        }
+    }
+
+    public int capacity() {
+        return robotIds.length;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isFull() {
+        return size == robotIds.length;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    /**
+     * Copies a message of PM10 readings at the end of the batch.
+     *
+     * @throws IllegalStateException if the batch is full
+     */
+    public void add(int robotId, long timestamp, double[] data, int length) {
+        add(robotId, timestamp, SensorType.PM10, data, length);
+    }
+
+    /**
+     * Copies a message at the end of the batch.
+     *
+     * @throws IllegalStateException if the batch is full
+     */
+    public void add(int robotId, long timestamp, SensorType type, double[] data, int length) {
+        if (isFull()) {
+            throw new IllegalStateException("Batch is full");
+        }
+        set(size++, robotId, timestamp, type, data, length);
+    }
+
+    /**
+     * Replaces the message at the given position with a copy of the given one.
+     */
+    public void set(int index, int robotId, long timestamp, SensorType type, double[] data, int length) {
+        robotIds[index] = robotId;
+        timestamps[index] = timestamp;
+        types[index] = type;
+        if (readings[index].length < length) {
+            readings[index] = Arrays.copyOf(data, Math.max(length, 2 * readings[index].length));
+        } else {
+            System.arraycopy(data, 0, readings[index], 0, length);
+        }
+        lengths[index] = length;
+    }
+
+    /**
+     * Moves the message at position {@code from} of {@code source} to the end of this batch. The readings array
+     * of the message is exchanged with the one of the slot it replaces, so {@code source} keeps an array to reuse.
+     */
+    public void take(SensorDataBatch source, int from) {
+        if (isFull()) {
+            throw new IllegalStateException("Batch is full");
+        }
+        robotIds[size] = source.robotIds[from];
+        timestamps[size] = source.timestamps[from];
+        types[size] = source.types[from];
+        lengths[size] = source.lengths[from];
+        swapReadings(source, from, size);
+        size++;
+    }
+
+    private void swapReadings(SensorDataBatch other, int otherIndex, int index) {
+        double[] data = readings[index];
+        readings[index] = other.readings[otherIndex];
+        other.readings[otherIndex] = data;
+    }
+
+    public int robotId(int index) {
+        return robotIds[index];
+    }
+
+    public long timestamp(int index) {
+        return timestamps[index];
+    }
+
+    /**
+     * Returns the sensor of the readings of a message.
+     */
+    public SensorType type(int index) {
+        return types[index];
+    }
+
+    /**
+     * Returns the readings array of a message, of which only the first {@link #length(int)} values are valid.
+     */
+    public double[] readings(int index) {
+        return readings[index];
+    }
+
+    public int length(int index) {
+        return lengths[index];
+    }
+}
@@ -0,0 +1,278 @@
+package io.github.giuliapais.structures;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Running sum and count of the readings of all robots, indexed by time.
+ * <p>
+ * Readings are grouped in buckets of {@code resolution} milliseconds (a resolution of 1 keeps one entry per
+ * distinct timestamp). Each bucket holds the totals of all the readings published up to (and including) that
+ * bucket, so the sum and count of any range of buckets take two binary searches and two subtractions.
+ * Coarser indexes act as rollups of the raw readings once these are removed by retention.
+ * <p>
+ * The index is split in {@link #STRIPES stripes}, each holding the readings of a subset of the robots, so that
+ * ingestion threads storing readings of different robots seldom wait on each other. Writes to a stripe are
+ * serialized by a {@link StampedLock}, reads are optimistic (see {@link RobotTimeSeries}) and add up the stripes.
+ */
+final class TimeIndex {
+    /* Power of two, so that robots are assigned to stripes with a mask */
+    static final int STRIPES = 16;
+
+    private final long resolution;
+    private final Stripe[] stripes = new Stripe[STRIPES];
+    // Readings before this time have been removed
+    private volatile long retainedFrom = Long.MIN_VALUE;
+
+    TimeIndex(long resolution) {
+        this.resolution = resolution;
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe();
+        }
+    }
+
+    long resolution() {
+        return resolution;
+    }
+
+    long retainedFrom() {
+        return retainedFrom;
+    }
+
+    /**
+     * Adds the given change in sum and count to the bucket containing {@code timestamp}, in the stripe of the robot.
+     * The changes of a robot must always be added with its id, so that its stripe never has a negative count.
+     */
+    void add(int robotId, long timestamp, CompensatedSum sumDelta, int countDelta) {
+        Stripe stripe = stripes[(robotId ^ robotId >>> 16) & (STRIPES - 1)];
+        long stamp = stripe.lock.writeLock();
+        try {
+            stripe.store(Math.floorDiv(timestamp, resolution) * resolution, sumDelta, countDelta);
+        } finally {
+            stripe.lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Adds to {@code sum} the sum of the readings in the buckets starting in {@code [t1, t2]}.
+     *
+     * @return the number of readings in the buckets
+     */
+    long collect(long t1, long t2, CompensatedSum sum) {
+        long count = 0;
+        for (Stripe stripe : stripes) {
+            count += stripe.collect(t1, t2, sum);
+        }
+        return count;
+    }
+
+    /**
+     * Removes the buckets starting strictly before {@code cutoff}.
+     */
+    void removeBefore(long cutoff) {
+        for (Stripe stripe : stripes) {
+            long stamp = stripe.lock.writeLock();
+            try {
+                stripe.removeBefore(cutoff);
+            } finally {
+                stripe.lock.unlockWrite(stamp);
+            }
+        }
+        retainedFrom = Math.max(retainedFrom, cutoff);
+    }
+
+    long serializedSize() {
+        long size = 2 * Long.BYTES + Integer.BYTES;
+        for (Stripe stripe : stripes) {
+            long stamp = stripe.lock.readLock();
+            try {
+                size += Long.BYTES + stripe.buckets.serializedSize() + stripe.counts.serializedSize()
+                        + stripe.sums.serializedSize();
+            } finally {
+                stripe.lock.unlockRead(stamp);
+            }
+        }
+        return size;
+    }
+
+    void writeTo(WindowedBuffer out) {
+        out.reserve(2 * Long.BYTES + Integer.BYTES).putLong(resolution).putLong(retainedFrom).putInt(STRIPES);
+        for (Stripe stripe : stripes) {
+            long stamp = stripe.lock.readLock();
+            try {
+                out.reserve(Long.BYTES).putLong(stripe.removed);
+                stripe.buckets.writeTo(out);
+                stripe.counts.writeTo(out);
+                stripe.sums.writeTo(out);
+            } finally {
+                stripe.lock.unlockRead(stamp);
+            }
+        }
+    }
+
+    /**
+     * Restores the buckets written by {@link #writeTo(WindowedBuffer)}, must be called on an empty index. The
+     * indexes of the snapshots taken before striping are restored in the first stripe, together with the minimum
+     * and maximum of each bucket they may have (which are skipped): the counts of the other stripes may then go
+     * negative, but their total stays exact.
+     *
+     * @param version the version of the {@link PollutionSnapshot snapshot} format the index was written with
+     */
+    void readFrom(WindowedBuffer in, int version) {
+        if (in.reserve(Long.BYTES).getLong() != resolution) {
+            throw new IllegalStateException("Resolution of the saved index doesn't match");
+        }
+        if (version <= PollutionSnapshot.UNSTRIPED_VERSION) {
+            ByteBuffer buffer = in.reserve(2 * Long.BYTES);
+            long removed = buffer.getLong();
+            retainedFrom = buffer.getLong();
+            stripes[0].readFrom(in, removed);
+            if (version <= PollutionSnapshot.EXTREMES_VERSION && resolution > 1) {
+                skipDoubles(in); // Minimums
+                skipDoubles(in); // Maximums
+            }
+            return;
+        }
+        ByteBuffer buffer = in.reserve(Long.BYTES + Integer.BYTES);
+        retainedFrom = buffer.getLong();
+        if (buffer.getInt() != STRIPES) {
+            throw new IllegalStateException("Stripes of the saved index don't match");
+        }
+        for (Stripe stripe : stripes) {
+            stripe.readFrom(in, in.reserve(Long.BYTES).getLong());
+        }
+    }
+
+    TimeIndex copy() {
+        TimeIndex copy = new TimeIndex(resolution);
+        for (int i = 0; i < STRIPES; i++) {
+            copy.stripes[i] = stripes[i].copy();
+        }
+        copy.retainedFrom = retainedFrom;
+        return copy;
+    }
+
+    /**
+     * Skips a column written by {@link ChunkedDoubleArray#writeTo(WindowedBuffer)}.
+     */
+    private static void skipDoubles(WindowedBuffer in) {
+        int size = in.reserve(Integer.BYTES).getInt();
+        if (size < 0) {
+            throw new BufferUnderflowException();
+        }
+        in.skip((long) size * Double.BYTES);
+    }
+
+    /**
+     * Buckets of the readings of some of the robots. The methods that don't take the lock must be called holding
+     * it.
+     */
+    private static final class Stripe {
+        private final ChunkedLongArray buckets;
+        private final ChunkedLongArray counts;
+        private final PrefixSums sums;
+        private final StampedLock lock = new StampedLock();
+        // Number of readings removed by retention
+        private long removed;
+
+        Stripe() {
+            this(new ChunkedLongArray(), new ChunkedLongArray(), new PrefixSums());
+        }
+
+        private Stripe(ChunkedLongArray buckets, ChunkedLongArray counts, PrefixSums sums) {
+            this.buckets = buckets;
+            this.counts = counts;
+            this.sums = sums;
+        }
+
+        long collect(long t1, long t2, CompensatedSum sum) {
+            CompensatedSum result = new CompensatedSum();
+            long count;
+            long stamp = lock.tryOptimisticRead();
+            if (stamp != 0) {
+                try {
+                    count = computeRange(t1, t2, result);
+                    if (lock.validate(stamp)) {
+                        sum.add(result);
+                        return count;
+                    }
+                } catch (RuntimeException e) {
+                    // Inconsistent state seen during a concurrent write, retry under the read lock
+                }
+            }
+            result.set(0, 0);
+            stamp = lock.readLock();
+            try {
+                count = computeRange(t1, t2, result);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+            sum.add(result);
+            return count;
+        }
+
+        void store(long bucket, CompensatedSum sumDelta, int countDelta) {
+            int size = buckets.size();
+            int index = size == 0 || bucket > buckets.get(size - 1)
+                    ? size
+                    : buckets.lowerBound(bucket);
+            if (index == size || buckets.get(index) != bucket) {
+                buckets.openGap(index, 1);
+                buckets.set(index, bucket);
+                counts.openGap(index, 1);
+                counts.set(index, index == 0 ? removed : counts.get(index - 1));
+                sums.insertZero(index);
+            }
+            sums.add(index, sumDelta);
+            if (countDelta != 0) {
+                for (int i = index; i < counts.size(); i++) {
+                    counts.set(i, counts.get(i) + countDelta);
+                }
+            }
+        }
+
+        void removeBefore(long cutoff) {
+            int count = buckets.lowerBound(cutoff);
+            if (count > 0) {
+                removed = counts.get(count - 1);
+                buckets.removeHead(count);
+                counts.removeHead(count);
+                sums.removeHead(count);
+            }
+        }
+
+        void readFrom(WindowedBuffer in, long removed) {
+            long stamp = lock.writeLock();
+            try {
+                this.removed = removed;
+                buckets.readFrom(in);
+                counts.readFrom(in);
+                sums.readFrom(in);
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+
+        Stripe copy() {
+            long stamp = lock.readLock();
+            try {
+                Stripe copy = new Stripe(buckets.copy(), counts.copy(), sums.copy());
+                copy.removed = removed;
+                return copy;
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+
+        private long computeRange(long t1, long t2, CompensatedSum sum) {
+            int from = buckets.lowerBound(t1);
+            int to = buckets.upperBound(t2);
+            if (from >= to) {
+                return 0;
+            }
+            sum.add(sums.sum(from, to));
+            return counts.get(to - 1) - (from == 0 ? removed : counts.get(from - 1));
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package io.github.giuliapais.structures;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.zip.CRC32C;
+
+/**
+ * Sequential access to a region of a file through memory-mapped windows, so that the region can be larger than a
+ * single {@link MappedByteBuffer} (2 GB).
+ * <p>
+ * Values are written and read on the buffer returned by {@link #reserve(int)}, which holds at least the requested
+ * number of bytes from the current position: when the current window is too short, a new one is mapped from the
+ * current position, so values and segments never straddle two windows and the content of the file is the same as
+ * if it was written in a single buffer. The windows that are left are forced to disk (when writing) and added to
+ * the checksum of the content.
+ * <p>
+ * A buffer can also wrap a {@link ByteBuffer}, which then acts as a single window.
+ */
+final class WindowedBuffer {
+    static final long WINDOW_SIZE = 1L << 28;
+
+    private final FileChannel channel;
+    private final FileChannel.MapMode mode;
+    private final long end;
+    private final long windowSize;
+    private final CRC32C checksum = new CRC32C();
+    private ByteBuffer window;
+    // Position of the window in the file
+    private long windowStart;
+
+    private WindowedBuffer(FileChannel channel, FileChannel.MapMode mode, long start, long end, long windowSize,
+                           ByteBuffer window) {
+        this.channel = channel;
+        this.mode = mode;
+        this.end = end;
+        this.windowSize = windowSize;
+        this.window = window;
+        this.windowStart = start;
+    }
+
+    /**
+     * Returns a buffer on the content of {@code buffer} up to its limit, whose position moves with the one of the
+     * returned buffer.
+     */
+    static WindowedBuffer wrap(ByteBuffer buffer) {
+        return new WindowedBuffer(null, null, 0, buffer.limit(), buffer.limit(), buffer);
+    }
+
+    /**
+     * Returns a buffer on the content of the file in {@code [start, end)}, mapped with the given mode in windows of
+     * (at most, unless a single value is larger) {@code windowSize} bytes.
+     */
+    static WindowedBuffer map(FileChannel channel, FileChannel.MapMode mode, long start, long end, long windowSize) {
+        if (windowSize <= 0) {
+            throw new IllegalArgumentException("Invalid window size: " + windowSize);
+        }
+        return new WindowedBuffer(channel, mode, start, end, windowSize, ByteBuffer.allocate(0));
+    }
+
+    /**
+     * Returns the buffer on which the next {@code bytes} bytes must be written or read, with relative operations.
+     *
+     * @throws BufferOverflowException  if writing past the end of the region
+     * @throws BufferUnderflowException if reading past the end of the region
+     * @throws UncheckedIOException     if a window can't be mapped
+     */
+    ByteBuffer reserve(int bytes) {
+        if (window.remaining() < bytes) {
+            mapWindow(position(), bytes);
+        }
+        return window;
+    }
+
+    /**
+     * Moves the position forward by {@code bytes} bytes.
+     *
+     * @throws BufferUnderflowException if the region has less than {@code bytes} bytes left
+     */
+    void skip(long bytes) {
+        if (bytes < 0 || bytes > end - position()) {
+            throw new BufferUnderflowException();
+        }
+        if (bytes <= window.remaining()) {
+            window.position(window.position() + (int) bytes);
+        } else {
+            mapWindow(position() + bytes, 0);
+        }
+    }
+
+    /**
+     * Returns the number of bytes left in the region.
+     */
+    long remaining() {
+        return end - position();
+    }
+
+    /**
+     * Leaves the current window, forcing it to disk if the file is written.
+     *
+     * @return the checksum of the content written (or read) so far, when mapping a file
+     */
+    int finish() {
+        leaveWindow();
+        window = ByteBuffer.allocate(0);
+        return (int) checksum.getValue();
+    }
+
+    private long position() {
+        return windowStart + window.position();
+    }
+
+    private void mapWindow(long position, int bytes) {
+        if (end - position < bytes) {
+            if (mode == FileChannel.MapMode.READ_WRITE) {
+                throw new BufferOverflowException();
+            }
+            throw new BufferUnderflowException();
+        }
+        leaveWindow();
+        try {
+            window = channel.map(mode, position, Math.min(end - position, Math.max(windowSize, bytes)));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        windowStart = position;
+    }
+
+    private void leaveWindow() {
+        if (channel == null) {
+            return;
+        }
+        checksum.update(window.slice(0, window.position()));
+        if (window instanceof MappedByteBuffer mapped && mode == FileChannel.MapMode.READ_WRITE) {
+            mapped.force();
+        }
+        windowStart += window.position();
+    }
+}
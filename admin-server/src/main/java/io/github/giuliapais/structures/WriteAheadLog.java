@@ -0,0 +1,275 @@
+package io.github.giuliapais.structures;
+
+import io.github.giuliapais.commons.models.SensorType;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Append-only binary log of the pollution messages received by the server.
+ * <p>
+ * The log is split in segment files named after the sequence number of their first record. Each record is framed
+ * by its length and a CRC32C checksum:
+ * <pre>
+ * | length (int) | checksum (int) | sequence (long) | robot id (int) | timestamp (long) | type and count (int) | readings (double...) |
+ * </pre>
+ * The top byte of the count is the ordinal of the {@link SensorType} of the readings, 0 (PM10) in the logs written
+ * before the other sensors were added.
+ * Records are appended to a direct buffer and written to the current segment in batches, when the buffer is full
+ * or when {@link #flush()} is called (the server flushes periodically, and before acknowledging a batch of
+ * messages); only flushed records survive a crash.
+ * When the log is opened, the records of the existing segments are replayed and a torn record at the end of the
+ * last segment (left by a crash in the middle of a write) is truncated.
+ */
+public class WriteAheadLog implements Closeable {
+    private static final String SEGMENT_SUFFIX = ".wal";
+    private static final int FRAME_SIZE = 2 * Integer.BYTES;
+    private static final int RECORD_HEADER_SIZE = Long.BYTES + Integer.BYTES + Long.BYTES + Integer.BYTES;
+    private static final int BUFFER_SIZE = 1 << 20;
+    private static final long SEGMENT_SIZE = 64L << 20;
+    private static final int TYPE_SHIFT = 24;
+    private static final int COUNT_MASK = (1 << TYPE_SHIFT) - 1;
+
+    /**
+     * Receives the records replayed from the log. The readings array is reused between records.
+     */
+    @FunctionalInterface
+    public interface RecordConsumer {
+        void accept(int robotId, long timestamp, SensorType type, double[] readings, int length);
+    }
+
+    private final Path directory;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private final CRC32C checksum = new CRC32C();
+    private FileChannel segment;
+    private long segmentSize;
+    private long nextSequence;
+    // Records up to this sequence number have been forced to disk
+    private long flushedSequence;
+
+    private WriteAheadLog(Path directory, long nextSequence) throws IOException {
+        this.directory = directory;
+        this.nextSequence = nextSequence;
+        this.flushedSequence = nextSequence - 1;
+        openSegment();
+    }
+
+    /**
+     * Opens the log in the given directory, replaying the records with sequence number greater than
+     * {@code afterSequence}. New records are appended to a new segment.
+     *
+     * @param afterSequence sequence number of the last record already applied (e.g. included in a snapshot), or -1
+     * @param consumer      receives the replayed records
+     */
+    public static WriteAheadLog open(Path directory, long afterSequence, RecordConsumer consumer) throws IOException {
+        Files.createDirectories(directory);
+        List<Path> segments = segments(directory);
+        long lastSequence = afterSequence;
+        double[] readings = new double[16];
+        for (int i = 0; i < segments.size(); i++) {
+            lastSequence = Math.max(lastSequence,
+                    replay(segments.get(i), i == segments.size() - 1, afterSequence, readings, consumer));
+        }
+        return new WriteAheadLog(directory, lastSequence + 1);
+    }
+
+    /**
+     * Appends a record of PM10 readings to the log buffer.
+     *
+     * @return the sequence number of the record
+     */
+    public long append(int robotId, long timestamp, double[] readings, int length) throws IOException {
+        return append(robotId, timestamp, SensorType.PM10, readings, length);
+    }
+
+    /**
+     * Appends a record to the log buffer.
+     *
+     * @return the sequence number of the record
+     */
+    public synchronized long append(int robotId, long timestamp, SensorType type, double[] readings, int length)
+            throws IOException {
+        int recordSize = RECORD_HEADER_SIZE + length * Double.BYTES;
+        if (FRAME_SIZE + recordSize > buffer.capacity()) {
+            throw new IllegalArgumentException("Record too large for the write-ahead log: " + length + " readings");
+        }
+        if (buffer.remaining() < FRAME_SIZE + recordSize) {
+            flushBuffer();
+        }
+        long sequence = nextSequence++;
+        int start = buffer.position();
+        buffer.putInt(recordSize);
+        buffer.putInt(0); // Checksum, filled below
+        buffer.putLong(sequence);
+        buffer.putInt(robotId);
+        buffer.putLong(timestamp);
+        buffer.putInt(type.ordinal() << TYPE_SHIFT | length);
+        for (int i = 0; i < length; i++) {
+            buffer.putDouble(readings[i]);
+        }
+        checksum.reset();
+        checksum.update(buffer.slice(start + FRAME_SIZE, recordSize));
+        buffer.putInt(start + Integer.BYTES, (int) checksum.getValue());
+        return sequence;
+    }
+
+    /**
+     * Appends a record for each message of the batch to the log buffer.
+     *
+     * @return the sequence number of the last record
+     */
+    public synchronized long append(SensorDataBatch batch) throws IOException {
+        for (int i = 0; i < batch.size(); i++) {
+            append(batch.robotId(i), batch.timestamp(i), batch.type(i), batch.readings(i), batch.length(i));
+        }
+        return nextSequence - 1;
+    }
+
+    /**
+     * Returns the sequence number of the last record appended, -1 if there is none.
+     */
+    public synchronized long lastSequence() {
+        return nextSequence - 1;
+    }
+
+    /**
+     * Writes the buffered records to the current segment and forces them to disk. Does nothing if all the records
+     * have already been forced, e.g. by a concurrent call that found them in the buffer.
+     */
+    public synchronized void flush() throws IOException {
+        if (flushedSequence == nextSequence - 1) {
+            return;
+        }
+        flushBuffer();
+        segment.force(false);
+        flushedSequence = nextSequence - 1;
+    }
+
+    /**
+     * Deletes the segments containing only records with sequence number up to {@code sequence} (e.g. included in
+     * a snapshot). The current segment is never deleted.
+     */
+    public synchronized void deleteUpTo(long sequence) throws IOException {
+        List<Path> segments = segments(directory);
+        // A segment can be deleted if the following one starts at or before the first record to keep
+        for (int i = 0; i < segments.size() - 1; i++) {
+            if (firstSequence(segments.get(i + 1)) > sequence + 1) {
+                break;
+            }
+            Files.delete(segments.get(i));
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        flush();
+        segment.close();
+    }
+
+    private void flushBuffer() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            segmentSize += segment.write(buffer);
+        }
+        buffer.clear();
+        if (segmentSize >= SEGMENT_SIZE) {
+            segment.force(false);
+            segment.close();
+            openSegment();
+        }
+    }
+
+    private void openSegment() throws IOException {
+        Path file = directory.resolve(String.format("%020d%s", nextSequence, SEGMENT_SUFFIX));
+        segment = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+        segmentSize = segment.size();
+    }
+
+    private static List<Path> segments(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return new ArrayList<>(files
+                    .filter(file -> file.getFileName().toString().endsWith(SEGMENT_SUFFIX))
+                    .sorted()
+                    .toList());
+        }
+    }
+
+    private static long firstSequence(Path segment) {
+        String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    /**
+     * Replays the records of a segment.
+     *
+     * @return the sequence number of the last valid record, -1 if there is none
+     */
+    private static long replay(Path file, boolean last, long afterSequence, double[] readings,
+                               RecordConsumer consumer) throws IOException {
+        long lastSequence = -1;
+        long validSize;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            CRC32C checksum = new CRC32C();
+            while (true) {
+                int start = buffer.position();
+                if (buffer.remaining() < FRAME_SIZE) {
+                    break;
+                }
+                int recordSize = buffer.getInt();
+                int expectedChecksum = buffer.getInt();
+                if (recordSize < RECORD_HEADER_SIZE || recordSize > buffer.remaining()) {
+                    buffer.position(start);
+                    break;
+                }
+                checksum.reset();
+                checksum.update(buffer.slice(buffer.position(), recordSize));
+                if ((int) checksum.getValue() != expectedChecksum) {
+                    buffer.position(start);
+                    break;
+                }
+                long sequence = buffer.getLong();
+                int robotId = buffer.getInt();
+                long timestamp = buffer.getLong();
+                int count = buffer.getInt();
+                int type = count >>> TYPE_SHIFT;
+                int length = count & COUNT_MASK;
+                if (type >= SensorType.values().length) {
+                    throw new IOException("Unknown sensor type " + type + " in write-ahead log segment " + file);
+                }
+                if (length > readings.length) {
+                    readings = new double[Math.max(length, 2 * readings.length)];
+                }
+                for (int i = 0; i < length; i++) {
+                    readings[i] = buffer.getDouble();
+                }
+                if (sequence > afterSequence) {
+                    consumer.accept(robotId, timestamp, SensorType.values()[type], readings, length);
+                }
+                lastSequence = sequence;
+            }
+            validSize = buffer.position();
+            if (validSize < channel.size() && !last) {
+                throw new IOException("Corrupted write-ahead log segment " + file);
+            }
+        }
+        if (validSize < Files.size(file)) {
+            // Torn write at the end of the log
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                channel.truncate(validSize);
+            }
+        }
+        return lastSequence;
+    }
+}
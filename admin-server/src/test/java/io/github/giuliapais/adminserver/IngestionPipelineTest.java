@@ -0,0 +1,217 @@
+package io.github.giuliapais.adminserver;
+
+import io.github.giuliapais.api.services.PollutionDataService;
+import io.github.giuliapais.commons.models.SensorType;
+import io.github.giuliapais.structures.PollutionDataStore;
+import io.github.giuliapais.structures.SensorDataBatch;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IngestionPipelineTest {
+    @TempDir
+    Path directory;
+
+    /* A service whose inserts wait until the test releases them */
+    private static class BlockedService extends PollutionDataService {
+        private final CountDownLatch started = new CountDownLatch(1);
+        private final CountDownLatch release = new CountDownLatch(1);
+
+        BlockedService() {
+            super(new PollutionDataStore(), null, 0, 0);
+        }
+
+        @Override
+        public void addSensorData(SensorDataBatch batch) {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            super.addSensorData(batch);
+        }
+    }
+
+    @Test
+    void testConcurrentProducers() throws InterruptedException {
+        PollutionDataService service = new PollutionDataService(new PollutionDataStore(), null, 0, 0);
+        IngestionPipeline pipeline = new IngestionPipeline(service, 64, 3, 16, -1);
+        Thread[] producers = new Thread[4];
+        for (int p = 0; p < producers.length; p++) {
+            int robotId = p;
+            producers[p] = new Thread(() -> {
+                double[] readings = new double[3];
+                for (int i = 0; i < 10_000; i++) {
+                    readings[0] = robotId;
+                    readings[1] = robotId + 1;
+                    readings[2] = robotId + 2;
+                    assertTrue(pipeline.submit(robotId, i, readings, 3));
+                }
+            });
+            producers[p].start();
+        }
+        for (Thread producer : producers) {
+            producer.join();
+        }
+        pipeline.shutdown();
+
+        IngestionPipeline.Metrics metrics = pipeline.metrics();
+        assertEquals(40_000, metrics.received());
+        assertEquals(40_000, metrics.processed());
+        assertEquals(0, metrics.dropped());
+        assertEquals(0, metrics.queued());
+        assertTrue(metrics.maxQueued() <= 64);
+        for (int robotId = 0; robotId < producers.length; robotId++) {
+            assertEquals(robotId + 1, service.getAverage(robotId, 30_000));
+        }
+        assertEquals(2.5, service.getAverageBetweenTimestamps(0, 10_000));
+    }
+
+    @Test
+    void testOverflowIsDropped() throws InterruptedException {
+        BlockedService service = new BlockedService();
+        IngestionPipeline pipeline = new IngestionPipeline(service, 4, 1, 2, 0);
+        double[] readings = {1.0};
+        assertTrue(pipeline.submit(1, 0, readings, 1));
+        // The consumer takes the first message and blocks on it, then the queue fills up
+        service.started.await();
+        for (int i = 1; i <= 4; i++) {
+            assertTrue(pipeline.submit(1, i, readings, 1));
+        }
+        assertFalse(pipeline.submit(1, 5, readings, 1));
+        assertFalse(pipeline.submit(1, 6, readings, 1));
+
+        IngestionPipeline.Metrics metrics = pipeline.metrics();
+        assertEquals(7, metrics.received());
+        assertEquals(2, metrics.dropped());
+        assertEquals(2, metrics.blocked());
+        assertEquals(4, metrics.queued());
+        assertEquals(4, metrics.maxQueued());
+
+        service.release.countDown();
+        pipeline.shutdown();
+        assertEquals(5, pipeline.metrics().processed());
+        assertEquals(0, pipeline.metrics().queued());
+        assertEquals(1.0, service.getAverage(1, 10));
+    }
+
+    @Test
+    void testBackpressureWaitsForSpace() throws InterruptedException {
+        BlockedService service = new BlockedService();
+        IngestionPipeline pipeline = new IngestionPipeline(service, 1, 1, 1, 10_000);
+        double[] readings = {2.0};
+        pipeline.submit(1, 0, readings, 1);
+        service.started.await();
+        pipeline.submit(1, 1, readings, 1);
+        // The queue is full, the next submission waits until the consumer makes space
+        Thread producer = new Thread(() -> assertTrue(pipeline.submit(1, 2, readings, 1)));
+        producer.start();
+        while (pipeline.metrics().blocked() == 0) {
+            Thread.sleep(1);
+        }
+        service.release.countDown();
+        producer.join();
+        pipeline.shutdown();
+
+        IngestionPipeline.Metrics metrics = pipeline.metrics();
+        assertEquals(3, metrics.processed());
+        assertEquals(0, metrics.dropped());
+        assertEquals(1, metrics.blocked());
+    }
+
+    @Test
+    void testSubmitAfterShutdown() throws InterruptedException {
+        IngestionPipeline pipeline = new IngestionPipeline(
+                new PollutionDataService(new PollutionDataStore(), null, 0, 0), 4, 1, 4, 0);
+        pipeline.shutdown();
+        assertFalse(pipeline.submit(1, 0, new double[]{1.0}, 1));
+        assertEquals(1, pipeline.metrics().dropped());
+    }
+
+    @Test
+    void testMessagesAreAcknowledgedOnceStored() throws InterruptedException {
+        BlockedService service = new BlockedService();
+        IngestionPipeline pipeline = new IngestionPipeline(service, 8, 2, 1, -1);
+        SensorDataBatch message = new SensorDataBatch(IngestionPipeline.MAX_MESSAGE_PARTS);
+        message.add(1, 0, new double[]{1.0, 3.0}, 2);
+        message.add(1, 0, SensorType.NO2, new double[]{5.0}, 1);
+        AtomicInteger acknowledged = new AtomicInteger();
+        assertTrue(pipeline.submit(message, acknowledged::incrementAndGet));
+        service.started.await();
+        // The parts are in the same batch, which is not stored yet
+        assertEquals(0, acknowledged.get());
+        assertEquals(0, pipeline.metrics().queued());
+
+        service.release.countDown();
+        pipeline.shutdown();
+        assertEquals(1, acknowledged.get());
+        assertEquals(2, pipeline.metrics().processed());
+        assertEquals(2.0, service.getAverage(1, 10));
+        assertEquals(5.0, service.getAverage(SensorType.NO2, 1, 10));
+    }
+
+    @Test
+    void testOnlyDroppedMessagesAreAcknowledgedWithoutStoring() throws InterruptedException {
+        BlockedService service = new BlockedService();
+        IngestionPipeline pipeline = new IngestionPipeline(service, 1, 1, 1, 0);
+        SensorDataBatch message = new SensorDataBatch(1);
+        message.add(1, 0, new double[]{1.0}, 1);
+        AtomicInteger acknowledged = new AtomicInteger();
+        pipeline.submit(message, acknowledged::incrementAndGet);
+        service.started.await();
+        pipeline.submit(message, acknowledged::incrementAndGet);
+        // The queue is full, the message is dropped on purpose
+        assertFalse(pipeline.submit(message, acknowledged::incrementAndGet));
+        assertEquals(1, acknowledged.get());
+
+        service.release.countDown();
+        pipeline.shutdown();
+        assertEquals(3, acknowledged.get());
+        // Lost because the pipeline stopped, to be delivered again
+        assertFalse(pipeline.submit(message, acknowledged::incrementAndGet));
+        assertEquals(3, acknowledged.get());
+    }
+
+    @Test
+    void testAcknowledgedMessagesSurviveCrash() throws InterruptedException {
+        // No periodic flush during the test
+        PollutionDataService service = new PollutionDataService(new PollutionDataStore(), directory, 60_000, 3600);
+        IngestionPipeline pipeline = new IngestionPipeline(service, 4, 1, 4, -1);
+        SensorDataBatch message = new SensorDataBatch(IngestionPipeline.MAX_MESSAGE_PARTS);
+        message.add(1, 0, new double[]{1.0, 3.0}, 2);
+        message.add(1, 0, SensorType.NO2, new double[]{5.0}, 1);
+        CountDownLatch acknowledged = new CountDownLatch(1);
+        assertTrue(pipeline.submit(message, acknowledged::countDown));
+        acknowledged.await();
+
+        // Crash: the service is not shut down, a new one recovers what is on disk
+        PollutionDataService recovered = new PollutionDataService(new PollutionDataStore(), directory, 60_000, 3600);
+        assertEquals(2.0, recovered.getAverage(1, 10));
+        assertEquals(5.0, recovered.getAverage(SensorType.NO2, 1, 10));
+        pipeline.shutdown();
+    }
+
+    @Test
+    void testRejectedBatchIsNotAcknowledged() throws InterruptedException {
+        PollutionDataService service = new PollutionDataService(new PollutionDataStore(), null, 0, 0) {
+            @Override
+            public void addSensorData(SensorDataBatch batch) {
+                throw new IllegalStateException("Log unavailable");
+            }
+        };
+        IngestionPipeline pipeline = new IngestionPipeline(service, 4, 1, 4, -1);
+        SensorDataBatch message = new SensorDataBatch(1);
+        message.add(1, 0, new double[]{1.0}, 1);
+        AtomicInteger acknowledged = new AtomicInteger();
+        assertTrue(pipeline.submit(message, acknowledged::incrementAndGet));
+        pipeline.shutdown();
+        assertEquals(0, acknowledged.get());
+        assertEquals(1, pipeline.metrics().failed());
+    }
+}
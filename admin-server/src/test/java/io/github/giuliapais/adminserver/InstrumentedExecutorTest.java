@@ -0,0 +1,55 @@
+package io.github.giuliapais.adminserver;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class InstrumentedExecutorTest {
+
+    @Test
+    void testCountsTasks() throws InterruptedException {
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(2, 2, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(1));
+        InstrumentedExecutor executor = new InstrumentedExecutor(pool);
+        CountDownLatch started = new CountDownLatch(2);
+        CountDownLatch release = new CountDownLatch(1);
+        Runnable blocked = () -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        };
+        executor.execute(blocked);
+        executor.execute(blocked);
+        started.await();
+        // Both workers are busy: the third task waits in the queue, the fourth is rejected
+        executor.execute(() -> {
+        });
+        assertThrows(RejectedExecutionException.class, () -> executor.execute(() -> {
+        }));
+
+        InstrumentedExecutor.Metrics metrics = executor.metrics();
+        assertEquals(4, metrics.submitted());
+        assertEquals(1, metrics.rejected());
+        assertEquals(2, metrics.active());
+        assertEquals(1, metrics.queued());
+        assertEquals(0, metrics.completed());
+
+        release.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+        metrics = executor.metrics();
+        assertEquals(3, metrics.completed());
+        assertEquals(0, metrics.active());
+        assertEquals(2, metrics.maxActive());
+        assertEquals(0, metrics.queued());
+    }
+}
@@ -0,0 +1,46 @@
+package io.github.giuliapais.adminserver;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PollutionMonitorTest {
+    @Test
+    void testSingleWorker() {
+        assertEquals(List.of(List.of("greenfield/pollution/#")),
+                PollutionMonitor.subscriptionTopics(1, "", 4));
+        assertEquals(List.of(List.of("greenfield/pollution/#")),
+                PollutionMonitor.subscriptionTopics(1, "guard", 4));
+    }
+
+    @Test
+    void testDistrictPartitions() {
+        assertEquals(List.of(
+                List.of("greenfield/pollution/district1/#", "greenfield/pollution/district3/#"),
+                List.of("greenfield/pollution/district2/#", "greenfield/pollution/district4/#")
+        ), PollutionMonitor.subscriptionTopics(2, "", 4));
+        assertEquals(List.of(
+                List.of("greenfield/pollution/district1/#", "greenfield/pollution/district4/#"),
+                List.of("greenfield/pollution/district2/#"),
+                List.of("greenfield/pollution/district3/#")
+        ), PollutionMonitor.subscriptionTopics(3, "", 4));
+        // No idle workers
+        assertEquals(4, PollutionMonitor.subscriptionTopics(8, "", 4).size());
+    }
+
+    @Test
+    void testSharedSubscription() {
+        List<List<String>> topics = PollutionMonitor.subscriptionTopics(6, "guard", 4);
+        assertEquals(6, topics.size());
+        for (List<String> worker : topics) {
+            assertEquals(List.of("$share/guard/greenfield/pollution/#"), worker);
+        }
+    }
+
+    @Test
+    void testInvalidWorkers() {
+        assertThrows(IllegalArgumentException.class, () -> PollutionMonitor.subscriptionTopics(0, "", 4));
+    }
+}
@@ -0,0 +1,130 @@
+package io.github.giuliapais.adminserver;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.github.giuliapais.commons.SensorAveragesCodec;
+import io.github.giuliapais.commons.SensorAveragesConsumer;
+import io.github.giuliapais.commons.models.SensorAverages;
+import io.github.giuliapais.commons.models.SensorType;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SensorAveragesReaderTest {
+    private final SensorAveragesReader reader = new SensorAveragesReader();
+
+    private SensorAverages read(byte[] payload) throws IOException {
+        SensorAverages result = new SensorAverages();
+        reader.read(payload, (robotId, timestamp, averages, length) -> {
+            result.setRobotId(robotId);
+            result.setTimestamp(timestamp);
+            result.setAverages(Arrays.stream(averages, 0, length).boxed().toList());
+        });
+        return result;
+    }
+
+    /* Reads a message with its series, in the series map of the result */
+    private SensorAverages readWithSeries(byte[] payload) throws IOException {
+        SensorAverages result = read(payload);
+        Map<SensorType, List<Double>> series = new EnumMap<>(SensorType.class);
+        reader.read(payload, new SensorAveragesConsumer() {
+            @Override
+            public void accept(int robotId, long timestamp, double[] averages, int length) {
+            }
+
+            @Override
+            public void acceptSeries(int robotId, long timestamp, SensorType type, double[] averages, int length) {
+                series.put(type, Arrays.stream(averages, 0, length).boxed().toList());
+            }
+        });
+        result.setSeries(series);
+        return result;
+    }
+
+    private static void assertSameMessage(SensorAverages expected, SensorAverages actual) {
+        assertEquals(expected.getRobotId(), actual.getRobotId());
+        assertEquals(expected.getTimestamp(), actual.getTimestamp());
+        assertEquals(expected.getAverages(), actual.getAverages());
+    }
+
+    @Test
+    void testReadsPublishedMessages() throws IOException {
+        ObjectMapper mapper = new ObjectMapper();
+        List<Double> averages = new ArrayList<>();
+        // Longer than the initial buffer as well
+        for (int i = 0; i < 40; i++) {
+            SensorAverages message = new SensorAverages(i, 1_690_000_000_000L + i, List.copyOf(averages));
+            assertSameMessage(message, read(mapper.writeValueAsBytes(message)));
+            averages.add(Math.PI * i - 17.25);
+        }
+    }
+
+    @Test
+    void testReadsBinaryMessages() throws IOException {
+        double[] averages = new double[40];
+        for (int i = 0; i < averages.length; i++) {
+            averages[i] = Math.PI * i - 17.25;
+        }
+        SensorAverages result = new SensorAverages();
+        // Longer than the initial buffer, then shorter
+        for (int length : new int[]{40, 3}) {
+            reader.readBinary(SensorAveragesCodec.encode(9, 1_690_000_000_000L, averages, length,
+                    SensorAveragesCodec.Encoding.DELTA), (robotId, timestamp, values, count) -> {
+                result.setRobotId(robotId);
+                result.setTimestamp(timestamp);
+                result.setAverages(Arrays.stream(values, 0, count).boxed().toList());
+            });
+            assertSameMessage(new SensorAverages(9, 1_690_000_000_000L,
+                    Arrays.stream(averages, 0, length).boxed().toList()), result);
+        }
+    }
+
+    @Test
+    void testUnknownAndMissingFields() throws IOException {
+        byte[] payload = """
+                {"district": {"id": 2, "name": "D2"}, "averages": [1, 2.5e1], "extra": [[1], {}], "robotId": 7}
+                """.getBytes(StandardCharsets.UTF_8);
+        assertSameMessage(new SensorAverages(7, 0, List.of(1.0, 25.0)), read(payload));
+        assertSameMessage(new SensorAverages(0, 0, List.of()),
+                read("{\"averages\": null}".getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    void testReadsSeries() throws IOException {
+        ObjectMapper mapper = new ObjectMapper();
+        Map<SensorType, List<Double>> series = new EnumMap<>(SensorType.class);
+        series.put(SensorType.NO2, List.of(20.5, 21.0, 19.75));
+        series.put(SensorType.TEMPERATURE, List.of(18.0));
+        SensorAverages message = new SensorAverages(4, 1_690_000_000_000L, List.of(41.5, 42.0), series);
+        SensorAverages result = readWithSeries(mapper.writeValueAsBytes(message));
+        assertSameMessage(message, result);
+        assertEquals(series, result.getSeries());
+        // Messages without series are written as before
+        assertFalse(mapper.writeValueAsString(new SensorAverages(4, 0, List.of(), Map.of())).contains("series"));
+        // Robots without PM10 leave out its averages
+        assertFalse(mapper.writeValueAsString(new SensorAverages(4, 0, null, series)).contains("averages"));
+        // Averages after the series, unknown sensors
+        byte[] payload = """
+                {"series": {"CO2": [400], "NO2": [1, 2], "TEMPERATURE": null}, "averages": [3, 4], "robotId": 2}
+                """.getBytes(StandardCharsets.UTF_8);
+        result = readWithSeries(payload);
+        assertSameMessage(new SensorAverages(2, 0, List.of(3.0, 4.0)), result);
+        assertEquals(Map.of(SensorType.NO2, List.of(1.0, 2.0)), result.getSeries());
+    }
+
+    @Test
+    void testMalformedMessages() {
+        for (String payload : new String[]{"", "[1, 2]", "{\"averages\": 3}", "{\"averages\": [1, null]}",
+                "{\"robotId\": \"one\"}", "{\"robotId\": 1",
+                "{\"series\": [1]}", "{\"series\": {\"NO2\": 1}}", "{\"series\": {\"NO2\": [1], \"NO2\": [2]}}"}) {
+            assertThrows(IOException.class, () -> read(payload.getBytes(StandardCharsets.UTF_8)), payload);
+        }
+    }
+}
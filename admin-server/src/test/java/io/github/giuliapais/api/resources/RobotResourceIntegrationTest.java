@@ -1,17 +1,29 @@
 package io.github.giuliapais.api.resources;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import io.github.giuliapais.api.models.Robot;
 import jakarta.ws.rs.client.Entity;
 import jakarta.ws.rs.core.Application;
+import jakarta.ws.rs.core.EntityTag;
+import jakarta.ws.rs.core.HttpHeaders;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.sse.InboundSseEvent;
+import jakarta.ws.rs.sse.SseEventSource;
 import org.glassfish.jersey.jackson.JacksonFeature;
 import org.glassfish.jersey.server.ResourceConfig;
 import org.glassfish.jersey.test.JerseyTest;
 import org.junit.jupiter.api.Test;
 
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.startsWith;
 import static org.junit.jupiter.api.Assertions.*;
 
 class RobotResourceIntegrationTest extends JerseyTest {
@@ -58,4 +70,144 @@ class RobotResourceIntegrationTest extends JerseyTest {
         String entity = response.readEntity(String.class);
         assertThat(entity, containsString("\"errorMessage\":\"Robot id already present\""));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void givenUnchangedRobots_whenGetWithETag_thenStatus304() {
+        Response response = target("/robots").request().get();
+        assertEquals(200, response.getStatus());
+        EntityTag tag = response.getEntityTag();
+        assertNotNull(tag);
+        assertThat(response.readEntity(String.class), startsWith("["));
+
+        response = target("/robots").request().header(HttpHeaders.IF_NONE_MATCH, tag).get();
+        assertEquals(Response.Status.NOT_MODIFIED.getStatusCode(), response.getStatus());
+        assertEquals(tag, response.getEntityTag());
+    }
+
+    @Test
+    public void givenNewRobot_whenGetWithETag_thenStatus200() {
+        EntityTag tag = target("/robots").request().get().getEntityTag();
+        Robot robot = new Robot(142875, "localhost", (short) 9998);
+        target("/robots").request().post(Entity.entity(robot, MediaType.APPLICATION_JSON));
+
+        Response response = target("/robots").request().header(HttpHeaders.IF_NONE_MATCH, tag).get();
+        assertEquals(200, response.getStatus());
+        assertNotEquals(tag, response.getEntityTag());
+        assertThat(response.readEntity(String.class), containsString("\"id\":142875"));
+    }
+
+    @Test
+    public void givenFleet_whenRegisterBulk_thenStatus200() {
+        List<Robot> fleet = List.of(
+                new Robot(242874, "localhost", (short) 9001),
+                new Robot(242875, "localhost", (short) 9002));
+        Response response = target("/robots/bulk")
+                .request()
+                .post(Entity.entity(fleet, MediaType.APPLICATION_JSON));
+        assertEquals(200, response.getStatus());
+        String entity = response.readEntity(String.class);
+        assertThat(entity, containsString("\"activeRobots\":"));
+        assertThat(entity, containsString("\"registered\":"));
+        assertThat(entity, containsString("\"id\":242874"));
+        assertThat(entity, containsString("\"id\":242875"));
+        assertThat(entity, containsString("\"mapPosition\""));
+    }
+
+    @Test
+    public void givenPresentId_whenRegisterBulk_thenNoneRegistered() {
+        Robot robot = new Robot(342874, "localhost", (short) 9001);
+        target("/robots").request().post(Entity.entity(robot, MediaType.APPLICATION_JSON));
+        List<Robot> fleet = List.of(
+                new Robot(342875, "localhost", (short) 9002),
+                new Robot(342874, "localhost", (short) 9003));
+        Response response = target("/robots/bulk")
+                .request()
+                .post(Entity.entity(fleet, MediaType.APPLICATION_JSON));
+        assertEquals(Response.Status.CONFLICT.getStatusCode(), response.getStatus());
+        String robots = target("/robots").request().get(String.class);
+        assertThat(robots, not(containsString("\"id\":342875")));
+
+        response = target("/robots/bulk")
+                .request()
+                .post(Entity.entity(List.of(), MediaType.APPLICATION_JSON));
+        assertEquals(Response.Status.BAD_REQUEST.getStatusCode(), response.getStatus());
+    }
+
+    @Test
+    public void givenNeighbors_whenRegister_thenBoundedActiveRobots() {
+        for (int id = 442874; id < 442880; id++) {
+            Robot robot = new Robot(id, "localhost", (short) 9001);
+            target("/robots").request().post(Entity.entity(robot, MediaType.APPLICATION_JSON));
+        }
+        Robot robot = new Robot(442880, "localhost", (short) 9002);
+        Response response = target("/robots")
+                .queryParam("neighbors", 2)
+                .request()
+                .post(Entity.entity(robot, MediaType.APPLICATION_JSON));
+        assertEquals(200, response.getStatus());
+        JsonNode entity = response.readEntity(JsonNode.class);
+        assertEquals(2, entity.get("activeRobots").size());
+        assertTrue(entity.get("activeRobotsCount").asInt() >= 6);
+    }
+
+    @Test
+    public void givenRobots_whenGetPages_thenAllRobotsInOrder() {
+        for (int id = 542874; id < 542879; id++) {
+            Robot robot = new Robot(id, "localhost", (short) 9001);
+            target("/robots").request().post(Entity.entity(robot, MediaType.APPLICATION_JSON));
+        }
+        JsonNode page = target("/robots")
+                .queryParam("after", 542873)
+                .queryParam("limit", 3)
+                .request()
+                .get(JsonNode.class);
+        assertEquals(3, page.get("robots").size());
+        assertEquals(542874, page.get("robots").get(0).get("id").asInt());
+        assertEquals(542876, page.get("after").asInt());
+        page = target("/robots")
+                .queryParam("after", 542876)
+                .queryParam("limit", 3)
+                .request()
+                .get(JsonNode.class);
+        assertEquals(542877, page.get("robots").get(0).get("id").asInt());
+        assertTrue(page.get("robots").get(0).has("mapPosition"));
+
+        Response response = target("/robots").queryParam("limit", 0).request().get();
+        assertEquals(Response.Status.BAD_REQUEST.getStatusCode(), response.getStatus());
+    }
+
+    @Test
+    public void givenChangesStream_whenRegister_thenAddedEvent() throws InterruptedException {
+        String tag = target("/robots").request().get().getEntityTag().getValue();
+        BlockingQueue<InboundSseEvent> events = new LinkedBlockingQueue<>();
+        try (SseEventSource source = SseEventSource.target(target("/robots/changes").queryParam("since", tag))
+                .build()) {
+            source.register(events::add);
+            source.open();
+            Robot robot = new Robot(642874, "localhost", (short) 9001);
+            target("/robots").request().post(Entity.entity(robot, MediaType.APPLICATION_JSON));
+
+            InboundSseEvent event = events.poll(10, TimeUnit.SECONDS);
+            while (event != null && event.isEmpty()) {
+                // Heartbeat
+                event = events.poll(10, TimeUnit.SECONDS);
+            }
+            assertNotNull(event);
+            assertEquals("added", event.getName());
+            assertThat(event.readData(), containsString("\"robotId\":642874"));
+        }
+    }
+
+    @Test
+    public void givenUnknownTag_whenStreamChanges_thenResetEvent() throws InterruptedException {
+        BlockingQueue<InboundSseEvent> events = new LinkedBlockingQueue<>();
+        try (SseEventSource source = SseEventSource.target(target("/robots/changes").queryParam("since", "0-1"))
+                .build()) {
+            source.register(events::add);
+            source.open();
+            InboundSseEvent event = events.poll(10, TimeUnit.SECONDS);
+            assertNotNull(event);
+            assertEquals("reset", event.getName());
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package io.github.giuliapais.api.services;
+
+import io.github.giuliapais.structures.PollutionDataStore;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PollutionDataServiceTest {
+    private static final long FLUSH_INTERVAL = 20;
+    private static final long SNAPSHOT_INTERVAL = 3600;
+
+    @TempDir
+    Path directory;
+
+    private static PollutionDataService newService(Path directory) {
+        return new PollutionDataService(new PollutionDataStore(), directory, FLUSH_INTERVAL, SNAPSHOT_INTERVAL);
+    }
+
+    private static void populate(PollutionDataService service, long from, long to) {
+        Random random = new Random(from);
+        double[] readings = new double[5];
+        for (long t = from; t < to; t += 100) {
+            for (int i = 0; i < readings.length; i++) {
+                readings[i] = random.nextDouble() * 100;
+            }
+            service.addSensorData(random.nextInt(5), t, readings, readings.length);
+        }
+    }
+
+    private static void assertSameContent(PollutionDataService expected, PollutionDataService actual, long to) {
+        for (int robotId = 0; robotId < 6; robotId++) {
+            assertEquals(expected.getAverage(robotId, 50), actual.getAverage(robotId, 50));
+        }
+        for (long t1 = 0; t1 < to; t1 += 777) {
+            assertEquals(expected.getAverageBetweenTimestamps(t1, to), actual.getAverageBetweenTimestamps(t1, to));
+        }
+    }
+
+    @Test
+    void testRecoveryAfterCrash() throws InterruptedException {
+        PollutionDataService service = newService(directory);
+        populate(service, 0, 50_000);
+        service.saveSnapshot();
+        populate(service, 50_000, 100_000);
+        // Wait for the periodic flush, then crash without shutting down
+        Thread.sleep(10 * FLUSH_INTERVAL);
+
+        PollutionDataService recovered = newService(directory);
+        assertSameContent(service, recovered, 100_000);
+        recovered.shutdown();
+    }
+
+    @Test
+    void testShutdownSavesSnapshot() throws IOException {
+        PollutionDataService service = newService(directory);
+        populate(service, 0, 50_000);
+        service.shutdown();
+        // Only the segment opened after the snapshot is kept
+        try (Stream<Path> segments = Files.list(directory.resolve("wal"))) {
+            assertEquals(1, segments.count());
+        }
+
+        PollutionDataService recovered = newService(directory);
+        assertSameContent(service, recovered, 50_000);
+        recovered.shutdown();
+    }
+
+    @Test
+    void testPersistenceDisabled() {
+        PollutionDataService service = new PollutionDataService(new PollutionDataStore(), null, 0, 0);
+        service.addSensorData(1, 1000, new double[]{1.0, 2.0}, 2);
+        assertEquals(1.5, service.getAverage(1, 10));
+        service.saveSnapshot();
+        service.shutdown();
+    }
+}
@@ -0,0 +1,114 @@
+package io.github.giuliapais.structures;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PersistentIntMapTest {
+
+    @Test
+    void testPutGetRemove() {
+        PersistentIntMap<String> empty = PersistentIntMap.empty();
+        PersistentIntMap<String> map = empty.put(1, "a").put(33, "b").put(1 << 20, "c");
+        assertEquals(3, map.size());
+        assertEquals("a", map.get(1));
+        assertEquals("b", map.get(33));
+        assertEquals("c", map.get(1 << 20));
+        assertNull(map.get(2));
+        assertNull(map.get(1 | 1 << 20));
+
+        PersistentIntMap<String> removed = map.remove(33);
+        assertEquals(2, removed.size());
+        assertNull(removed.get(33));
+        assertSame(removed, removed.remove(33));
+        assertTrue(removed.remove(1).remove(1 << 20).isEmpty());
+        assertThrows(NullPointerException.class, () -> empty.put(1, null));
+    }
+
+    @Test
+    void testUpdatesDoNotChangePreviousVersions() {
+        PersistentIntMap<String> first = PersistentIntMap.<String>empty().put(1, "a").put(2, "b");
+        PersistentIntMap<String> second = first.put(2, "c").put(3, "d");
+        PersistentIntMap<String> third = second.remove(1);
+        assertEquals(List.of("a", "b"), new ArrayList<>(first.values()));
+        assertEquals(List.of("a", "c", "d"), new ArrayList<>(second.values()));
+        assertEquals(List.of("c", "d"), new ArrayList<>(third.values()));
+        assertSame(second, second.put(2, second.get(2)));
+    }
+
+    @Test
+    void testMatchesTreeMap() {
+        Random random = new Random(42);
+        TreeMap<Integer, Integer> expected = new TreeMap<>();
+        PersistentIntMap<Integer> map = PersistentIntMap.empty();
+        for (int i = 0; i < 20_000; i++) {
+            // Small keys share long prefixes, large ones exercise the first levels
+            int key = i % 3 == 0 ? random.nextInt(Integer.MAX_VALUE) : random.nextInt(2_000);
+            if (random.nextInt(3) == 0) {
+                expected.remove(key);
+                map = map.remove(key);
+            } else {
+                expected.put(key, i);
+                map = map.put(key, i);
+            }
+            assertEquals(expected.get(key), map.get(key));
+        }
+        assertEquals(expected.size(), map.size());
+        assertEquals(new ArrayList<>(expected.values()), new ArrayList<>(map.values()));
+        for (int key : new ArrayList<>(expected.keySet())) {
+            map = map.remove(key);
+        }
+        assertTrue(map.isEmpty());
+        assertFalse(map.values().iterator().hasNext());
+    }
+
+    @Test
+    void testValuesAfter() {
+        Random random = new Random(7);
+        TreeMap<Integer, Integer> expected = new TreeMap<>();
+        PersistentIntMap<Integer> map = PersistentIntMap.empty();
+        for (int i = 0; i < 5_000; i++) {
+            int key = i % 2 == 0 ? random.nextInt(Integer.MAX_VALUE) : random.nextInt(10_000);
+            expected.put(key, key);
+            map = map.put(key, key);
+        }
+        for (int i = 0; i < 500; i++) {
+            int after = i % 2 == 0 ? random.nextInt(Integer.MAX_VALUE) : random.nextInt(10_000);
+            int limit = 1 + random.nextInt(50);
+            List<Integer> page = expected.tailMap(after, false).values().stream().limit(limit).toList();
+            assertEquals(page, map.valuesAfter(after, limit));
+        }
+        // Paging through the whole map returns every value once
+        List<Integer> all = new ArrayList<>();
+        List<Integer> page = map.firstValues(100);
+        while (!page.isEmpty()) {
+            all.addAll(page);
+            page = map.valuesAfter(page.get(page.size() - 1), 100);
+        }
+        assertEquals(new ArrayList<>(expected.values()), all);
+        assertTrue(map.valuesAfter(Integer.MAX_VALUE, 10).isEmpty());
+    }
+
+    @Test
+    void testPagesIncludeZeroAndNegativeKeys() {
+        PersistentIntMap<Integer> map = PersistentIntMap.empty();
+        for (int key : new int[]{-1, 0, 5, Integer.MIN_VALUE, Integer.MAX_VALUE, -7}) {
+            map = map.put(key, key);
+        }
+        List<Integer> all = new ArrayList<>();
+        List<Integer> page = map.firstValues(2);
+        while (!page.isEmpty()) {
+            all.addAll(page);
+            // A negative key is a cursor like any other
+            page = map.valuesAfter(page.get(page.size() - 1), 2);
+        }
+        assertEquals(List.of(0, 5, Integer.MAX_VALUE, Integer.MIN_VALUE, -7, -1), all);
+        assertEquals(new ArrayList<>(map.values()), all);
+        assertTrue(map.firstValues(0).isEmpty());
+    }
+}
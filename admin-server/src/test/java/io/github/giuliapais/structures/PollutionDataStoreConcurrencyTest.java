@@ -0,0 +1,108 @@
+package io.github.giuliapais.structures;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PollutionDataStoreConcurrencyTest {
+    private static final int WRITERS = 4;
+    private static final int READERS = 4;
+    private static final int ROBOTS_PER_WRITER = 5;
+    private static final int MESSAGES_PER_WRITER = 20_000;
+    private static final double MAX_READING = 100;
+
+    private record Message(int robotId, long timestamp, List<Double> readings) {
+    }
+
+    /**
+     * Each writer owns a disjoint set of robots, so the final content of the store doesn't depend on how the
+     * writers are interleaved and can be compared with a reference store fed sequentially.
+     */
+    private static List<Message> messagesOf(int writer) {
+        Random random = new Random(writer);
+        List<Message> messages = new ArrayList<>(MESSAGES_PER_WRITER);
+        for (int i = 0; i < MESSAGES_PER_WRITER; i++) {
+            int robotId = writer * ROBOTS_PER_WRITER + random.nextInt(ROBOTS_PER_WRITER);
+            // Mostly in order, with some late and repeated timestamps
+            long timestamp = i * 10L - random.nextInt(2) * random.nextInt(100);
+            List<Double> readings = new ArrayList<>();
+            int count = 1 + random.nextInt(8);
+            for (int j = 0; j < count; j++) {
+                readings.add(random.nextDouble() * MAX_READING);
+            }
+            messages.add(new Message(robotId, timestamp, readings));
+        }
+        return messages;
+    }
+
+    @Test
+    void testConcurrentIngestionAndQueries() throws Exception {
+        PollutionDataStore store = new PollutionDataStore();
+        ReferencePollutionDataStore reference = new ReferencePollutionDataStore();
+        List<List<Message>> workload = new ArrayList<>();
+        for (int w = 0; w < WRITERS; w++) {
+            workload.add(messagesOf(w));
+            workload.get(w).forEach(m -> reference.addData(m.robotId(), m.timestamp(), m.readings()));
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(WRITERS + READERS);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicBoolean writing = new AtomicBoolean(true);
+        List<Future<?>> writers = new ArrayList<>();
+        List<Future<Integer>> readers = new ArrayList<>();
+        for (List<Message> messages : workload) {
+            writers.add(executor.submit(() -> {
+                start.await();
+                messages.forEach(m -> store.addData(m.robotId(), m.timestamp(), m.readings()));
+                return null;
+            }));
+        }
+        for (int r = 0; r < READERS; r++) {
+            Random random = new Random(100 + r);
+            readers.add(executor.submit(() -> {
+                start.await();
+                int queries = 0;
+                while (writing.get()) {
+                    // Any torn read would show up as an average outside the range of the readings
+                    double average = store.getAverageOfLastNReadings(random.nextInt(WRITERS * ROBOTS_PER_WRITER),
+                            1 + random.nextInt(50));
+                    assertTrue(average == -1 || (average >= 0 && average <= MAX_READING), "Invalid average " + average);
+                    long t1 = random.nextInt(MESSAGES_PER_WRITER * 10);
+                    average = store.getAverageBetweenTimestamps(t1, t1 + random.nextInt(5_000));
+                    assertTrue(average >= 0 && average <= MAX_READING, "Invalid average " + average);
+                    queries++;
+                }
+                return queries;
+            }));
+        }
+        start.countDown();
+        for (Future<?> writer : writers) {
+            writer.get(60, TimeUnit.SECONDS);
+        }
+        writing.set(false);
+        for (Future<Integer> reader : readers) {
+            assertTrue(reader.get(10, TimeUnit.SECONDS) > 0);
+        }
+        executor.shutdown();
+
+        for (int robotId = 0; robotId < WRITERS * ROBOTS_PER_WRITER; robotId++) {
+            for (int n : new int[]{1, 7, 100, 1_000_000}) {
+                assertEquals(reference.getAverageOfLastNReadings(robotId, n),
+                        store.getAverageOfLastNReadings(robotId, n), 1e-9);
+            }
+        }
+        Random random = new Random(0);
+        for (int i = 0; i < 500; i++) {
+            long t1 = random.nextInt(MESSAGES_PER_WRITER * 10);
+            long t2 = t1 + random.nextInt(50_000);
+            assertEquals(reference.getAverageBetweenTimestamps(t1, t2), store.getAverageBetweenTimestamps(t1, t2),
+                    1e-9);
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package io.github.giuliapais.structures;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PollutionDataStoreFootprintTest {
+    private static final int ROBOTS = 500;
+    private static final int MESSAGES_PER_ROBOT = 200;
+    private static final int READINGS_PER_MESSAGE = 8;
+
+    private static long usedMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        long used = Long.MAX_VALUE;
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            used = Math.min(used, runtime.totalMemory() - runtime.freeMemory());
+        }
+        return used;
+    }
+
+    /**
+     * Returns the heap retained by the object built by {@code factory}. The readings are generated on the fly
+     * (and dropped by the store under test if it doesn't keep them) so that only what the store retains is counted.
+     */
+    private static long retainedBy(Supplier<Object> factory) {
+        long before = usedMemory();
+        Object store = factory.get();
+        long after = usedMemory();
+        assertNotNull(store);
+        return after - before;
+    }
+
+    private static List<Double> readings(Random random) {
+        List<Double> readings = new ArrayList<>(READINGS_PER_MESSAGE);
+        for (int i = 0; i < READINGS_PER_MESSAGE; i++) {
+            readings.add(random.nextDouble() * 100);
+        }
+        return readings;
+    }
+
+    @Test
+    void testFootprintAgainstReference() {
+        long reference = retainedBy(() -> {
+            ReferencePollutionDataStore store = new ReferencePollutionDataStore();
+            Random random = new Random(42);
+            for (int m = 0; m < MESSAGES_PER_ROBOT; m++) {
+                for (int r = 0; r < ROBOTS; r++) {
+                    store.addData(r, 15_000L * m, readings(random));
+                }
+            }
+            return store;
+        });
+        long columnar = retainedBy(() -> {
+            PollutionDataStore store = new PollutionDataStore();
+            Random random = new Random(42);
+            for (int m = 0; m < MESSAGES_PER_ROBOT; m++) {
+                for (int r = 0; r < ROBOTS; r++) {
+                    store.addData(r, 15_000L * m, readings(random));
+                }
+            }
+            return store;
+        });
+        long readings = (long) ROBOTS * MESSAGES_PER_ROBOT * READINGS_PER_MESSAGE;
+        double ratio = (double) columnar / reference;
+        double bytesPerReading = (double) columnar / readings;
+        // A timestamp and a value take 16 bytes per reading, the reference needs at least a boxed Double (16 bytes)
+        // plus a reference to it, on top of the per-message tree node, key, record and list
+        assertTrue(ratio < 0.75, () -> String.format(
+                "Columnar store should retain less than 75%% of the reference store heap, retains %.0f%%",
+                ratio * 100));
+        // The readings, their running sums and the time index, with some slack for the chunks not full yet
+        assertTrue(bytesPerReading < 32, () -> String.format(
+                "Columnar store should retain less than 32 B/reading, retains %.1f B/reading", bytesPerReading));
+    }
+
+    @Test
+    void testSameResultsAsReference() {
+        ReferencePollutionDataStore reference = new ReferencePollutionDataStore();
+        PollutionDataStore store = new PollutionDataStore();
+        Random random = new Random(7);
+        for (int i = 0; i < 5_000; i++) {
+            int robotId = random.nextInt(10);
+            // Mostly in order, with late and repeated timestamps
+            long timestamp = i * 10L - random.nextInt(3) * random.nextInt(200);
+            List<Double> readings = new ArrayList<>();
+            int count = 1 + random.nextInt(READINGS_PER_MESSAGE);
+            for (int j = 0; j < count; j++) {
+                readings.add(random.nextDouble() * 50);
+            }
+            reference.addData(robotId, timestamp, readings);
+            store.addData(robotId, timestamp, readings);
+        }
+        for (int robotId = 0; robotId < 11; robotId++) {
+            for (int n : new int[]{1, 5, 13, 100, 100_000}) {
+                assertEquals(reference.getAverageOfLastNReadings(robotId, n),
+                        store.getAverageOfLastNReadings(robotId, n), 1e-9);
+            }
+        }
+        for (int i = 0; i < 200; i++) {
+            long t1 = random.nextInt(50_000);
+            long t2 = t1 + random.nextInt(10_000);
+            assertEquals(reference.getAverageBetweenTimestamps(t1, t2),
+                    store.getAverageBetweenTimestamps(t1, t2), 1e-9);
+        }
+    }
+}
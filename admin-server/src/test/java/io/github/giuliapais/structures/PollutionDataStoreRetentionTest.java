@@ -0,0 +1,164 @@
+package io.github.giuliapais.structures;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.stream.LongStream;
+
+import static io.github.giuliapais.structures.PollutionDataStore.HOUR;
+import static io.github.giuliapais.structures.PollutionDataStore.MINUTE;
+import static org.junit.jupiter.api.Assertions.*;
+
+class PollutionDataStoreRetentionTest {
+    private static final long PERIOD = 15_000;
+    // Start of the data, not aligned to minutes nor hours
+    private static final long START = 100 * HOUR + 7 * MINUTE + 3_000;
+    private static final long END = START + 6 * HOUR;
+
+    PollutionDataStore store;
+    ReferencePollutionDataStore reference;
+
+    private static List<Double> readingsAt(long timestamp, int robotId) {
+        double value = (timestamp / PERIOD) % 17 + robotId;
+        return List.of(value, value + 0.5);
+    }
+
+    /* Average of the readings of an index with timestamp in [t1, t2], or 0 if there are none */
+    private static double average(TimeIndex index, long t1, long t2) {
+        CompensatedSum sum = new CompensatedSum();
+        long count = index.collect(t1, t2, sum);
+        return count > 0 ? sum.value() / count : 0;
+    }
+
+    @BeforeEach
+    void setUp() {
+        store = new PollutionDataStore(new RetentionPolicy(10 * MINUTE, 2 * HOUR, 48 * HOUR));
+        reference = new ReferencePollutionDataStore();
+        for (long t = START; t <= END; t += PERIOD) {
+            for (int robotId = 1; robotId <= 3; robotId++) {
+                // Robots publish a few milliseconds apart
+                store.addData(robotId, t + robotId, readingsAt(t, robotId));
+                reference.addData(robotId, t + robotId, readingsAt(t, robotId));
+            }
+        }
+    }
+
+    @Test
+    void testRawReadingsExpire() {
+        // Only the last 10 minutes (plus at most the retention interval) of readings are kept
+        double average = store.getAverageOfLastNReadings(1, Integer.MAX_VALUE);
+        assertTrue(Math.abs(reference.getAverageOfLastNReadings(1, Integer.MAX_VALUE) - average) > 1e-9);
+        int kept = 2 * (int) (LongStream.iterate(END, t -> t > END - 10 * MINUTE, t -> t - PERIOD).count());
+        assertEquals(reference.getAverageOfLastNReadings(1, kept), store.getAverageOfLastNReadings(1, kept), 1e-9);
+        // Recent ranges are still exact
+        assertEquals(reference.getAverageBetweenTimestamps(END - 5 * MINUTE - 7, END - 1_234),
+                store.getAverageBetweenTimestamps(END - 5 * MINUTE - 7, END - 1_234), 1e-9);
+    }
+
+    @Test
+    void testRollupsAnswerAlignedRanges() {
+        // Ranges made of whole minutes are exact even after the raw readings expired
+        long from = Math.floorDiv(END, HOUR) * HOUR - HOUR + 13 * MINUTE;
+        long to = END - 3_000;
+        assertEquals(reference.getAverageBetweenTimestamps(from, to),
+                store.getAverageBetweenTimestamps(from, to), 1e-9);
+        // Older ranges are still exact when made of whole hours
+        from = Math.floorDiv(START, HOUR) * HOUR + HOUR;
+        to = from + 3 * HOUR - 1;
+        assertEquals(reference.getAverageBetweenTimestamps(from, to),
+                store.getAverageBetweenTimestamps(from, to), 1e-9);
+    }
+
+    @Test
+    void testExpiredEdgesAreApproximatedWithBuckets() {
+        // Raw readings have expired, so the edges of the range extend to the whole minutes containing them
+        long from = END - 50 * MINUTE;
+        long to = END - 20 * MINUTE;
+        long bucketFrom = Math.floorDiv(from, MINUTE) * MINUTE;
+        long bucketTo = Math.floorDiv(to, MINUTE) * MINUTE + MINUTE - 1;
+        assertEquals(reference.getAverageBetweenTimestamps(bucketFrom, bucketTo),
+                store.getAverageBetweenTimestamps(from + 20_000, to + 20_000), 1e-9);
+        // Beyond the retention of minute buckets, to the whole hours
+        from = END - 5 * HOUR - 10 * MINUTE;
+        to = END - 4 * HOUR - 10 * MINUTE;
+        bucketFrom = Math.floorDiv(from, HOUR) * HOUR;
+        bucketTo = Math.floorDiv(to, HOUR) * HOUR + HOUR - 1;
+        assertEquals(reference.getAverageBetweenTimestamps(bucketFrom, bucketTo),
+                store.getAverageBetweenTimestamps(from, to), 1e-9);
+    }
+
+    @Test
+    void testLateMessagesUpdateRollups() {
+        long late = END - 3 * HOUR;
+        store.addData(4, late, List.of(1000.0));
+        reference.addData(4, late, List.of(1000.0));
+        // Raw readings are not updated anymore, so the robot is unknown
+        assertEquals(-1, store.getAverageOfLastNReadings(4, 1));
+        long from = Math.floorDiv(late, HOUR) * HOUR;
+        assertEquals(reference.getAverageBetweenTimestamps(from, from + HOUR - 1),
+                store.getAverageBetweenTimestamps(from, from + HOUR - 1), 1e-9);
+    }
+
+    @Test
+    void testSilentRobotsAreRemoved() {
+        // Robot 5 published only long ago, robot 1 keeps publishing
+        store.addData(5, END - 5 * MINUTE, List.of(3.0));
+        assertEquals(3.0, store.getAverageOfLastNReadings(5, 1));
+        store.addData(1, END + 10 * MINUTE, readingsAt(END, 1));
+        assertEquals(-1, store.getAverageOfLastNReadings(5, 1));
+        assertNotEquals(-1, store.getAverageOfLastNReadings(1, 1));
+        // The robot can publish again
+        store.addData(5, END + 10 * MINUTE, List.of(4.0));
+        assertEquals(4.0, store.getAverageOfLastNReadings(5, 1));
+    }
+
+    @Test
+    void testUnstripedIndexWithExtremesIsRestored() {
+        // Index saved up to version 2: a single stripe, then the minimum and maximum of each bucket
+        ByteBuffer buffer = ByteBuffer.allocate(256);
+        buffer.putLong(MINUTE).putLong(0).putLong(Long.MIN_VALUE);
+        buffer.putInt(2).putLong(MINUTE).putLong(3 * MINUTE);
+        buffer.putInt(2).putLong(3).putLong(4);
+        buffer.putDouble(0).putDouble(0);
+        buffer.putInt(2).putDouble(11.0).putDouble(9.0);
+        buffer.putInt(2).putDouble(0).putDouble(0);
+        buffer.putInt(2).putDouble(1.0).putDouble(-2.0);
+        buffer.putInt(2).putDouble(7.0).putDouble(-2.0);
+        buffer.flip();
+
+        TimeIndex restored = new TimeIndex(MINUTE);
+        restored.readFrom(WindowedBuffer.wrap(buffer), PollutionSnapshot.EXTREMES_VERSION);
+        assertFalse(buffer.hasRemaining());
+        assertEquals(11.0 / 3, average(restored, MINUTE, 2 * MINUTE));
+        // A robot replaces a restored reading from its own stripe
+        restored.add(5, MINUTE + 10, new CompensatedSum(-3.0, 0), -1);
+        assertEquals(4.0, average(restored, MINUTE, 2 * MINUTE));
+        assertEquals(6.0 / 3, average(restored, 0, 3 * MINUTE));
+        restored.removeBefore(2 * MINUTE);
+        assertEquals(-2.0, average(restored, 0, 3 * MINUTE));
+    }
+
+    @Test
+    void testStripedIndexRoundTrip() {
+        TimeIndex minutes = new TimeIndex(MINUTE);
+        for (int robotId = 0; robotId < 2 * TimeIndex.STRIPES; robotId++) {
+            minutes.add(robotId, robotId * MINUTE, new CompensatedSum(robotId, 0), 1);
+        }
+        minutes.removeBefore(3 * MINUTE);
+        ByteBuffer buffer = ByteBuffer.allocate((int) minutes.serializedSize());
+        minutes.writeTo(WindowedBuffer.wrap(buffer));
+        assertFalse(buffer.hasRemaining());
+        buffer.flip();
+
+        TimeIndex restored = new TimeIndex(MINUTE);
+        restored.readFrom(WindowedBuffer.wrap(buffer), PollutionSnapshot.VERSION);
+        assertEquals(3 * MINUTE, restored.retainedFrom());
+        for (long t = 0; t < 2 * TimeIndex.STRIPES; t++) {
+            assertEquals(average(minutes, t * MINUTE, (t + 4) * MINUTE),
+                    average(restored, t * MINUTE, (t + 4) * MINUTE));
+        }
+        assertEquals(2 * TimeIndex.STRIPES - 3, restored.collect(0, Long.MAX_VALUE, new CompensatedSum()));
+    }
+}
@@ -1,5 +1,6 @@
 package io.github.giuliapais.structures;
 
+import io.github.giuliapais.commons.models.SensorType;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
@@ -86,4 +87,55 @@ class PollutionDataStoreTest {
         avg = pollutionDataStore.getAverageBetweenTimestamps(900, 3100);
         assertEquals(expected, avg);
     }
-}
\ No newline at end of file
+
+    @Test
+    void testLateAndRepeatedMessages() {
+        populateDataStore();
+        // Late message for robot 1 and replacement of robot 2 readings at 2000
+        pollutionDataStore.addData(1, 1500, List.of(5.0, 6.0));
+        pollutionDataStore.addData(2, 2000, List.of(4.0));
+
+        double expected = Stream.of(2.9, 2.8, 2.7, 2.6, 2.5, 3.1, 2.9)
+                .mapToDouble(Double::doubleValue).average().orElse(0);
+        assertEquals(expected, pollutionDataStore.getAverageOfLastNReadings(1, 7));
+        expected = Stream.of(2.6, 2.5, 1.9, 2.0, 2.1, 4.0, 1.8)
+                .mapToDouble(Double::doubleValue).average().orElse(0);
+        assertEquals(expected, pollutionDataStore.getAverageOfLastNReadings(2, 7));
+
+        expected = Stream.of(5.0, 6.0,
+                        3.0, 2.8, 2.5, 3.1, 2.9,
+                        4.0)
+                .mapToDouble(Double::doubleValue).average().orElse(0);
+        assertEquals(expected, pollutionDataStore.getAverageBetweenTimestamps(1500, 2000));
+    }
+
+    @Test
+    void testLongHistory() {
+        List<Double> readings = List.of(12.3, 45.6, 78.9, 0.1);
+        for (int i = 0; i < 100_000; i++) {
+            pollutionDataStore.addData(1, i, readings);
+        }
+        double expected = Stream.of(78.9, 0.1).mapToDouble(Double::doubleValue).average().orElse(0);
+        assertEquals(expected, pollutionDataStore.getAverageOfLastNReadings(1, 2));
+        expected = Stream.of(12.3, 45.6, 78.9, 0.1, 12.3, 45.6, 78.9, 0.1)
+                .mapToDouble(Double::doubleValue).average().orElse(0);
+        assertEquals(expected, pollutionDataStore.getAverageBetweenTimestamps(99_998, 99_999));
+    }
+
+    @Test
+    void testSensorTypes() {
+        populateDataStore();
+        pollutionDataStore.addData(1, 2000, SensorType.NO2, new double[]{20.0, 22.0}, 2);
+        pollutionDataStore.addData(3, 2500, SensorType.TEMPERATURE, new double[]{18.5}, 1);
+        PollutionDataStore no2 = pollutionDataStore.sensor(SensorType.NO2);
+        assertSame(pollutionDataStore, pollutionDataStore.sensor(SensorType.PM10));
+        assertEquals(21.0, no2.getAverageOfLastNReadings(1, 5));
+        assertEquals(21.0, no2.getAverageBetweenTimestamps(0, 5000));
+        assertEquals(-1, no2.getAverageOfLastNReadings(3, 5));
+        assertEquals(18.5, pollutionDataStore.sensor(SensorType.TEMPERATURE).getAverageOfLastNReadings(3, 1));
+        // The readings of the other sensors don't change the PM10 averages
+        assertEquals(-1, pollutionDataStore.getAverageOfLastNReadings(3, 5));
+        assertEquals(2.5, pollutionDataStore.getAverageOfLastNReadings(1, 1));
+        assertThrows(IllegalArgumentException.class, () -> no2.sensor(SensorType.TEMPERATURE));
+    }
+}
@@ -0,0 +1,166 @@
+package io.github.giuliapais.structures;
+
+import io.github.giuliapais.commons.models.SensorType;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+
+import static io.github.giuliapais.structures.PollutionDataStore.HOUR;
+import static io.github.giuliapais.structures.PollutionDataStore.MINUTE;
+import static org.junit.jupiter.api.Assertions.*;
+
+class PollutionSnapshotTest {
+    private static final RetentionPolicy RETENTION = new RetentionPolicy(10 * MINUTE, 2 * HOUR, 48 * HOUR);
+
+    @TempDir
+    Path directory;
+
+    private static void populate(PollutionDataStore store, long from, long to) {
+        Random random = new Random(from);
+        double[] readings = new double[8];
+        for (long t = from; t < to; t += 1_000) {
+            int length = 1 + random.nextInt(readings.length);
+            for (int i = 0; i < length; i++) {
+                readings[i] = random.nextDouble() * 100;
+            }
+            store.addData(random.nextInt(20), t, readings, length);
+            if (t % 5_000 == 0) {
+                store.addData(random.nextInt(20), t, SensorType.NO2, readings, 1);
+            }
+        }
+    }
+
+    private static void assertSameContent(PollutionDataStore expected, PollutionDataStore actual, long to) {
+        for (SensorType type : SensorType.values()) {
+            assertSameSensorContent(expected.sensor(type), actual.sensor(type), to);
+        }
+    }
+
+    private static void assertSameSensorContent(PollutionDataStore expected, PollutionDataStore actual, long to) {
+        for (int robotId = 0; robotId < 21; robotId++) {
+            for (int n : new int[]{1, 10, 1_000, Integer.MAX_VALUE}) {
+                assertEquals(expected.getAverageOfLastNReadings(robotId, n),
+                        actual.getAverageOfLastNReadings(robotId, n));
+            }
+        }
+        for (long t1 = 0; t1 < to; t1 += 7 * MINUTE + 13) {
+            assertEquals(expected.getAverageBetweenTimestamps(t1, to), actual.getAverageBetweenTimestamps(t1, to));
+            assertEquals(expected.getAverageBetweenTimestamps(0, t1), actual.getAverageBetweenTimestamps(0, t1));
+        }
+    }
+
+    @Test
+    void testRoundTrip() throws IOException {
+        PollutionDataStore store = new PollutionDataStore(RETENTION);
+        populate(store, 0, 3 * HOUR);
+        Path file = directory.resolve("snapshot");
+        PollutionSnapshot.save(store, file, 1234);
+
+        PollutionDataStore restored = new PollutionDataStore(RETENTION);
+        assertEquals(1234, PollutionSnapshot.load(restored, file));
+        assertSameContent(store, restored, 3 * HOUR);
+
+        // The restored store keeps ingesting and enforcing retention as the original one
+        populate(store, 3 * HOUR, 4 * HOUR);
+        populate(restored, 3 * HOUR, 4 * HOUR);
+        assertSameContent(store, restored, 4 * HOUR);
+    }
+
+    @Test
+    void testRoundTripInWindows() throws IOException {
+        // Windows much smaller than the columns, and not a multiple of the size of the values
+        PollutionDataStore store = new PollutionDataStore(RETENTION);
+        populate(store, 0, 3 * HOUR);
+        Path file = directory.resolve("snapshot");
+        PollutionSnapshot.save(store, file, 1234, 1_000);
+
+        PollutionDataStore restored = new PollutionDataStore(RETENTION);
+        assertEquals(1234, PollutionSnapshot.load(restored, file, 4_099));
+        assertSameContent(store, restored, 3 * HOUR);
+        // The file is the same as the one saved in a single window
+        Path single = directory.resolve("single");
+        PollutionSnapshot.save(store, single, 1234);
+        assertEquals(-1, Files.mismatch(file, single));
+    }
+
+    @Test
+    void testCopyIsSavedWhileIngesting() throws IOException {
+        PollutionDataStore store = new PollutionDataStore(RETENTION);
+        populate(store, 0, 2 * HOUR);
+        PollutionDataStore copy = store.copy();
+        PollutionDataStore expected = new PollutionDataStore(RETENTION);
+        populate(expected, 0, 2 * HOUR);
+        // Changes to the store after the copy are not in the snapshot
+        populate(store, 2 * HOUR, 3 * HOUR);
+        Path file = directory.resolve("snapshot");
+        PollutionSnapshot.save(copy, file, 0);
+
+        PollutionDataStore restored = new PollutionDataStore(RETENTION);
+        PollutionSnapshot.load(restored, file);
+        assertSameContent(expected, restored, 2 * HOUR);
+    }
+
+    @Test
+    void testMissingSnapshot() throws IOException {
+        assertEquals(-1, PollutionSnapshot.load(new PollutionDataStore(), directory.resolve("snapshot")));
+    }
+
+    @Test
+    void testCorruptedSnapshotIsRejected() throws IOException {
+        PollutionDataStore store = new PollutionDataStore();
+        populate(store, 0, MINUTE);
+        Path file = directory.resolve("snapshot");
+        PollutionSnapshot.save(store, file, 0);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(Files.size(file) - 1);
+        }
+        assertThrows(IOException.class, () -> PollutionSnapshot.load(new PollutionDataStore(), file));
+    }
+
+    @Test
+    void testRecoveryFromSnapshotAndLog() throws IOException {
+        // Data is logged and applied, a snapshot is taken in the middle and the server crashes
+        PollutionDataStore store = new PollutionDataStore(RETENTION);
+        Path snapshot = directory.resolve("snapshot");
+        Path wal = directory.resolve("wal");
+        WriteAheadLog log = WriteAheadLog.open(wal, -1, (robotId, timestamp, type, readings, length) -> fail());
+        Random random = new Random(0);
+        double[] readings = new double[4];
+        for (long t = 0; t < HOUR; t += 500) {
+            int robotId = random.nextInt(10);
+            for (int i = 0; i < readings.length; i++) {
+                readings[i] = random.nextDouble() * 100;
+            }
+            // Late and repeated messages as well
+            long timestamp = t - random.nextInt(2) * random.nextInt(5_000);
+            log.append(robotId, timestamp, readings, readings.length);
+            store.addData(robotId, timestamp, readings, readings.length);
+            if (t == HOUR / 2) {
+                log.flush();
+                PollutionSnapshot.save(store, snapshot, log.lastSequence());
+            }
+        }
+        log.flush();
+
+        PollutionDataStore recovered = new PollutionDataStore(RETENTION);
+        long sequence = PollutionSnapshot.load(recovered, snapshot);
+        WriteAheadLog.open(wal, sequence, recovered::addData).close();
+        assertSameContent(store, recovered, HOUR);
+
+        // Replaying the whole log on top of the snapshot (e.g. crash before the sequence was recorded)
+        // gives the same raw readings, as repeated messages replace the previous ones
+        PollutionDataStore replayed = new PollutionDataStore(RETENTION);
+        PollutionSnapshot.load(replayed, snapshot);
+        WriteAheadLog.open(wal, -1, replayed::addData).close();
+        for (int robotId = 0; robotId < 10; robotId++) {
+            assertEquals(store.getAverageOfLastNReadings(robotId, 100),
+                    replayed.getAverageOfLastNReadings(robotId, 100), 1e-9);
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package io.github.giuliapais.structures;
+
+import io.github.giuliapais.api.models.RobotChange;
+import io.github.giuliapais.commons.models.MapPosition;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RobotChangeLogTest {
+
+    @Test
+    void testSequenceNumbers() {
+        RobotChangeLog log = new RobotChangeLog(8);
+        assertEquals(0, log.lastSequence());
+        assertEquals(1, log.append(List.of(RobotChange.removed(1))));
+        assertEquals(3, log.append(List.of(RobotChange.removed(2), RobotChange.moved(3, new MapPosition(1, 0, 0)))));
+
+        List<RobotChange> changes = log.changesAfter(1);
+        assertEquals(2, changes.size());
+        assertEquals(2, changes.get(0).getSequence());
+        assertEquals(2, changes.get(0).getRobotId());
+        assertEquals(RobotChange.Type.MOVED, changes.get(1).getType());
+        assertEquals(3, changes.get(1).getSequence());
+        assertTrue(log.changesAfter(3).isEmpty());
+        // Sequence numbers that the log never assigned
+        assertNull(log.changesAfter(4));
+        assertNull(log.changesAfter(-1));
+    }
+
+    @Test
+    void testOldChangesAreDiscarded() {
+        RobotChangeLog log = new RobotChangeLog(4);
+        for (int robotId = 1; robotId <= 10; robotId++) {
+            log.append(List.of(RobotChange.removed(robotId)));
+        }
+        assertNull(log.changesAfter(5));
+        List<RobotChange> changes = log.changesAfter(6);
+        assertEquals(4, changes.size());
+        for (int i = 0; i < 4; i++) {
+            assertEquals(7 + i, changes.get(i).getSequence());
+            assertEquals(7 + i, changes.get(i).getRobotId());
+        }
+    }
+
+    @Test
+    void testAwaitChanges() throws InterruptedException {
+        RobotChangeLog log = new RobotChangeLog(4);
+        assertTrue(log.awaitChangesAfter(0, 10).isEmpty());
+
+        AtomicReference<List<RobotChange>> received = new AtomicReference<>();
+        Thread reader = new Thread(() -> {
+            try {
+                received.set(log.awaitChangesAfter(0, 60_000));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        reader.start();
+        log.append(List.of(RobotChange.removed(1)));
+        reader.join();
+        assertEquals(1, received.get().size());
+        assertEquals(1, received.get().get(0).getSequence());
+    }
+}
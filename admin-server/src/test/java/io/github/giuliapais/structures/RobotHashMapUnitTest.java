@@ -77,4 +77,45 @@ class RobotHashMapUnitTest {
         }
     }
 
-}
\ No newline at end of file
+    @Nested
+    class SnapshotTests {
+
+        @Test
+        @DisplayName("Snapshots should not change after the registry is modified")
+        void snapshotIsolation() throws IdPresentException {
+            robotHashMap.put(new Robot(1, "localhost", (short) 9001));
+            RobotHashMap.Snapshot before = robotHashMap.snapshot();
+            robotHashMap.put(new Robot(2, "localhost", (short) 9002));
+            robotHashMap.update(1, new Robot(1, "127.0.0.1", (short) 0));
+            robotHashMap.remove(2);
+
+            assertEquals(1, before.robots().size());
+            assertEquals(new Robot(1, "localhost", (short) 9001), before.robots().get(1));
+            RobotHashMap.Snapshot after = robotHashMap.snapshot();
+            assertEquals(1, after.robots().size());
+            assertEquals(new Robot(1, "127.0.0.1", (short) 9001), after.robots().get(1));
+        }
+
+        @Test
+        @DisplayName("Every change should increment the version")
+        void versionIncrements() throws IdPresentException {
+            assertEquals(0, robotHashMap.version());
+            assertEquals(1, robotHashMap.put(new Robot(1, "localhost", (short) 9001)).version());
+            assertFalse(robotHashMap.update(1, new Robot(1, "localhost", (short) 9001)));
+            assertFalse(robotHashMap.remove(2));
+            assertEquals(1, robotHashMap.version());
+            assertTrue(robotHashMap.remove(1));
+            assertEquals(2, robotHashMap.version());
+        }
+
+        @Test
+        @DisplayName("Stored robots should not be affected by changes to the added object")
+        void putCopiesRobot() throws IdPresentException {
+            Robot robot = new Robot(1, "localhost", (short) 9001);
+            robotHashMap.put(robot);
+            robot.setPort((short) 9999);
+            assertEquals(9001, robotHashMap.snapshot().robots().get(1).getPort());
+        }
+    }
+
+}
@@ -0,0 +1,150 @@
+package io.github.giuliapais.structures;
+
+import io.github.giuliapais.commons.models.SensorType;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WriteAheadLogTest {
+    @TempDir
+    Path directory;
+
+    private record Record(int robotId, long timestamp, SensorType type, List<Double> readings) {
+        Record(int robotId, long timestamp, List<Double> readings) {
+            this(robotId, timestamp, SensorType.PM10, readings);
+        }
+    }
+
+    private List<Record> replay(long afterSequence) throws IOException {
+        List<Record> records = new ArrayList<>();
+        WriteAheadLog log = WriteAheadLog.open(directory, afterSequence,
+                (robotId, timestamp, type, readings, length) -> records.add(new Record(robotId, timestamp, type,
+                        Arrays.stream(readings, 0, length).boxed().toList())));
+        log.close();
+        return records;
+    }
+
+    private Path lastSegment() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.sorted().reduce((first, second) -> second).orElseThrow();
+        }
+    }
+
+    @Test
+    void testReplayFlushedRecords() throws IOException {
+        WriteAheadLog log = WriteAheadLog.open(directory, -1, (robotId, timestamp, type, readings, length) -> fail());
+        assertEquals(0, log.append(1, 1000, new double[]{1.0, 2.0, 99}, 2));
+        assertEquals(1, log.append(2, 1500, new double[]{3.5}, 1));
+        assertEquals(2, log.append(1, 2000, new double[]{}, 0));
+        log.flush();
+        // Crash: the log is abandoned without closing it
+
+        assertEquals(List.of(
+                new Record(1, 1000, List.of(1.0, 2.0)),
+                new Record(2, 1500, List.of(3.5)),
+                new Record(1, 2000, List.of())
+        ), replay(-1));
+        assertEquals(List.of(new Record(1, 2000, List.of())), replay(1));
+    }
+
+    @Test
+    void testSensorTypes() throws IOException {
+        WriteAheadLog log = WriteAheadLog.open(directory, -1, (robotId, timestamp, type, readings, length) -> fail());
+        log.append(1, 1000, SensorType.NO2, new double[]{20.5}, 1);
+        log.append(1, 1000, new double[]{41.0, 42.0}, 2);
+        log.append(2, 1500, SensorType.TEMPERATURE, new double[]{18.0, 18.5}, 2);
+        log.close();
+
+        assertEquals(List.of(
+                new Record(1, 1000, SensorType.NO2, List.of(20.5)),
+                new Record(1, 1000, SensorType.PM10, List.of(41.0, 42.0)),
+                new Record(2, 1500, SensorType.TEMPERATURE, List.of(18.0, 18.5))
+        ), replay(-1));
+    }
+
+    @Test
+    void testUnflushedRecordsAreLost() throws IOException {
+        WriteAheadLog log = WriteAheadLog.open(directory, -1, (robotId, timestamp, type, readings, length) -> fail());
+        log.append(1, 1000, new double[]{1.0}, 1);
+        log.flush();
+        log.append(1, 2000, new double[]{2.0}, 1);
+
+        assertEquals(List.of(new Record(1, 1000, List.of(1.0))), replay(-1));
+    }
+
+    @Test
+    void testTornRecordIsTruncated() throws IOException {
+        WriteAheadLog log = WriteAheadLog.open(directory, -1, (robotId, timestamp, type, readings, length) -> fail());
+        log.append(1, 1000, new double[]{1.0}, 1);
+        log.append(1, 2000, new double[]{2.0, 3.0}, 2);
+        log.flush();
+        Path segment = lastSegment();
+        long size = Files.size(segment);
+        // Crash in the middle of writing the second record
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.truncate(size - 5);
+        }
+
+        List<Record> records = new ArrayList<>();
+        log = WriteAheadLog.open(directory, -1, (robotId, timestamp, type, readings, length) ->
+                records.add(new Record(robotId, timestamp, Arrays.stream(readings, 0, length).boxed().toList())));
+        assertEquals(List.of(new Record(1, 1000, List.of(1.0))), records);
+        // The torn record is replaced by the next one
+        assertEquals(1, log.append(1, 3000, new double[]{4.0}, 1));
+        log.close();
+        assertEquals(List.of(new Record(1, 1000, List.of(1.0)), new Record(1, 3000, List.of(4.0))), replay(-1));
+    }
+
+    @Test
+    void testCorruptedRecordIsDiscarded() throws IOException {
+        WriteAheadLog log = WriteAheadLog.open(directory, -1, (robotId, timestamp, type, readings, length) -> fail());
+        log.append(1, 1000, new double[]{1.0}, 1);
+        log.append(1, 2000, new double[]{2.0}, 1);
+        log.close();
+        Path segment = lastSegment();
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[]{42}), Files.size(segment) - 1);
+        }
+
+        assertEquals(List.of(new Record(1, 1000, List.of(1.0))), replay(-1));
+    }
+
+    @Test
+    void testDeleteObsoleteSegments() throws IOException {
+        WriteAheadLog log = WriteAheadLog.open(directory, -1, (robotId, timestamp, type, readings, length) -> fail());
+        log.append(1, 1000, new double[]{1.0}, 1);
+        log.close();
+        log = WriteAheadLog.open(directory, -1, (robotId, timestamp, type, readings, length) -> {
+        });
+        log.append(1, 2000, new double[]{2.0}, 1);
+        log.close();
+        log = WriteAheadLog.open(directory, -1, (robotId, timestamp, type, readings, length) -> {
+        });
+        assertEquals(1, log.lastSequence());
+        log.deleteUpTo(0);
+        log.close();
+
+        assertEquals(List.of(new Record(1, 2000, List.of(2.0))), replay(-1));
+        // Sequence numbers continue after the ones included in a snapshot, even if the log was deleted
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : files.toList()) {
+                Files.delete(file);
+            }
+        }
+        log = WriteAheadLog.open(directory, 41, (robotId, timestamp, type, readings, length) -> fail());
+        assertEquals(42, log.append(1, 3000, new double[]{3.0}, 1));
+        log.close();
+    }
+}
@@ -0,0 +1,125 @@
+package io.github.giuliapais.benchmarks;
+
+import io.github.giuliapais.commons.DistrictBalancer;
+import io.github.giuliapais.commons.models.MapPosition;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Operations of {@link DistrictBalancer} on a city with the given number of robots. The city of each scenario is
+ * built once per trial and copied into the state of the scenario at the start of each iteration, so the robots
+ * added by {@link #addRobot(Registration)} don't pile up. Rebalancing only plans the moves, so every invocation
+ * of the other scenarios plans the same ones.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class DistrictBalancerBenchmark {
+    // Multiples of the number of districts, so that the city starts balanced
+    @Param({"12", "100", "1000", "100000"})
+    public int robots;
+
+    private HashMap<Integer, MapPosition> balanced;
+    private HashMap<Integer, MapPosition> unbalanced;
+    private HashMap<Integer, MapPosition> skewed;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        DistrictBalancer city = new DistrictBalancer();
+        for (int robotId = 1; robotId <= robots; robotId++) {
+            city.addRobot(robotId);
+        }
+        balanced = city.getRobotPositions();
+        // Two robots more in district 1 than in the others, as after two robots moved there
+        city.addRobot(robots + 1, new MapPosition(1, 0, 0));
+        city.addRobot(robots + 2, new MapPosition(1, 1, 1));
+        unbalanced = city.getRobotPositions();
+        // All the robots in district 1, so that three quarters of them have to move
+        skewed = new HashMap<>();
+        for (int robotId = 1; robotId <= robots; robotId++) {
+            skewed.put(robotId, new MapPosition(1, 0, 0));
+        }
+    }
+
+    private static DistrictBalancer copyOf(HashMap<Integer, MapPosition> city) {
+        DistrictBalancer balancer = new DistrictBalancer();
+        balancer.upsert(city);
+        return balancer;
+    }
+
+    @State(Scope.Thread)
+    public static class Balanced {
+        DistrictBalancer balancer;
+
+        @Setup(Level.Iteration)
+        public void copy(DistrictBalancerBenchmark cities) {
+            balancer = copyOf(cities.balanced);
+        }
+    }
+
+    /* The balanced city, where new robots register one after the other */
+    @State(Scope.Thread)
+    public static class Registration {
+        DistrictBalancer balancer;
+        int nextId;
+
+        @Setup(Level.Iteration)
+        public void copy(DistrictBalancerBenchmark cities) {
+            balancer = copyOf(cities.balanced);
+            nextId = cities.robots + 1;
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Unbalanced {
+        DistrictBalancer balancer;
+
+        @Setup(Level.Iteration)
+        public void copy(DistrictBalancerBenchmark cities) {
+            balancer = copyOf(cities.unbalanced);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Skewed {
+        DistrictBalancer balancer;
+
+        @Setup(Level.Iteration)
+        public void copy(DistrictBalancerBenchmark cities) {
+            balancer = copyOf(cities.skewed);
+        }
+    }
+
+    /**
+     * Registration of a new robot by the server.
+     */
+    @Benchmark
+    public MapPosition addRobot(Registration city) {
+        int robotId = city.nextId++;
+        city.balancer.addRobot(robotId);
+        return city.balancer.getRobotPosition(robotId);
+    }
+
+    @Benchmark
+    public HashMap<Integer, Integer> rebalance(Unbalanced city) {
+        return city.balancer.rebalance();
+    }
+
+    @Benchmark
+    public HashMap<Integer, Integer> rebalanceSkewed(Skewed city) {
+        return city.balancer.rebalance();
+    }
+
+    @Benchmark
+    public HashMap<Integer, Integer> rebalanceBalanced(Balanced city) {
+        return city.balancer.rebalance();
+    }
+
+    @Benchmark
+    public HashMap<Integer, List<Integer>> getSnapshot(Balanced city) {
+        return city.balancer.getSnapshot();
+    }
+}
@@ -0,0 +1,67 @@
+package io.github.giuliapais.benchmarks;
+
+import io.github.giuliapais.commons.DistrictLoadHeap;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Choice of the least crowded district for a joining robot, followed by a robot leaving a random district, on maps
+ * with many districts: {@link DistrictLoadHeap} against the scan of boxed counters that
+ * {@link io.github.giuliapais.commons.DistrictBalancer} used before.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+public class DistrictLoadHeapBenchmark {
+    @Param({"4", "64", "1024", "16384"})
+    public int districts;
+
+    private DistrictLoadHeap heap;
+    private HashMap<Integer, Integer> counters;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        heap = new DistrictLoadHeap(districts);
+        counters = new HashMap<>(districts);
+        for (int district = 1; district <= districts; district++) {
+            counters.put(district, 0);
+        }
+        // Ten robots per district, so that leaving robots never find an empty district
+        for (int i = 0; i < 10 * districts; i++) {
+            heap.increment(heap.leastLoaded());
+            int lessCrowded = scan();
+            counters.replace(lessCrowded, counters.get(lessCrowded) + 1);
+        }
+    }
+
+    private int scan() {
+        return counters.entrySet()
+                .stream()
+                .min(Comparator.comparingInt(Map.Entry::getValue))
+                .map(Map.Entry::getKey)
+                .orElse(1);
+    }
+
+    @Benchmark
+    public int heap() {
+        int chosen = heap.leastLoaded();
+        heap.increment(chosen);
+        int leaving = ThreadLocalRandom.current().nextInt(1, districts + 1);
+        heap.decrement(leaving);
+        return chosen;
+    }
+
+    @Benchmark
+    public int scanCounters() {
+        int chosen = scan();
+        counters.replace(chosen, counters.get(chosen) + 1);
+        int leaving = ThreadLocalRandom.current().nextInt(1, districts + 1);
+        counters.replace(leaving, counters.get(leaving) - 1);
+        return chosen;
+    }
+}
@@ -0,0 +1,106 @@
+package io.github.giuliapais.benchmarks;
+
+import io.github.giuliapais.adminserver.AdminHttpServer;
+import io.github.giuliapais.adminserver.AdminServerConfig;
+import io.github.giuliapais.api.models.Robot;
+import io.github.giuliapais.api.services.PollutionDataService;
+import io.github.giuliapais.api.services.RobotService;
+import io.github.giuliapais.exceptions.IdPresentException;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of the REST API under load: 256 clients send requests to {@code GET /robots} and
+ * {@code GET /pollution/{id}} over keep-alive connections, with each execution mode of the server. The sample time
+ * mode reports the percentiles of the response times (p0.50, p0.99...).
+ * <p>
+ * Clients and server share the machine, so the results only compare the modes with each other. The virtual mode
+ * falls back to the pool mode on Java versions without virtual threads.
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 10)
+@Threads(256)
+@State(Scope.Benchmark)
+public class HttpServerLatencyBenchmark {
+    private static final int ROBOTS = 1_000;
+    private static final int READINGS = 100;
+
+    @Param({"grizzly", "pool", "virtual"})
+    public String execution;
+
+    private AdminHttpServer server;
+    private HttpClient client;
+    private HttpRequest robotsRequest;
+    private URI pollutionUri;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException, IdPresentException {
+        // The resources use the service singletons, which must not load or persist the data of a real server
+        System.setProperty(AdminServerConfig.DATA_DIRECTORY, "");
+        List<Robot> fleet = new ArrayList<>(ROBOTS);
+        for (int robotId = 1; robotId <= ROBOTS; robotId++) {
+            fleet.add(new Robot(robotId, "localhost", (short) (9000 + robotId % 1000)));
+        }
+        RobotService.getInstance().addRobots(fleet);
+        PollutionDataService pollutionDataService = PollutionDataService.getInstance();
+        double[] averages = new double[8];
+        long timestamp = System.currentTimeMillis() - READINGS * 15_000L;
+        for (int reading = 0; reading < READINGS; reading++, timestamp += 15_000) {
+            for (int robotId = 1; robotId <= ROBOTS; robotId++) {
+                for (int i = 0; i < averages.length; i++) {
+                    averages[i] = ThreadLocalRandom.current().nextDouble(100);
+                }
+                pollutionDataService.addSensorData(robotId, timestamp, averages, averages.length);
+            }
+        }
+
+        URI uri = URI.create("http://localhost:" + freePort() + "/api/");
+        server = AdminHttpServer.start(new AdminHttpServer.Settings(uri,
+                AdminHttpServer.ExecutionMode.parse(execution), 64, 10_000, 0, 30, 256));
+        client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        robotsRequest = HttpRequest.newBuilder(uri.resolve("robots")).GET().build();
+        pollutionUri = uri.resolve("pollution/");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        server.shutdownNow();
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    @Benchmark
+    public int robots() throws IOException, InterruptedException {
+        return send(robotsRequest);
+    }
+
+    @Benchmark
+    public int pollution() throws IOException, InterruptedException {
+        int robotId = ThreadLocalRandom.current().nextInt(1, ROBOTS + 1);
+        return send(HttpRequest.newBuilder(pollutionUri.resolve(robotId + "?n=50")).GET().build());
+    }
+
+    private int send(HttpRequest request) throws IOException, InterruptedException {
+        HttpResponse<byte[]> response = client.send(request, HttpResponse.BodyHandlers.ofByteArray());
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException("Unexpected status " + response.statusCode() + " for " + request.uri());
+        }
+        return response.body().length;
+    }
+}
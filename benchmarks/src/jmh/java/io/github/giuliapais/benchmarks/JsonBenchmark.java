@@ -0,0 +1,60 @@
+package io.github.giuliapais.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.github.giuliapais.commons.models.MapPosition;
+import io.github.giuliapais.commons.models.RobotInfo;
+import io.github.giuliapais.commons.models.SensorAverages;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JSON (de)serialization of the messages exchanged by robots and server, with a shared {@link ObjectMapper} and
+ * with a new one per message (as some clients still do).
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Thread)
+public class JsonBenchmark {
+    private final ObjectMapper mapper = new ObjectMapper();
+    private SensorAverages sensorAverages;
+    private RobotInfo robotInfo;
+    private byte[] sensorAveragesJson;
+    private byte[] robotInfoJson;
+
+    @Setup
+    public void setUp() throws IOException {
+        sensorAverages = new SensorAverages(42, System.currentTimeMillis(),
+                List.of(41.2, 43.9, 44.1, 39.8, 40.5, 42.7, 45.0, 41.1));
+        robotInfo = new RobotInfo(42, "192.168.1.42", 9042, new MapPosition(3, 7, 8));
+        sensorAveragesJson = mapper.writeValueAsBytes(sensorAverages);
+        robotInfoJson = mapper.writeValueAsBytes(robotInfo);
+    }
+
+    @Benchmark
+    public byte[] writeSensorAverages() throws IOException {
+        return mapper.writeValueAsBytes(sensorAverages);
+    }
+
+    @Benchmark
+    public SensorAverages readSensorAverages() throws IOException {
+        return mapper.readValue(sensorAveragesJson, SensorAverages.class);
+    }
+
+    @Benchmark
+    public byte[] writeSensorAveragesNewMapper() throws IOException {
+        return new ObjectMapper().writeValueAsBytes(sensorAverages);
+    }
+
+    @Benchmark
+    public byte[] writeRobotInfo() throws IOException {
+        return mapper.writeValueAsBytes(robotInfo);
+    }
+
+    @Benchmark
+    public RobotInfo readRobotInfo() throws IOException {
+        return mapper.readValue(robotInfoJson, RobotInfo.class);
+    }
+}
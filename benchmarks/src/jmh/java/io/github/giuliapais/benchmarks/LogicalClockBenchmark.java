@@ -0,0 +1,49 @@
+package io.github.giuliapais.benchmarks;
+
+import io.github.giuliapais.robotsnetwork.comm.p2p.LogicalClock;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The Lamport clock of a robot under contention: the threads sending requests increment it, while the threads
+ * handling the requests of the other robots adjust it to the received timestamps.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Group)
+public class LogicalClockBenchmark {
+    private LogicalClock clock;
+
+    @Setup
+    public void setUp() {
+        clock = new LogicalClock(1);
+    }
+
+    @Benchmark
+    @Group("uncontended")
+    public long incrementAndGet() {
+        return clock.incrementAndGet();
+    }
+
+    @Benchmark
+    @Group("contended")
+    @GroupThreads(2)
+    public long sendRequest() {
+        return clock.incrementAndGet();
+    }
+
+    /* Clock of the robot sending the requests handled by a thread */
+    @State(Scope.Thread)
+    public static class Sender {
+        long clock;
+    }
+
+    @Benchmark
+    @Group("contended")
+    @GroupThreads(2)
+    public void receiveRequest(Sender sender) {
+        sender.clock += 2;
+        clock.compareAndAdjust(sender.clock);
+    }
+}
@@ -0,0 +1,86 @@
+package io.github.giuliapais.benchmarks;
+
+import io.github.giuliapais.structures.PollutionDataStore;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Ingestion and queries of {@link PollutionDataStore}, on a store filled with a few hours of messages of a fleet
+ * of robots publishing every 15 seconds. Ingestion is measured with one and several writers, the latter contending
+ * only on the robots and the stripes of the time indexes they share.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+public class PollutionDataStoreBenchmark {
+    private static final long PUBLISHING_PERIOD = 15_000;
+    private static final int AVERAGES = 8;
+
+    @Param({"100"})
+    public int robots;
+
+    @Param({"4"})
+    public int hours;
+
+    private PollutionDataStore store;
+    private long end;
+    private final AtomicLong clock = new AtomicLong();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        store = new PollutionDataStore();
+        double[] readings = new double[AVERAGES];
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        end = hours * 3_600_000L;
+        for (long t = 0; t < end; t += PUBLISHING_PERIOD) {
+            for (int robotId = 0; robotId < robots; robotId++) {
+                for (int i = 0; i < AVERAGES; i++) {
+                    readings[i] = random.nextDouble(100);
+                }
+                store.addData(robotId, t + robotId, readings, AVERAGES);
+            }
+        }
+        clock.set(end);
+    }
+
+    @State(Scope.Thread)
+    public static class Message {
+        final double[] readings = new double[AVERAGES];
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void addData(Message message) {
+        add(message);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void addDataConcurrent(Message message) {
+        add(message);
+    }
+
+    private void add(Message message) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < AVERAGES; i++) {
+            message.readings[i] = random.nextDouble(100);
+        }
+        store.addData(random.nextInt(robots), clock.incrementAndGet(), message.readings, AVERAGES);
+    }
+
+    @Benchmark
+    public double averageOfLastReadings() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return store.getAverageOfLastNReadings(random.nextInt(robots), 1 + random.nextInt(1_000));
+    }
+
+    @Benchmark
+    public double averageBetweenTimestamps() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long t1 = random.nextLong(end);
+        return store.getAverageBetweenTimestamps(t1, t1 + random.nextLong(end - t1 + 1));
+    }
+}
@@ -0,0 +1,75 @@
+package io.github.giuliapais.benchmarks;
+
+import io.github.giuliapais.api.services.PollutionDataService;
+import io.github.giuliapais.structures.PollutionDataStore;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Throughput of {@link PollutionDataService#addSensorData(int, long, double[], int)}, the path taken by every
+ * message received from the robots, with and without the write-ahead log.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+public class PollutionIngestBenchmark {
+    @Param({"false", "true"})
+    public boolean persistence;
+
+    private Path directory;
+    private PollutionDataService service;
+    private final AtomicLong clock = new AtomicLong();
+
+    @State(Scope.Thread)
+    public static class Message {
+        // A robot sends the averages of its 8-readings windows every 15 seconds
+        final double[] readings = new double[8];
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = persistence ? Files.createTempDirectory("guard-bench") : null;
+        service = new PollutionDataService(new PollutionDataStore(), directory, 200, 300);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        service.shutdown();
+        if (directory != null) {
+            try (Stream<Path> files = Files.walk(directory)) {
+                for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                    Files.delete(file);
+                }
+            }
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void ingest(Message message) {
+        add(message);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void ingestConcurrent(Message message) {
+        add(message);
+    }
+
+    private void add(Message message) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < message.readings.length; i++) {
+            message.readings[i] = random.nextDouble(100);
+        }
+        service.addSensorData(random.nextInt(100), clock.incrementAndGet(), message.readings,
+                message.readings.length);
+    }
+}
@@ -0,0 +1,74 @@
+package io.github.giuliapais.benchmarks;
+
+import io.github.giuliapais.commons.DistrictBalancer;
+import io.github.giuliapais.commons.GreenfieldMap;
+import io.github.giuliapais.commons.RebalanceStrategy;
+import io.github.giuliapais.commons.models.MapPosition;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Planning time and quality of the plans of each {@link RebalanceStrategy}, on a 200x200 map with 20x20 districts
+ * where a quarter of the districts hold twice as many robots as they should (as after a wave of robots left the
+ * other districts). The {@code moves} and {@code blocks} counters are the robots moved and the distance they travel
+ * (in blocks) over all the plans of an iteration: {@code blocks / moves} is the mean distance per move.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+public class RebalanceStrategyBenchmark {
+    private static final GreenfieldMap MAP = GreenfieldMap.grid(200, 200, 20, 20);
+
+    @Param({"RANDOM", "NEAREST"})
+    public RebalanceStrategy strategy;
+
+    @Param({"4000", "100000"})
+    public int robots;
+
+    private DistrictBalancer balancer;
+    private HashMap<Integer, MapPosition> positions;
+
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class PlanQuality {
+        public long moves;
+        public long blocks;
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(42);
+        int nDistricts = MAP.getDistricts().length;
+        balancer = new DistrictBalancer(MAP);
+        balancer.setRebalanceStrategy(strategy);
+        positions = new HashMap<>();
+        for (int robotId = 1; robotId <= robots; robotId++) {
+            int district = random.nextInt(nDistricts) + 1;
+            // Robots in the crowded districts, every fourth one, stay, half of the others leave
+            if (district % 4 != 0 && random.nextBoolean()) {
+                continue;
+            }
+            int[] pos = balancer.getPosInDistrict(district);
+            MapPosition position = new MapPosition(district, pos[0], pos[1]);
+            balancer.addRobot(robotId, position);
+            positions.put(robotId, position);
+        }
+    }
+
+    @Benchmark
+    public HashMap<Integer, MapPosition> plan(PlanQuality quality) {
+        // Planning does not change the grid, each invocation plans the same rebalancing
+        HashMap<Integer, MapPosition> changes = balancer.planRebalance();
+        for (Map.Entry<Integer, MapPosition> change : changes.entrySet()) {
+            MapPosition from = positions.get(change.getKey());
+            quality.moves++;
+            quality.blocks += Math.abs(change.getValue().getX() - from.getX()) +
+                    Math.abs(change.getValue().getY() - from.getY());
+        }
+        return changes;
+    }
+}
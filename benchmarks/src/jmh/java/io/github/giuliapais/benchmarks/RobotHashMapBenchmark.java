@@ -0,0 +1,86 @@
+package io.github.giuliapais.benchmarks;
+
+import io.github.giuliapais.api.models.Robot;
+import io.github.giuliapais.exceptions.IdPresentException;
+import io.github.giuliapais.structures.RobotHashMap;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reads of the robot registry of the server, alone and concurrently with registrations: a snapshot iterated as
+ * by every GET of the robots list, and a deep copy with {@link RobotHashMap#getMap()}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Group)
+public class RobotHashMapBenchmark {
+    @Param({"10", "100", "1000"})
+    public int robots;
+
+    private RobotHashMap map;
+    private int nextId;
+
+    @Setup(Level.Iteration)
+    public void setUp() throws IdPresentException {
+        map = new RobotHashMap();
+        for (int robotId = 1; robotId <= robots; robotId++) {
+            map.put(new Robot(robotId, "localhost", (short) (9000 + robotId % 1000)));
+        }
+        nextId = robots + 1;
+    }
+
+    @Benchmark
+    @Group("read")
+    public Map<Integer, Robot> getMap() {
+        return map.getMap();
+    }
+
+    @Benchmark
+    @Group("readSnapshot")
+    public int readSnapshot() {
+        return iterate(map.snapshot());
+    }
+
+    @Benchmark
+    @Group("readWhileRegistering")
+    @GroupThreads(3)
+    public Map<Integer, Robot> getMapWhileRegistering() {
+        return map.getMap();
+    }
+
+    @Benchmark
+    @Group("readSnapshotWhileRegistering")
+    @GroupThreads(3)
+    public int readSnapshotWhileRegistering() {
+        return iterate(map.snapshot());
+    }
+
+    @Benchmark
+    @Group("readSnapshotWhileRegistering")
+    public boolean registerWhileReadingSnapshot() throws IdPresentException {
+        return registerAndLeave();
+    }
+
+    private static int iterate(RobotHashMap.Snapshot snapshot) {
+        int ports = 0;
+        for (Robot robot : snapshot.robots().values()) {
+            ports += robot.getPort();
+        }
+        return ports;
+    }
+
+    @Benchmark
+    @Group("readWhileRegistering")
+    public boolean register() throws IdPresentException {
+        return registerAndLeave();
+    }
+
+    /* Each robot registers and leaves, so the size of the map stays the same */
+    private boolean registerAndLeave() throws IdPresentException {
+        int robotId = nextId++;
+        map.put(new Robot(robotId, "localhost", (short) 9000));
+        return map.remove(robotId);
+    }
+}
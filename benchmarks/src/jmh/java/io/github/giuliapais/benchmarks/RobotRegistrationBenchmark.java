@@ -0,0 +1,99 @@
+package io.github.giuliapais.benchmarks;
+
+import io.github.giuliapais.api.models.Robot;
+import io.github.giuliapais.commons.DistrictBalancer;
+import io.github.giuliapais.commons.models.MapPosition;
+import io.github.giuliapais.exceptions.IdPresentException;
+import io.github.giuliapais.structures.RobotHashMap;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A registration storm: 10k robots register at the same time, split between the given number of threads. Each
+ * registration does what the server does for a POST of a robot (adds it to the registry, takes the list of the
+ * robots already active and places it in a district), so the time of the storm grows with the square of the fleet
+ * size if registrations copy the registry. For comparison, {@link #bulkRegistration()} registers the same robots
+ * with a single bulk registration.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 10)
+@Measurement(iterations = 20)
+@State(Scope.Benchmark)
+public class RobotRegistrationBenchmark {
+    private static final int ROBOTS = 10_000;
+
+    @Param({"1", "4"})
+    public int threads;
+
+    private ExecutorService executor;
+    private RobotHashMap registry;
+    private DistrictBalancer districtBalancer;
+
+    @Setup(Level.Trial)
+    public void startThreads() {
+        executor = Executors.newFixedThreadPool(threads);
+    }
+
+    @TearDown(Level.Trial)
+    public void stopThreads() {
+        executor.shutdownNow();
+    }
+
+    @Setup(Level.Invocation)
+    public void setUp() {
+        registry = new RobotHashMap();
+        districtBalancer = new DistrictBalancer();
+    }
+
+    @Benchmark
+    public long registrationStorm() throws InterruptedException, ExecutionException {
+        List<Future<Long>> results = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int first = t;
+            results.add(executor.submit(() -> {
+                long activeRobots = 0;
+                for (int robotId = first + 1; robotId <= ROBOTS; robotId += threads) {
+                    activeRobots += register(robotId);
+                }
+                return activeRobots;
+            }));
+        }
+        long activeRobots = 0;
+        for (Future<Long> result : results) {
+            activeRobots += result.get();
+        }
+        return activeRobots;
+    }
+
+    @Benchmark
+    public int bulkRegistration() throws IdPresentException {
+        List<Robot> fleet = new ArrayList<>(ROBOTS);
+        List<Integer> ids = new ArrayList<>(ROBOTS);
+        for (int robotId = 1; robotId <= ROBOTS; robotId++) {
+            fleet.add(new Robot(robotId, "localhost", (short) (9000 + robotId % 1000)));
+            ids.add(robotId);
+        }
+        RobotHashMap.Snapshot snapshot = registry.putAll(fleet);
+        HashMap<Integer, MapPosition> positions = districtBalancer.addRobots(ids);
+        return snapshot.robots().size() + positions.size();
+    }
+
+    private int register(int robotId) throws IdPresentException {
+        Robot robot = new Robot(robotId, "localhost", (short) (9000 + robotId % 1000));
+        RobotHashMap.Snapshot snapshot = registry.put(robot);
+        Collection<Robot> activeRobots = snapshot.robots().remove(robotId).values();
+        districtBalancer.addRobot(robotId);
+        MapPosition position = districtBalancer.getRobotPosition(robotId);
+        return activeRobots.size() + position.getDistrict();
+    }
+}
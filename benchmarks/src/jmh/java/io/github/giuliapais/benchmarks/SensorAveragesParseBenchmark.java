@@ -0,0 +1,75 @@
+package io.github.giuliapais.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.github.giuliapais.adminserver.SensorAveragesReader;
+import io.github.giuliapais.commons.SensorAveragesConsumer;
+import io.github.giuliapais.commons.models.SensorAverages;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decoding of the pollution messages received by the administrator server, from the MQTT payload to the primitive
+ * values handed to the store. Run with {@code -prof gc} to see the bytes allocated per message.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Thread)
+public class SensorAveragesParseBenchmark {
+    @Param({"8"})
+    public int averagesCount;
+
+    private byte[] payload;
+    private final ObjectMapper sharedMapper = new ObjectMapper();
+    private final SensorAveragesReader reader = new SensorAveragesReader();
+    private SensorAveragesConsumer consumer;
+
+    @Setup
+    public void setUp(Blackhole blackhole) throws IOException {
+        Random random = new Random(0);
+        List<Double> averages = new ArrayList<>();
+        for (int i = 0; i < averagesCount; i++) {
+            averages.add(random.nextDouble() * 100);
+        }
+        payload = sharedMapper.writeValueAsBytes(new SensorAverages(42, System.currentTimeMillis(), averages));
+        consumer = (robotId, timestamp, values, length) -> {
+            blackhole.consume(robotId);
+            blackhole.consume(timestamp);
+            blackhole.consume(values[length - 1]);
+        };
+    }
+
+    /**
+     * The original path: a new mapper per message, a String copy of the payload, a {@code List<Double>} copied
+     * to a {@code double[]}.
+     */
+    @Benchmark
+    public void objectMapperPerMessage() throws IOException {
+        SensorAverages averages = new ObjectMapper().readValue(new String(payload), SensorAverages.class);
+        toStore(averages);
+    }
+
+    @Benchmark
+    public void sharedObjectMapper() throws IOException {
+        toStore(sharedMapper.readValue(payload, SensorAverages.class));
+    }
+
+    @Benchmark
+    public void streamingReader() throws IOException {
+        reader.read(payload, consumer);
+    }
+
+    private void toStore(SensorAverages data) {
+        List<Double> averages = data.getAverages();
+        double[] readings = new double[averages.size()];
+        for (int i = 0; i < readings.length; i++) {
+            readings[i] = averages.get(i);
+        }
+        consumer.accept(data.getRobotId(), data.getTimestamp(), readings, readings.length);
+    }
+}
@@ -0,0 +1,147 @@
+package io.github.giuliapais.benchmarks;
+
+import io.github.giuliapais.robotsnetwork.core.SensorReadingsBuffer;
+import io.github.giuliapais.simulators.Buffer;
+import io.github.giuliapais.simulators.Measurement;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The sensor buffer of a robot: the simulator adds measurements and the sensor component averages a window (8
+ * measurements) each time half a window is added. {@link SensorReadingsBuffer} is compared with the synchronized
+ * linked list it replaced, {@link LinkedListBuffer}.
+ * <p>
+ * The {@code addAndAverage} benchmarks run producer and consumer on the same thread, the {@code ring} and
+ * {@code linkedList} groups on two threads, where the {@code windows} counter is the number of windows averaged.
+ * Run with {@code -Pjmh.profilers=gc} to compare the allocations per window.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class SensorReadingsBufferBenchmark {
+    private static final int WINDOW_SIZE = 8;
+    private static final int OVERLAP = WINDOW_SIZE / 2;
+    private static final int CAPACITY = 1024;
+    private static final Measurement MEASUREMENT = new Measurement("pm10-1", "PM10", 42, 0);
+
+    /* The buffer before the ring: a linked list behind a lock, each window is a copy */
+    static class LinkedListBuffer implements Buffer {
+        private final LinkedList<Measurement> buffer = new LinkedList<>();
+
+        @Override
+        public synchronized void addMeasurement(Measurement m) {
+            // Bounded as the ring, so that a slow consumer does not fill the heap
+            if (buffer.size() < CAPACITY) {
+                buffer.add(m);
+            }
+        }
+
+        @Override
+        public synchronized List<Measurement> readAllAndClean() {
+            List<Measurement> allMeasurements = new ArrayList<>(buffer);
+            allMeasurements = allMeasurements.subList(0, WINDOW_SIZE);
+            for (int i = 0; i < OVERLAP; i++) {
+                buffer.removeFirst();
+            }
+            return allMeasurements;
+        }
+
+        synchronized List<Measurement> poll() {
+            return buffer.size() >= WINDOW_SIZE ? readAllAndClean() : null;
+        }
+    }
+
+    /* The average as the sensor component computed it from the copy of the window */
+    private static double average(List<Measurement> measurements) {
+        return measurements.stream().mapToDouble(Measurement::getValue).average().orElse(-1.0);
+    }
+
+    @State(Scope.Thread)
+    public static class SingleThread {
+        SensorReadingsBuffer ring;
+        LinkedListBuffer linkedList;
+
+        @Setup
+        public void setUp() {
+            ring = new SensorReadingsBuffer(CAPACITY);
+            linkedList = new LinkedListBuffer();
+            for (int i = 0; i < OVERLAP; i++) {
+                ring.addMeasurement(MEASUREMENT);
+                linkedList.addMeasurement(MEASUREMENT);
+            }
+        }
+    }
+
+    @State(Scope.Group)
+    public static class TwoThreads {
+        SensorReadingsBuffer ring;
+        LinkedListBuffer linkedList;
+
+        @Setup(Level.Iteration)
+        public void setUp() {
+            ring = new SensorReadingsBuffer(CAPACITY);
+            linkedList = new LinkedListBuffer();
+        }
+    }
+
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class Windows {
+        public long windows;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(OVERLAP)
+    public double ringAddAndAverage(SingleThread state) {
+        for (int i = 0; i < OVERLAP; i++) {
+            state.ring.addMeasurement(MEASUREMENT);
+        }
+        return state.ring.poll().average();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(OVERLAP)
+    public double linkedListAddAndAverage(SingleThread state) {
+        for (int i = 0; i < OVERLAP; i++) {
+            state.linkedList.addMeasurement(MEASUREMENT);
+        }
+        return average(state.linkedList.poll());
+    }
+
+    @Benchmark
+    @Group("ring")
+    public void ringProducer(TwoThreads state) {
+        state.ring.addMeasurement(MEASUREMENT);
+    }
+
+    @Benchmark
+    @Group("ring")
+    public double ringConsumer(TwoThreads state, Windows windows) {
+        SensorReadingsBuffer.Window window = state.ring.poll();
+        if (window == null) {
+            return 0;
+        }
+        windows.windows++;
+        return window.average();
+    }
+
+    @Benchmark
+    @Group("linkedList")
+    public void linkedListProducer(TwoThreads state) {
+        state.linkedList.addMeasurement(MEASUREMENT);
+    }
+
+    @Benchmark
+    @Group("linkedList")
+    public double linkedListConsumer(TwoThreads state, Windows windows) {
+        List<Measurement> window = state.linkedList.poll();
+        if (window == null) {
+            return 0;
+        }
+        windows.windows++;
+        return average(window);
+    }
+}
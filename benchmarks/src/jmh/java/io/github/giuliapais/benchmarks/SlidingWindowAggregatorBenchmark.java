@@ -0,0 +1,89 @@
+package io.github.giuliapais.benchmarks;
+
+import io.github.giuliapais.robotsnetwork.core.SlidingWindowAggregator;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Statistics (mean, min, max, variance) of overlapping windows of sensor readings: {@link SlidingWindowAggregator}
+ * against computing them again over the whole window each time a window is complete, as the sensor component did
+ * for the mean. Each window has {@code step} new readings; the time is per reading, so a higher sensor rate with
+ * the same window duration means a larger {@code windowSize}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+public class SlidingWindowAggregatorBenchmark {
+    private static final int READINGS = 1 << 16;
+
+    @Param({"8", "64", "512"})
+    public int windowSize;
+
+    @Param({"1", "4"})
+    public int step;
+
+    private final double[] readings = new double[READINGS];
+    private int next = 0;
+    private SlidingWindowAggregator aggregator;
+    private double[] window;
+    private long added = 0;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        for (int i = 0; i < READINGS; i++) {
+            readings[i] = 15 + 15 * random.nextDouble();
+        }
+        aggregator = new SlidingWindowAggregator(windowSize, 0.2);
+        window = new double[windowSize];
+        for (int i = 0; i < windowSize; i++) {
+            aggregator.add(reading());
+            window[(int) (added++ % windowSize)] = readings[i];
+        }
+    }
+
+    private double reading() {
+        double reading = readings[next];
+        next = (next + 1) & (READINGS - 1);
+        return reading;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(4)
+    public double incremental() {
+        double result = 0;
+        for (int w = 0; w < 4 / step; w++) {
+            for (int i = 0; i < step; i++) {
+                aggregator.add(reading());
+            }
+            result += aggregator.getMean() + aggregator.getMin() + aggregator.getMax() + aggregator.getVariance();
+        }
+        return result;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(4)
+    public double wholeWindow() {
+        double result = 0;
+        for (int w = 0; w < 4 / step; w++) {
+            for (int i = 0; i < step; i++) {
+                window[(int) (added++ % windowSize)] = reading();
+            }
+            double sum = 0, min = Double.MAX_VALUE, max = -Double.MAX_VALUE;
+            for (double value : window) {
+                sum += value;
+                min = Math.min(min, value);
+                max = Math.max(max, value);
+            }
+            double mean = sum / windowSize;
+            double squares = 0;
+            for (double value : window) {
+                squares += (value - mean) * (value - mean);
+            }
+            result += mean + min + max + squares / windowSize;
+        }
+        return result;
+    }
+}
@@ -0,0 +1,68 @@
+package io.github.giuliapais.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.github.giuliapais.adminserver.SensorAveragesReader;
+import io.github.giuliapais.commons.SensorAveragesCodec;
+import io.github.giuliapais.commons.SensorAveragesConsumer;
+import io.github.giuliapais.commons.models.SensorAverages;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encoding (robot side) and decoding (server side) of a pollution message in each wire format. The sizes of the
+ * binary payloads are checked by {@code SensorAveragesCodecTest}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Thread)
+public class WireFormatBenchmark {
+    @Param({"JSON", "DELTA", "FLOAT32"})
+    public String format;
+
+    @Param({"8"})
+    public int averagesCount;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final SensorAveragesReader reader = new SensorAveragesReader();
+    private SensorAveragesCodec.Encoding encoding;
+    private double[] averages;
+    private long timestamp;
+    private byte[] payload;
+    private SensorAveragesConsumer consumer;
+
+    @Setup
+    public void setUp(Blackhole blackhole) throws IOException {
+        encoding = format.equals("JSON") ? null : SensorAveragesCodec.Encoding.valueOf(format);
+        // Averages of PM10 readings are in the same range
+        averages = new Random(0).doubles(averagesCount, 30, 70).toArray();
+        timestamp = System.currentTimeMillis();
+        payload = encode();
+        consumer = (robotId, timestamp, values, length) -> {
+            blackhole.consume(robotId);
+            blackhole.consume(timestamp);
+            blackhole.consume(values[length - 1]);
+        };
+    }
+
+    @Benchmark
+    public byte[] encode() throws IOException {
+        if (encoding == null) {
+            return mapper.writeValueAsBytes(new SensorAverages(42, timestamp, Arrays.stream(averages).boxed().toList()));
+        }
+        return SensorAveragesCodec.encode(42, timestamp, averages, averages.length, encoding);
+    }
+
+    @Benchmark
+    public void decode() throws IOException {
+        if (encoding == null) {
+            reader.read(payload, consumer);
+        } else {
+            reader.readBinary(payload, consumer);
+        }
+    }
+}
@@ -3,7 +3,7 @@ package io.github.giuliapais.commons;
 /**
  * Represents a single district in the city.
  *
- * @param id     The id of the district (1 to 4)
+ * @param id     The id of the district (1 to n)
  * @param span_x The span of the district on the x axis
  * @param span_y The span of the district on the y axis
  */
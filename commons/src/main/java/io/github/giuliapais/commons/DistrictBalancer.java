@@ -13,32 +13,235 @@ import java.util.stream.Collectors;
  */
 public class DistrictBalancer {
     /* ATTRIBUTES --------------------------------------------------------------------------------------------------- */
-    private final GreenfieldMap greenfieldMap = new GreenfieldMap();
+    // Bits of a candidate in the packed pairs of planNearest, the distance takes the others
+    private static final int CANDIDATE_BITS = 22;
+    private static final long CANDIDATE_MASK = (1L << CANDIDATE_BITS) - 1;
+    private static final long MAX_DISTANCE = Long.MAX_VALUE >>> CANDIDATE_BITS;
+
+    private final GreenfieldMap greenfieldMap;
 
     // Maps each robot currently active in the grid to its district
     private final HashMap<Integer, Integer> robotRegister = new HashMap<>();
-    // Maps each district to the number of robots (count) currently active in it
-    private final HashMap<Integer, Integer> districtRegister;
+    // Number of robots (count) currently active in each district, the least crowded first
+    private final DistrictLoadHeap districtRegister;
     private final HashMap<Integer, MapPosition> robotPositions = new HashMap<>();
     private final Random random = new Random();
+    private RebalanceStrategy rebalanceStrategy = RebalanceStrategy.RANDOM;
 
     /* CONSTRUCTORS ------------------------------------------------------------------------------------------------- */
 
     /**
      * Default constructor.
-     * Initializes the district register with the number of districts in the map.
+     * Balances the robots in the default map.
      */
     public DistrictBalancer() {
-        int nDistricts = greenfieldMap.getDistricts().length;
-        districtRegister = new HashMap<>(nDistricts);
-        for (int i = 1; i < nDistricts + 1; i++) {
-            districtRegister.put(i, 0);
-        }
+        this(new GreenfieldMap());
+    }
+
+    /**
+     * Initializes the district register with the number of districts in the given map.
+     *
+     * @param greenfieldMap the map of the city
+     */
+    public DistrictBalancer(GreenfieldMap greenfieldMap) {
+        this.greenfieldMap = greenfieldMap;
+        districtRegister = new DistrictLoadHeap(greenfieldMap.getDistricts().length);
     }
 
     /* METHODS ------------------------------------------------------------------------------------------------------ */
     /* Private --------- */
 
+    /*
+     * Returns the target load of each district (index 0 is unused), or null if the grid is already balanced: every
+     * district has robots / districts robots or one more. The districts that keep one robot more are first those
+     * that have too many, then those that have exactly one more than the minimum, then the others in order.
+     */
+    private int[] targetLoads(int[] loads) {
+        int nDistricts = districtRegister.size();
+        int minLoad = districtRegister.total() / nDistricts;
+        // Districts that keep (or get) one robot more than the minimum load
+        int extra = districtRegister.total() % nDistricts;
+        boolean balanced = true;
+        for (int district = 1; district <= nDistricts; district++) {
+            balanced &= loads[district] == minLoad || loads[district] == minLoad + 1;
+        }
+        if (balanced) {
+            return null;
+        }
+        int[] targets = new int[nDistricts + 1];
+        Arrays.fill(targets, minLoad);
+        for (int pass = 0; pass < 3 && extra > 0; pass++) {
+            for (int district = 1; district <= nDistricts && extra > 0; district++) {
+                int load = loads[district];
+                boolean chosen = pass == 0 ? load > minLoad + 1 : pass == 1 ? load == minLoad + 1 : load <= minLoad;
+                if (chosen) {
+                    targets[district] = minLoad + 1;
+                    extra--;
+                }
+            }
+        }
+        return targets;
+    }
+
+    /* Moves the robots closest to the districts that need them, see planRebalance */
+    private HashMap<Integer, MapPosition> planNearest() {
+        int nDistricts = districtRegister.size();
+        int[] loads = districtRegister.loads();
+        int[] targets = targetLoads(loads);
+        if (targets == null) {
+            return null;
+        }
+        int[] excess = new int[nDistricts + 1];
+        int[] deficit = new int[nDistricts + 1];
+        int receiverCount = 0;
+        for (int district = 1; district <= nDistricts; district++) {
+            excess[district] = Math.max(0, loads[district] - targets[district]);
+            deficit[district] = Math.max(0, targets[district] - loads[district]);
+            if (deficit[district] > 0) {
+                receiverCount++;
+            }
+        }
+        int[] receivers = new int[receiverCount];
+        for (int district = 1, i = 0; district <= nDistricts; district++) {
+            if (deficit[district] > 0) {
+                receivers[i++] = district;
+            }
+        }
+        // Robots that can move: all those in the districts with too many robots
+        List<Integer> candidates = new ArrayList<>();
+        for (Map.Entry<Integer, Integer> entry : robotRegister.entrySet()) {
+            if (excess[entry.getValue()] > 0) {
+                candidates.add(entry.getKey());
+            }
+        }
+        if (candidates.size() > CANDIDATE_MASK + 1) {
+            throw new IllegalStateException("Too many robots to plan the nearest moves");
+        }
+        int[][] points = new int[candidates.size()][];
+        int[] origins = new int[candidates.size()];
+        for (int i = 0; i < points.length; i++) {
+            MapPosition position = robotPositions.get(candidates.get(i));
+            origins[i] = robotRegister.get(candidates.get(i));
+            District district = greenfieldMap.getDistrict(origins[i]);
+            points[i] = position != null ? new int[]{position.getX(), position.getY()}
+                    : new int[]{district.span_x()[0], district.span_y()[0]};
+        }
+        // The closest (robot, receiving district) pairs are taken first while robot and districts are available.
+        // Each receiving district keeps a batch of its closest pairs, sorted, twice as many as the robots it needs:
+        // the next batch (twice as large) is only read if others took the robots of the previous one.
+        long[][] batches = new long[receiverCount][];
+        int[] used = new int[receiverCount];
+        long[] scratch = new long[points.length];
+        boolean[] moved = new boolean[points.length];
+        // The receiving districts by their closest pair not yet taken, ties by candidate then district
+        PriorityQueue<Integer> queue = new PriorityQueue<>(Math.max(1, receiverCount), (a, b) -> {
+            int order = Long.compare(batches[a][used[a]], batches[b][used[b]]);
+            return order != 0 ? order : Integer.compare(a, b);
+        });
+        for (int j = 0; j < receiverCount; j++) {
+            batches[j] = closestPairs(receivers[j], -1, 2 * deficit[receivers[j]], points, origins, excess, moved,
+                    scratch);
+            if (batches[j].length > 0) {
+                queue.add(j);
+            }
+        }
+        HashMap<Integer, MapPosition> changes = new HashMap<>();
+        while (!queue.isEmpty()) {
+            int j = queue.poll();
+            int districtTo = receivers[j];
+            long pair = batches[j][used[j]++];
+            int i = (int) (pair & CANDIDATE_MASK);
+            int districtFrom = origins[i];
+            if (!moved[i] && excess[districtFrom] > 0) {
+                moved[i] = true;
+                excess[districtFrom]--;
+                deficit[districtTo]--;
+                District district = greenfieldMap.getDistrict(districtTo);
+                changes.put(candidates.get(i), new MapPosition(districtTo,
+                        nearest(points[i][0], district.span_x()), nearest(points[i][1], district.span_y())));
+            }
+            if (deficit[districtTo] == 0) {
+                continue;
+            }
+            if (used[j] == batches[j].length) {
+                batches[j] = closestPairs(districtTo, pair, 2 * batches[j].length, points, origins, excess, moved,
+                        scratch);
+                used[j] = 0;
+            }
+            if (used[j] < batches[j].length) {
+                queue.add(j);
+            }
+        }
+        return changes;
+    }
+
+    /*
+     * Returns, sorted, at most size of the closest pairs of the receiving district that follow the given pair, with
+     * the candidates that can still move. Pairs are packed as distance << CANDIDATE_BITS | candidate, so that they
+     * are ordered by distance, then by candidate.
+     */
+    private long[] closestPairs(int districtTo, long after, int size, int[][] points, int[] origins, int[] excess,
+                                boolean[] moved, long[] scratch) {
+        District district = greenfieldMap.getDistrict(districtTo);
+        int count = 0;
+        for (int i = 0; i < points.length; i++) {
+            if (moved[i] || excess[origins[i]] == 0) {
+                continue;
+            }
+            long distance = Math.abs((long) nearest(points[i][0], district.span_x()) - points[i][0]) +
+                    Math.abs((long) nearest(points[i][1], district.span_y()) - points[i][1]);
+            if (distance > MAX_DISTANCE) {
+                throw new IllegalStateException("Distance too large to plan the nearest moves: " + distance);
+            }
+            long pair = distance << CANDIDATE_BITS | i;
+            if (pair > after) {
+                scratch[count++] = pair;
+            }
+        }
+        int keep = Math.min(size, count);
+        selectSmallest(scratch, count, keep);
+        long[] batch = Arrays.copyOf(scratch, keep);
+        Arrays.sort(batch);
+        return batch;
+    }
+
+    /* Moves the k smallest of the first length values to the start of the array (quickselect) */
+    private static void selectSmallest(long[] values, int length, int k) {
+        int low = 0;
+        int high = length - 1;
+        while (low < high) {
+            long pivot = values[(low + high) >>> 1];
+            int i = low;
+            int j = high;
+            while (i <= j) {
+                while (values[i] < pivot) {
+                    i++;
+                }
+                while (values[j] > pivot) {
+                    j--;
+                }
+                if (i <= j) {
+                    long swap = values[i];
+                    values[i++] = values[j];
+                    values[j--] = swap;
+                }
+            }
+            // values[low..j] <= pivot <= values[i..high]
+            if (k - 1 <= j) {
+                high = j;
+            } else if (k - 1 >= i) {
+                low = i;
+            } else {
+                return;
+            }
+        }
+    }
+
+    /* The coordinate in the span closest to the given one */
+    private static int nearest(int coordinate, int[] span) {
+        return Math.max(span[0], Math.min(span[1], coordinate));
+    }
+
 
     /* Public ---------- */
 
@@ -90,18 +293,40 @@ public class DistrictBalancer {
         if (robotRegister.containsKey(robotId)) {
             return;
         }
-        // Get the less crowded district
-        Optional<Integer> lessCrowded = districtRegister.entrySet()
-                .stream()
-                .min(Comparator.comparingInt(Map.Entry::getValue))
-                .map(Map.Entry::getKey);
-        Integer chosenDistrict = lessCrowded.orElse(1);
+        int chosenDistrict = districtRegister.leastLoaded();
         robotRegister.put(robotId, chosenDistrict);
-        districtRegister.replace(chosenDistrict, districtRegister.get(chosenDistrict) + 1);
+        districtRegister.increment(chosenDistrict);
         int[] pos = getPosInDistrict(chosenDistrict);
         robotPositions.put(robotId, new MapPosition(chosenDistrict, pos[0], pos[1]));
     }
 
+    /**
+     * Adds several robots to the grid in a single step, as {@link #addRobot(int)} would do one by one: each robot
+     * is assigned to the less crowded district at that point, so the districts stay balanced. Robots already
+     * registered are ignored.
+     * <p>
+     * NOTE: used on admin-server to register fleets of robots.
+     *
+     * @param robotIds the ids of the robots to add
+     * @return the positions assigned to the added robots
+     */
+    public synchronized HashMap<Integer, MapPosition> addRobots(Collection<Integer> robotIds) {
+        HashMap<Integer, MapPosition> added = new HashMap<>();
+        for (int robotId : robotIds) {
+            if (robotRegister.containsKey(robotId)) {
+                continue;
+            }
+            int chosenDistrict = districtRegister.leastLoaded();
+            districtRegister.increment(chosenDistrict);
+            robotRegister.put(robotId, chosenDistrict);
+            int[] pos = getPosInDistrict(chosenDistrict);
+            MapPosition position = new MapPosition(chosenDistrict, pos[0], pos[1]);
+            robotPositions.put(robotId, position);
+            added.put(robotId, new MapPosition(position));
+        }
+        return added;
+    }
+
     /**
      * Adds a robot to the grid, at the given position.
      * <p>
@@ -118,14 +343,13 @@ public class DistrictBalancer {
             if (oldDistrict != newDistrict) {
                 robotPositions.replace(robotId, position);
                 robotRegister.replace(robotId, position.getDistrict());
-                districtRegister.replace(oldDistrict, districtRegister.get(oldDistrict) - 1);
-                districtRegister.replace(newDistrict, districtRegister.get(newDistrict) + 1);
+                districtRegister.move(oldDistrict, newDistrict);
             }
             return;
         }
         robotPositions.put(robotId, position);
         robotRegister.put(robotId, position.getDistrict());
-        districtRegister.replace(position.getDistrict(), districtRegister.get(position.getDistrict()) + 1);
+        districtRegister.increment(position.getDistrict());
     }
 
     /**
@@ -140,7 +364,7 @@ public class DistrictBalancer {
         }
         Integer district = robotRegister.get(robotId);
         robotRegister.remove(robotId);
-        districtRegister.replace(district, districtRegister.get(district) - 1);
+        districtRegister.decrement(district);
         robotPositions.remove(robotId);
         return true;
     }
@@ -176,8 +400,7 @@ public class DistrictBalancer {
         int newDistrict = mapPosition.getDistrict();
         if (oldDistrict != newDistrict) {
             robotRegister.replace(robotId, mapPosition.getDistrict());
-            districtRegister.replace(oldDistrict, districtRegister.get(oldDistrict) - 1);
-            districtRegister.replace(newDistrict, districtRegister.get(newDistrict) + 1);
+            districtRegister.move(oldDistrict, newDistrict);
             return 0;
         }
         return 2;
@@ -202,102 +425,86 @@ public class DistrictBalancer {
      * Evaluates, by scanning the grid, if there is need for rebalancing. If so, it returns a map of robot ids to
      * new district ids, otherwise it returns null.
      * NOTE: this method does NOT change the current status of the grid! Call changeDistrict method to apply changes.
+     * <p>
+     * The grid is balanced when every district has {@code robots / districts} robots, or one more. The changes are
+     * the fewest moves that balance it: the most crowded districts keep one robot more than the others, the
+     * robots in excess are moved to the districts that need them. Planning takes O(robots + districts).
      *
      * @return a map of robot ids to new district ids or null
+     * @see #planRebalance()
      */
     public synchronized HashMap<Integer, Integer> rebalance() {
-        int totRobots = robotRegister.size();
-        int nDistricts = greenfieldMap.getDistricts().length;
-        // Minimum number of robots per district
-        int minLoad = totRobots / nDistricts;
-        // Local copy
-        HashMap<Integer, Integer> districts = new HashMap<>(this.districtRegister);
-        // Partition districts by load
-        HashMap<String, ArrayList<Integer>> districtsByLoad = new HashMap<>();
-        districtsByLoad.put("empty", new ArrayList<>());
-        districtsByLoad.put("min", new ArrayList<>());
-        districtsByLoad.put("max", new ArrayList<>());
-        districtsByLoad.put("over", new ArrayList<>());
-        for (Integer districtNum : districts.keySet()) {
-            int load = districts.get(districtNum);
-            if (load == 0) {
-                districtsByLoad.get("empty").add(districtNum);
-            } else if (load == minLoad) {
-                districtsByLoad.get("min").add(districtNum);
-            } else if (load == minLoad + 1) {
-                districtsByLoad.get("max").add(districtNum);
-            } else if (load > minLoad + 1) {
-                districtsByLoad.get("over").add(districtNum);
-            }
-        }
-
-        if (districtsByLoad.get("empty").size() + districtsByLoad.get("max").size() == nDistricts ||
-                districtsByLoad.get("min").size() + districtsByLoad.get("max").size() == nDistricts) {
-            // No need to rebalance
+        int nDistricts = districtRegister.size();
+        int[] loads = districtRegister.loads();
+        int[] targets = targetLoads(loads);
+        if (targets == null) {
             return null;
         }
+        // Robots in excess in each district, the first ones found in the register are moved
+        int[] excess = new int[nDistricts + 1];
+        for (int district = 1; district <= nDistricts; district++) {
+            excess[district] = Math.max(0, loads[district] - targets[district]);
+        }
         HashMap<Integer, Integer> changes = new HashMap<>();
-        while (true) {
-            int districtFromNum = 0;
-            String districtFromType = null;
-            int districtTo = 0;
-            String districtToType = null;
-            int robotToMove = 0;
-
-            if (!districtsByLoad.get("over").isEmpty()) {
-                districtFromType = "over";
-                districtFromNum = districtsByLoad.get("over").get(0);
-            } else if (!districtsByLoad.get("max").isEmpty()) {
-                districtFromType = "max";
-                districtFromNum = districtsByLoad.get("max").get(0);
-            }
-
-            if (!districtsByLoad.get("empty").isEmpty()) {
-                districtToType = "empty";
-                districtTo = districtsByLoad.get("empty").get(0);
-            } else if (!districtsByLoad.get("min").isEmpty()) {
-                districtToType = "min";
-                districtTo = districtsByLoad.get("min").get(0);
-            }
-
-            for (Map.Entry<Integer, Integer> entry : robotRegister.entrySet()) {
-                // Find the first robot in the originating district
-                if (entry.getValue() == districtFromNum) {
-                    robotToMove = entry.getKey();
-                    break;
-                }
-            }
-            changes.put(robotToMove, districtTo);
-
-            districts.replace(districtFromNum, districts.get(districtFromNum) - 1); // Remove robot from the old district
-            districts.replace(districtTo, districts.get(districtTo) + 1); // Add robot to the new district
-
-            if (districts.get(districtFromNum) == minLoad + 1) {
-                // Check again the size of the originating district and update
-                districtsByLoad.get(districtFromType).remove(0);
-                districtsByLoad.get("max").add(districtFromNum);
-            } else if (districts.get(districtFromNum) == minLoad) {
-                districtsByLoad.get(districtFromType).remove(0);
-                districtsByLoad.get("min").add(districtFromNum);
-            }
-            districtsByLoad.get(districtToType).remove(0);
-            if (districts.get(districtTo) == minLoad) {
-                districtsByLoad.get("min").add(districtTo);
-            } else if (districts.get(districtTo) == minLoad + 1) {
-                districtsByLoad.get("max").add(districtTo);
-            }
-
-            if (!districtsByLoad.get("empty").isEmpty() || !districtsByLoad.get("over").isEmpty()) {
+        int districtTo = 1;
+        for (Map.Entry<Integer, Integer> entry : robotRegister.entrySet()) {
+            int districtFrom = entry.getValue();
+            if (excess[districtFrom] == 0) {
                 continue;
             }
-            if (districtsByLoad.get("min").size() + districtsByLoad.get("max").size() == nDistricts) {
+            while (districtTo <= nDistricts && loads[districtTo] >= targets[districtTo]) {
+                districtTo++;
+            }
+            if (districtTo > nDistricts) {
                 break;
             }
+            excess[districtFrom]--;
+            loads[districtTo]++;
+            changes.put(entry.getKey(), districtTo);
         }
-
         return changes;
     }
 
+    /**
+     * Plans the moves that balance the grid, as {@link #rebalance()}, with the current {@link RebalanceStrategy}
+     * choosing the robots to move and their new positions:
+     * <ul>
+     *     <li>{@link RebalanceStrategy#RANDOM}: the robots chosen by {@link #rebalance()}, each to a random position
+     *     of its new district</li>
+     *     <li>{@link RebalanceStrategy#NEAREST}: the robots closest to the districts that need them (by distance in
+     *     blocks), each to the block of its new district nearest to it. The closest robot and district pairs are
+     *     taken first, which takes O(c r) time and O(c + r + m) memory for c robots that can move, r districts that
+     *     need robots and m moves, plus a new scan of the c robots when the closest ones of a district are taken
+     *     by the others</li>
+     * </ul>
+     * NOTE: this method does NOT change the current status of the grid! Call updatePositions to apply changes.
+     *
+     * @return a map of robot ids to new positions or null if there is no need for rebalancing
+     */
+    public synchronized HashMap<Integer, MapPosition> planRebalance() {
+        if (rebalanceStrategy == RebalanceStrategy.NEAREST) {
+            return planNearest();
+        }
+        HashMap<Integer, Integer> changes = rebalance();
+        if (changes == null) {
+            return null;
+        }
+        HashMap<Integer, MapPosition> positions = new HashMap<>();
+        for (Map.Entry<Integer, Integer> entry : changes.entrySet()) {
+            int[] pos = getPosInDistrict(entry.getValue());
+            positions.put(entry.getKey(), new MapPosition(entry.getValue(), pos[0], pos[1]));
+        }
+        return positions;
+    }
+
+    public synchronized RebalanceStrategy getRebalanceStrategy() {
+        return rebalanceStrategy;
+    }
+
+    public synchronized void setRebalanceStrategy(RebalanceStrategy rebalanceStrategy) {
+        this.rebalanceStrategy = Objects.requireNonNull(rebalanceStrategy);
+    }
+
     /**
      * Produces a snapshot of the current grid status that is useful to print.
      *
@@ -315,6 +522,68 @@ public class DistrictBalancer {
         return gridStatus;
     }
 
+    /**
+     * Returns the robots closest to the given one: first the robots in its district, then the others, each group
+     * ordered by distance from the robot.
+     *
+     * @param robotId the id of the robot
+     * @param count   the maximum number of robots to return
+     * @return the ids of the closest robots, from the closest, or an empty list if the robot is not present
+     */
+    public synchronized List<Integer> getNearestRobots(int robotId, int count) {
+        MapPosition origin = robotPositions.get(robotId);
+        if (origin == null || count <= 0) {
+            return new ArrayList<>();
+        }
+        Comparator<Map.Entry<Integer, MapPosition>> closest = Comparator
+                .comparing((Map.Entry<Integer, MapPosition> entry) ->
+                        entry.getValue().getDistrict() != origin.getDistrict())
+                .thenComparingInt(entry -> squaredDistance(origin, entry.getValue()))
+                .thenComparingInt(Map.Entry::getKey);
+        // Keeps the closest robots found so far, the farthest of them at the head
+        PriorityQueue<Map.Entry<Integer, MapPosition>> nearest = new PriorityQueue<>(count, closest.reversed());
+        for (Map.Entry<Integer, MapPosition> entry : robotPositions.entrySet()) {
+            if (entry.getKey() == robotId) {
+                continue;
+            }
+            if (nearest.size() < count) {
+                nearest.add(entry);
+            } else if (closest.compare(entry, nearest.peek()) < 0) {
+                nearest.poll();
+                nearest.add(entry);
+            }
+        }
+        List<Integer> ids = new ArrayList<>(nearest.size());
+        while (!nearest.isEmpty()) {
+            ids.add(nearest.poll().getKey());
+        }
+        Collections.reverse(ids);
+        return ids;
+    }
+
+    private static int squaredDistance(MapPosition from, MapPosition to) {
+        int dx = from.getX() - to.getX();
+        int dy = from.getY() - to.getY();
+        return dx * dx + dy * dy;
+    }
+
+    /**
+     * Returns a copy of the current positions of the given robots.
+     *
+     * @param robotIds the ids of the robots
+     * @return A map of the robot ids to their positions, without the robots that are not present
+     */
+    public synchronized HashMap<Integer, MapPosition> getRobotPositions(Collection<Integer> robotIds) {
+        HashMap<Integer, MapPosition> copy = new HashMap<>();
+        for (int robotId : robotIds) {
+            MapPosition position = robotPositions.get(robotId);
+            if (position != null) {
+                copy.put(robotId, new MapPosition(position));
+            }
+        }
+        return copy;
+    }
+
     /**
      * Returns a deep copy of the current robot positions map.
      *
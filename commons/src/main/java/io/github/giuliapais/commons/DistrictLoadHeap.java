@@ -0,0 +1,153 @@
+package io.github.giuliapais.commons;
+
+/**
+ * Number of robots (load) in each district of the map, ordered so that the least crowded district is known at any
+ * time. Districts are numbered from 1 to n.
+ * <p>
+ * The districts are kept in an indexed binary min-heap of primitive ints, ordered by load and then by district
+ * number (so that equal loads follow the natural order of numbering). Finding the least crowded district costs
+ * O(1), adding or removing a robot O(log n).
+ */
+public final class DistrictLoadHeap {
+    /* loads[d] is the load of district d, index 0 is unused */
+    private final int[] loads;
+    /* Districts in heap order, the least crowded first */
+    private final int[] heap;
+    /* positions[d] is the index of district d in the heap */
+    private final int[] positions;
+    private int total;
+
+    /**
+     * Creates the loads of the given number of districts, all empty.
+     */
+    public DistrictLoadHeap(int districts) {
+        if (districts <= 0) {
+            throw new IllegalArgumentException("The number of districts must be positive");
+        }
+        loads = new int[districts + 1];
+        heap = new int[districts];
+        positions = new int[districts + 1];
+        // Empty districts in ascending order are already a valid heap
+        for (int i = 0; i < districts; i++) {
+            heap[i] = i + 1;
+            positions[i + 1] = i;
+        }
+    }
+
+    /**
+     * Returns the number of districts.
+     */
+    public int size() {
+        return heap.length;
+    }
+
+    /**
+     * Returns the number of robots in all districts.
+     */
+    public int total() {
+        return total;
+    }
+
+    public int load(int district) {
+        checkDistrict(district);
+        return loads[district];
+    }
+
+    /**
+     * Returns the district with the lowest load, the lowest numbered one if several have the same load.
+     */
+    public int leastLoaded() {
+        return heap[0];
+    }
+
+    /**
+     * Adds a robot to the district.
+     */
+    public void increment(int district) {
+        checkDistrict(district);
+        loads[district]++;
+        total++;
+        siftDown(positions[district]);
+    }
+
+    /**
+     * Removes a robot from the district.
+     *
+     * @throws IllegalStateException if the district is empty
+     */
+    public void decrement(int district) {
+        checkDistrict(district);
+        if (loads[district] == 0) {
+            throw new IllegalStateException("District " + district + " is empty");
+        }
+        loads[district]--;
+        total--;
+        siftUp(positions[district]);
+    }
+
+    /**
+     * Moves a robot from a district to another.
+     */
+    public void move(int from, int to) {
+        if (from != to) {
+            decrement(from);
+            increment(to);
+        }
+    }
+
+    /**
+     * Returns a copy of the loads, indexed by district (index 0 is unused).
+     */
+    public int[] loads() {
+        return loads.clone();
+    }
+
+    private void checkDistrict(int district) {
+        if (district < 1 || district > heap.length) {
+            throw new IllegalArgumentException("Unknown district: " + district);
+        }
+    }
+
+    /* Heap operations */
+
+    private boolean before(int first, int second) {
+        return loads[first] < loads[second] || loads[first] == loads[second] && first < second;
+    }
+
+    private void siftUp(int index) {
+        int district = heap[index];
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (!before(district, heap[parent])) {
+                break;
+            }
+            place(heap[parent], index);
+            index = parent;
+        }
+        place(district, index);
+    }
+
+    private void siftDown(int index) {
+        int district = heap[index];
+        while (true) {
+            int child = 2 * index + 1;
+            if (child >= heap.length) {
+                break;
+            }
+            if (child + 1 < heap.length && before(heap[child + 1], heap[child])) {
+                child++;
+            }
+            if (!before(heap[child], district)) {
+                break;
+            }
+            place(heap[child], index);
+            index = child;
+        }
+        place(district, index);
+    }
+
+    private void place(int district, int index) {
+        heap[index] = district;
+        positions[district] = index;
+    }
+}
@@ -1,20 +1,166 @@
 package io.github.giuliapais.commons;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
 /**
  * Represents the map of the Greenfield city.
- * The map has 4 districts and spans 10x10 blocks.
+ * By default the map has 4 districts and spans 10x10 blocks, but it can have any size and be divided in any number
+ * of rectangular districts, see {@link #parse(String)}.
+ * <p>
+ * The district of a point is found in constant time with a cell index: the map is cut into bands along the edges
+ * of all the districts, so each cell (the intersection of a band on the x axis and one on the y axis) lies entirely
+ * in one district or outside all of them.
  */
 public class GreenfieldMap {
+    /* Map spec of the default map */
+    public static final String DEFAULT = "default";
+
     private final District[] districts;
-    private final byte width = 10;
-    private final byte height = 10;
+    private final int width;
+    private final int height;
+    /* xBands[x] and yBands[y] are the bands of a point, cells[yBand * xBandCount + xBand] the district of its cell */
+    private final int[] xBands;
+    private final int[] yBands;
+    private final int xBandCount;
+    private final int[] cells;
 
 
     /**
-     * Creates a new GreenfieldMap object.
+     * Creates the default map, 10x10 blocks divided in 4 districts.
+     * Districts are numbered counterclockwise starting from the one at the origin.
      */
     public GreenfieldMap() {
-        districts = new District[4];
+        this(10, 10, quadrants(10, 10));
+    }
+
+    /**
+     * Creates a map with the given districts.
+     *
+     * @param width     number of blocks on the x axis
+     * @param height    number of blocks on the y axis
+     * @param districts the districts, with ids from 1 to n in this order. They must not overlap, the points that
+     *                  are not in a district are not part of the city
+     * @throws IllegalArgumentException if the districts are not valid
+     */
+    public GreenfieldMap(int width, int height, List<District> districts) {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("Invalid map size: " + width + "x" + height);
+        }
+        if (districts.isEmpty()) {
+            throw new IllegalArgumentException("The map must have at least one district");
+        }
+        this.width = width;
+        this.height = height;
+        this.districts = districts.toArray(new District[0]);
+        int[] xEdges = new int[2 * this.districts.length + 2];
+        int[] yEdges = new int[2 * this.districts.length + 2];
+        for (int i = 0; i < this.districts.length; i++) {
+            District district = this.districts[i];
+            if (district.id() != i + 1) {
+                throw new IllegalArgumentException("District " + (i + 1) + " has id " + district.id());
+            }
+            checkSpan(district, district.span_x(), width);
+            checkSpan(district, district.span_y(), height);
+            xEdges[2 * i] = district.span_x()[0];
+            xEdges[2 * i + 1] = district.span_x()[1] + 1;
+            yEdges[2 * i] = district.span_y()[0];
+            yEdges[2 * i + 1] = district.span_y()[1] + 1;
+        }
+        xEdges[xEdges.length - 1] = width;
+        yEdges[yEdges.length - 1] = height;
+        xBands = bands(xEdges, width);
+        yBands = bands(yEdges, height);
+        xBandCount = xBands[width - 1] + 1;
+        cells = new int[(yBands[height - 1] + 1) * xBandCount];
+        for (District district : this.districts) {
+            for (int yBand = yBands[district.span_y()[0]]; yBand <= yBands[district.span_y()[1]]; yBand++) {
+                for (int xBand = xBands[district.span_x()[0]]; xBand <= xBands[district.span_x()[1]]; xBand++) {
+                    int cell = yBand * xBandCount + xBand;
+                    if (cells[cell] != 0) {
+                        throw new IllegalArgumentException(
+                                "Districts " + cells[cell] + " and " + district.id() + " overlap");
+                    }
+                    cells[cell] = district.id();
+                }
+            }
+        }
+    }
+
+    /**
+     * Creates a map divided in a grid of districts of (almost) the same size. Districts are numbered by row, starting
+     * from the one at the origin.
+     *
+     * @param width   number of blocks on the x axis
+     * @param height  number of blocks on the y axis
+     * @param rows    number of districts on the y axis
+     * @param columns number of districts on the x axis
+     */
+    public static GreenfieldMap grid(int width, int height, int rows, int columns) {
+        if (rows <= 0 || columns <= 0 || rows > height || columns > width) {
+            throw new IllegalArgumentException("Invalid grid of districts for a " + width + "x" + height +
+                    " map: " + rows + "x" + columns);
+        }
+        List<District> districts = new ArrayList<>(rows * columns);
+        for (int row = 0; row < rows; row++) {
+            int[] spanY = {row * height / rows, (row + 1) * height / rows - 1};
+            for (int column = 0; column < columns; column++) {
+                int[] spanX = {column * width / columns, (column + 1) * width / columns - 1};
+                districts.add(new District(districts.size() + 1, spanX, spanY));
+            }
+        }
+        return new GreenfieldMap(width, height, districts);
+    }
+
+    /**
+     * Creates a map from its spec, which is one of:
+     * <ul>
+     *     <li>{@code default}: the default map</li>
+     *     <li>{@code <width>x<height>:<rows>x<columns>}: a grid of districts, e.g. {@code 200x200:20x20}</li>
+     *     <li>{@code <width>x<height>:<x0>-<x1>,<y0>-<y1>;...}: the given districts, each with the span of its
+     *     blocks on the x and y axes, e.g. {@code 10x4:0-5,0-3;6-9,0-3}</li>
+     * </ul>
+     *
+     * @throws IllegalArgumentException if the spec is not valid
+     */
+    public static GreenfieldMap parse(String spec) {
+        spec = spec.trim();
+        if (spec.isEmpty() || spec.equals(DEFAULT)) {
+            return new GreenfieldMap();
+        }
+        try {
+            String[] parts = spec.split(":", 2);
+            int[] size = pair(parts[0], "x");
+            if (!parts[1].contains(",")) {
+                int[] grid = pair(parts[1], "x");
+                return grid(size[0], size[1], grid[0], grid[1]);
+            }
+            List<District> districts = new ArrayList<>();
+            for (String district : parts[1].split(";")) {
+                String[] spans = district.split(",");
+                if (spans.length != 2) {
+                    throw new IllegalArgumentException("Invalid district: " + district);
+                }
+                districts.add(new District(districts.size() + 1, pair(spans[0], "-"), pair(spans[1], "-")));
+            }
+            return new GreenfieldMap(size[0], size[1], districts);
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid map spec: " + spec, e);
+        }
+    }
+
+    /* Parses two ints separated by the given separator */
+    private static int[] pair(String value, String separator) {
+        String[] parts = value.trim().split(separator);
+        if (parts.length != 2) {
+            throw new IllegalArgumentException("Expected two numbers separated by " + separator + ": " + value);
+        }
+        return new int[]{Integer.parseInt(parts[0].trim()), Integer.parseInt(parts[1].trim())};
+    }
+
+    private static List<District> quadrants(int width, int height) {
+        List<District> districts = new ArrayList<>(4);
         for (int i = 1; i < 5; i++) {
             int[] temp_x = new int[2];
             int[] temp_y = new int[2];
@@ -30,8 +176,33 @@ public class GreenfieldMap {
                 temp_y[0] = (height / 2);
                 temp_y[1] = (height - 1);
             }
-            districts[i - 1] = new District(i, temp_x, temp_y);
+            districts.add(new District(i, temp_x, temp_y));
         }
+        return districts;
+    }
+
+    private static void checkSpan(District district, int[] span, int size) {
+        if (span.length != 2 || span[0] < 0 || span[0] > span[1] || span[1] >= size) {
+            throw new IllegalArgumentException("District " + district.id() + " has an invalid span: " +
+                    Arrays.toString(span));
+        }
+    }
+
+    /* Returns the band of each coordinate, given the coordinates where bands start (in any order) */
+    private static int[] bands(int[] edges, int size) {
+        boolean[] isEdge = new boolean[size + 1];
+        for (int edge : edges) {
+            isEdge[edge] = true;
+        }
+        int[] bands = new int[size];
+        int band = 0;
+        for (int i = 1; i < size; i++) {
+            if (isEdge[i]) {
+                band++;
+            }
+            bands[i] = band;
+        }
+        return bands;
     }
 
     /**
@@ -43,6 +214,14 @@ public class GreenfieldMap {
         return districts;
     }
 
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
     /**
      * Returns the district with the given id.
      *
@@ -53,15 +232,27 @@ public class GreenfieldMap {
         return districts[id - 1];
     }
 
+    /**
+     * Returns the id of the district that contains the given point.
+     *
+     * @return the id of the district, 0 if the point is not in any district
+     */
+    public int districtAt(int x, int y) {
+        if (x < 0 || x >= width || y < 0 || y >= height) {
+            return 0;
+        }
+        return cells[yBands[y] * xBandCount + xBands[x]];
+    }
+
     /**
      * Given a set of coordinates and a district id,
      * returns true if the coordinates are in the district, false otherwise.
      *
      * @param coords   x and y coordinates as int array
-     * @param district the id of the district (1-4)
+     * @param district the id of the district (1 to n)
      * @return true if the coordinates are in the district, false otherwise
      */
     public boolean inDistrict(int[] coords, int district) {
-        return districts[district - 1].inDistrict(coords);
+        return district > 0 && districtAt(coords[0], coords[1]) == district;
     }
 }
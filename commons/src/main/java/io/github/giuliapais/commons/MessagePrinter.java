@@ -59,7 +59,7 @@ public class MessagePrinter {
         return Ansi.colorize("HTTP server started. API requests can be sent to " +
                         serverURI.toString() + "." +
                         STRING_SEP +
-                        "To stop the server, use the command 'quit'.",
+                        "To stop the server, use the command 'quit'. To show the ingestion and HTTP metrics, use 'metrics'.",
                 format);
     }
 
@@ -131,7 +131,13 @@ public class MessagePrinter {
                         STRING_SEP +
                         "--> \"quit\" to exit" +
                         STRING_SEP +
-                        "--> \"fix\" to send the robot for repairs" +
+                        "--> \"fix [id]\" to send the robot for repairs" +
+                        STRING_SEP +
+                        "--> \"sensors [id]\" to show the statistics of the last readings of each sensor" +
+                        STRING_SEP +
+                        "--> \"crash [id]\" to stop the robot without leaving the network, as if it crashed" +
+                        STRING_SEP +
+                        "    ([id] chooses among the robots of the process, the first one if missing)" +
                         STRING_SEP +
                         "--> \"help\" to show this message",
                 ACCENT_FORMAT_2
@@ -0,0 +1,12 @@
+package io.github.giuliapais.commons;
+
+/**
+ * How {@link DistrictBalancer#planRebalance()} chooses the robots that change district and their new positions.
+ * Both strategies make the fewest moves, they differ in the distance the robots travel.
+ */
+public enum RebalanceStrategy {
+    /* The first robots found in the register move, to a random position in their new district */
+    RANDOM,
+    /* The robots closest to the districts that need them move, to the nearest block of their new district */
+    NEAREST
+}
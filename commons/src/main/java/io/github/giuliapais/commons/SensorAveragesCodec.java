@@ -0,0 +1,330 @@
+package io.github.giuliapais.commons;
+
+import io.github.giuliapais.commons.models.SensorType;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Compact binary encoding of {@link io.github.giuliapais.commons.models.SensorAverages} messages, an alternative
+ * to JSON for large fleets. Robots publishing in this format append {@link #TOPIC_SUFFIX} to their pollution topic,
+ * so the server knows how to decode each message.
+ * <p>
+ * Layout of a message:
+ * <pre>
+ * | version and encoding (byte) | robot id (varint) | timestamp - EPOCH (zigzag varlong) | count (varint) | averages |
+ * </pre>
+ * Version 2 messages also carry the averages of sensors other than PM10 (the averages above), after them:
+ * <pre>
+ * | series count (varint) | sensor type (byte) | count (varint) | averages | sensor type (byte) | ...
+ * </pre>
+ * Messages with only PM10 averages are written as version 1, which servers that don't know the series can read.
+ * Messages of robots without a PM10 sensor are written as version 2 with the {@link #NO_PM10} flag in the header, and
+ * without the count and averages of PM10.
+ * Averages are either {@link Encoding#FLOAT32} values (4 bytes each, lossy) or {@link Encoding#DELTA} values:
+ * each double is XOR-ed with the previous one and only the non-zero bytes of the result are written, after a header
+ * byte with the number of leading and trailing zero bytes. Averages of similar magnitude share the sign, exponent
+ * and first mantissa bits, so the leading bytes are often omitted.
+ */
+public final class SensorAveragesCodec {
+    public static final String TOPIC_SUFFIX = "/bin";
+    /* Timestamps are written relative to 2023-01-01T00:00:00Z */
+    static final long EPOCH = 1_672_531_200_000L;
+    private static final int VERSION = 2;
+    private static final int PM10_ONLY_VERSION = 1;
+    /* Flag of the first byte, next to the encoding: the message has no PM10 averages (version 2 only) */
+    private static final int NO_PM10 = 0x8;
+    private static final int ZERO_DELTA = 0x80;
+
+    public enum Encoding {
+        FLOAT32,
+        DELTA
+    }
+
+    private SensorAveragesCodec() {
+    }
+
+    /**
+     * Returns the maximum size of an encoded message with the given number of averages.
+     */
+    public static int maxEncodedSize(int length) {
+        return 1 + 5 + 10 + 5 + length * (Double.BYTES + 1);
+    }
+
+    /**
+     * Returns the maximum size of an encoded message with the given number of averages for each sensor, indexed by
+     * {@link SensorType} ordinal.
+     */
+    public static int maxEncodedSize(int[] lengths) {
+        int size = maxEncodedSize(lengths[SensorType.PM10.ordinal()]) + 5;
+        for (int type = 0; type < lengths.length; type++) {
+            if (type != SensorType.PM10.ordinal()) {
+                size += 1 + 5 + lengths[type] * (Double.BYTES + 1);
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Encodes a message.
+     *
+     * @return the encoded bytes
+     */
+    public static byte[] encode(int robotId, long timestamp, double[] averages, int length, Encoding encoding) {
+        byte[] buffer = new byte[maxEncodedSize(length)];
+        int size = encode(robotId, timestamp, averages, length, encoding, buffer);
+        return Arrays.copyOf(buffer, size);
+    }
+
+    /**
+     * Encodes a message with the averages of several sensors.
+     *
+     * @param series  the averages of each sensor, indexed by {@link SensorType} ordinal, null for the sensors the
+     *                robot doesn't have
+     * @param lengths the number of averages of each sensor
+     * @return the encoded bytes
+     */
+    public static byte[] encode(int robotId, long timestamp, double[][] series, int[] lengths, Encoding encoding) {
+        int pm10 = SensorType.PM10.ordinal();
+        boolean hasPm10 = series[pm10] != null;
+        double[] averages = hasPm10 ? series[pm10] : new double[0];
+        int length = hasPm10 ? lengths[pm10] : 0;
+        int seriesCount = 0;
+        for (int type = 0; type < series.length; type++) {
+            if (type != pm10 && series[type] != null) {
+                seriesCount++;
+            }
+        }
+        if (seriesCount == 0) {
+            return encode(robotId, timestamp, averages, length, encoding);
+        }
+        byte[] buffer = new byte[maxEncodedSize(lengths)];
+        int position = writeHeader(buffer, VERSION, hasPm10 ? 0 : NO_PM10, robotId, timestamp, encoding);
+        if (hasPm10) {
+            position = writeAverages(buffer, position, averages, length, encoding);
+        }
+        position = writeVarLong(buffer, position, seriesCount);
+        for (int type = 0; type < series.length; type++) {
+            if (type != pm10 && series[type] != null) {
+                buffer[position++] = (byte) type;
+                position = writeAverages(buffer, position, series[type], lengths[type], encoding);
+            }
+        }
+        return Arrays.copyOf(buffer, position);
+    }
+
+    /**
+     * Encodes a message in the given buffer, which must have at least {@link #maxEncodedSize(int)} bytes.
+     *
+     * @return the number of bytes written
+     */
+    public static int encode(int robotId, long timestamp, double[] averages, int length, Encoding encoding,
+                             byte[] buffer) {
+        int position = writeHeader(buffer, PM10_ONLY_VERSION, 0, robotId, timestamp, encoding);
+        return writeAverages(buffer, position, averages, length, encoding);
+    }
+
+    private static int writeHeader(byte[] buffer, int version, int flags, int robotId, long timestamp,
+                                   Encoding encoding) {
+        int position = 0;
+        buffer[position++] = (byte) (version << 4 | flags | encoding.ordinal());
+        position = writeVarLong(buffer, position, robotId & 0xFFFFFFFFL);
+        return writeVarLong(buffer, position, zigzag(timestamp - EPOCH));
+    }
+
+    /* Writes the count and the averages of a sensor */
+    private static int writeAverages(byte[] buffer, int position, double[] averages, int length,
+                                     Encoding encoding) {
+        position = writeVarLong(buffer, position, length);
+        if (encoding == Encoding.FLOAT32) {
+            for (int i = 0; i < length; i++) {
+                int bits = Float.floatToIntBits((float) averages[i]);
+                for (int shift = 24; shift >= 0; shift -= 8) {
+                    buffer[position++] = (byte) (bits >>> shift);
+                }
+            }
+            return position;
+        }
+        long previous = 0;
+        for (int i = 0; i < length; i++) {
+            long bits = Double.doubleToLongBits(averages[i]);
+            long delta = bits ^ previous;
+            previous = bits;
+            if (delta == 0) {
+                buffer[position++] = (byte) ZERO_DELTA;
+                continue;
+            }
+            int leading = Long.numberOfLeadingZeros(delta) / 8;
+            int trailing = Long.numberOfTrailingZeros(delta) / 8;
+            buffer[position++] = (byte) (leading << 4 | trailing);
+            for (int shift = 8 * (7 - leading); shift >= 8 * trailing; shift -= 8) {
+                buffer[position++] = (byte) (delta >>> shift);
+            }
+        }
+        return position;
+    }
+
+    /**
+     * Decodes a message and passes its content to the consumer: the PM10 averages (if the robot has the sensor), then
+     * the averages of each other sensor. The consumer is called only once the whole message is decoded.
+     *
+     * @param buffer array the averages are decoded into, replaced with a larger one if too small
+     * @return the array the averages were decoded into, to be reused for the next message
+     * @throws IOException if the payload is not a valid message
+     */
+    public static double[] decode(byte[] payload, double[] buffer, SensorAveragesConsumer consumer)
+            throws IOException {
+        Reader reader = new Reader(payload);
+        int header = reader.readByte();
+        int version = header >>> 4;
+        int ordinal = header & 0xF & ~NO_PM10;
+        boolean hasPm10 = (header & NO_PM10) == 0;
+        if (version < PM10_ONLY_VERSION || version > VERSION || ordinal >= Encoding.values().length
+                || !hasPm10 && version == PM10_ONLY_VERSION) {
+            throw new IOException("Unsupported sensor averages format: " + header);
+        }
+        Encoding encoding = Encoding.values()[ordinal];
+        long robotId = reader.readVarLong();
+        if (robotId > 0xFFFFFFFFL) {
+            throw new IOException("Invalid robot id");
+        }
+        long timestamp = unzigzag(reader.readVarLong()) + EPOCH;
+        // All the averages are decoded one after the other in the buffer
+        int length = hasPm10 ? readLength(reader, payload) : 0;
+        buffer = readAverages(reader, encoding, ensureCapacity(buffer, length), 0, length);
+        int[] series = null;
+        if (version > PM10_ONLY_VERSION) {
+            long seriesCount = reader.readVarLong();
+            if (seriesCount >= SensorType.values().length) {
+                throw new IOException("Invalid number of series: " + seriesCount);
+            }
+            // Type and number of averages of each series
+            series = new int[2 * (int) seriesCount];
+            int end = length;
+            int seen = 1 << SensorType.PM10.ordinal();
+            for (int i = 0; i < series.length; i += 2) {
+                int type = reader.readByte();
+                if (type >= SensorType.values().length || (seen & 1 << type) != 0) {
+                    throw new IOException("Invalid or repeated sensor type: " + type);
+                }
+                seen |= 1 << type;
+                series[i] = type;
+                series[i + 1] = readLength(reader, payload);
+                buffer = readAverages(reader, encoding, ensureCapacity(buffer, end + series[i + 1]), end,
+                        series[i + 1]);
+                end += series[i + 1];
+            }
+        }
+        if (reader.position != payload.length) {
+            throw new IOException("Unexpected bytes after the sensor averages");
+        }
+        if (hasPm10) {
+            consumer.accept((int) robotId, timestamp, buffer, length);
+        }
+        if (series != null) {
+            int start = length;
+            for (int i = 0; i < series.length; i += 2) {
+                // Each series is moved to the start of the buffer, over the ones already passed to the consumer
+                System.arraycopy(buffer, start, buffer, 0, series[i + 1]);
+                consumer.acceptSeries((int) robotId, timestamp, SensorType.values()[series[i]], buffer,
+                        series[i + 1]);
+                start += series[i + 1];
+            }
+        }
+        return buffer;
+    }
+
+    private static int readLength(Reader reader, byte[] payload) throws IOException {
+        long length = reader.readVarLong();
+        if (length > payload.length) {
+            throw new IOException("Invalid number of averages: " + length);
+        }
+        return (int) length;
+    }
+
+    private static double[] ensureCapacity(double[] buffer, int capacity) {
+        return buffer.length >= capacity ? buffer : Arrays.copyOf(buffer, Math.max(capacity, 2 * buffer.length));
+    }
+
+    /* Decodes the given number of averages into the buffer, from the given offset */
+    private static double[] readAverages(Reader reader, Encoding encoding, double[] buffer, int offset, int length)
+            throws IOException {
+        if (encoding == Encoding.FLOAT32) {
+            for (int i = offset; i < offset + length; i++) {
+                buffer[i] = Float.intBitsToFloat((int) reader.readBytes(Float.BYTES));
+            }
+            return buffer;
+        }
+        long previous = 0;
+        for (int i = offset; i < offset + length; i++) {
+            int zeros = reader.readByte();
+            long delta = 0;
+            if (zeros != ZERO_DELTA) {
+                int leading = zeros >>> 4;
+                int trailing = zeros & 0xF;
+                if (leading + trailing >= Long.BYTES) {
+                    throw new IOException("Invalid average delta header: " + zeros);
+                }
+                delta = reader.readBytes(Long.BYTES - leading - trailing) << 8 * trailing;
+            }
+            previous ^= delta;
+            buffer[i] = Double.longBitsToDouble(previous);
+        }
+        return buffer;
+    }
+
+    private static int writeVarLong(byte[] buffer, int position, long value) {
+        while ((value & ~0x7FL) != 0) {
+            buffer[position++] = (byte) (value & 0x7F | 0x80);
+            value >>>= 7;
+        }
+        buffer[position++] = (byte) value;
+        return position;
+    }
+
+    private static long zigzag(long value) {
+        return value << 1 ^ value >> 63;
+    }
+
+    private static long unzigzag(long value) {
+        return value >>> 1 ^ -(value & 1);
+    }
+
+    private static final class Reader {
+        private final byte[] payload;
+        private int position;
+
+        Reader(byte[] payload) {
+            this.payload = payload;
+        }
+
+        int readByte() throws EOFException {
+            if (position == payload.length) {
+                throw new EOFException("Truncated sensor averages message");
+            }
+            return payload[position++] & 0xFF;
+        }
+
+        /* Big-endian unsigned value of the given number of bytes */
+        long readBytes(int count) throws EOFException {
+            long value = 0;
+            for (int i = 0; i < count; i++) {
+                value = value << 8 | readByte();
+            }
+            return value;
+        }
+
+        long readVarLong() throws IOException {
+            long value = 0;
+            for (int shift = 0; shift < Long.SIZE; shift += 7) {
+                int b = readByte();
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IOException("Malformed varint");
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package io.github.giuliapais.commons;
+
+import io.github.giuliapais.commons.models.SensorType;
+
+/**
+ * Receives the content of a decoded {@link io.github.giuliapais.commons.models.SensorAverages} message. The
+ * {@code averages} array is only valid until the method returns, as decoders reuse it for the next message.
+ */
+@FunctionalInterface
+public interface SensorAveragesConsumer {
+    /**
+     * Receives the PM10 averages of a message, called once per message unless the robot has no PM10 sensor.
+     */
+    void accept(int robotId, long timestamp, double[] averages, int length);
+
+    /**
+     * Receives the averages of another sensor of the same message, after {@link #accept} (if called): once per
+     * sensor in the message, if any. Ignored by default.
+     */
+    default void acceptSeries(int robotId, long timestamp, SensorType type, double[] averages, int length) {
+    }
+}
@@ -1,19 +1,32 @@
 package io.github.giuliapais.commons.models;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+
 import java.util.List;
+import java.util.Map;
 
 public class SensorAverages {
     private int robotId;
     private long timestamp;
+    /* Averages of the PM10 sensor, omitted when the robot doesn't have it */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
     private List<Double> averages;
+    /* Averages of the sensors other than PM10, omitted when the robot has none */
+    @JsonInclude(JsonInclude.Include.NON_EMPTY)
+    private Map<SensorType, List<Double>> series;
 
     public SensorAverages() {
     }
 
     public SensorAverages(int robotId, long timestamp, List<Double> averages) {
+        this(robotId, timestamp, averages, null);
+    }
+
+    public SensorAverages(int robotId, long timestamp, List<Double> averages, Map<SensorType, List<Double>> series) {
         this.robotId = robotId;
         this.timestamp = timestamp;
         this.averages = averages;
+        this.series = series;
     }
 
     public int getRobotId() {
@@ -32,6 +45,9 @@ public class SensorAverages {
         this.timestamp = timestamp;
     }
 
+    /**
+     * Returns the averages of the PM10 sensor, null if the robot doesn't have it.
+     */
     public List<Double> getAverages() {
         return averages;
     }
@@ -39,4 +55,15 @@ public class SensorAverages {
     public void setAverages(List<Double> averages) {
         this.averages = averages;
     }
+
+    /**
+     * Returns the averages of the other sensors by type, null if there are none.
+     */
+    public Map<SensorType, List<Double>> getSeries() {
+        return series;
+    }
+
+    public void setSeries(Map<SensorType, List<Double>> series) {
+        this.series = series;
+    }
 }
@@ -0,0 +1,16 @@
+package io.github.giuliapais.commons.models;
+
+/**
+ * The sensors a robot can carry. PM10 is the main one, the only one of a robot by default: its averages are the
+ * {@link SensorAverages#getAverages() averages} of a message, those of the other sensors are its
+ * {@link SensorAverages#getSeries() series}.
+ * <p>
+ * The binary formats identify the sensors by position, so new sensors must be added at the end.
+ */
+public enum SensorType {
+    PM10,
+    PM2_5,
+    NO2,
+    /* Air temperature, in degrees Celsius */
+    TEMPERATURE
+}
@@ -8,6 +8,8 @@ import org.junit.jupiter.api.Test;
 
 import java.lang.reflect.Field;
 import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -20,6 +22,17 @@ class DistrictBalancerTest {
         districtBalancer = new DistrictBalancer();
     }
 
+    /* The district register of a balancer with the given number of robots in each district */
+    private static DistrictLoadHeap loadsOf(HashMap<Integer, Integer> districts) {
+        DistrictLoadHeap loads = new DistrictLoadHeap(districts.size());
+        districts.forEach((district, count) -> {
+            for (int i = 0; i < count; i++) {
+                loads.increment(district);
+            }
+        });
+        return loads;
+    }
+
     @Test
     @DisplayName("Adding a robot works properly")
     void addRobot() throws NoSuchFieldException, IllegalAccessException {
@@ -32,14 +45,13 @@ class DistrictBalancerTest {
         districtRegisterField.setAccessible(true);
         HashMap<Integer, Integer> robotRegister =
                 (HashMap<Integer, Integer>) robotRegisterField.get(districtBalancer);
-        HashMap<Integer, Integer> districtRegister =
-                (HashMap<Integer, Integer>) districtRegisterField.get(districtBalancer);
+        DistrictLoadHeap districtRegister = (DistrictLoadHeap) districtRegisterField.get(districtBalancer);
         assertEquals(1, robotRegister.size());
         assertTrue(robotRegister.containsKey(1) && robotRegister.get(1) != null && robotRegister.get(1) == 1);
         assertEquals(4, districtRegister.size());
-        assertTrue(districtRegister.containsKey(1) && districtRegister.get(1) == 1);
+        assertEquals(1, districtRegister.load(1));
         for (int i = 2; i <= 4; i++) {
-            assertTrue(districtRegister.containsKey(i) && districtRegister.get(i) == 0);
+            assertEquals(0, districtRegister.load(i));
         }
     }
 
@@ -55,15 +67,14 @@ class DistrictBalancerTest {
         districtRegisterField.setAccessible(true);
         HashMap<Integer, Integer> robotRegister =
                 (HashMap<Integer, Integer>) robotRegisterField.get(districtBalancer);
-        HashMap<Integer, Integer> districtRegister =
-                (HashMap<Integer, Integer>) districtRegisterField.get(districtBalancer);
+        DistrictLoadHeap districtRegister = (DistrictLoadHeap) districtRegisterField.get(districtBalancer);
         // Removing a robot that exists
         boolean removed = districtBalancer.removeRobot(1);
         assertTrue(removed);
         assertEquals(3, robotRegister.size());
         assertFalse(robotRegister.containsKey(1));
         assertEquals(4, districtRegister.size());
-        assertTrue(districtRegister.containsKey(1) && districtRegister.get(1) == 0);
+        assertEquals(0, districtRegister.load(1));
         assertNull(districtBalancer.getRobotPosition(1));
         // Removing a robot that doesn't exist
         removed = districtBalancer.removeRobot(10);
@@ -81,8 +92,7 @@ class DistrictBalancerTest {
         districtRegisterField.setAccessible(true);
         HashMap<Integer, Integer> robotRegister =
                 (HashMap<Integer, Integer>) robotRegisterField.get(districtBalancer);
-        HashMap<Integer, Integer> districtRegister =
-                (HashMap<Integer, Integer>) districtRegisterField.get(districtBalancer);
+        DistrictLoadHeap districtRegister = (DistrictLoadHeap) districtRegisterField.get(districtBalancer);
         for (int i = 1; i <= 6; i++) {
             districtBalancer.addRobot(i);
         }
@@ -92,8 +102,8 @@ class DistrictBalancerTest {
         assertEquals(4, robot4.getDistrict());
         assertEquals(1, robotRegister.get(1));
         assertEquals(4, robotRegister.get(4));
-        assertEquals(2, districtRegister.get(1));
-        assertEquals(1, districtRegister.get(4));
+        assertEquals(2, districtRegister.load(1));
+        assertEquals(1, districtRegister.load(4));
         HashMap<Integer, MapPosition> changes = new HashMap<>();
         changes.put(1, new MapPosition(4, 8, 1));
         changes.put(4, new MapPosition(1, 1, 1));
@@ -106,8 +116,8 @@ class DistrictBalancerTest {
         assertEquals(1, districtBalancer.getRobotPosition(4).getY());
         assertEquals(1, robotRegister.get(4));
         assertEquals(4, robotRegister.get(1));
-        assertEquals(2, districtRegister.get(1));
-        assertEquals(1, districtRegister.get(4));
+        assertEquals(2, districtRegister.load(1));
+        assertEquals(1, districtRegister.load(4));
     }
 
 //    @Test
@@ -163,6 +173,20 @@ class DistrictBalancerTest {
         assertTrue(greenfieldMap.inDistrict(gridPosition2, 1));
     }
 
+    @Test
+    @DisplayName("Nearest robots are the ones in the same district first, then by distance")
+    void getNearestRobots() {
+        districtBalancer.addRobot(1, new MapPosition(1, 0, 0));
+        districtBalancer.addRobot(2, new MapPosition(1, 4, 4));
+        districtBalancer.addRobot(3, new MapPosition(2, 0, 5));
+        districtBalancer.addRobot(4, new MapPosition(1, 1, 1));
+        districtBalancer.addRobot(5, new MapPosition(3, 9, 9));
+        assertEquals(List.of(4, 2, 3), districtBalancer.getNearestRobots(1, 3));
+        assertEquals(List.of(4, 2, 3, 5), districtBalancer.getNearestRobots(1, 10));
+        assertTrue(districtBalancer.getNearestRobots(1, 0).isEmpty());
+        assertTrue(districtBalancer.getNearestRobots(6, 3).isEmpty());
+    }
+
     @Nested
     class LoadBalancing {
         @Test
@@ -178,6 +202,38 @@ class DistrictBalancerTest {
             }
         }
 
+        @Test
+        void whenAddingInBulk() {
+            districtBalancer.addRobot(1);
+            HashMap<Integer, MapPosition> added = districtBalancer.addRobots(List.of(2, 3, 4, 5, 6, 1));
+            // The robot already registered is ignored, the others fill the districts in order
+            assertEquals(5, added.size());
+            assertEquals(1, districtBalancer.getRobotPosition(1).getDistrict());
+            for (int i = 2; i <= 6; i++) {
+                int expected = i <= 4 ? i : i - 4;
+                assertEquals(expected, added.get(i).getDistrict());
+                assertEquals(expected, districtBalancer.getRobotPosition(i).getDistrict());
+            }
+            assertEquals(List.of(1, 5), districtBalancer.getSnapshot().get(1));
+            districtBalancer.addRobot(7);
+            assertEquals(3, districtBalancer.getRobotPosition(7).getDistrict());
+        }
+
+        @Test
+        void whenMapHasManyDistricts() {
+            GreenfieldMap map = GreenfieldMap.grid(40, 30, 10, 20);
+            DistrictBalancer balancer = new DistrictBalancer(map);
+            for (int i = 1; i <= 600; i++) {
+                balancer.addRobot(i);
+                MapPosition position = balancer.getRobotPosition(i);
+                assertEquals((i - 1) % 200 + 1, position.getDistrict());
+                assertTrue(map.inDistrict(new int[]{position.getX(), position.getY()}, position.getDistrict()));
+            }
+            HashMap<Integer, List<Integer>> snapshot = balancer.getSnapshot();
+            assertEquals(200, snapshot.size());
+            snapshot.values().forEach(robots -> assertEquals(3, robots.size()));
+        }
+
 //        @Test
 //        void whenMixedOP() {
 //            // Adding 4, removing 1
@@ -213,7 +269,7 @@ class DistrictBalancerTest {
             robots.put(2, 2);
             robots.put(3, 3);
             robotRegisterField.set(districtBalancer, robots);
-            districtRegisterField.set(districtBalancer, districts);
+            districtRegisterField.set(districtBalancer, loadsOf(districts));
 
             HashMap<Integer, Integer> changes = districtBalancer.rebalance();
             assertNull(changes);
@@ -239,7 +295,7 @@ class DistrictBalancerTest {
             robots.put(4, 3);
             robots.put(5, 4);
             robotRegisterField.set(districtBalancer, robots);
-            districtRegisterField.set(districtBalancer, districts);
+            districtRegisterField.set(districtBalancer, loadsOf(districts));
 
             HashMap<Integer, Integer> changes = districtBalancer.rebalance();
             assertNull(changes);
@@ -259,7 +315,7 @@ class DistrictBalancerTest {
             robots.put(7, 4);
             robots.put(8, 4);
             robotRegisterField.set(districtBalancer, robots);
-            districtRegisterField.set(districtBalancer, districts);
+            districtRegisterField.set(districtBalancer, loadsOf(districts));
 
             changes = districtBalancer.rebalance();
             assertNull(changes);
@@ -285,12 +341,13 @@ class DistrictBalancerTest {
             robots.put(4, 3);
             robots.put(5, 4);
             robotRegisterField.set(districtBalancer, robots);
-            districtRegisterField.set(districtBalancer, districts);
+            districtRegisterField.set(districtBalancer, loadsOf(districts));
 
             HashMap<Integer, Integer> changes = districtBalancer.rebalance();
             assertNotNull(changes);
             assertEquals(2, changes.size());
-            assertEquals(districtRegisterField.get(districtBalancer), districts);
+            assertArrayEquals(loadsOf(districts).loads(),
+                    ((DistrictLoadHeap) districtRegisterField.get(districtBalancer)).loads());
             assertEquals(robotRegisterField.get(districtBalancer), robots);
 
             districts.clear();
@@ -306,13 +363,14 @@ class DistrictBalancerTest {
             robots.put(5, 3);
             robots.put(6, 4);
             robotRegisterField.set(districtBalancer, robots);
-            districtRegisterField.set(districtBalancer, districts);
+            districtRegisterField.set(districtBalancer, loadsOf(districts));
 
             changes = districtBalancer.rebalance();
             assertNotNull(changes);
             assertEquals(1, changes.size());
             assertFalse(changes.containsValue(2));
-            assertEquals(districtRegisterField.get(districtBalancer), districts);
+            assertArrayEquals(loadsOf(districts).loads(),
+                    ((DistrictLoadHeap) districtRegisterField.get(districtBalancer)).loads());
             assertEquals(robotRegisterField.get(districtBalancer), robots);
 
             districts.clear();
@@ -329,15 +387,87 @@ class DistrictBalancerTest {
             robots.put(6, 4);
             robots.put(7, 4);
             robotRegisterField.set(districtBalancer, robots);
-            districtRegisterField.set(districtBalancer, districts);
+            districtRegisterField.set(districtBalancer, loadsOf(districts));
 
             changes = districtBalancer.rebalance();
             assertNotNull(changes);
             assertEquals(1, changes.size());
             assertFalse(changes.containsValue(2));
             assertFalse(changes.containsValue(4));
-            assertEquals(districtRegisterField.get(districtBalancer), districts);
+            assertArrayEquals(loadsOf(districts).loads(),
+                    ((DistrictLoadHeap) districtRegisterField.get(districtBalancer)).loads());
             assertEquals(robotRegisterField.get(districtBalancer), robots);
         }
+
+        @Test
+        void whenHeavilyUnbalancedThenFewestMoves() {
+            for (int i = 1; i <= 10; i++) {
+                districtBalancer.addRobot(i, new MapPosition(1, 0, 0));
+            }
+            HashMap<Integer, Integer> changes = districtBalancer.rebalance();
+            assertNotNull(changes);
+            // District 1 keeps 3 robots, one of the others gets 3 too and the other two get 2
+            assertEquals(7, changes.size());
+            assertFalse(changes.containsValue(1));
+            HashMap<Integer, MapPosition> positions = new HashMap<>();
+            changes.forEach((robotId, district) -> positions.put(robotId, new MapPosition(district, 0, 0)));
+            districtBalancer.updatePositions(positions);
+            for (List<Integer> robots : districtBalancer.getSnapshot().values()) {
+                assertTrue(robots.size() == 2 || robots.size() == 3);
+            }
+            assertNull(districtBalancer.rebalance());
+        }
+
+        @Test
+        void whenPlanningNearestMoves() {
+            // District 1 spans 0-4 on both axes, districts 2 (y 5-9), 3 (x and y 5-9) and 4 (x 5-9) are empty
+            int[][] positions = {{4, 0}, {4, 1}, {4, 2}, {0, 4}, {1, 4}, {2, 4}, {0, 0}, {4, 4}};
+            for (int i = 0; i < positions.length; i++) {
+                districtBalancer.addRobot(i + 1, new MapPosition(1, positions[i][0], positions[i][1]));
+            }
+            districtBalancer.setRebalanceStrategy(RebalanceStrategy.NEAREST);
+            HashMap<Integer, MapPosition> changes = districtBalancer.planRebalance();
+            assertNotNull(changes);
+            assertEquals(6, changes.size());
+            int travelled = 0;
+            int[] loads = new int[5];
+            loads[1] = 2;
+            for (var change : changes.entrySet()) {
+                int[] from = positions[change.getKey() - 1];
+                MapPosition to = change.getValue();
+                assertNotEquals(1, to.getDistrict());
+                assertTrue(new GreenfieldMap().inDistrict(new int[]{to.getX(), to.getY()}, to.getDistrict()));
+                travelled += Math.abs(to.getX() - from[0]) + Math.abs(to.getY() - from[1]);
+                loads[to.getDistrict()]++;
+            }
+            // Two robots next to district 4, two next to district 2, the corner robot and one more to district 3
+            assertEquals(10, travelled);
+            assertArrayEquals(new int[]{0, 2, 2, 2, 2}, loads);
+            assertFalse(changes.containsKey(7));
+
+            districtBalancer.updatePositions(changes);
+            assertNull(districtBalancer.planRebalance());
+        }
+
+        @Test
+        void whenPlanningNearestMovesOfSharedRobots() {
+            // Every district needs 10 of the robots of district 1, the same ones are the closest to many of them
+            GreenfieldMap map = GreenfieldMap.grid(100, 100, 10, 10);
+            DistrictBalancer balancer = new DistrictBalancer(map);
+            Random random = new Random(3);
+            for (int robotId = 1; robotId <= 1000; robotId++) {
+                balancer.addRobot(robotId, new MapPosition(1, random.nextInt(10), random.nextInt(10)));
+            }
+            balancer.setRebalanceStrategy(RebalanceStrategy.NEAREST);
+            HashMap<Integer, MapPosition> changes = balancer.planRebalance();
+            assertNotNull(changes);
+            assertEquals(990, changes.size());
+            for (MapPosition to : changes.values()) {
+                assertNotEquals(1, to.getDistrict());
+                assertTrue(map.inDistrict(new int[]{to.getX(), to.getY()}, to.getDistrict()));
+            }
+            balancer.updatePositions(changes);
+            assertNull(balancer.planRebalance());
+        }
     }
-}
\ No newline at end of file
+}
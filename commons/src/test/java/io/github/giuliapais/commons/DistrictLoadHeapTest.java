@@ -0,0 +1,73 @@
+package io.github.giuliapais.commons;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DistrictLoadHeapTest {
+
+    @Test
+    void testLeastLoadedFollowsNumbering() {
+        DistrictLoadHeap loads = new DistrictLoadHeap(4);
+        assertEquals(4, loads.size());
+        for (int expected : new int[]{1, 2, 3, 4, 1, 2}) {
+            assertEquals(expected, loads.leastLoaded());
+            loads.increment(loads.leastLoaded());
+        }
+        assertEquals(6, loads.total());
+        loads.decrement(4);
+        assertEquals(4, loads.leastLoaded());
+        loads.move(1, 4);
+        assertEquals(1, loads.leastLoaded());
+        assertEquals(1, loads.load(1));
+        assertEquals(1, loads.load(4));
+        assertEquals(5, loads.total());
+    }
+
+    @Test
+    void testInvalidDistricts() {
+        DistrictLoadHeap loads = new DistrictLoadHeap(4);
+        assertThrows(IllegalArgumentException.class, () -> loads.increment(0));
+        assertThrows(IllegalArgumentException.class, () -> loads.load(5));
+        assertThrows(IllegalStateException.class, () -> loads.decrement(2));
+        assertThrows(IllegalArgumentException.class, () -> new DistrictLoadHeap(0));
+    }
+
+    @Test
+    void testRandomOperations() {
+        int districts = 37;
+        DistrictLoadHeap loads = new DistrictLoadHeap(districts);
+        int[] expected = new int[districts + 1];
+        Random random = new Random(42);
+        for (int i = 0; i < 100_000; i++) {
+            int district = random.nextInt(districts) + 1;
+            switch (random.nextInt(3)) {
+                case 0 -> {
+                    loads.increment(district);
+                    expected[district]++;
+                }
+                case 1 -> {
+                    if (expected[district] > 0) {
+                        loads.decrement(district);
+                        expected[district]--;
+                    }
+                }
+                default -> {
+                    int least = loads.leastLoaded();
+                    loads.increment(least);
+                    expected[least]++;
+                }
+            }
+            int least = 1;
+            for (int d = 2; d <= districts; d++) {
+                if (expected[d] < expected[least]) {
+                    least = d;
+                }
+            }
+            assertEquals(least, loads.leastLoaded());
+        }
+        assertArrayEquals(expected, loads.loads());
+    }
+}
@@ -2,6 +2,8 @@ package io.github.giuliapais.commons;
 
 import org.junit.jupiter.api.Test;
 
+import java.util.List;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 class GreenfieldMapTest {
@@ -48,4 +50,71 @@ class GreenfieldMapTest {
         );
     }
 
-}
\ No newline at end of file
+    /* Checks the cell index against the spans of the districts */
+    private static void assertLookup(GreenfieldMap map) {
+        for (int x = -1; x <= map.getWidth(); x++) {
+            for (int y = -1; y <= map.getHeight(); y++) {
+                int expected = 0;
+                for (District district : map.getDistricts()) {
+                    if (district.inDistrict(x, y)) {
+                        expected = district.id();
+                    }
+                }
+                assertEquals(expected, map.districtAt(x, y), "district at " + x + "," + y);
+                if (expected != 0) {
+                    assertTrue(map.inDistrict(new int[]{x, y}, expected));
+                }
+            }
+        }
+    }
+
+    @Test
+    void defaultLookup() {
+        GreenfieldMap map = new GreenfieldMap();
+        assertLookup(map);
+        assertEquals(1, map.districtAt(0, 0));
+        assertEquals(2, map.districtAt(0, 9));
+        assertEquals(3, map.districtAt(9, 9));
+        assertEquals(4, map.districtAt(9, 0));
+        assertFalse(map.inDistrict(new int[]{5, 5}, 1));
+        assertEquals(4, GreenfieldMap.parse("default").getDistricts().length);
+    }
+
+    @Test
+    void gridOfDistricts() {
+        GreenfieldMap map = GreenfieldMap.parse("103x57:7x12");
+        assertEquals(103, map.getWidth());
+        assertEquals(57, map.getHeight());
+        assertEquals(84, map.getDistricts().length);
+        assertLookup(map);
+        // Every block is in a district
+        for (int x = 0; x < map.getWidth(); x++) {
+            for (int y = 0; y < map.getHeight(); y++) {
+                assertNotEquals(0, map.districtAt(x, y));
+            }
+        }
+        assertEquals(1, map.districtAt(0, 0));
+        assertEquals(12, map.districtAt(102, 0));
+        assertEquals(84, map.districtAt(102, 56));
+    }
+
+    @Test
+    void customDistricts() {
+        GreenfieldMap map = GreenfieldMap.parse("20x10:0-9,0-4;12-19,0-9;0-4,5-9");
+        assertEquals(3, map.getDistricts().length);
+        assertLookup(map);
+        assertEquals(0, map.districtAt(10, 3));
+        assertEquals(0, map.districtAt(7, 7));
+        assertEquals(3, map.districtAt(2, 7));
+
+        assertThrows(IllegalArgumentException.class,
+                () -> new GreenfieldMap(10, 10, List.of(new District(1, new int[]{0, 5}, new int[]{0, 5}),
+                        new District(2, new int[]{5, 9}, new int[]{5, 9}))));
+        assertThrows(IllegalArgumentException.class,
+                () -> new GreenfieldMap(10, 10, List.of(new District(2, new int[]{0, 5}, new int[]{0, 5}))));
+        assertThrows(IllegalArgumentException.class, () -> GreenfieldMap.parse("10x10:0-10,0-9"));
+        assertThrows(IllegalArgumentException.class, () -> GreenfieldMap.parse("10x10:11x1"));
+        assertThrows(IllegalArgumentException.class, () -> GreenfieldMap.parse("10x10"));
+        assertThrows(IllegalArgumentException.class, () -> GreenfieldMap.parse("large"));
+    }
+}
@@ -0,0 +1,168 @@
+package io.github.giuliapais.commons;
+
+import io.github.giuliapais.commons.models.SensorType;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SensorAveragesCodecTest {
+    private record Decoded(int robotId, long timestamp, double[] averages) {
+    }
+
+    private static Decoded decode(byte[] payload) throws IOException {
+        Decoded[] result = new Decoded[1];
+        SensorAveragesCodec.decode(payload, new double[2], (robotId, timestamp, averages, length) ->
+                result[0] = new Decoded(robotId, timestamp, Arrays.copyOf(averages, length)));
+        return result[0];
+    }
+
+    @Test
+    void testDeltaIsLossless() throws IOException {
+        Random random = new Random(0);
+        double[][] cases = {
+                {},
+                {0.0},
+                {42.0, 42.0, 42.0},
+                {-1.0, Double.NaN, Double.POSITIVE_INFINITY, -0.0, Double.MIN_VALUE, Double.MAX_VALUE},
+                random.doubles(100, 0, 100).toArray()
+        };
+        for (double[] averages : cases) {
+            for (int robotId : new int[]{0, 1, 300, Integer.MAX_VALUE, -5}) {
+                for (long timestamp : new long[]{0, SensorAveragesCodec.EPOCH, System.currentTimeMillis(), -1}) {
+                    byte[] payload = SensorAveragesCodec.encode(robotId, timestamp, averages, averages.length,
+                            SensorAveragesCodec.Encoding.DELTA);
+                    assertTrue(payload.length <= SensorAveragesCodec.maxEncodedSize(averages.length));
+                    Decoded decoded = decode(payload);
+                    assertEquals(robotId, decoded.robotId());
+                    assertEquals(timestamp, decoded.timestamp());
+                    assertArrayEquals(averages, decoded.averages());
+                }
+            }
+        }
+    }
+
+    @Test
+    void testFloat32() throws IOException {
+        double[] averages = {12.345678901234, 0.1, 99.99};
+        Decoded decoded = decode(SensorAveragesCodec.encode(7, 1_690_000_000_000L, averages, averages.length,
+                SensorAveragesCodec.Encoding.FLOAT32));
+        assertEquals(7, decoded.robotId());
+        assertEquals(1_690_000_000_000L, decoded.timestamp());
+        for (int i = 0; i < averages.length; i++) {
+            assertEquals((float) averages[i], decoded.averages()[i]);
+        }
+    }
+
+    @Test
+    void testSmallerThanJson() {
+        // A robot publishing 8 averages in the same range
+        double[] averages = new Random(0).doubles(8, 40, 60).toArray();
+        long timestamp = System.currentTimeMillis();
+        assertEquals(1 + 1 + 6 + 1 + 8 * 4, SensorAveragesCodec.encode(5, timestamp, averages, 8,
+                SensorAveragesCodec.Encoding.FLOAT32).length);
+        assertTrue(SensorAveragesCodec.encode(5, timestamp, averages, 8,
+                SensorAveragesCodec.Encoding.DELTA).length < 9 + 8 * 8);
+    }
+
+    @Test
+    void testMalformedMessages() {
+        byte[] valid = SensorAveragesCodec.encode(1, 1000, new double[]{1.0, 2.0}, 2,
+                SensorAveragesCodec.Encoding.DELTA);
+        for (int length = 0; length < valid.length; length++) {
+            byte[] truncated = Arrays.copyOf(valid, length);
+            assertThrows(IOException.class, () -> decode(truncated));
+        }
+        byte[] longer = Arrays.copyOf(valid, valid.length + 1);
+        assertThrows(IOException.class, () -> decode(longer));
+        byte[] unknownVersion = valid.clone();
+        unknownVersion[0] = (byte) 0x31;
+        assertThrows(IOException.class, () -> decode(unknownVersion));
+        byte[] badDelta = {0x11, 1, 0, 1, 0x44};
+        assertThrows(IOException.class, () -> decode(badDelta));
+    }
+
+    @Test
+    void testSeries() throws IOException {
+        double[][] series = new double[SensorType.values().length][];
+        int[] lengths = new int[series.length];
+        series[SensorType.PM10.ordinal()] = new double[]{41.5, 42.0};
+        series[SensorType.NO2.ordinal()] = new double[]{20.25, 21.0, 19.75};
+        series[SensorType.TEMPERATURE.ordinal()] = new double[]{};
+        for (int type = 0; type < series.length; type++) {
+            lengths[type] = series[type] != null ? series[type].length : 0;
+        }
+        byte[] payload = SensorAveragesCodec.encode(3, 1_690_000_000_000L, series, lengths,
+                SensorAveragesCodec.Encoding.DELTA);
+        assertTrue(payload.length <= SensorAveragesCodec.maxEncodedSize(lengths));
+        Map<SensorType, double[]> decoded = new EnumMap<>(SensorType.class);
+        // A buffer too small for all the series
+        SensorAveragesCodec.decode(payload, new double[1], new SensorAveragesConsumer() {
+            @Override
+            public void accept(int robotId, long timestamp, double[] averages, int length) {
+                assertEquals(3, robotId);
+                decoded.put(SensorType.PM10, Arrays.copyOf(averages, length));
+            }
+
+            @Override
+            public void acceptSeries(int robotId, long timestamp, SensorType type, double[] averages, int length) {
+                assertEquals(1_690_000_000_000L, timestamp);
+                decoded.put(type, Arrays.copyOf(averages, length));
+            }
+        });
+        assertEquals(3, decoded.size());
+        for (Map.Entry<SensorType, double[]> entry : decoded.entrySet()) {
+            assertArrayEquals(series[entry.getKey().ordinal()], entry.getValue());
+        }
+        // Consumers that only know PM10 still get it
+        assertArrayEquals(series[SensorType.PM10.ordinal()], decode(payload).averages());
+        byte[] truncated = Arrays.copyOf(payload, payload.length - 1);
+        assertThrows(IOException.class, () -> decode(truncated));
+    }
+
+    @Test
+    void testSeriesWithoutPm10() throws IOException {
+        double[][] series = new double[SensorType.values().length][];
+        int[] lengths = new int[series.length];
+        series[SensorType.NO2.ordinal()] = new double[]{20.25, 21.0};
+        lengths[SensorType.NO2.ordinal()] = 2;
+        byte[] payload = SensorAveragesCodec.encode(3, 1000, series, lengths, SensorAveragesCodec.Encoding.FLOAT32);
+        Map<SensorType, double[]> decoded = new EnumMap<>(SensorType.class);
+        SensorAveragesCodec.decode(payload, new double[1], new SensorAveragesConsumer() {
+            @Override
+            public void accept(int robotId, long timestamp, double[] averages, int length) {
+                decoded.put(SensorType.PM10, Arrays.copyOf(averages, length));
+            }
+
+            @Override
+            public void acceptSeries(int robotId, long timestamp, SensorType type, double[] averages, int length) {
+                decoded.put(type, Arrays.copyOf(averages, length));
+            }
+        });
+        // No empty PM10 averages for a robot without the sensor
+        assertEquals(Set.of(SensorType.NO2), decoded.keySet());
+        assertArrayEquals(series[SensorType.NO2.ordinal()], decoded.get(SensorType.NO2));
+        // The flag is only valid in version 2
+        byte[] flagged = SensorAveragesCodec.encode(1, 1000, new double[]{1.0}, 1,
+                SensorAveragesCodec.Encoding.FLOAT32);
+        flagged[0] |= 0x8;
+        assertThrows(IOException.class, () -> decode(flagged));
+    }
+
+    @Test
+    void testOnlyPm10IsVersion1() {
+        double[][] series = new double[SensorType.values().length][];
+        int[] lengths = new int[series.length];
+        series[SensorType.PM10.ordinal()] = new double[]{41.5, 42.0};
+        lengths[SensorType.PM10.ordinal()] = 2;
+        assertArrayEquals(SensorAveragesCodec.encode(3, 1000, series[SensorType.PM10.ordinal()], 2,
+                        SensorAveragesCodec.Encoding.FLOAT32),
+                SensorAveragesCodec.encode(3, 1000, series, lengths, SensorAveragesCodec.Encoding.FLOAT32));
+    }
+}
@@ -3,10 +3,19 @@ package io.github.giuliapais.robotsnetwork;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.github.giuliapais.commons.GreenfieldMap;
+import io.github.giuliapais.commons.RebalanceStrategy;
 import io.github.giuliapais.commons.models.MapPosition;
+import io.github.giuliapais.commons.models.SensorType;
 import io.github.giuliapais.robotsnetwork.comm.p2p.Peer;
 import io.github.giuliapais.robotsnetwork.comm.rest.RestServiceManager;
 import io.github.giuliapais.robotsnetwork.core.CleaningRobot;
+import io.github.giuliapais.robotsnetwork.core.RobotContext;
+import io.github.giuliapais.robotsnetwork.core.RobotHost;
+import io.github.giuliapais.robotsnetwork.core.SensorReadingsBuffer;
+import io.github.giuliapais.robotsnetwork.core.SensorSettings;
+import io.github.giuliapais.robotsnetwork.core.SlidingWindowAggregator;
+import io.github.giuliapais.robotsnetwork.core.WireFormat;
 import io.github.giuliapais.utils.InputValidator;
 import io.github.giuliapais.commons.MessagePrinter;
 import picocli.CommandLine;
@@ -15,8 +24,13 @@ import java.io.IOException;
 import java.lang.reflect.Field;
 import java.net.InetAddress;
 import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Scanner;
+import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListMap;
 
 
 @CommandLine.Command(name = "robot-launcher", description = "Initializes a new robot process",
@@ -39,11 +53,66 @@ public class RobotLauncher implements Runnable {
                     "Defaults to ${DEFAULT-VALUE}")
     private String serverAddress = "localhost:9090";
 
+    @CommandLine.Option(names = {"-w", "--wire-format"},
+            description = "Wire format of the pollution messages sent to the server: ${COMPLETION-CANDIDATES}. " +
+                    "Binary formats are smaller and faster to decode, FLOAT32 rounds the averages to single " +
+                    "precision. Defaults to ${DEFAULT-VALUE}")
+    private WireFormat wireFormat = WireFormat.JSON;
+
+    @CommandLine.Option(names = {"-n", "--neighbors"},
+            description = "Number of active robots (the closest ones) the server sends in the registration " +
+                    "response, the others are then fetched a page at a time. Useful with large fleets, " +
+                    "0 to receive all of them at once. Defaults to ${DEFAULT-VALUE}")
+    private int neighbors = 0;
+
+    @CommandLine.Option(names = {"-m", "--map"},
+            description = "Map of the city, must be the same as the server's (guard.map): 'default' for 10x10 " +
+                    "blocks in 4 districts, <width>x<height>:<rows>x<columns> for a grid of districts or " +
+                    "<width>x<height>:<x0>-<x1>,<y0>-<y1>;... for a list of districts. Defaults to ${DEFAULT-VALUE}")
+    private String map = GreenfieldMap.DEFAULT;
+
+    @CommandLine.Option(names = {"-r", "--rebalance"},
+            description = "How this robot rebalances the districts when it coordinates the load balancing: " +
+                    "${COMPLETION-CANDIDATES}. RANDOM moves any robot to a random position of its new district, " +
+                    "NEAREST moves the robots closest to the districts that need them, minimizing the distance " +
+                    "travelled. Defaults to ${DEFAULT-VALUE}")
+    private RebalanceStrategy rebalanceStrategy = RebalanceStrategy.RANDOM;
+
+    @CommandLine.Option(names = {"--window-size"},
+            description = "Number of sensor readings averaged in each measurement. Defaults to ${DEFAULT-VALUE}")
+    private int windowSize = SensorReadingsBuffer.DEFAULT_WINDOW_SIZE;
+
+    @CommandLine.Option(names = {"--window-overlap"},
+            description = "Number of sensor readings each measurement shares with the previous one, less than " +
+                    "the window size. Defaults to ${DEFAULT-VALUE}")
+    private int windowOverlap = SensorReadingsBuffer.DEFAULT_OVERLAP;
+
+    @CommandLine.Option(names = {"--sensors"}, split = ",", defaultValue = "PM10",
+            description = "Comma-separated sensors of the robot: ${COMPLETION-CANDIDATES}. The averages of the " +
+                    "sensors other than PM10 are only stored by servers that know them. Defaults to ${DEFAULT-VALUE}")
+    private List<SensorType> sensors;
+
+    @CommandLine.Option(names = {"--robots"},
+            description = "Number of robots hosted by this process, for load and failure tests of large fleets on " +
+                    "a single machine: the robots have the IDs and ports that follow the given ones and share " +
+                    "the threads and the network event loops of the process. Defaults to ${DEFAULT-VALUE}")
+    private int robots = 1;
+
+    @CommandLine.Option(names = {"--event-loop-threads"},
+            description = "Number of threads of the network event loops shared by the robots of the process, " +
+                    "0 for twice the number of processors. Defaults to ${DEFAULT-VALUE}")
+    private int eventLoopThreads = 0;
+
     @CommandLine.Option(names = {"-h", "--help"}, usageHelp = true,
             description = "Display this help message")
     private boolean helpRequested = false;
 
-    private static CleaningRobot cleaningRobot;
+    private static final int PEERS_PAGE_SIZE = 500;
+
+    /* Robots of the process by ID, the first one is the default of the commands */
+    private static final ConcurrentSkipListMap<Integer, CleaningRobot> cleaningRobots = new ConcurrentSkipListMap<>();
+    /* Threads, event loops and server client shared by the robots */
+    private static volatile RobotHost robotHost;
 
     private static Scanner scanner;
 
@@ -97,6 +166,17 @@ public class RobotLauncher implements Runnable {
         } catch (NoSuchFieldException | IllegalAccessException e) {
             throw new RuntimeException(e);
         }
+        GreenfieldMap greenfieldMap;
+        SensorSettings sensorSettings;
+        try {
+            greenfieldMap = GreenfieldMap.parse(map);
+            sensorSettings = new SensorSettings(Set.copyOf(sensors), windowSize, windowOverlap);
+            checkHostingInputs();
+        } catch (IllegalArgumentException e) {
+            MessagePrinter.printMessage(e.getMessage(), MessagePrinter.ERROR_FORMAT, true);
+            System.exit(1);
+            return;
+        }
         String selfIpAddress = null;
         try {
             InetAddress inetAddress = InetAddress.getLocalHost();
@@ -106,52 +186,181 @@ public class RobotLauncher implements Runnable {
                             "Please check your network connection and try again.",
                     MessagePrinter.ERROR_FORMAT, true);
         }
-        JsonNode serverResponse = RestServiceManager.getInstance(this.serverAddress)
-                .registerToServer(this.id, selfIpAddress, this.port);
-        if (serverResponse == null) {
+        robotHost = new RobotHost(this.serverAddress, eventLoopThreads);
+        for (int i = 0; i < robots; i++) {
+            CleaningRobot cleaningRobot = startRobot(this.id + i, this.port + i, selfIpAddress, greenfieldMap,
+                    sensorSettings);
+            if (cleaningRobot != null) {
+                cleaningRobots.put(this.id + i, cleaningRobot);
+            }
+        }
+        if (cleaningRobots.isEmpty()) {
+            robotHost.shutdown();
             System.exit(0);
         }
-        MapPosition mapPosition = new MapPosition(
-                serverResponse.get("mapPosition").get("district").asInt(),
-                serverResponse.get("mapPosition").get("x").asInt(),
-                serverResponse.get("mapPosition").get("y").asInt());
-        JsonNode activeRobots = serverResponse.get("activeRobots");
-        ObjectMapper objectMapper = new ObjectMapper();
+        if (robots > 1) {
+            MessagePrinter.printMessage("Started " + cleaningRobots.size() + " robots: " + cleaningRobots.keySet(),
+                    MessagePrinter.INFO_FORMAT, true);
+        }
         try {
-            List<Peer> activePeers = objectMapper.readerFor(new TypeReference<List<Peer>>() {
-            }).readValue(activeRobots);
-            cleaningRobot = new CleaningRobot(
-                    this.id, this.port,
-                    mapPosition,
-                    activePeers,
-                    selfIpAddress);
-            cleaningRobot.start();
             MessagePrinter.printAvailableCommands();
             MessagePrinter.printMessage(MessagePrinter.CMD_PROMPT, MessagePrinter.ACCENT_FORMAT_2, false);
             while (true) {
-                String input = scanner.nextLine();
-                if (input.equals("help") || (!input.equals("quit") & !input.equals("fix"))) {
+                String[] input = scanner.nextLine().trim().split("\\s+");
+                String command = input[0];
+                if (command.equals("quit")) {
+                    stopRobots();
+                    System.exit(0);
+                }
+                if (input.length > 2 || (!command.equals("fix") & !command.equals("sensors") &
+                        !command.equals("crash"))) {
                     MessagePrinter.printAvailableCommands();
                     MessagePrinter.printMessage(MessagePrinter.CMD_PROMPT,
                             MessagePrinter.ACCENT_FORMAT_2, false);
                     continue;
                 }
-                if (input.equals("quit")) {
-                    if (cleaningRobot.isAlive()) {
-                        cleaningRobot.stopMeGently();
-                        cleaningRobot.join();
+                CleaningRobot cleaningRobot = findRobot(input.length == 2 ? input[1] : null);
+                if (cleaningRobot != null) {
+                    switch (command) {
+                        case "sensors" -> printSensorStatistics(cleaningRobot);
+                        case "crash" -> cleaningRobot.crash();
+                        default -> cleaningRobot.requestRepair();
                     }
-                    System.exit(0);
                 }
-                cleaningRobot.requestRepair();
+                MessagePrinter.printMessage(MessagePrinter.CMD_PROMPT, MessagePrinter.ACCENT_FORMAT_2, false);
             }
-        } catch (IOException e) {
-            throw new RuntimeException(e);
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
         }
     }
 
+    private void checkHostingInputs() {
+        if (robots < 1) {
+            throw new IllegalArgumentException("The number of robots must be at least 1");
+        }
+        if ((long) this.port + robots - 1 > 65535) {
+            throw new IllegalArgumentException("Not enough ports after " + this.port + " for " + robots + " robots");
+        }
+        if ((long) this.id + robots - 1 > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Not enough IDs after " + this.id + " for " + robots + " robots");
+        }
+    }
+
+    /* Registers a robot to the server and starts it, returns null if the server refused it */
+    private CleaningRobot startRobot(int robotId, int robotPort, String selfIpAddress, GreenfieldMap greenfieldMap,
+                                     SensorSettings sensorSettings) {
+        RestServiceManager restServiceManager = robotHost.getRestServiceManager();
+        JsonNode serverResponse = restServiceManager.registerToServer(robotId, selfIpAddress, robotPort,
+                this.neighbors);
+        if (serverResponse == null) {
+            return null;
+        }
+        MapPosition mapPosition = new MapPosition(
+                serverResponse.get("mapPosition").get("district").asInt(),
+                serverResponse.get("mapPosition").get("x").asInt(),
+                serverResponse.get("mapPosition").get("y").asInt());
+        JsonNode activeRobots = serverResponse.get("activeRobots");
+        ObjectMapper objectMapper = new ObjectMapper();
+        List<Peer> activePeers;
+        try {
+            activePeers = objectMapper.readerFor(new TypeReference<List<Peer>>() {
+            }).readValue(activeRobots);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        if (activePeers.size() < serverResponse.path("activeRobotsCount").asInt()) {
+            activePeers = fetchAllPeers(robotId, activePeers);
+        }
+        CleaningRobot cleaningRobot = new CleaningRobot(
+                new RobotContext(robotId, robotHost), robotPort,
+                mapPosition,
+                activePeers,
+                selfIpAddress,
+                wireFormat,
+                greenfieldMap,
+                rebalanceStrategy,
+                sensorSettings);
+        cleaningRobot.start();
+        return cleaningRobot;
+    }
+
+    /* The robot with the given ID, the first one without ID, or null after telling why there is none */
+    private static CleaningRobot findRobot(String robotId) {
+        CleaningRobot cleaningRobot;
+        if (robotId == null) {
+            cleaningRobot = cleaningRobots.firstEntry().getValue();
+        } else {
+            try {
+                cleaningRobot = cleaningRobots.get(Integer.parseInt(robotId));
+            } catch (NumberFormatException e) {
+                cleaningRobot = null;
+            }
+            if (cleaningRobot == null) {
+                MessagePrinter.printMessage("No robot " + robotId + " in this process",
+                        MessagePrinter.ERROR_FORMAT, true);
+                return null;
+            }
+        }
+        if (cleaningRobot.isStopped()) {
+            MessagePrinter.printMessage("The robot is not running anymore", MessagePrinter.ERROR_FORMAT, true);
+            return null;
+        }
+        return cleaningRobot;
+    }
+
+    /* Stops the robots, all at the same time, waiting until they are done, then the resources they share */
+    private static void stopRobots() throws InterruptedException {
+        cleaningRobots.values().forEach(CleaningRobot::stopMeGently);
+        for (CleaningRobot cleaningRobot : cleaningRobots.values()) {
+            cleaningRobot.awaitStop();
+        }
+        if (robotHost != null) {
+            robotHost.shutdown();
+        }
+    }
+
+    private static void printSensorStatistics(CleaningRobot cleaningRobot) {
+        Map<SensorType, SlidingWindowAggregator.Statistics> sensorStatistics = cleaningRobot.getSensorStatistics();
+        if (sensorStatistics.isEmpty()) {
+            MessagePrinter.printMessage("No sensor readings yet", MessagePrinter.INFO_FORMAT, true);
+            return;
+        }
+        sensorStatistics.forEach((type, statistics) -> MessagePrinter.printMessage(String.format(
+                "%s, last %d readings: mean %.3f, min %.3f, max %.3f, std dev %.3f - moving average %.3f",
+                type, statistics.count(), statistics.mean(), statistics.min(), statistics.max(),
+                Math.sqrt(statistics.variance()), statistics.ewma()), MessagePrinter.INFO_FORMAT, true));
+    }
+
+    /**
+     * Completes the list of peers received at registration with the pages of the robots list. The pages can also
+     * include robots that registered after this one, which are peers all the same.
+     */
+    private List<Peer> fetchAllPeers(int robotId, List<Peer> neighbors) {
+        Map<Integer, Peer> peers = new LinkedHashMap<>();
+        for (Peer peer : neighbors) {
+            peers.put(peer.getId(), peer);
+        }
+        RestServiceManager restServiceManager = robotHost.getRestServiceManager();
+        JsonNode page = restServiceManager.getRobotsPage(null, PEERS_PAGE_SIZE);
+        while (page != null) {
+            for (JsonNode robot : page.get("robots")) {
+                int peerId = robot.get("id").asInt();
+                if (peerId != robotId) {
+                    peers.putIfAbsent(peerId,
+                            new Peer(peerId, robot.get("ipAddress").asText(), robot.get("port").asInt()));
+                }
+            }
+            JsonNode after = page.get("after");
+            if (after == null || after.isNull()) {
+                return new ArrayList<>(peers.values());
+            }
+            page = restServiceManager.getRobotsPage(after.asInt(), PEERS_PAGE_SIZE);
+        }
+        MessagePrinter.printMessage("Could not fetch the list of robots from the server, " +
+                "starting with the closest robots only", MessagePrinter.WARNING_FORMAT, true);
+        return new ArrayList<>(peers.values());
+    }
+
     public static void main(String[] args) {
         Thread.setDefaultUncaughtExceptionHandler(
                 (t, e) -> {
@@ -162,19 +371,18 @@ public class RobotLauncher implements Runnable {
                                     e.getCause().getMessage(),
                             MessagePrinter.ERROR_FORMAT, true);
                     MessagePrinter.printQuitMessage();
-                    if (cleaningRobot.isAlive()) {
-                        cleaningRobot.stopMeGently();
-                        try {
-                            cleaningRobot.join();
-                        } catch (InterruptedException ex) {
-                            Thread.currentThread().interrupt();
-                        }
+                    try {
+                        stopRobots();
+                    } catch (InterruptedException ex) {
+                        Thread.currentThread().interrupt();
                     }
                     System.exit(0);
                 }
         );
         RobotLauncher robotLauncher = new RobotLauncher();
-        int exitCode = new CommandLine(robotLauncher).execute(args);
+        int exitCode = new CommandLine(robotLauncher)
+                .setCaseInsensitiveEnumValuesAllowed(true)
+                .execute(args);
         System.exit(exitCode);
     }
 
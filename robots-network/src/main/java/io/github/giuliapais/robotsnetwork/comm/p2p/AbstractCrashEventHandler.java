@@ -1,19 +1,48 @@
 package io.github.giuliapais.robotsnetwork.comm.p2p;
 
+import io.github.giuliapais.robotsnetwork.comm.CrashEvent;
 import io.github.giuliapais.robotsnetwork.comm.CrashRecoveryGrpc;
+import io.github.giuliapais.robotsnetwork.core.RobotContext;
 import io.grpc.ManagedChannel;
 
 import java.util.HashMap;
 
-public abstract class AbstractCrashEventHandler extends Thread {
-    final ActivePeers activePeers = ActivePeers.getInstance();
+/**
+ * Handler of the crash events of a monitor. It is not a thread: the monitor runs it on the workers of the robot when
+ * events arrive, and it handles them until there are none left.
+ */
+public abstract class AbstractCrashEventHandler implements Runnable {
+    final RobotContext context;
+    final ActivePeers activePeers;
     final CrashEventMonitor crashEventsMonitor;
     final HashMap<Integer, ManagedChannel> channels;
     final HashMap<Integer, CrashRecoveryGrpc.CrashRecoveryBlockingStub> stubs = new HashMap<>();
 
-    public AbstractCrashEventHandler(CrashEventMonitor crashEventsMonitor,
+    public AbstractCrashEventHandler(RobotContext context, CrashEventMonitor.CrashEventMonitorType type,
                                      HashMap<Integer, ManagedChannel> channels) {
-        this.crashEventsMonitor = crashEventsMonitor;
+        this.context = context;
+        this.activePeers = context.getActivePeers();
+        this.crashEventsMonitor = context.getCrashEventMonitor(type);
         this.channels = channels;
     }
+
+    /**
+     * Handles an event.
+     *
+     * @throws InterruptedException if the thread is interrupted while handling it
+     */
+    abstract void handle(CrashEvent crashEvent) throws InterruptedException;
+
+    @Override
+    public void run() {
+        CrashEvent crashEvent;
+        while ((crashEvent = crashEventsMonitor.pollCrashEvent()) != null) {
+            try {
+                handle(crashEvent);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
 }
@@ -6,31 +6,18 @@ import java.util.*;
 
 
 /**
- * Singleton class that keeps track of the peers that are currently active in the network.
+ * Keeps track of the peers of a robot that are currently active in the network, one for each robot (see
+ * {@link io.github.giuliapais.robotsnetwork.core.RobotContext}).
  * Uses PropertyChangeSupport to notify changes in the underlying structure.
  */
 public class ActivePeers {
-    private static volatile ActivePeers instance = null;
     private final PropertyChangeSupport support = new PropertyChangeSupport(this);
     private final HashMap<Integer, Peer> peers;
 
-    private ActivePeers() {
+    public ActivePeers() {
         this.peers = new HashMap<>();
     }
 
-    public static ActivePeers getInstance() {
-        ActivePeers result = instance;
-        if (result == null) {
-            synchronized (ActivePeers.class) {
-                result = instance;
-                if (result == null) {
-                    instance = result = new ActivePeers();
-                }
-            }
-        }
-        return result;
-    }
-
     public synchronized void addPeer(Peer peer) {
         Peer oldValue = this.peers.get(peer.getId());
         this.peers.put(peer.getId(), peer);
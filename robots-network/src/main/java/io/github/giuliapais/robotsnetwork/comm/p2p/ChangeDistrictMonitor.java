@@ -1,32 +1,19 @@
 package io.github.giuliapais.robotsnetwork.comm.p2p;
 
 public class ChangeDistrictMonitor {
-    private static volatile ChangeDistrictMonitor instance;
     private int newDistrict = 0;
 
-    private ChangeDistrictMonitor() {
-    }
-
-    public static ChangeDistrictMonitor getInstance() {
-        if (instance == null) {
-            synchronized (ChangeDistrictMonitor.class) {
-                if (instance == null) {
-                    instance = new ChangeDistrictMonitor();
-                }
-            }
-        }
-        return instance;
+    public ChangeDistrictMonitor() {
     }
 
     public synchronized void districtChanged(int newDistrict) {
         this.newDistrict = newDistrict;
-        notifyAll();
     }
 
-    public synchronized int monitorChanges() throws InterruptedException {
-        while (newDistrict == 0) {
-            wait();
-        }
+    /**
+     * @return the new district of the robot if it changed since the last call, 0 otherwise
+     */
+    public synchronized int pollChanges() {
         int result = newDistrict;
         newDistrict = 0;
         return result;
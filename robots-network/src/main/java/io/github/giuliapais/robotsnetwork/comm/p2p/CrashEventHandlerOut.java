@@ -3,8 +3,8 @@ package io.github.giuliapais.robotsnetwork.comm.p2p;
 import io.github.giuliapais.robotsnetwork.comm.CrashEvent;
 import io.github.giuliapais.robotsnetwork.comm.CrashEventResponse;
 import io.github.giuliapais.robotsnetwork.comm.CrashRecoveryGrpc;
-import io.github.giuliapais.robotsnetwork.comm.rest.RestServiceManager;
 import io.github.giuliapais.commons.MessagePrinter;
+import io.github.giuliapais.robotsnetwork.core.RobotContext;
 import io.grpc.ManagedChannel;
 
 import java.util.ArrayList;
@@ -13,8 +13,8 @@ import java.util.List;
 
 public class CrashEventHandlerOut extends AbstractCrashEventHandler {
 
-    public CrashEventHandlerOut(HashMap<Integer, ManagedChannel> channels) {
-        super(CrashEventMonitor.getInstance(CrashEventMonitor.CrashEventMonitorType.OUTGOING), channels);
+    public CrashEventHandlerOut(RobotContext context, HashMap<Integer, ManagedChannel> channels) {
+        super(context, CrashEventMonitor.CrashEventMonitorType.OUTGOING, channels);
     }
 
     static class CrashResponses {
@@ -40,7 +40,7 @@ public class CrashEventHandlerOut extends AbstractCrashEventHandler {
         }
     }
 
-    // Dedicated thread to notify the peer
+    // Notification of a peer, on the thread of the handler
     class PeerNotifier implements Runnable {
         private final int peerId;
         private final CrashEvent crashEvent;
@@ -68,58 +68,51 @@ public class CrashEventHandlerOut extends AbstractCrashEventHandler {
                     responses.addResponse(response.getIsCrashed());
                 }
             } catch (Exception e) {
-                Thread.currentThread().interrupt();
+                // Not a confirmation, but a response all the same: the handler must not wait for it forever, as it
+                // now handles the events that follow too
+                responses.addResponse(false);
             }
         }
     }
 
     @Override
-    public void run() {
-        while (!Thread.currentThread().isInterrupted()) {
-            try {
-                CrashEvent crashEvent = crashEventsMonitor.getCrashEvent();
-                List<Peer> peers = activePeers.getPeers();
-                CrashResponses responses = new CrashResponses(peers.size() - 1);
-                // Send out notifications to all active peers in parallel
-                for (Peer peer : peers) {
-                    if (peer.getId() == crashEvent.getCrashedRobotId()) {
-                        continue;
-                    }
-                    Thread thread = new Thread(new PeerNotifier(peer.getId(), crashEvent, responses));
-                    thread.start();
-                    thread.join();
-                }
-                responses.waitForResponses();
-                // Examine responses
-                List<Boolean> responsesList = responses.getResponses();
-                if (responsesList.stream().allMatch(b -> b)) {
-                    // Peer removal triggers notification on P2PServiceManager to remove channels and stubs
-                    boolean removed = activePeers.removePeer(crashEvent.getCrashedRobotId());
-                    if (removed) {
-                        MessagePrinter.printMessage(
-                                "Robot " + crashEvent.getCrashedRobotId() +
-                                        " crashed and was removed from the list" +
-                                        " of active peers.\nCurrent active peers: " + activePeers.getIds(),
-                                MessagePrinter.ERROR_FORMAT,
-                                true);
-                        // Notify the server to remove the crashed robot
-                        RestServiceManager.getInstance(null).deleteRobot(crashEvent.getCrashedRobotId(),
-                                false);
-                        // Evaluate if there is need for load balancing
-                        LoadBalancingMonitor.getInstance().setState(LoadBalancingMonitor.LoadBalancingState.EVALUATING);
-                    }
-                } else {
-                    MessagePrinter.printMessage(
-                            "Crash event of robot " + crashEvent.getCrashedRobotId() +
-                                    " was not confirmed by all peers. The robot will not be removed from the list" +
-                                    " of active peers.",
-                            MessagePrinter.ERROR_FORMAT,
-                            true
-                    );
-                }
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
+    void handle(CrashEvent crashEvent) throws InterruptedException {
+        List<Peer> peers = activePeers.getPeers();
+        CrashResponses responses = new CrashResponses(peers.size() - 1);
+        // Send out notifications to all active peers, one at a time
+        for (Peer peer : peers) {
+            if (peer.getId() == crashEvent.getCrashedRobotId()) {
+                continue;
+            }
+            new PeerNotifier(peer.getId(), crashEvent, responses).run();
+        }
+        responses.waitForResponses();
+        // Examine responses
+        List<Boolean> responsesList = responses.getResponses();
+        if (responsesList.stream().allMatch(b -> b)) {
+            // Peer removal triggers notification on P2PServiceManager to remove channels and stubs
+            boolean removed = activePeers.removePeer(crashEvent.getCrashedRobotId());
+            if (removed) {
+                MessagePrinter.printMessage(
+                        "Robot " + crashEvent.getCrashedRobotId() +
+                                " crashed and was removed from the list" +
+                                " of active peers.\nCurrent active peers: " + activePeers.getIds(),
+                        MessagePrinter.ERROR_FORMAT,
+                        true);
+                // Notify the server to remove the crashed robot
+                context.getRestServiceManager().deleteRobot(crashEvent.getCrashedRobotId(),
+                        false);
+                // Evaluate if there is need for load balancing
+                context.getLoadBalancingMonitor().setState(LoadBalancingMonitor.LoadBalancingState.EVALUATING);
             }
+        } else {
+            MessagePrinter.printMessage(
+                    "Crash event of robot " + crashEvent.getCrashedRobotId() +
+                            " was not confirmed by all peers. The robot will not be removed from the list" +
+                            " of active peers.",
+                    MessagePrinter.ERROR_FORMAT,
+                    true
+            );
         }
     }
 }
@@ -4,12 +4,17 @@ import io.github.giuliapais.robotsnetwork.comm.CrashEvent;
 
 import java.util.HashMap;
 import java.util.PriorityQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 
 public class CrashEventMonitor {
-    private static CrashEventMonitor instanceOutgoing;
-    private static CrashEventMonitor instanceIncoming;
     private PriorityQueue<EventWrapper> crashEvents = new PriorityQueue<>();
     private HashMap<Integer, Boolean> pings = new HashMap<>();
+    /* Handler of the events, run on the executor when events arrive and none is running */
+    private Executor executor;
+    private Runnable handler;
+    /* A handler is running, set until it returns (or throws) */
+    private boolean handling = false;
 
     private static class EventWrapper implements Comparable<EventWrapper> {
         CrashEvent event;
@@ -43,7 +48,7 @@ public class CrashEventMonitor {
         }
     }
 
-    private CrashEventMonitor() {
+    public CrashEventMonitor() {
     }
 
     public enum CrashEventMonitorType {
@@ -51,42 +56,62 @@ public class CrashEventMonitor {
         OUTGOING
     }
 
-    public static CrashEventMonitor getInstance(CrashEventMonitorType type) {
-        if (type == CrashEventMonitorType.INCOMING) {
-            CrashEventMonitor result = instanceIncoming;
-            if (result == null) {
-                synchronized (CrashEventMonitor.class) {
-                    result = instanceIncoming;
-                    if (result == null) {
-                        instanceIncoming = result = new CrashEventMonitor();
-                    }
-                }
-            }
-            return result;
-        } else {
-            CrashEventMonitor result = instanceOutgoing;
-            if (result == null) {
-                synchronized (CrashEventMonitor.class) {
-                    result = instanceOutgoing;
-                    if (result == null) {
-                        instanceOutgoing = result = new CrashEventMonitor();
-                    }
-                }
-            }
-            return result;
+    /**
+     * Sets the handler of the events: when an event arrives, the handler is run on the executor unless it is already
+     * running. The handler takes the events with {@link #pollCrashEvent()} until there are none, then it is done.
+     * A null handler removes the current one. A handler that is running when replaced goes on until it is done, the
+     * new one only starts after it.
+     */
+    public synchronized void setHandler(Executor executor, Runnable handler) {
+        this.executor = executor;
+        this.handler = handler;
+        if (handler != null && !handling && !crashEvents.isEmpty()) {
+            startHandler();
+        }
+    }
+
+    private void startHandler() {
+        Runnable current = handler;
+        try {
+            executor.execute(() -> runHandler(current));
+            handling = true;
+        } catch (RejectedExecutionException e) {
+            // The robot is stopping
+        }
+    }
+
+    private void runHandler(Runnable handler) {
+        try {
+            handler.run();
+        } finally {
+            handlerDone();
+        }
+    }
+
+    private synchronized void handlerDone() {
+        handling = false;
+        // Events that arrived after the handler took the last one, or left by a failed handler: each run takes at
+        // least one event, so a failing handler doesn't run forever
+        if (handler != null && !crashEvents.isEmpty()) {
+            startHandler();
         }
     }
 
     public synchronized void addCrashEvent(CrashEvent crashEvent) {
         crashEvents.add(new EventWrapper(crashEvent));
-        notifyAll();
+        if (handler != null && !handling) {
+            startHandler();
+        }
     }
 
-    public synchronized CrashEvent getCrashEvent() throws InterruptedException {
-        while (crashEvents.isEmpty()) {
-            wait();
-        }
-        return crashEvents.poll().getEvent();
+    /**
+     * Takes the next event for the handler.
+     *
+     * @return the event, or null if there are none: the handler is done and runs again at the next event
+     */
+    public synchronized CrashEvent pollCrashEvent() {
+        EventWrapper next = crashEvents.poll();
+        return next != null ? next.getEvent() : null;
     }
 
     public synchronized void addPing(int robotId, boolean crashed) {
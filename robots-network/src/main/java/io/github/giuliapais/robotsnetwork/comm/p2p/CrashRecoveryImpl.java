@@ -3,24 +3,26 @@ package io.github.giuliapais.robotsnetwork.comm.p2p;
 import io.github.giuliapais.robotsnetwork.comm.CrashEvent;
 import io.github.giuliapais.robotsnetwork.comm.CrashEventResponse;
 import io.github.giuliapais.robotsnetwork.comm.CrashRecoveryGrpc;
+import io.github.giuliapais.robotsnetwork.core.RobotContext;
 import io.grpc.stub.StreamObserver;
 
 public class CrashRecoveryImpl extends CrashRecoveryGrpc.CrashRecoveryImplBase {
     private final LogicalClock logicalClock;
+    private final CrashEventMonitor crashEventMonitor;
 
-    public CrashRecoveryImpl(int robotId) {
-        this.logicalClock = LogicalClock.getInstance(robotId);
+    public CrashRecoveryImpl(RobotContext context) {
+        this.logicalClock = context.getLogicalClock();
+        this.crashEventMonitor = context.getCrashEventMonitor(CrashEventMonitor.CrashEventMonitorType.INCOMING);
     }
 
     @Override
     public void notifyCrashEvent(CrashEvent request, StreamObserver<CrashEventResponse> responseObserver) {
         logicalClock.compareAndAdjust(request.getTimestamp());
-        CrashEventMonitor.getInstance(CrashEventMonitor.CrashEventMonitorType.INCOMING).addCrashEvent(request);
+        crashEventMonitor.addCrashEvent(request);
         // Wait to know the ping result
         CrashEventResponse response = null;
         try {
-            boolean hasCrashed = CrashEventMonitor.getInstance(CrashEventMonitor.CrashEventMonitorType.INCOMING)
-                    .getPing(request.getCrashedRobotId());
+            boolean hasCrashed = crashEventMonitor.getPing(request.getCrashedRobotId());
             if (hasCrashed) {
                 response = CrashEventResponse.newBuilder()
                         .setRobotId(logicalClock.getRobotId())
@@ -4,6 +4,7 @@ import io.github.giuliapais.commons.DistrictBalancer;
 import io.github.giuliapais.commons.models.MapPosition;
 import io.github.giuliapais.robotsnetwork.comm.*;
 import io.github.giuliapais.commons.MessagePrinter;
+import io.github.giuliapais.robotsnetwork.core.RobotContext;
 import io.grpc.stub.StreamObserver;
 
 import java.util.HashMap;
@@ -12,11 +13,14 @@ import java.util.List;
 public class DistrictBalancingImpl extends DistrictBalancingGrpc.DistrictBalancingImplBase {
 
     private final LogicalClock logicalClock;
-    private final LoadBalancingMonitor loadBalancingMonitor = LoadBalancingMonitor.getInstance();
+    private final LoadBalancingMonitor loadBalancingMonitor;
+    private final ChangeDistrictMonitor changeDistrictMonitor;
     private final DistrictBalancer districtBalancer;
 
-    public DistrictBalancingImpl(int robotId, DistrictBalancer districtBalancer) {
-        this.logicalClock = LogicalClock.getInstance(robotId);
+    public DistrictBalancingImpl(RobotContext context, DistrictBalancer districtBalancer) {
+        this.logicalClock = context.getLogicalClock();
+        this.loadBalancingMonitor = context.getLoadBalancingMonitor();
+        this.changeDistrictMonitor = context.getChangeDistrictMonitor();
         this.districtBalancer = districtBalancer;
     }
 
@@ -73,8 +77,7 @@ public class DistrictBalancingImpl extends DistrictBalancingGrpc.DistrictBalanci
         }
         districtBalancer.updatePositions(changesMap);
         if (changesMap.containsKey(logicalClock.getRobotId())) {
-            ChangeDistrictMonitor.getInstance()
-                    .districtChanged(changesMap.get(logicalClock.getRobotId()).getDistrict());
+            changeDistrictMonitor.districtChanged(changesMap.get(logicalClock.getRobotId()).getDistrict());
         }
         LoadBalancingTerminationAck response = LoadBalancingTerminationAck.newBuilder()
                 .setRobotId(logicalClock.getRobotId())
@@ -4,14 +4,18 @@ import io.github.giuliapais.robotsnetwork.comm.GoodbyeAck;
 import io.github.giuliapais.robotsnetwork.comm.GoodbyeMessage;
 import io.github.giuliapais.robotsnetwork.comm.GracefulExitGrpc;
 import io.github.giuliapais.commons.MessagePrinter;
+import io.github.giuliapais.robotsnetwork.core.RobotContext;
 import io.grpc.stub.StreamObserver;
 
 public class GracefulExitImpl extends GracefulExitGrpc.GracefulExitImplBase {
     private final LogicalClock logicalClock;
-    private final ActivePeers activePeers = ActivePeers.getInstance();
+    private final ActivePeers activePeers;
+    private final LoadBalancingMonitor loadBalancingMonitor;
 
-    public GracefulExitImpl(int robotId) {
-        this.logicalClock = LogicalClock.getInstance(robotId);
+    public GracefulExitImpl(RobotContext context) {
+        this.logicalClock = context.getLogicalClock();
+        this.activePeers = context.getActivePeers();
+        this.loadBalancingMonitor = context.getLoadBalancingMonitor();
     }
 
     @Override
@@ -31,6 +35,6 @@ public class GracefulExitImpl extends GracefulExitGrpc.GracefulExitImplBase {
         // Remove the robot from the list of active peers
         activePeers.removePeer(request.getRobotId());
         // Evaluate load balancing
-        LoadBalancingMonitor.getInstance().setState(LoadBalancingMonitor.LoadBalancingState.EVALUATING);
+        loadBalancingMonitor.setState(LoadBalancingMonitor.LoadBalancingState.EVALUATING);
     }
 }
@@ -6,6 +6,7 @@ import io.github.giuliapais.robotsnetwork.comm.IntroduceMeGrpc;
 import io.github.giuliapais.robotsnetwork.comm.IntroduceMeRequest;
 import io.github.giuliapais.robotsnetwork.comm.IntroduceMeResponse;
 import io.github.giuliapais.commons.MessagePrinter;
+import io.github.giuliapais.robotsnetwork.core.RobotContext;
 import io.grpc.stub.StreamObserver;
 
 public class IntroductionImpl extends IntroduceMeGrpc.IntroduceMeImplBase {
@@ -14,9 +15,9 @@ public class IntroductionImpl extends IntroduceMeGrpc.IntroduceMeImplBase {
     private final ActivePeers activePeers;
     private final DistrictBalancer districtBalancer;
 
-    public IntroductionImpl(int robotId, DistrictBalancer districtBalancer) {
-        this.robotId = robotId;
-        this.activePeers = ActivePeers.getInstance();
+    public IntroductionImpl(RobotContext context, DistrictBalancer districtBalancer) {
+        this.robotId = context.getRobotId();
+        this.activePeers = context.getActivePeers();
         this.districtBalancer = districtBalancer;
     }
 
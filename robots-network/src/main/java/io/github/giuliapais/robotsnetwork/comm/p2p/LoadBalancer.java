@@ -3,8 +3,8 @@ package io.github.giuliapais.robotsnetwork.comm.p2p;
 import io.github.giuliapais.commons.DistrictBalancer;
 import io.github.giuliapais.commons.models.MapPosition;
 import io.github.giuliapais.robotsnetwork.comm.*;
-import io.github.giuliapais.robotsnetwork.comm.rest.RestServiceManager;
 import io.github.giuliapais.commons.MessagePrinter;
+import io.github.giuliapais.robotsnetwork.core.RobotContext;
 import io.grpc.ManagedChannel;
 import io.grpc.Status;
 import io.grpc.StatusRuntimeException;
@@ -16,18 +16,19 @@ import java.util.Map;
 import java.util.stream.Collectors;
 
 /**
- * This thread is launched when the robot is initialised and monitors the need for load balancing until the process
- * is stopped.
+ * Handler of the load balancing states, set on the monitor when the robot is initialised: whenever the need for load
+ * balancing is signalled, the monitor runs it on the workers of the robot until the state is steady again.
  */
-public class LoadBalancer extends Thread {
+public class LoadBalancer implements Runnable {
     /* ATTRIBUTES --------------------------------------------------------------------------------------------------- */
-    private final ActivePeers activePeers = ActivePeers.getInstance();
+    private final RobotContext context;
+    private final ActivePeers activePeers;
     private final DistrictBalancer districtBalancer;
     private final HashMap<Integer, ManagedChannel> channels;
     private final HashMap<Integer, DistrictBalancingGrpc.DistrictBalancingBlockingStub> stubs = new HashMap<>();
     private final LogicalClock logicalClock;
 
-    private final LoadBalancingMonitor loadBalancingMonitor = LoadBalancingMonitor.getInstance();
+    private final LoadBalancingMonitor loadBalancingMonitor;
     private LoadBalancingAcks acks;
     private final HashMap<Integer, MapPosition> positions = new HashMap<>();
 
@@ -54,6 +55,7 @@ public class LoadBalancer extends Thread {
                     wait();
                 } catch (InterruptedException e) {
                     Thread.currentThread().interrupt();
+                    return;
                 }
             }
         }
@@ -69,8 +71,8 @@ public class LoadBalancer extends Thread {
     }
 
     /**
-     * Dedicated thread for a single peer - sends the request to initiate the load balancing protocol and puts an
-     * ack into the map.
+     * Request to a single peer, on the thread of the load balancer - sends the request to initiate the load
+     * balancing protocol and puts an ack into the map.
      * <p>
      * Acks can be 1: allowed, 0: denied, -1: process crashed (unable to contact the peer)
      * Only if acks from all peers are 1, the process can start.
@@ -144,8 +146,8 @@ public class LoadBalancer extends Thread {
     }
 
     /**
-     * Dedicated thread for a single peer - sends the request to terminate the load balancing protocol and puts an
-     * ack into the map.
+     * Request to a single peer, on the thread of the load balancer - sends the request to terminate the load
+     * balancing protocol and puts an ack into the map.
      * NOTE: the requests are sent to the peers only if there are changes to be made
      */
     private class PeerTerminateMessenger implements Runnable {
@@ -212,8 +214,12 @@ public class LoadBalancer extends Thread {
     }
 
     /* CONSTRUCTORS ------------------------------------------------------------------------------------------------- */
-    public LoadBalancer(int robotId, HashMap<Integer, ManagedChannel> channels, DistrictBalancer districtBalancer) {
-        this.logicalClock = LogicalClock.getInstance(robotId);
+    public LoadBalancer(RobotContext context, HashMap<Integer, ManagedChannel> channels,
+                        DistrictBalancer districtBalancer) {
+        this.context = context;
+        this.activePeers = context.getActivePeers();
+        this.logicalClock = context.getLogicalClock();
+        this.loadBalancingMonitor = context.getLoadBalancingMonitor();
         this.districtBalancer = districtBalancer;
         this.channels = channels;
     }
@@ -229,7 +235,7 @@ public class LoadBalancer extends Thread {
         }
     }
 
-    private void initiate() throws InterruptedException {
+    private void initiate() {
         List<Peer> peers = activePeers.getPeers();
         MessagePrinter.printMessage(
                 "Active peers: " + peers.stream().map(Peer::getId).toList(),
@@ -256,9 +262,7 @@ public class LoadBalancer extends Thread {
                 .build();
         loadBalancingMonitor.setRequestTimestamp(timestamp);
         for (Peer peer : peers) {
-            Thread thread = new Thread(new PeerInitMessenger(peer.getId(), request));
-            thread.start();
-            thread.join();
+            new PeerInitMessenger(peer.getId(), request).run();
         }
         acks.waitAcks();
         for (Map.Entry<Integer, Integer> peerAck : acks.getAcks().entrySet()) {
@@ -274,7 +278,7 @@ public class LoadBalancer extends Thread {
             loadBalancingMonitor.setState(LoadBalancingMonitor.LoadBalancingState.REBALANCING);
         } else {
             // Check for crash events
-            P2PServiceManager.crashDetection(acks.getAcks(), this.logicalClock);
+            P2PServiceManager.crashDetection(acks.getAcks(), this.context);
             // Abort load balancing by falling back to the steady state
             MessagePrinter.printMessage(
                     "Detected crashes or another process is taking care of district load balancing",
@@ -286,9 +290,10 @@ public class LoadBalancer extends Thread {
         }
     }
 
-    private void checkBalance() throws InterruptedException {
-        HashMap<Integer, Integer> changes = districtBalancer.rebalance();
-        if (changes == null) {
+    private void checkBalance() {
+        // New positions of the robots that change district, chosen by the rebalance strategy of the robot
+        HashMap<Integer, MapPosition> newPositions = districtBalancer.planRebalance();
+        if (newPositions == null) {
             MessagePrinter.printMessage(
                     "No need for load balancing at this moment",
                     MessagePrinter.INFO_FORMAT, true);
@@ -297,12 +302,6 @@ public class LoadBalancer extends Thread {
             positions.clear();
             return;
         }
-        // If there are changes get random positions for the robots
-        HashMap<Integer, MapPosition> newPositions = new HashMap<>();
-        for (Map.Entry<Integer, Integer> entry : changes.entrySet()) {
-            int[] pos = districtBalancer.getPosInDistrict(entry.getValue());
-            newPositions.put(entry.getKey(), new MapPosition(entry.getValue(), pos[0], pos[1]));
-        }
         long timestamp = logicalClock.incrementAndGet();
         LoadBalancingTerminationMessage message = LoadBalancingTerminationMessage.newBuilder()
                 .setRobotId(logicalClock.getRobotId())
@@ -321,19 +320,17 @@ public class LoadBalancer extends Thread {
         acks = new LoadBalancingAcks(peers.stream().map(Peer::getId).toList());
         // Send out termination messages and wait for acks
         for (Peer peer : peers) {
-            Thread thread = new Thread(new PeerTerminateMessenger(peer.getId(), message));
-            thread.start();
-            thread.join();
+            new PeerTerminateMessenger(peer.getId(), message).run();
         }
         acks.waitAcks();
         districtBalancer.updatePositions(newPositions); // Persist changes
         // Contact the server with the list of changes
-        RestServiceManager.getInstance(null).updatePositions(newPositions);
+        context.getRestServiceManager().updatePositions(newPositions);
 
         // If the position of the current robot has changed, signal it to ensure MQTT topic also changes
-        if (changes.containsKey(logicalClock.getRobotId())) {
-            ChangeDistrictMonitor changeDistrictMonitor = ChangeDistrictMonitor.getInstance();
-            changeDistrictMonitor.districtChanged(changes.get(logicalClock.getRobotId()));
+        if (newPositions.containsKey(logicalClock.getRobotId())) {
+            int district = newPositions.get(logicalClock.getRobotId()).getDistrict();
+            context.getChangeDistrictMonitor().districtChanged(district);
         }
 
         loadBalancingMonitor.setState(LoadBalancingMonitor.LoadBalancingState.STEADY);
@@ -345,35 +342,26 @@ public class LoadBalancer extends Thread {
         printGridStatus();
         if (!acks.getAcks().isEmpty() && acks.getAcks().values().stream().anyMatch(i -> i == -1)) {
             // Check for crash events
-            P2PServiceManager.crashDetection(acks.getAcks(), this.logicalClock);
+            P2PServiceManager.crashDetection(acks.getAcks(), this.context);
         }
     }
 
     /* Public ---------- */
     @Override
     public void run() {
-        while (!Thread.currentThread().isInterrupted()) {
-            LoadBalancingMonitor.LoadBalancingState state = loadBalancingMonitor.waitForNotSteady();
+        LoadBalancingMonitor.LoadBalancingState state;
+        while (!Thread.currentThread().isInterrupted() && (state = loadBalancingMonitor.nextState()) != null) {
             if (state == LoadBalancingMonitor.LoadBalancingState.EVALUATING) {
                 MessagePrinter.printMessage(
                         "Evaluating the need for load balancing on districts...",
                         MessagePrinter.INFO_FORMAT, true);
-                try {
-                    initiate();
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
-                }
+                initiate();
             } else {
-                try {
-                    MessagePrinter.printMessage(
-                            "Checking...",
-                            MessagePrinter.INFO_FORMAT, true);
-                    checkBalance();
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
-                }
+                MessagePrinter.printMessage(
+                        "Checking...",
+                        MessagePrinter.INFO_FORMAT, true);
+                checkBalance();
             }
-
         }
     }
 }
@@ -1,10 +1,17 @@
 package io.github.giuliapais.robotsnetwork.comm.p2p;
 
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
 public class LoadBalancingMonitor {
 
-    private static LoadBalancingMonitor instance;
     private LoadBalancingState state;
     private long requestTimestamp = Long.MAX_VALUE;
+    /* Handler of the states, run on the executor when the state leaves STEADY and none is running */
+    private Executor executor;
+    private Runnable handler;
+    /* A handler is running, set until it returns (or throws) */
+    private boolean handling = false;
 
     public enum LoadBalancingState {
         STEADY,
@@ -12,23 +19,10 @@ public class LoadBalancingMonitor {
         REBALANCING
     }
 
-    private LoadBalancingMonitor() {
+    public LoadBalancingMonitor() {
         state = LoadBalancingState.STEADY;
     }
 
-    public static LoadBalancingMonitor getInstance() {
-        LoadBalancingMonitor result = instance;
-        if (result == null) {
-            synchronized (LoadBalancingMonitor.class) {
-                result = instance;
-                if (result == null) {
-                    instance = result = new LoadBalancingMonitor();
-                }
-            }
-        }
-        return result;
-    }
-
     public synchronized LoadBalancingState getState() {
         return state;
     }
@@ -41,15 +35,55 @@ public class LoadBalancingMonitor {
         return requestTimestamp;
     }
 
-    public synchronized LoadBalancingState waitForNotSteady() {
-        while (state == LoadBalancingState.STEADY) {
-            try {
-                wait();
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-            }
+    /**
+     * Sets the handler of the states: when the state leaves STEADY, the handler is run on the executor unless it is
+     * already running. The handler takes the states with {@link #nextState()} until the state is STEADY again, then
+     * it is done. A null handler removes the current one. A handler that is running when replaced goes on until it
+     * is done, the new one only starts after it.
+     */
+    public synchronized void setHandler(Executor executor, Runnable handler) {
+        this.executor = executor;
+        this.handler = handler;
+        if (handler != null && !handling && state != LoadBalancingState.STEADY) {
+            startHandler();
+        }
+    }
+
+    private void startHandler() {
+        Runnable current = handler;
+        try {
+            executor.execute(() -> runHandler(current));
+            handling = true;
+        } catch (RejectedExecutionException e) {
+            // The robot is stopping
         }
-        return state;
+    }
+
+    private void runHandler(Runnable handler) {
+        boolean completed = false;
+        try {
+            handler.run();
+            completed = true;
+        } finally {
+            handlerDone(completed);
+        }
+    }
+
+    private synchronized void handlerDone(boolean completed) {
+        handling = false;
+        // The state left STEADY after the handler saw it STEADY. After a failure, the next change starts it again
+        if (completed && handler != null && state != LoadBalancingState.STEADY) {
+            startHandler();
+        }
+    }
+
+    /**
+     * Returns the state for the handler.
+     *
+     * @return the state, or null if it is STEADY: the handler is done and runs again when the state changes
+     */
+    public synchronized LoadBalancingState nextState() {
+        return state != LoadBalancingState.STEADY ? state : null;
     }
 
     public synchronized void setState(LoadBalancingState state) {
@@ -60,7 +94,9 @@ public class LoadBalancingMonitor {
         }
         if ((oldState == LoadBalancingState.STEADY & state == LoadBalancingState.EVALUATING) ||
                 (oldState == LoadBalancingState.EVALUATING & state == LoadBalancingState.REBALANCING)) {
-            notifyAll();
+            if (handler != null && !handling) {
+                startHandler();
+            }
         }
     }
 }
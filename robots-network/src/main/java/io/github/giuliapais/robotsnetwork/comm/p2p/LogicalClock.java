@@ -4,31 +4,17 @@ import java.util.Random;
 
 public class LogicalClock {
 
-    private static LogicalClock instance;
     private int robotId;
     private int clockSkew;
     private long logicalClock = 0;
 
-    private LogicalClock(int robotId) {
+    public LogicalClock(int robotId) {
         this.robotId = robotId;
         Random random = new Random();
         this.clockSkew = random.nextInt(1000);
         this.logicalClock = 0;
     }
 
-    public static LogicalClock getInstance(int robotId) {
-        LogicalClock result = instance;
-        if (result == null) {
-            synchronized (LogicalClock.class) {
-                result = instance;
-                if (result == null) {
-                    instance = result = new LogicalClock(robotId);
-                }
-            }
-        }
-        return result;
-    }
-
     public synchronized long incrementAndGet() {
         return ++logicalClock + clockSkew;
     }
@@ -4,6 +4,8 @@ import io.github.giuliapais.commons.DistrictBalancer;
 import io.github.giuliapais.commons.models.MapPosition;
 import io.github.giuliapais.robotsnetwork.comm.*;
 import io.github.giuliapais.commons.MessagePrinter;
+import io.github.giuliapais.robotsnetwork.core.RobotContext;
+import io.github.giuliapais.robotsnetwork.core.RobotExecutors;
 import io.grpc.*;
 
 import java.beans.IndexedPropertyChangeEvent;
@@ -11,6 +13,7 @@ import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
@@ -18,6 +21,7 @@ public class P2PServiceManager {
     /* ATTRIBUTES --------------------------------------------------------------------------------------------------- */
     static final int MAX_RETRY = 3;
     static final int START_BACKOFF_TIME = 2000;
+    private final RobotContext context;
     private final int robotId;
     private final int port;
     private final String selfIpAddress;
@@ -25,12 +29,14 @@ public class P2PServiceManager {
     private Server grpcServer;
     private final RobotRepairStatus repairStatus;
     private final DistrictBalancer districtBalancer;
+    /* Requests to peers, handlers of crash events and load balancing and the gRPC server run on the workers */
+    private final RobotExecutors executors;
 
     private final HashMap<Integer, ManagedChannel> channels = new HashMap<>();
     private final HashMap<Integer, RepairServiceGrpc.RepairServiceBlockingStub> repairStubs = new HashMap<>();
     private final RepairAcks repairAcks = new RepairAcks();
 
-    private LogicalClock logicalClock;
+    private final LogicalClock logicalClock;
     private final AbstractCrashEventHandler[] crashEventHandlers;
     private final LoadBalancer loadBalancer;
 
@@ -101,9 +107,7 @@ public class P2PServiceManager {
                         synchronized (channels) {
                             channel = channels.get(newPeer.getId());
                             if (channel == null) {
-                                channel = ManagedChannelBuilder.forAddress(newPeer.getIpAddress(), newPeer.getPort())
-                                        .usePlaintext()
-                                        .build();
+                                channel = context.getHost().channel(newPeer.getIpAddress(), newPeer.getPort());
                                 channels.put(newPeer.getId(), channel);
                             }
                         }
@@ -124,7 +128,7 @@ public class P2PServiceManager {
                     if (repairStatus.getStatus() == RobotRepairStatus.RepairStatus.NEEDS_REPAIR &&
                             (oldPeer == null & newPeer != null)) {
                         repairAcks.addRequired(newPeer.getId());
-                        sendRepairRequest(newPeer, repairStatus.getRequestTimestamp()).start();
+                        executors.execute(sendRepairRequest(newPeer, repairStatus.getRequestTimestamp()));
                     }
                 }
             }
@@ -162,25 +166,29 @@ public class P2PServiceManager {
 
 
     /* CONSTRUCTORS ------------------------------------------------------------------------------------------------- */
-    public P2PServiceManager(int robotId, int port, String selfIpAddress,
+    public P2PServiceManager(RobotContext context, int port, String selfIpAddress,
                              DistrictBalancer districtBalancer) {
-        this.robotId = robotId;
+        this.context = context;
+        this.robotId = context.getRobotId();
         this.port = port;
         this.selfIpAddress = selfIpAddress;
         this.districtBalancer = districtBalancer;
-        this.peers = ActivePeers.getInstance();
+        this.executors = context.getExecutors();
+        this.peers = context.getActivePeers();
         this.peers.addPropertyChangeListener(mutExListener);
         this.peers.addPropertyChangeListener(removalListener);
         this.peers.addPropertyChangeListener(addListener);
         this.repairStatus = new RobotRepairStatus();
-        this.logicalClock = LogicalClock.getInstance(robotId);
+        this.logicalClock = context.getLogicalClock();
         this.crashEventHandlers = new AbstractCrashEventHandler[2];
-        this.crashEventHandlers[0] = new CrashEventHandlerIn(this.channels);
-        this.crashEventHandlers[1] = new CrashEventHandlerOut(this.channels);
-        this.crashEventHandlers[0].start();
-        this.crashEventHandlers[1].start();
-        this.loadBalancer = new LoadBalancer(this.robotId, this.channels, this.districtBalancer);
-        this.loadBalancer.start();
+        this.crashEventHandlers[0] = new CrashEventHandlerIn(context, this.channels);
+        this.crashEventHandlers[1] = new CrashEventHandlerOut(context, this.channels);
+        context.getCrashEventMonitor(CrashEventMonitor.CrashEventMonitorType.INCOMING)
+                .setHandler(executors.workers(), this.crashEventHandlers[0]);
+        context.getCrashEventMonitor(CrashEventMonitor.CrashEventMonitorType.OUTGOING)
+                .setHandler(executors.workers(), this.crashEventHandlers[1]);
+        this.loadBalancer = new LoadBalancer(context, this.channels, this.districtBalancer);
+        context.getLoadBalancingMonitor().setHandler(executors.workers(), this.loadBalancer);
         startGrpcServer();
     }
 
@@ -188,12 +196,12 @@ public class P2PServiceManager {
     /* Private --------- */
     private void startGrpcServer() {
         MessagePrinter.printMessage("Starting gRPC server...", MessagePrinter.INFO_FORMAT, true);
-        grpcServer = ServerBuilder.forPort(this.port)
-                .addService(new IntroductionImpl(this.robotId, this.districtBalancer))
-                .addService(new RequestRepairImpl(this.repairStatus, this.robotId))
-                .addService(new CrashRecoveryImpl(this.robotId))
-                .addService(new DistrictBalancingImpl(this.robotId, this.districtBalancer))
-                .addService(new GracefulExitImpl(this.robotId))
+        grpcServer = context.getHost().serverBuilder(this.port)
+                .addService(new IntroductionImpl(context, this.districtBalancer))
+                .addService(new RequestRepairImpl(this.repairStatus, context))
+                .addService(new CrashRecoveryImpl(context))
+                .addService(new DistrictBalancingImpl(context, this.districtBalancer))
+                .addService(new GracefulExitImpl(context))
                 .build();
         try {
             grpcServer.start();
@@ -203,15 +211,13 @@ public class P2PServiceManager {
         }
     }
 
-    private Thread sendIntroductionMessage(Peer peer, HashMap<Integer, Integer> acks) {
-        Thread messageSender = new Thread(() -> {
+    private Runnable sendIntroductionMessage(Peer peer, HashMap<Integer, Integer> acks) {
+        return () -> {
             ManagedChannel channel;
             synchronized (channels) {
                 channel = channels.get(peer.getId());
                 if (channel == null) {
-                    channel = ManagedChannelBuilder.forAddress(peer.getIpAddress(), peer.getPort())
-                            .usePlaintext()
-                            .build();
+                    channel = context.getHost().channel(peer.getIpAddress(), peer.getPort());
                     channels.put(peer.getId(), channel);
                 }
             }
@@ -273,21 +279,17 @@ public class P2PServiceManager {
                     acks.put(peer.getId(), -1);
                 }
             }
-        });
-        messageSender.start();
-        return messageSender;
+        };
     }
 
-    private Thread sendRepairRequest(Peer peer, long timestamp) {
-        return new Thread(() -> {
+    private Runnable sendRepairRequest(Peer peer, long timestamp) {
+        return () -> {
             // Retrieve the channel for the peer, if it does not exist create it
             ManagedChannel channel;
             synchronized (channels) {
                 channel = channels.get(peer.getId());
                 if (channel == null) {
-                    channel = ManagedChannelBuilder.forAddress(peer.getIpAddress(), peer.getPort())
-                            .usePlaintext()
-                            .build();
+                    channel = context.getHost().channel(peer.getIpAddress(), peer.getPort());
                     channels.put(peer.getId(), channel);
                 }
             }
@@ -343,11 +345,11 @@ public class P2PServiceManager {
             } else {
                 this.repairAcks.addAck(peer.getId(), -1);
             }
-        });
+        };
     }
 
-    private List<Thread> setUpAccessRequests(List<Peer> randomPeers, String type, HashMap<Integer, Integer> acks) {
-        List<Thread> accessThreads = new ArrayList<>();
+    private List<Runnable> setUpAccessRequests(List<Peer> randomPeers, String type, HashMap<Integer, Integer> acks) {
+        List<Runnable> accessRequests = new ArrayList<>();
         long timestamp = logicalClock.incrementAndGet();
         for (Peer peer : randomPeers) {
             RepairServiceGrpc.RepairServiceBlockingStub stub;
@@ -355,7 +357,7 @@ public class P2PServiceManager {
                 stub = repairStubs.get(peer.getId());
             }
             if (stub != null) {
-                Thread accessThread = new Thread(() -> {
+                accessRequests.add(() -> {
                     AccessRequest request = AccessRequest.newBuilder()
                             .setRobotId(this.robotId)
                             .setTimestamp(timestamp)
@@ -381,10 +383,9 @@ public class P2PServiceManager {
                         }
                     }
                 });
-                accessThreads.add(accessThread);
             }
         }
-        return accessThreads;
+        return accessRequests;
     }
 
 
@@ -404,7 +405,7 @@ public class P2PServiceManager {
         int peersToPick;
         List<Peer> randomPeers;
         // Set up access messages
-        List<Thread> accessMsgs;
+        List<Runnable> accessMsgs;
         while (true) {
             peersToPick = Math.min(3, activePeers.size());
             Collections.shuffle(activePeers);
@@ -417,11 +418,8 @@ public class P2PServiceManager {
                 continue;
             }
             accessMsgs = setUpAccessRequests(randomPeers, "access", acks);
-            for (Thread thread : accessMsgs) {
-                thread.start();
-                thread.join();
-            }
-            crashDetection(acks, this.logicalClock);
+            accessMsgs.forEach(Runnable::run);
+            crashDetection(acks, this.context);
             if (acks.values().stream().allMatch(i -> i == -1)) {
                 // Can't communicate with any of the peers, try again
                 activePeers = peers.getPeers();
@@ -437,28 +435,23 @@ public class P2PServiceManager {
         // Set up release messages
         if (!randomPeers.isEmpty()) {
             acks.clear();
-            List<Thread> releaseMsgs = setUpAccessRequests(randomPeers, "release", acks);
-            for (Thread thread : releaseMsgs) {
-                thread.start();
-                thread.join();
-            }
+            List<Runnable> releaseMsgs = setUpAccessRequests(randomPeers, "release", acks);
+            releaseMsgs.forEach(Runnable::run);
         }
-        crashDetection(acks, this.logicalClock);
+        crashDetection(acks, this.context);
         repairStatus.repairFinished();
         repairAcks.clear();
         MessagePrinter.printMessage("Repairs done!", MessagePrinter.INFO_FORMAT, true);
     }
 
-    private Thread getGoodbyeSender(Peer peer, long timestamp, List<Integer> acks) {
-        return new Thread(() -> {
+    private Runnable getGoodbyeSender(Peer peer, long timestamp, List<Integer> acks) {
+        return () -> {
             // Retrieve the channel for the peer, if it does not exist create it
             ManagedChannel channel;
             synchronized (channels) {
                 channel = channels.get(peer.getId());
                 if (channel == null) {
-                    channel = ManagedChannelBuilder.forAddress(peer.getIpAddress(), peer.getPort())
-                            .usePlaintext()
-                            .build();
+                    channel = context.getHost().channel(peer.getIpAddress(), peer.getPort());
                     channels.put(peer.getId(), channel);
                 }
             }
@@ -485,17 +478,18 @@ public class P2PServiceManager {
                     }
                 }
             }
-        });
+        };
     }
 
-    static void crashDetection(HashMap<Integer, Integer> acks, LogicalClock logicalClock) {
+    static void crashDetection(HashMap<Integer, Integer> acks, RobotContext context) {
         // Check if any of the peers crashed
         if (!acks.isEmpty() && acks.values().stream().anyMatch(i -> i == -1)) {
             HashMap<Integer, Integer> crashedPeers = (HashMap<Integer, Integer>) acks.entrySet().stream()
                     .filter(entry -> entry.getValue() == -1)
                     .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
             // Add crash events to the monitor
-            CrashEventMonitor monitor = CrashEventMonitor.getInstance(CrashEventMonitor.CrashEventMonitorType.OUTGOING);
+            LogicalClock logicalClock = context.getLogicalClock();
+            CrashEventMonitor monitor = context.getCrashEventMonitor(CrashEventMonitor.CrashEventMonitorType.OUTGOING);
             for (Integer peerId : crashedPeers.keySet()) {
                 CrashEvent evt = CrashEvent.newBuilder()
                         .setRobotId(logicalClock.getRobotId())
@@ -517,21 +511,16 @@ public class P2PServiceManager {
             MessagePrinter.printMessage("Sending introduction messages...",
                     MessagePrinter.INFO_FORMAT, true);
             for (Peer peer : peers.getPeers()) {
-                Thread sender = sendIntroductionMessage(peer, acks);
-                try {
-                    sender.join();
-                } catch (InterruptedException e) {
-                    throw new RuntimeException("Interrupted while waiting for introduction acks", e);
-                }
+                sendIntroductionMessage(peer, acks).run();
             }
-            crashDetection(acks, this.logicalClock);
+            crashDetection(acks, this.context);
         }
     }
 
     public void requestRepair() {
         MessagePrinter.printMessage("I need repairs... Initiating protocol",
                 MessagePrinter.ACCENT_FORMAT_2, true);
-        List<Thread> senders = new ArrayList<>();
+        List<Runnable> senders = new ArrayList<>();
         long timestamp = this.logicalClock.incrementAndGet();
         repairStatus.needsRepairs(timestamp);
         if (!peers.isEmpty()) {
@@ -541,27 +530,20 @@ public class P2PServiceManager {
                     MessagePrinter.INFO_FORMAT, true);
             this.repairAcks.addRequired(peers.getIds());
             for (Peer peer : peers.getPeers()) {
-                Thread sender = sendRepairRequest(peer, timestamp);
-                senders.add(sender);
+                senders.add(sendRepairRequest(peer, timestamp));
             }
         }
-        if (!senders.isEmpty()) {
-            senders.forEach(Thread::start);
-            senders.forEach(thread -> {
-                try {
-                    thread.join();
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
-                }
-            });
-        }
         try {
+            // The requests are sent in parallel, a deferred one must not delay the others
+            executors.invokeAll(senders);
             this.repairAcks.waitForAcks();
-            crashDetection(repairAcks.getAcksReceived(), this.logicalClock);
+            crashDetection(repairAcks.getAcksReceived(), this.context);
             repairStatus.setRepairing();
             goToMechanic();
         } catch (InterruptedException e) {
             throw new RuntimeException("Interrupted while waiting for repair acks", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Error while requesting repairs", e.getCause());
         }
     }
 
@@ -572,25 +554,10 @@ public class P2PServiceManager {
             MessagePrinter.printMessage("Sending goodbye messages...",
                     MessagePrinter.INFO_FORMAT, true);
             for (Peer peer : peers.getPeers()) {
-                Thread sender = getGoodbyeSender(peer, timestamp, acks);
-                sender.start();
-                try {
-                    sender.join();
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
-                }
+                getGoodbyeSender(peer, timestamp, acks).run();
             }
         }
-        // Stop crash handlers
-        for (AbstractCrashEventHandler handler : crashEventHandlers) {
-            handler.interrupt();
-        }
-        // Stop the load balancer
-        loadBalancer.interrupt();
-        // Remove listeners
-        peers.removePropertyChangeListener(mutExListener);
-        peers.removePropertyChangeListener(removalListener);
-        peers.removePropertyChangeListener(addListener);
+        stopServices();
         // Close channels
         synchronized (channels) {
             for (ManagedChannel channel : channels.values()) {
@@ -601,4 +568,30 @@ public class P2PServiceManager {
         grpcServer.shutdown();
     }
 
+    /**
+     * Stops the services as if the robot crashed: no goodbye messages, the calls in progress are cancelled and the
+     * peers find out when they can't reach it anymore. For failure tests with several robots in the same process,
+     * where crashing the process would take all of them down.
+     */
+    public void crash() {
+        stopServices();
+        synchronized (channels) {
+            for (ManagedChannel channel : channels.values()) {
+                channel.shutdownNow();
+            }
+        }
+        grpcServer.shutdownNow();
+    }
+
+    private void stopServices() {
+        // Stop crash handlers and the load balancer: the ones running are interrupted when the workers stop
+        context.getCrashEventMonitor(CrashEventMonitor.CrashEventMonitorType.INCOMING).setHandler(null, null);
+        context.getCrashEventMonitor(CrashEventMonitor.CrashEventMonitorType.OUTGOING).setHandler(null, null);
+        context.getLoadBalancingMonitor().setHandler(null, null);
+        // Remove listeners
+        peers.removePropertyChangeListener(mutExListener);
+        peers.removePropertyChangeListener(removalListener);
+        peers.removePropertyChangeListener(addListener);
+    }
+
 }
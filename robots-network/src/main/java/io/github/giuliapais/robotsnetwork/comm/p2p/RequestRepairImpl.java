@@ -2,16 +2,22 @@ package io.github.giuliapais.robotsnetwork.comm.p2p;
 
 import io.github.giuliapais.robotsnetwork.comm.*;
 import io.github.giuliapais.commons.MessagePrinter;
+import io.github.giuliapais.robotsnetwork.core.RobotContext;
+import io.github.giuliapais.robotsnetwork.core.RobotExecutors;
 import io.grpc.stub.StreamObserver;
 
 
 public class RequestRepairImpl extends RepairServiceGrpc.RepairServiceImplBase {
     private final RobotRepairStatus repairStatus;
     private final LogicalClock logicalClock;
+    private final RobotExecutors executors;
+    private final CrashEventMonitor crashEventMonitor;
 
-    public RequestRepairImpl(RobotRepairStatus repairStatus, int robotId) {
+    public RequestRepairImpl(RobotRepairStatus repairStatus, RobotContext context) {
         this.repairStatus = repairStatus;
-        this.logicalClock = LogicalClock.getInstance(robotId);
+        this.logicalClock = context.getLogicalClock();
+        this.executors = context.getExecutors();
+        this.crashEventMonitor = context.getCrashEventMonitor(CrashEventMonitor.CrashEventMonitorType.OUTGOING);
     }
 
     @Override
@@ -51,27 +57,21 @@ public class RequestRepairImpl extends RepairServiceGrpc.RepairServiceImplBase {
                     "Robot " + request.getRobotId() + " is accessing the resource, monitoring crash events",
                     MessagePrinter.ACCENT_FORMAT,
                     true);
-            Thread crashDetectionThread = new Thread(() -> {
-                try {
-                    Thread.sleep(15000); // 15 seconds (repair time + margin)
-                    if (repairStatus.getRobotAccessingId() == request.getRobotId() &
-                            !repairStatus.getRobotAccessingStatus().equals("clear")) {
-                        MessagePrinter.printMessage(
-                                "Robot " + request.getRobotId() + " crashed while accessing the resource",
-                                MessagePrinter.ERROR_FORMAT,
-                                true);
-                        CrashEventMonitor.getInstance(CrashEventMonitor.CrashEventMonitorType.OUTGOING)
-                                .addCrashEvent(CrashEvent.newBuilder()
-                                        .setRobotId(logicalClock.getRobotId())
-                                        .setCrashedRobotId(request.getRobotId())
-                                        .setTimestamp(logicalClock.incrementAndGet())
-                                        .build());
-                    }
-                } catch (InterruptedException e) {
-                    throw new RuntimeException(e);
+            // Timeout on the scheduler: it only adds the event, which the crash handler takes care of
+            executors.schedule(() -> {
+                if (repairStatus.getRobotAccessingId() == request.getRobotId() &
+                        !repairStatus.getRobotAccessingStatus().equals("clear")) {
+                    MessagePrinter.printMessage(
+                            "Robot " + request.getRobotId() + " crashed while accessing the resource",
+                            MessagePrinter.ERROR_FORMAT,
+                            true);
+                    crashEventMonitor.addCrashEvent(CrashEvent.newBuilder()
+                            .setRobotId(logicalClock.getRobotId())
+                            .setCrashedRobotId(request.getRobotId())
+                            .setTimestamp(logicalClock.incrementAndGet())
+                            .build());
                 }
-            });
-            crashDetectionThread.start();
+            }, 15000); // 15 seconds (repair time + margin)
         } else if (request.getType().equals("release")) {
             repairStatus.setRobotAccessingId(-1);
             repairStatus.setRobotAccessingStatus("clear");
@@ -10,6 +10,8 @@ import jakarta.ws.rs.ProcessingException;
 import jakarta.ws.rs.client.Client;
 import jakarta.ws.rs.client.ClientBuilder;
 import jakarta.ws.rs.client.Entity;
+import jakarta.ws.rs.client.Invocation;
+import jakarta.ws.rs.client.WebTarget;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
 import org.glassfish.jersey.jackson.JacksonFeature;
@@ -20,14 +22,18 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+/**
+ * Client of the robots API of the server. It holds no state of a robot, so the robots of a process share one (see
+ * {@link io.github.giuliapais.robotsnetwork.core.RobotHost}).
+ */
 public class RestServiceManager {
-    private static volatile RestServiceManager instance;
     private final String API_ADDRESS = "/api/robots";
     private final String SERVER_ADDRESS;
     private final String targetUri;
+    private final ObjectMapper objectMapper = new ObjectMapper();
     private Client client;
 
-    private RestServiceManager(String serverAddress) {
+    public RestServiceManager(String serverAddress) {
         this.SERVER_ADDRESS = serverAddress;
         this.targetUri = "http://" + this.SERVER_ADDRESS + this.API_ADDRESS;
         client = ClientBuilder
@@ -36,20 +42,17 @@ public class RestServiceManager {
                 .build();
     }
 
-    public static RestServiceManager getInstance(String serverAddress) {
-        RestServiceManager result = instance;
-        if (result == null) {
-            synchronized (RestServiceManager.class) {
-                result = instance;
-                if (result == null) {
-                    instance = result = new RestServiceManager(serverAddress);
-                }
-            }
-        }
-        return result;
+    public JsonNode registerToServer(int robotId, String selfAddress, int port) {
+        return registerToServer(robotId, selfAddress, port, 0);
     }
 
-    public JsonNode registerToServer(int robotId, String selfAddress, int port) {
+    /**
+     * Registers the robot to the server.
+     *
+     * @param neighbors the maximum number of active robots in the response (the closest to this one), 0 for all
+     * @return the response of the server, or null if the registration failed
+     */
+    public JsonNode registerToServer(int robotId, String selfAddress, int port, int neighbors) {
         MessagePrinter.printMessage("Sending registration request to the server...",
                 MessagePrinter.INFO_FORMAT, true);
         HashMap<String, Object> payLoad = new HashMap<>();
@@ -57,12 +60,14 @@ public class RestServiceManager {
         payLoad.put("ipAddress", selfAddress);
         payLoad.put("port", port);
         try {
-            Response serverResponse = client
-                    .target(this.targetUri)
+            WebTarget target = client.target(this.targetUri);
+            if (neighbors > 0) {
+                target = target.queryParam("neighbors", neighbors);
+            }
+            Response serverResponse = target
                     .request(MediaType.APPLICATION_JSON)
                     .post(Entity.json(payLoad));
             String entity = serverResponse.readEntity(String.class);
-            ObjectMapper objectMapper = new ObjectMapper();
             JsonNode jsonObject = objectMapper.readTree(entity);
             if (serverResponse.getStatus() == 200) {
                 MessagePrinter.printRegisterSuccessMessage(jsonObject);
@@ -86,20 +91,47 @@ public class RestServiceManager {
         }
     }
 
-    public void deleteRobot(int robotId, boolean join) {
-        Thread thread = new Thread(() -> {
-            client.target(targetUri)
-                    .path(Integer.toString(robotId))
+    /**
+     * Gets a page of the list of robots from the server.
+     *
+     * @param after the id of the last robot of the previous page, null for the first page
+     * @param limit the maximum number of robots in the page
+     * @return the page, with the robots and the cursor of the next page, or null if the request failed
+     */
+    public JsonNode getRobotsPage(Integer after, int limit) {
+        try {
+            WebTarget target = client.target(targetUri).queryParam("limit", limit);
+            if (after != null) {
+                target = target.queryParam("after", after);
+            }
+            Response serverResponse = target
                     .request(MediaType.APPLICATION_JSON)
-                    .delete();
-        });
-        thread.start();
-        if (join) {
-            try {
-                thread.join();
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
+                    .get();
+            if (serverResponse.getStatus() != 200) {
+                return null;
             }
+            return objectMapper.readTree(serverResponse.readEntity(String.class));
+        } catch (ProcessingException e) {
+            return null;
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Removes a robot from the server.
+     *
+     * @param join true to wait for the response, false to send the request in the background (on the threads of the
+     *             client, shared by all the requests)
+     */
+    public void deleteRobot(int robotId, boolean join) {
+        Invocation.Builder request = client.target(targetUri)
+                .path(Integer.toString(robotId))
+                .request(MediaType.APPLICATION_JSON);
+        if (join) {
+            request.delete();
+        } else {
+            request.async().delete();
         }
     }
 
@@ -109,11 +141,16 @@ public class RestServiceManager {
             updates.add(new RobotPosUpdate(entry.getKey(), entry.getValue().getDistrict(),
                     entry.getValue().getX(), entry.getValue().getY()));
         }
-        Thread thread = new Thread(() -> {
-            client.target(targetUri)
-                    .request(MediaType.APPLICATION_JSON)
-                    .put(Entity.json(updates));
-        });
-        thread.start();
+        client.target(targetUri)
+                .request(MediaType.APPLICATION_JSON)
+                .async()
+                .put(Entity.json(updates));
+    }
+
+    /**
+     * Closes the client, once no robot uses it.
+     */
+    public void close() {
+        client.close();
     }
 }
@@ -2,52 +2,54 @@ package io.github.giuliapais.robotsnetwork.core;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.github.giuliapais.commons.SensorAveragesCodec;
 import io.github.giuliapais.commons.models.SensorAverages;
+import io.github.giuliapais.commons.models.SensorType;
 import io.github.giuliapais.robotsnetwork.comm.p2p.ChangeDistrictMonitor;
 import io.github.giuliapais.commons.MessagePrinter;
 import org.eclipse.paho.client.mqttv3.MqttAsyncClient;
 import org.eclipse.paho.client.mqttv3.MqttConnectOptions;
 import org.eclipse.paho.client.mqttv3.MqttException;
 
+import java.util.Arrays;
+import java.util.EnumMap;
 import java.util.List;
-
-public class AveragesPublisher extends Thread {
+import java.util.Map;
+import java.util.concurrent.ScheduledFuture;
+
+/**
+ * Publishes the averages of the sensors of the robot to the MQTT broker every 15 seconds, on the topic of the
+ * district of the robot.
+ * <p>
+ * The publisher has no thread of its own: connecting and each message are tasks on the workers of the robot, each
+ * message scheduling the next one. A change of district is applied before the next message.
+ */
+public class AveragesPublisher {
     private final String MQTT_BROKER_ADDRESS = "tcp://localhost:1883";
     private static final long PUBLISHING_PERIOD = 15000;
 
-    private static volatile boolean stop = false;
+    private final RobotExecutors executors;
+    private final ChangeDistrictMonitor changeDistrictMonitor;
+    /* Guarded by this, as the next message */
+    private boolean stop = false;
+    private ScheduledFuture<?> nextMessage;
 
     private String topic;
     private int robotId;
+    private final WireFormat wireFormat;
+    private final ObjectMapper mapper = new ObjectMapper();
     private MqttAsyncClient client;
-    private volatile Integer newDistrict = 0;
-
-    private final List<Double> averages;
-
-    private static class ChangeDistrictHandler extends Thread {
-        private final ChangeDistrictMonitor monitor = ChangeDistrictMonitor.getInstance();
-        private final AveragesPublisher publisher;
-
-        public ChangeDistrictHandler(AveragesPublisher publisher) {
-            this.publisher = publisher;
-        }
 
-        @Override
-        public void run() {
-            while (!interrupted()) {
-                try {
-                    int district = monitor.monitorChanges();
-                    publisher.signalDistrictChanged(district);
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
-                }
-            }
-        }
-    }
+    /* Averages not published yet of each sensor, each list guarded by itself */
+    private final Map<SensorType, List<Double>> averages;
 
-    public AveragesPublisher(List<Double> averages, int district, int robotId) {
+    public AveragesPublisher(Map<SensorType, List<Double>> averages, int district, WireFormat wireFormat,
+                             RobotContext context) {
         this.averages = averages;
-        this.robotId = robotId;
+        this.robotId = context.getRobotId();
+        this.wireFormat = wireFormat;
+        this.executors = context.getExecutors();
+        this.changeDistrictMonitor = context.getChangeDistrictMonitor();
         setDistrict(district);
     }
 
@@ -66,14 +68,7 @@ public class AveragesPublisher extends Thread {
         this.topic = "greenfield/pollution/district" + district;
     }
 
-    void signalDistrictChanged(Integer newDistrict) {
-        this.newDistrict = newDistrict;
-    }
-
-    private void changeDistrict() throws MqttException {
-        int districtId;
-        districtId = newDistrict;
-        newDistrict = 0;
+    private void changeDistrict(int districtId) throws MqttException {
         // Unsubscribe from old topic
         client.unsubscribe(topic);
         // Subscribe to new topic
@@ -102,24 +97,49 @@ public class AveragesPublisher extends Thread {
         MessagePrinter.printMessage("Subscribed to topic " + topic, MessagePrinter.INFO_FORMAT, true);
     }
 
+    /**
+     * Publishes the averages of the sensors of the robot in a message: the PM10 ones as the averages of the message,
+     * the others as its series. The sensors the robot doesn't have are left out of the message.
+     */
     private void publishMessage() {
-        List<Double> copied;
-        synchronized (averages) {
-            copied = List.copyOf(averages);
-            averages.clear();
-        }
-        SensorAverages message = new SensorAverages(this.robotId, System.currentTimeMillis(), copied);
-        ObjectMapper mapper = new ObjectMapper();
+        // By sensor type ordinal, null for the sensors the robot doesn't have
+        double[][] copied = new double[SensorType.values().length][];
+        int[] lengths = new int[copied.length];
+        averages.forEach((type, values) -> {
+            synchronized (values) {
+                double[] series = new double[values.size()];
+                for (int i = 0; i < series.length; i++) {
+                    series[i] = values.get(i);
+                }
+                values.clear();
+                copied[type.ordinal()] = series;
+                lengths[type.ordinal()] = series.length;
+            }
+        });
+        long timestamp = System.currentTimeMillis();
         try {
-            String payload = mapper.writeValueAsString(message);
-            client.publish(topic, payload.getBytes(), 1, false);
+            if (wireFormat.encoding() != null) {
+                byte[] payload = SensorAveragesCodec.encode(this.robotId, timestamp, copied, lengths,
+                        wireFormat.encoding());
+                client.publish(topic + SensorAveragesCodec.TOPIC_SUFFIX, payload, 1, false);
+                return;
+            }
+            Map<SensorType, List<Double>> series = new EnumMap<>(SensorType.class);
+            for (SensorType type : averages.keySet()) {
+                if (type != SensorType.PM10) {
+                    series.put(type, Arrays.stream(copied[type.ordinal()]).boxed().toList());
+                }
+            }
+            double[] pm10 = copied[SensorType.PM10.ordinal()];
+            SensorAverages message = new SensorAverages(this.robotId, timestamp,
+                    pm10 != null ? Arrays.stream(pm10).boxed().toList() : null, series);
+            client.publish(topic, mapper.writeValueAsBytes(message), 1, false);
         } catch (JsonProcessingException | MqttException e) {
             throw new RuntimeException("Error while trying to publish message", e);
         }
     }
 
-    private void stopEverything(ChangeDistrictHandler handler) {
-        handler.interrupt();
+    private void stopEverything() {
         try {
             client.unsubscribe(topic).waitForCompletion();
             client.disconnect().waitForCompletion();
@@ -134,34 +154,52 @@ public class AveragesPublisher extends Thread {
         );
     }
 
-    public void stopGently() {
-        stop = true;
+    /* Schedules the next message, or disconnects if the publisher was stopped */
+    private void scheduleNextMessage() {
+        synchronized (this) {
+            if (!stop) {
+                nextMessage = executors.scheduleOnWorker(this::publish, PUBLISHING_PERIOD);
+                return;
+            }
+        }
+        // Unsubscribe from topic and disconnect from MQTT broker
+        stopEverything();
     }
 
-    @Override
-    public void run() {
-        MessagePrinter.printMessage(
-                "Starting MQTT client at " + MQTT_BROKER_ADDRESS + "...",
-                MessagePrinter.INFO_FORMAT, true);
-        initMqttClient();
-        ChangeDistrictHandler changeDistrictHandler = new ChangeDistrictHandler(this);
-        changeDistrictHandler.start();
-        connectToClient();
-        subscribeToTopic();
-        while (!stop) {
-            try {
-                if (newDistrict != 0) {
-                    changeDistrict();
-                }
-                Thread.sleep(PUBLISHING_PERIOD);
-                publishMessage();
-            } catch (InterruptedException e) {
-                stopEverything(changeDistrictHandler);
-            } catch (MqttException e) {
-                throw new RuntimeException(e);
+    private void publish() {
+        // The next message is scheduled even on errors: thrown out of the task, the exception would stop the
+        // messages without a trace, and stopping the publisher would no longer disconnect the client
+        try {
+            int newDistrict = changeDistrictMonitor.pollChanges();
+            if (newDistrict != 0) {
+                changeDistrict(newDistrict);
             }
+            publishMessage();
+        } catch (MqttException | RuntimeException e) {
+            MessagePrinter.printMessage("Error while publishing the averages: " + e,
+                    MessagePrinter.ERROR_FORMAT, true);
+        } finally {
+            scheduleNextMessage();
+        }
+    }
+
+    public void start() {
+        executors.execute(() -> {
+            MessagePrinter.printMessage(
+                    "Starting MQTT client at " + MQTT_BROKER_ADDRESS + "...",
+                    MessagePrinter.INFO_FORMAT, true);
+            initMqttClient();
+            connectToClient();
+            subscribeToTopic();
+            scheduleNextMessage();
+        });
+    }
+
+    public synchronized void stopGently() {
+        stop = true;
+        // Disconnect right away if waiting for the next message, otherwise the task running disconnects when done
+        if (nextMessage != null && nextMessage.cancel(false)) {
+            executors.execute(this::stopEverything);
         }
-        // Unsubscribe from topic and disconnect from MQTT broker
-        stopEverything(changeDistrictHandler);
     }
 }
@@ -1,39 +1,56 @@
 package io.github.giuliapais.robotsnetwork.core;
 
 import io.github.giuliapais.commons.DistrictBalancer;
+import io.github.giuliapais.commons.GreenfieldMap;
+import io.github.giuliapais.commons.RebalanceStrategy;
 import io.github.giuliapais.commons.models.MapPosition;
+import io.github.giuliapais.commons.models.SensorType;
 import io.github.giuliapais.robotsnetwork.comm.p2p.ActivePeers;
 import io.github.giuliapais.robotsnetwork.comm.p2p.P2PServiceManager;
 import io.github.giuliapais.robotsnetwork.comm.p2p.Peer;
-import io.github.giuliapais.robotsnetwork.comm.rest.RestServiceManager;
 import io.github.giuliapais.commons.MessagePrinter;
 
 import java.util.List;
+import java.util.Map;
 import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ScheduledFuture;
 
 
 /**
  * Represents an active cleaning robot.
  * <p>
- * The thread is in charge of initializing the sensor component (which runs independently as a new thread) and
- * launch a service manager for P2P services. While running, the thread will periodically simulate the need for repairs
- * (10% chance every 10 seconds) and trigger the mutual exclusion protocol. The robot will gracefully terminate
- * when the appropriate flag is set.
+ * The robot is in charge of initializing the sensor component (which runs independently) and launch a service manager
+ * for P2P services. While running, the robot will periodically simulate the need for repairs (10% chance every 10
+ * seconds) and trigger the mutual exclusion protocol. The robot will gracefully terminate when the appropriate flag is
+ * set.
+ * <p>
+ * The robot has no thread of its own: all its components run on the executors of its host, each repair check being
+ * a task that schedules the next one. Its state is in its {@link RobotContext}, so that many robots can run in the same
+ * process.
  *
  * @see MockSensorComponent
  * @see P2PServiceManager
+ * @see RobotExecutors
+ * @see RobotHost
  */
-public class CleaningRobot extends Thread {
+public class CleaningRobot {
     /* ATTRIBUTES --------------------------------------------------------------------------------------------------- */
     private static final int REPAIR_CHANCE = 10; // 10%
     private static final int REPAIR_CHECK_INTERVAL = 10000; // 10 seconds
     private final int robotId;
-    private final DistrictBalancer districtBalancer = new DistrictBalancer();
-    private volatile boolean stop = false;
+    private final RobotContext context;
+    private final DistrictBalancer districtBalancer;
+    private final RobotExecutors executors;
+    /* Guarded by this, as the next repair check */
+    private boolean stop = false;
+    private boolean crashed = false;
+    private ScheduledFuture<?> nextRepairCheck;
+    private final CountDownLatch stopped = new CountDownLatch(1);
     private volatile boolean userRequestRepair = false;
     private final Random random = new Random();
 
-    /* Independent thread that handles simulation of sensor data, connection to MQTT broker and publishing */
+    /* Independent component that handles simulation of sensor data, connection to MQTT broker and publishing */
     private final MockSensorComponent mockSensorComponent;
     /* Utility that encapsulates access to gRPC services */
     private final P2PServiceManager p2pServiceManager;
@@ -43,65 +60,153 @@ public class CleaningRobot extends Thread {
 
 
     /* CONSTRUCTORS ------------------------------------------------------------------------------------------------- */
-    public CleaningRobot(int robotId, int port, MapPosition mapPosition,
-                         List<Peer> peers, String selfIpAddress) {
-        this.robotId = robotId;
+    public CleaningRobot(RobotContext context, int port, MapPosition mapPosition,
+                         List<Peer> peers, String selfIpAddress, WireFormat wireFormat, GreenfieldMap greenfieldMap,
+                         RebalanceStrategy rebalanceStrategy, SensorSettings sensorSettings) {
+        this.robotId = context.getRobotId();
+        this.context = context;
+        this.executors = context.getExecutors();
+        this.districtBalancer = new DistrictBalancer(greenfieldMap);
+        this.districtBalancer.setRebalanceStrategy(rebalanceStrategy);
         this.districtBalancer.addRobot(robotId, mapPosition);
-        this.peers = ActivePeers.getInstance();
+        this.peers = context.getActivePeers();
         this.peers.addPeers(peers);
-        this.mockSensorComponent = new MockSensorComponent(robotId, mapPosition.getDistrict());
-        this.p2pServiceManager = new P2PServiceManager(robotId, port, selfIpAddress, districtBalancer);
+        this.mockSensorComponent = new MockSensorComponent(context, mapPosition.getDistrict(), wireFormat,
+                sensorSettings);
+        this.p2pServiceManager = new P2PServiceManager(context, port, selfIpAddress, districtBalancer);
     }
 
     /* METHODS ------------------------------------------------------------------------------------------------------ */
     /* Private --------- */
     private void stopGently() {
-        // Stop P2PServiceManager components
-        p2pServiceManager.gracefulStop();
-        mockSensorComponent.interrupt();
-        // Send REST delete request to server
-        RestServiceManager.getInstance(null).deleteRobot(robotId, true);
-        // Interrupt this
-        MessagePrinter.printMessage(
-                "Leaving Greenfield... Bye!",
-                MessagePrinter.INFO_FORMAT,
-                true
-        );
-        Thread.currentThread().interrupt();
+        try {
+            // Stop P2PServiceManager components
+            p2pServiceManager.gracefulStop();
+            mockSensorComponent.stop();
+            // Send REST delete request to server
+            context.getRestServiceManager().deleteRobot(robotId, true);
+            MessagePrinter.printMessage(
+                    "Leaving Greenfield... Bye!",
+                    MessagePrinter.INFO_FORMAT,
+                    true
+            );
+        } finally {
+            // Whoever waits for the robot must not wait forever if something went wrong
+            stopped.countDown();
+        }
     }
 
-
-    /* Public ---------- */
-    public void stopMeGently() {
-        stop = true;
+    private void crashNow() {
+        try {
+            p2pServiceManager.crash();
+            mockSensorComponent.stop();
+            MessagePrinter.printMessage(
+                    "Robot " + robotId + " crashed",
+                    MessagePrinter.ERROR_FORMAT,
+                    true
+            );
+        } finally {
+            stopped.countDown();
+        }
     }
 
-    public void requestRepair() {
-        userRequestRepair = true;
+    /* Schedules the next repair check, or stops the robot if it was asked to */
+    private void scheduleRepairCheck() {
+        synchronized (this) {
+            if (!stop) {
+                nextRepairCheck = executors.scheduleOnWorker(this::checkRepairs, REPAIR_CHECK_INTERVAL);
+                return;
+            }
+            if (crashed) {
+                return;
+            }
+        }
+        // graceful exit
+        stopGently();
     }
 
-    @Override
-    public void run() {
-        mockSensorComponent.start();
-
-        // Send introduction messages when joining the robots network
-        p2pServiceManager.introduceMe();
-
-        while (!stop) {
-            try {
-                Thread.sleep(REPAIR_CHECK_INTERVAL);
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-            }
+    private void checkRepairs() {
+        // The next check is scheduled even on errors, so that the robot can still be stopped
+        try {
             // Check if the robot needs repairs
             if (this.userRequestRepair || random.nextInt(100) < REPAIR_CHANCE) {
                 userRequestRepair = false;
                 p2pServiceManager.requestRepair();
             }
+        } finally {
+            scheduleRepairCheck();
         }
+    }
 
-        // graceful exit
-        stopGently();
+
+    /* Public ---------- */
+    public void start() {
+        mockSensorComponent.start();
+        executors.execute(() -> {
+            try {
+                // Send introduction messages when joining the robots network
+                p2pServiceManager.introduceMe();
+            } finally {
+                scheduleRepairCheck();
+            }
+        });
+    }
+
+    /**
+     * Stops the robot: right away if it is waiting for the next repair check, otherwise when the introduction or the
+     * repairs in progress are done.
+     *
+     * @see #awaitStop()
+     */
+    public synchronized void stopMeGently() {
+        if (stop) {
+            return;
+        }
+        stop = true;
+        if (nextRepairCheck != null && nextRepairCheck.cancel(false)) {
+            executors.execute(this::stopGently);
+        }
+    }
+
+    /**
+     * Stops the robot as if it crashed: it leaves no one, neither the peers nor the server, which find out on their own
+     * that it's gone. Does nothing if the robot is already stopping.
+     *
+     * @see P2PServiceManager#crash()
+     */
+    public synchronized void crash() {
+        if (stop) {
+            return;
+        }
+        stop = true;
+        crashed = true;
+        if (nextRepairCheck != null) {
+            nextRepairCheck.cancel(false);
+        }
+        executors.execute(this::crashNow);
+    }
+
+    /**
+     * Waits until the robot stopped.
+     */
+    public void awaitStop() throws InterruptedException {
+        stopped.await();
+    }
+
+    public boolean isStopped() {
+        return stopped.getCount() == 0;
+    }
+
+    public void requestRepair() {
+        userRequestRepair = true;
+    }
+
+    /**
+     * @return the statistics of the last window of readings of each sensor, without the sensors of which no window
+     * was read yet
+     */
+    public Map<SensorType, SlidingWindowAggregator.Statistics> getSensorStatistics() {
+        return mockSensorComponent.getStatistics();
     }
 
 }
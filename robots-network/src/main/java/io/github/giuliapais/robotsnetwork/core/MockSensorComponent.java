@@ -1,63 +1,149 @@
 package io.github.giuliapais.robotsnetwork.core;
 
-import io.github.giuliapais.simulators.Measurement;
-import io.github.giuliapais.simulators.PM10Simulator;
 import io.github.giuliapais.commons.MessagePrinter;
+import io.github.giuliapais.commons.models.SensorType;
+import io.github.giuliapais.simulators.NO2Simulator;
+import io.github.giuliapais.simulators.PM10Simulator;
+import io.github.giuliapais.simulators.PM25Simulator;
+import io.github.giuliapais.simulators.Simulator;
+import io.github.giuliapais.simulators.TemperatureSimulator;
 
 import java.util.ArrayList;
+import java.util.EnumMap;
 import java.util.List;
-import java.util.OptionalDouble;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * The sensors of a robot: a simulator for each {@link SensorType} in the settings, each with its own buffer and
+ * window statistics, and the publisher of their averages.
+ * <p>
+ * The simulators don't run on threads of their own: all the sensors share the scheduler thread of the robot, on which
+ * each sensor is a task that takes a reading, moves the windows it completed into the statistics and schedules itself
+ * again after the delay of the simulator. A robot with four sensors uses no more threads than one with PM10 only.
+ *
+ * @see RobotExecutors
+ */
+public class MockSensorComponent {
 
-public class MockSensorComponent extends Thread {
+    /* Weight of the newest reading in the moving average of the statistics */
+    private static final double EWMA_ALPHA = 0.2;
+    /* Milliseconds before a sensor reads again after an error */
+    private static final long RETRY_DELAY = 1000;
 
-    private final SensorReadingsBuffer buffer = new SensorReadingsBuffer();
-    private final PM10Simulator pm10Simulator = new PM10Simulator(buffer);
+    private final Map<SensorType, SensorChannel> channels = new EnumMap<>(SensorType.class);
+    private final RobotExecutors executors;
     private final AveragesPublisher averagesPublisher;
-    private final List<Double> averages = new ArrayList<>();
+    private volatile boolean stopped = false;
 
+    /* A sensor: its simulator, the buffer the simulator fills and the statistics of its windows */
+    private final class SensorChannel implements Runnable {
+        private final SensorType type;
+        private final Simulator simulator;
+        private final SensorReadingsBuffer buffer;
+        private final SlidingWindowAggregator aggregator;
+        /* Averages not published yet, shared with the publisher */
+        private final List<Double> averages = new ArrayList<>();
+        /* Statistics of the last window, for other threads */
+        private volatile SlidingWindowAggregator.Statistics statistics;
+
+        SensorChannel(SensorType type, SensorSettings settings) {
+            this.type = type;
+            this.buffer = new SensorReadingsBuffer(settings.windowSize(), settings.windowOverlap());
+            this.simulator = simulator(type, buffer);
+            this.aggregator = new SlidingWindowAggregator(settings.windowSize(), EWMA_ALPHA);
+        }
+
+        @Override
+        public void run() {
+            if (stopped) {
+                return;
+            }
+            long delay = RETRY_DELAY;
+            try {
+                delay = read();
+            } catch (RuntimeException e) {
+                // Thrown out of the task, the exception would cancel the readings of the sensor without a trace
+                MessagePrinter.printMessage("Error while reading the " + type + " sensor: " + e,
+                        MessagePrinter.ERROR_FORMAT, true);
+            }
+            try {
+                executors.schedule(this, delay);
+            } catch (RejectedExecutionException e) {
+                // The robot is stopping
+            }
+        }
 
-    public MockSensorComponent(int robotId, int district) {
-        this.averagesPublisher = new AveragesPublisher(averages, district, robotId);
+        /* Takes a reading and moves the windows it completed into the statistics, returns the delay of the next one */
+        private long read() {
+            // The simulator and the sensor are on the same thread, which is both producer and consumer of the buffer
+            long delay = simulator.measure();
+            SensorReadingsBuffer.Window window;
+            while ((window = buffer.poll()) != null) {
+                // The window is read in place, it is valid until the next one is read. Only the readings that were
+                // not in the previous window enter the aggregator (all of them the first time)
+                int from = aggregator.getCount() == 0 ? 0 : buffer.getOverlap();
+                for (int i = from; i < window.size(); i++) {
+                    aggregator.add(window.value(i));
+                }
+                statistics = aggregator.snapshot();
+                synchronized (averages) {
+                    averages.add(aggregator.getMean());
+                }
+            }
+            return delay;
+        }
     }
 
-    private double computeAverage(List<Measurement> measurements) {
-        OptionalDouble avg = measurements
-                .stream()
-                .mapToDouble(Measurement::getValue)
-                .average();
-        return avg.orElse(-1.0);
+    public MockSensorComponent(RobotContext context, int district, WireFormat wireFormat, SensorSettings settings) {
+        this.executors = context.getExecutors();
+        Map<SensorType, List<Double>> averages = new EnumMap<>(SensorType.class);
+        for (SensorType type : settings.types()) {
+            SensorChannel channel = new SensorChannel(type, settings);
+            channels.put(type, channel);
+            averages.put(type, channel.averages);
+        }
+        this.averagesPublisher = new AveragesPublisher(averages, district, wireFormat, context);
     }
 
-    private void stopEverything() {
-        pm10Simulator.stopMeGently();
-        averagesPublisher.stopGently();
+    private static Simulator simulator(SensorType type, SensorReadingsBuffer buffer) {
+        return switch (type) {
+            case PM10 -> new PM10Simulator(buffer);
+            case PM2_5 -> new PM25Simulator(buffer);
+            case NO2 -> new NO2Simulator(buffer);
+            case TEMPERATURE -> new TemperatureSimulator(buffer);
+        };
+    }
+
+    /**
+     * @return the statistics of the last window of readings of each sensor, without the sensors of which no window
+     * was read yet
+     */
+    public Map<SensorType, SlidingWindowAggregator.Statistics> getStatistics() {
+        Map<SensorType, SlidingWindowAggregator.Statistics> statistics = new EnumMap<>(SensorType.class);
+        channels.forEach((type, channel) -> {
+            SlidingWindowAggregator.Statistics last = channel.statistics;
+            if (last != null) {
+                statistics.put(type, last);
+            }
+        });
+        return statistics;
+    }
+
+    public void start() {
+        channels.values().forEach(channel -> executors.schedule(channel, 0));
         MessagePrinter.printMessage(
-                "Sensors stopping",
+                "Sensors started: " + channels.keySet(),
                 MessagePrinter.INFO_FORMAT, true);
+        averagesPublisher.start();
     }
 
-    @Override
-    public void run() {
-        pm10Simulator.start();
+    public void stop() {
+        // The sensor tasks end at their next reading
+        stopped = true;
+        averagesPublisher.stopGently();
         MessagePrinter.printMessage(
-                "Sensors started",
+                "Sensors stopping",
                 MessagePrinter.INFO_FORMAT, true);
-        averagesPublisher.start();
-        List<Measurement> localCopy;
-        while (!interrupted()) {
-            try {
-                synchronized (buffer) {
-                    buffer.wait();
-                    localCopy = buffer.readAllAndClean();
-                }
-                double average = computeAverage(localCopy);
-                synchronized (averages) {
-                    averages.add(average);
-                }
-            } catch (InterruptedException e) {
-                stopEverything();
-            }
-        }
-        stopEverything();
     }
 }
@@ -0,0 +1,70 @@
+package io.github.giuliapais.robotsnetwork.core;
+
+import io.github.giuliapais.robotsnetwork.comm.p2p.ActivePeers;
+import io.github.giuliapais.robotsnetwork.comm.p2p.ChangeDistrictMonitor;
+import io.github.giuliapais.robotsnetwork.comm.p2p.CrashEventMonitor;
+import io.github.giuliapais.robotsnetwork.comm.p2p.LoadBalancingMonitor;
+import io.github.giuliapais.robotsnetwork.comm.p2p.LogicalClock;
+import io.github.giuliapais.robotsnetwork.comm.rest.RestServiceManager;
+
+/**
+ * The state a robot shares among its components: its peers, its logical clock and the monitors through which the
+ * components signal each other. Each robot has its own context, given to its components when they are created, so
+ * that the robots hosted by the same process don't see each other's state; what they do share is in the
+ * {@link RobotHost}.
+ */
+public class RobotContext {
+    private final int robotId;
+    private final RobotHost host;
+    private final ActivePeers activePeers = new ActivePeers();
+    private final LogicalClock logicalClock;
+    private final LoadBalancingMonitor loadBalancingMonitor = new LoadBalancingMonitor();
+    private final CrashEventMonitor incomingCrashEvents = new CrashEventMonitor();
+    private final CrashEventMonitor outgoingCrashEvents = new CrashEventMonitor();
+    private final ChangeDistrictMonitor changeDistrictMonitor = new ChangeDistrictMonitor();
+
+    public RobotContext(int robotId, RobotHost host) {
+        this.robotId = robotId;
+        this.host = host;
+        this.logicalClock = new LogicalClock(robotId);
+    }
+
+    public int getRobotId() {
+        return robotId;
+    }
+
+    public RobotHost getHost() {
+        return host;
+    }
+
+    public RobotExecutors getExecutors() {
+        return host.getExecutors();
+    }
+
+    public RestServiceManager getRestServiceManager() {
+        return host.getRestServiceManager();
+    }
+
+    public ActivePeers getActivePeers() {
+        return activePeers;
+    }
+
+    public LogicalClock getLogicalClock() {
+        return logicalClock;
+    }
+
+    public LoadBalancingMonitor getLoadBalancingMonitor() {
+        return loadBalancingMonitor;
+    }
+
+    /**
+     * @return the monitor of the crash events received from the peers (INCOMING) or detected by the robot (OUTGOING)
+     */
+    public CrashEventMonitor getCrashEventMonitor(CrashEventMonitor.CrashEventMonitorType type) {
+        return type == CrashEventMonitor.CrashEventMonitorType.INCOMING ? incomingCrashEvents : outgoingCrashEvents;
+    }
+
+    public ChangeDistrictMonitor getChangeDistrictMonitor() {
+        return changeDistrictMonitor;
+    }
+}
@@ -0,0 +1,130 @@
+package io.github.giuliapais.robotsnetwork.core;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The threads on which the components of a robot run, instead of a thread for each component that sleeps or waits
+ * most of the time:
+ * <ul>
+ *     <li>a scheduler thread, for short tasks at a given time (the readings of the sensors, timeouts). Tasks on the
+ *     scheduler must not block, or they delay all the others</li>
+ *     <li>a pool of workers, for the tasks that block: requests to peers and to the MQTT broker, handling of crash
+ *     events and load balancing, the repairs. Workers are created only when all the others are busy and end after a
+ *     minute without tasks, so a robot that is not doing anything keeps a few of them</li>
+ * </ul>
+ * The gRPC server and channels of the robot also run on the workers. All threads are daemons: the executors are
+ * stopped with {@link #shutdown()} once the robot stopped, which lets the tasks handed to the workers end (as the
+ * disconnection from the MQTT broker) before interrupting those still running.
+ * <p>
+ * When a process hosts several robots, they all share the same executors (see {@link RobotHost}).
+ */
+public class RobotExecutors {
+    /* Milliseconds the workers have to end their tasks at shutdown, before being interrupted */
+    private static final long SHUTDOWN_TIMEOUT = 5000;
+
+    private final ScheduledExecutorService scheduler;
+    private final ExecutorService workers;
+
+    public RobotExecutors() {
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(daemonThreads("robot-scheduler"));
+        this.workers = Executors.newCachedThreadPool(daemonThreads("robot-worker"));
+    }
+
+    private static ThreadFactory daemonThreads(String name) {
+        AtomicInteger count = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, name + "-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * Runs a task that does not block on the scheduler thread, after a delay.
+     */
+    public ScheduledFuture<?> schedule(Runnable task, long delayMillis) {
+        return scheduler.schedule(task, delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Runs a task that can block on a worker, after a delay. The returned future is done when the task is handed to
+     * the worker: cancelling it succeeds only before that.
+     */
+    public ScheduledFuture<?> scheduleOnWorker(Runnable task, long delayMillis) {
+        return scheduler.schedule(() -> workers.execute(task), delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Runs a task that can block on a worker.
+     */
+    public void execute(Runnable task) {
+        workers.execute(task);
+    }
+
+    /**
+     * Runs the tasks on the workers at the same time and waits until all of them are done. An exception of a task
+     * doesn't stop the others and is thrown, as the cause of an {@link ExecutionException}, once all are done.
+     *
+     * @throws InterruptedException if the thread is interrupted while waiting: the tasks are interrupted too
+     */
+    public void invokeAll(List<Runnable> tasks) throws InterruptedException, ExecutionException {
+        List<Future<?>> futures = new ArrayList<>(tasks.size());
+        try {
+            for (Runnable task : tasks) {
+                futures.add(workers.submit(task));
+            }
+            ExecutionException failure = null;
+            for (Future<?> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    if (failure == null) {
+                        failure = e;
+                    }
+                }
+            }
+            if (failure != null) {
+                throw failure;
+            }
+        } catch (InterruptedException e) {
+            futures.forEach(future -> future.cancel(true));
+            throw e;
+        }
+    }
+
+    /**
+     * @return the workers, for the libraries that take an executor for their callbacks
+     */
+    public Executor workers() {
+        return workers;
+    }
+
+    /**
+     * Stops the executors, discarding the scheduled tasks. The workers end the tasks they were given and are
+     * interrupted if they are still running after a few seconds (or if the calling thread is interrupted while
+     * waiting). Must not be called from a worker.
+     */
+    public void shutdown() {
+        scheduler.shutdownNow();
+        workers.shutdown();
+        try {
+            if (!workers.awaitTermination(SHUTDOWN_TIMEOUT, TimeUnit.MILLISECONDS)) {
+                workers.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            workers.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+}
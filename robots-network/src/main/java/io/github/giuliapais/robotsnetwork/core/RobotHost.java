@@ -0,0 +1,82 @@
+package io.github.giuliapais.robotsnetwork.core;
+
+import io.github.giuliapais.robotsnetwork.comm.rest.RestServiceManager;
+import io.grpc.ManagedChannel;
+import io.grpc.ServerBuilder;
+import io.grpc.netty.NettyChannelBuilder;
+import io.grpc.netty.NettyServerBuilder;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.util.concurrent.DefaultThreadFactory;
+
+/**
+ * What the robots of a process share: the executors on which their components run, the event loops of their gRPC
+ * servers and channels and the client of the server. A process hosts one robot, or many with the hosting mode of the
+ * launcher: each robot has then its own {@link RobotContext}, and these resources are the only ones they have in
+ * common.
+ * <p>
+ * Without a shared event loop gRPC gives each server and channel the threads of its own default loops, sized on the
+ * processors: with many robots in a process, most of the threads would be event loops doing nothing.
+ */
+public class RobotHost {
+    private final RobotExecutors executors;
+    private final EventLoopGroup eventLoopGroup;
+    private final RestServiceManager restServiceManager;
+
+    /**
+     * @param serverAddress    address of the server, with the port
+     * @param eventLoopThreads threads of the event loops of gRPC, 0 for Netty's default (twice the processors)
+     * @throws IllegalArgumentException if the number of threads is negative
+     */
+    public RobotHost(String serverAddress, int eventLoopThreads) {
+        if (eventLoopThreads < 0) {
+            throw new IllegalArgumentException("Invalid number of event loop threads: " + eventLoopThreads);
+        }
+        this.executors = new RobotExecutors();
+        this.eventLoopGroup = new NioEventLoopGroup(eventLoopThreads,
+                new DefaultThreadFactory("grpc-event-loop", true));
+        this.restServiceManager = new RestServiceManager(serverAddress);
+    }
+
+    public RobotExecutors getExecutors() {
+        return executors;
+    }
+
+    public RestServiceManager getRestServiceManager() {
+        return restServiceManager;
+    }
+
+    /**
+     * @return a builder of a gRPC server on the port, on the event loops and workers of the host
+     */
+    public ServerBuilder<?> serverBuilder(int port) {
+        return NettyServerBuilder.forPort(port)
+                .bossEventLoopGroup(eventLoopGroup)
+                .workerEventLoopGroup(eventLoopGroup)
+                .channelType(NioServerSocketChannel.class)
+                .executor(executors.workers());
+    }
+
+    /**
+     * @return a plaintext gRPC channel to a peer, on the event loops and workers of the host
+     */
+    public ManagedChannel channel(String ipAddress, int port) {
+        return NettyChannelBuilder.forAddress(ipAddress, port)
+                .eventLoopGroup(eventLoopGroup)
+                .channelType(NioSocketChannel.class)
+                .executor(executors.workers())
+                .usePlaintext()
+                .build();
+    }
+
+    /**
+     * Releases the resources, once all the robots stopped.
+     */
+    public void shutdown() {
+        executors.shutdown();
+        eventLoopGroup.shutdownGracefully();
+        restServiceManager.close();
+    }
+}
@@ -3,33 +3,233 @@ package io.github.giuliapais.robotsnetwork.core;
 import io.github.giuliapais.simulators.Buffer;
 import io.github.giuliapais.simulators.Measurement;
 
-import java.util.ArrayList;
-import java.util.LinkedList;
+import java.util.AbstractList;
 import java.util.List;
+import java.util.Objects;
+import java.util.RandomAccess;
+import java.util.concurrent.locks.LockSupport;
 
+/**
+ * Buffer of the readings of a sensor, shared by the sensor simulator (the only producer) and the sensor component
+ * (the only consumer). Readings are consumed in windows that overlap: by default windows of 8 readings, each holding
+ * the 4 newest readings of the previous one and 4 new ones.
+ * <p>
+ * Readings are kept in a ring of primitive arrays and neither thread ever locks: each one writes only its own
+ * (volatile) position in the ring, which is how the other learns that readings were added or that slots were freed.
+ * Windows are views on the ring, not copies, see {@link Window}. When the ring is full (the consumer is a whole ring
+ * behind) new readings are dropped.
+ */
 public class SensorReadingsBuffer implements Buffer {
 
-    private static final int WINDOW_SIZE = 8;
-    private static final int OVERLAP = WINDOW_SIZE / 2;
+    public static final int DEFAULT_WINDOW_SIZE = 8;
+    public static final int DEFAULT_OVERLAP = DEFAULT_WINDOW_SIZE / 2;
+    private static final int DEFAULT_CAPACITY = 64;
 
-    private final LinkedList<Measurement> buffer = new LinkedList<>();
+    private final long[] timestamps;
+    private final double[] values;
+    private final String[] ids;
+    private final String[] types;
+    private final int mask;
+    private final int windowSize;
+    private final int overlap;
+    /* New readings in each window */
+    private final int step;
+    /* Sequence number of the next reading, written only by the producer */
+    private volatile long tail = 0;
+    /* Sequence number of the oldest reading in use, written only by the consumer: the slots before it are free */
+    private volatile long head = 0;
+    /* Readings dropped because the ring was full, written only by the producer */
+    private volatile long dropped = 0;
+    /* Consumer waiting for a window, if any */
+    private volatile Thread waiter;
+    /* Start of the next window and the view on the ring, only used by the consumer */
+    private long nextWindow = 0;
+    private final Window window = new Window();
 
+    /**
+     * A window of the buffer. It is a view on the ring that stays valid until the consumer reads the next window
+     * (the same object is then moved to the next readings). The readings can be read without allocating with
+     * {@link #value(int)}, {@link #timestamp(int)} and {@link #average()}, {@link #get(int)} creates a new
+     * {@link Measurement} on each call.
+     */
+    public final class Window extends AbstractList<Measurement> implements RandomAccess {
+        private long start;
+
+        private Window() {
+        }
+
+        private int slot(int index) {
+            Objects.checkIndex(index, windowSize);
+            return (int) (start + index) & mask;
+        }
+
+        @Override
+        public int size() {
+            return windowSize;
+        }
+
+        @Override
+        public Measurement get(int index) {
+            int slot = slot(index);
+            return new Measurement(ids[slot], types[slot], values[slot], timestamps[slot]);
+        }
+
+        public double value(int index) {
+            return values[slot(index)];
+        }
+
+        public long timestamp(int index) {
+            return timestamps[slot(index)];
+        }
+
+        public double average() {
+            double sum = 0;
+            for (int i = 0; i < windowSize; i++) {
+                sum += values[(int) (start + i) & mask];
+            }
+            return sum / windowSize;
+        }
+    }
+
+    public SensorReadingsBuffer() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public SensorReadingsBuffer(int capacity) {
+        this(capacity, DEFAULT_WINDOW_SIZE, DEFAULT_OVERLAP);
+    }
+
+    /**
+     * Creates a buffer with the smallest capacity that holds 64 readings and two windows.
+     *
+     * @see #SensorReadingsBuffer(int, int, int)
+     */
+    public SensorReadingsBuffer(int windowSize, int overlap) {
+        this(Math.max(DEFAULT_CAPACITY, Integer.highestOneBit(Math.max(1, 2 * windowSize - 1)) << 1),
+                windowSize, overlap);
+    }
+
+    /**
+     * @param capacity   the number of readings the ring holds, a power of 2 large enough for the window in use
+     *                   and the new readings of the next one
+     * @param windowSize the number of readings in a window
+     * @param overlap    the number of readings a window shares with the previous one, less than the window size
+     * @throws IllegalArgumentException if the parameters are not valid
+     */
+    public SensorReadingsBuffer(int capacity, int windowSize, int overlap) {
+        if (windowSize <= 0 || overlap < 0 || overlap >= windowSize) {
+            throw new IllegalArgumentException("Invalid window: " + windowSize + " readings with an overlap of " +
+                    overlap);
+        }
+        if (capacity < 2 * windowSize - overlap || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("The capacity must be a power of 2 not smaller than " +
+                    (2 * windowSize - overlap) + ": " + capacity);
+        }
+        this.windowSize = windowSize;
+        this.overlap = overlap;
+        this.step = windowSize - overlap;
+        timestamps = new long[capacity];
+        values = new double[capacity];
+        ids = new String[capacity];
+        types = new String[capacity];
+        mask = capacity - 1;
+    }
+
+    /**
+     * Adds a reading, or drops it if the ring is full. Must be called only by the producer. Wakes up the consumer
+     * waiting in {@link #awaitWindow()} when the reading completes a window.
+     */
     @Override
-    public synchronized void addMeasurement(Measurement m) {
-        buffer.add(m);
-        if (buffer.size() == WINDOW_SIZE) {
-            this.notify();
+    public void addMeasurement(Measurement m) {
+        long sequence = tail;
+        if (sequence - head == values.length) {
+            dropped++;
+            return;
+        }
+        int slot = (int) sequence & mask;
+        timestamps[slot] = m.getTimestamp();
+        values[slot] = m.getValue();
+        ids[slot] = m.getId();
+        types[slot] = m.getType();
+        tail = sequence + 1;
+        // Windows end at readings windowSize, windowSize + step, windowSize + 2 step...
+        if (sequence + 1 >= windowSize && (sequence + 1 - windowSize) % step == 0) {
+            Thread consumer = waiter;
+            if (consumer != null) {
+                LockSupport.unpark(consumer);
+            }
         }
     }
 
+    /**
+     * Returns the oldest window that was not read yet and slides the buffer to the next one. Must be called only by
+     * the consumer.
+     *
+     * @return the window, or an empty list if there are not enough readings for a window
+     * @see #poll()
+     */
     @Override
-    public synchronized List<Measurement> readAllAndClean() {
-        List<Measurement> allMeasurements = new ArrayList<>(buffer);
-        // Ensure that we consider only 8 measurements - the oldest ones
-        allMeasurements = allMeasurements.subList(0, WINDOW_SIZE);
-        for (int i = 0; i < OVERLAP; i++) {
-            buffer.removeFirst();
-        }
-        return allMeasurements;
+    public List<Measurement> readAllAndClean() {
+        Window next = poll();
+        return next != null ? next : List.of();
+    }
+
+    /**
+     * Returns the oldest window that was not read yet and slides the buffer to the next one. Must be called only by
+     * the consumer. The window previously returned is no longer valid.
+     *
+     * @return the window, or null if there are not enough readings for a window
+     */
+    public Window poll() {
+        if (tail - nextWindow < windowSize) {
+            return null;
+        }
+        // The readings of the previous window that are not in this one can be overwritten
+        head = nextWindow;
+        window.start = nextWindow;
+        nextWindow += step;
+        return window;
+    }
+
+    /**
+     * Waits until there is a window to read, then returns it as {@link #poll()}. Must be called only by the consumer.
+     *
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    public Window awaitWindow() throws InterruptedException {
+        waiter = Thread.currentThread();
+        try {
+            Window next;
+            // A wake-up between poll and park is not lost: park returns immediately
+            while ((next = poll()) == null) {
+                LockSupport.park(this);
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+            }
+            return next;
+        } finally {
+            waiter = null;
+        }
+    }
+
+    /**
+     * Returns the number of readings not yet slid out of the buffer, including the half of the last window read.
+     * Must be called only by the consumer.
+     */
+    public int size() {
+        return (int) (tail - nextWindow);
+    }
+
+    public int getWindowSize() {
+        return windowSize;
+    }
+
+    public int getOverlap() {
+        return overlap;
+    }
+
+    public long getDropped() {
+        return dropped;
     }
 }
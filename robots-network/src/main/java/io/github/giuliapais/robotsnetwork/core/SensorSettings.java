@@ -0,0 +1,34 @@
+package io.github.giuliapais.robotsnetwork.core;
+
+import io.github.giuliapais.commons.models.SensorType;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * The sensors of a robot and how their readings are averaged, the same for all the sensors.
+ *
+ * @param types         the sensors, at least one
+ * @param windowSize    the number of readings in each average
+ * @param windowOverlap the number of readings an average shares with the previous one, less than the window size
+ */
+public record SensorSettings(Set<SensorType> types, int windowSize, int windowOverlap) {
+    /* PM10 only, the sensor servers without the other sensors know */
+    public static final SensorSettings DEFAULT = new SensorSettings(EnumSet.of(SensorType.PM10),
+            SensorReadingsBuffer.DEFAULT_WINDOW_SIZE, SensorReadingsBuffer.DEFAULT_OVERLAP);
+
+    /**
+     * @throws IllegalArgumentException if there are no sensors or the window is not valid
+     */
+    public SensorSettings {
+        if (types.isEmpty()) {
+            throw new IllegalArgumentException("At least one sensor is required");
+        }
+        if (windowSize <= 0 || windowOverlap < 0 || windowOverlap >= windowSize) {
+            throw new IllegalArgumentException("Invalid window: " + windowSize + " readings with an overlap of " +
+                    windowOverlap);
+        }
+        types = Collections.unmodifiableSet(EnumSet.copyOf(types));
+    }
+}
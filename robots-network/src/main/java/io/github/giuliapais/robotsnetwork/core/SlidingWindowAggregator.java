@@ -0,0 +1,156 @@
+package io.github.giuliapais.robotsnetwork.core;
+
+/**
+ * Statistics of the last readings of a sensor (a sliding window), updated as each reading enters the window and
+ * the oldest one leaves it instead of being computed again over the whole window.
+ * <p>
+ * Each reading takes O(1): mean and variance are updated with Welford's method (which, unlike a running sum of
+ * squares, does not lose precision when readings leave), minimum and maximum are the heads of two monotonic queues
+ * of the readings in the window (amortized O(1)). The exponentially weighted moving average covers all the readings,
+ * not only the window.
+ * <p>
+ * Not thread safe: readings are added by a single thread, other threads can read a {@link #snapshot()}.
+ */
+public class SlidingWindowAggregator {
+    private final int windowSize;
+    private final double inverseSize;
+    private final double ewmaAlpha;
+    /* The readings in the window, in a ring: the next reading goes to slot next, in place of the oldest one */
+    private final double[] window;
+    private int next = 0;
+    private int count = 0;
+    private double mean = 0;
+    /* Sum of the squared differences from the mean */
+    private double m2 = 0;
+    private double ewma = Double.NaN;
+    /* Slots of the readings that can still become the minimum (or maximum), from the oldest, in rings */
+    private final int[] minQueue;
+    private final int[] maxQueue;
+    private int minHead, minSize, maxHead, maxSize;
+
+    /**
+     * Statistics of the window at a point in time.
+     *
+     * @param count    readings in the window
+     * @param mean     mean of the readings in the window
+     * @param min      minimum of the readings in the window
+     * @param max      maximum of the readings in the window
+     * @param variance population variance of the readings in the window
+     * @param ewma     exponentially weighted moving average of all the readings
+     */
+    public record Statistics(int count, double mean, double min, double max, double variance, double ewma) {
+    }
+
+    /**
+     * @param windowSize the number of readings in the window
+     * @param ewmaAlpha  weight of the newest reading in the exponentially weighted moving average, in (0, 1]
+     * @throws IllegalArgumentException if the parameters are not valid
+     */
+    public SlidingWindowAggregator(int windowSize, double ewmaAlpha) {
+        if (windowSize <= 0) {
+            throw new IllegalArgumentException("Invalid window size: " + windowSize);
+        }
+        if (!(ewmaAlpha > 0 && ewmaAlpha <= 1)) {
+            throw new IllegalArgumentException("The EWMA weight must be in (0, 1]: " + ewmaAlpha);
+        }
+        this.windowSize = windowSize;
+        this.inverseSize = 1.0 / windowSize;
+        this.ewmaAlpha = ewmaAlpha;
+        this.window = new double[windowSize];
+        this.minQueue = new int[windowSize];
+        this.maxQueue = new int[windowSize];
+    }
+
+    /**
+     * Adds a reading to the window. If the window is full, its oldest reading leaves it.
+     */
+    public void add(double value) {
+        int slot = next;
+        if (count == windowSize) {
+            // The new reading takes the place of the oldest one, which leaves the queues if it is still there
+            double old = window[slot];
+            double oldMean = mean;
+            mean += (value - old) * inverseSize;
+            m2 += (value - old) * (value - mean + old - oldMean);
+            // Rounding can leave a tiny negative sum when all readings are equal
+            m2 = Math.max(m2, 0);
+            if (minQueue[minHead] == slot) {
+                minHead = wrap(minHead + 1);
+                minSize--;
+            }
+            if (maxQueue[maxHead] == slot) {
+                maxHead = wrap(maxHead + 1);
+                maxSize--;
+            }
+        } else {
+            count++;
+            double delta = value - mean;
+            mean += delta / count;
+            m2 += delta * (value - mean);
+        }
+        window[slot] = value;
+        // Readings that are not smaller (greater) than the new one can no longer be the minimum (maximum)
+        while (minSize > 0 && window[minQueue[wrap(minHead + minSize - 1)]] >= value) {
+            minSize--;
+        }
+        minQueue[wrap(minHead + minSize++)] = slot;
+        while (maxSize > 0 && window[maxQueue[wrap(maxHead + maxSize - 1)]] <= value) {
+            maxSize--;
+        }
+        maxQueue[wrap(maxHead + maxSize++)] = slot;
+        ewma = Double.isNaN(ewma) ? value : ewmaAlpha * value + (1 - ewmaAlpha) * ewma;
+        next = wrap(slot + 1);
+    }
+
+    /* Index in a ring of the window size, for indexes up to twice the size */
+    private int wrap(int index) {
+        return index < windowSize ? index : index - windowSize;
+    }
+
+    public int getWindowSize() {
+        return windowSize;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * @return the mean of the readings in the window, NaN if there are none
+     */
+    public double getMean() {
+        return count > 0 ? mean : Double.NaN;
+    }
+
+    /**
+     * @return the minimum of the readings in the window, NaN if there are none
+     */
+    public double getMin() {
+        return count > 0 ? window[minQueue[minHead]] : Double.NaN;
+    }
+
+    /**
+     * @return the maximum of the readings in the window, NaN if there are none
+     */
+    public double getMax() {
+        return count > 0 ? window[maxQueue[maxHead]] : Double.NaN;
+    }
+
+    /**
+     * @return the population variance of the readings in the window, NaN if there are none
+     */
+    public double getVariance() {
+        return count > 0 ? m2 / count : Double.NaN;
+    }
+
+    /**
+     * @return the exponentially weighted moving average of all the readings, NaN if there are none
+     */
+    public double getEwma() {
+        return ewma;
+    }
+
+    public Statistics snapshot() {
+        return new Statistics(count, getMean(), getMin(), getMax(), getVariance(), getEwma());
+    }
+}
@@ -0,0 +1,28 @@
+package io.github.giuliapais.robotsnetwork.core;
+
+import io.github.giuliapais.commons.SensorAveragesCodec;
+
+/**
+ * Format of the pollution messages published by a robot.
+ */
+public enum WireFormat {
+    /* JSON text, understood by any version of the server */
+    JSON(null),
+    /* Binary, lossless */
+    DELTA(SensorAveragesCodec.Encoding.DELTA),
+    /* Binary, averages rounded to single precision */
+    FLOAT32(SensorAveragesCodec.Encoding.FLOAT32);
+
+    private final SensorAveragesCodec.Encoding encoding;
+
+    WireFormat(SensorAveragesCodec.Encoding encoding) {
+        this.encoding = encoding;
+    }
+
+    /**
+     * Returns the binary encoding of the format, null for JSON.
+     */
+    public SensorAveragesCodec.Encoding encoding() {
+        return encoding;
+    }
+}
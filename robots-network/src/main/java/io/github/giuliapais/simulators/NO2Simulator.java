@@ -0,0 +1,30 @@
+package io.github.giuliapais.simulators;
+
+public class NO2Simulator extends Simulator {
+
+
+    private final double A = 20;
+    private final double W = 0.02;
+    private static int ID = 1;
+    private double t = rnd.nextInt();
+
+    public NO2Simulator(String id, Buffer buffer) {
+        super(id, "NO2", buffer);
+    }
+
+    public NO2Simulator(Buffer buffer) {
+        this("no2-" + (ID++), buffer);
+    }
+
+    @Override
+    protected double nextValue() {
+        double no2 = getNO2Value(t);
+        t += 0.2;
+        return no2;
+    }
+
+    // Micrograms per cubic meter, with a slower cycle than the particulate matter
+    private double getNO2Value(double t) {
+        return Math.abs(A * Math.sin(W * t) + rnd.nextGaussian() * 0.5) + 20;
+    }
+}
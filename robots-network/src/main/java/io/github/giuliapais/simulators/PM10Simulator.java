@@ -6,6 +6,7 @@ public class PM10Simulator extends Simulator {
     private final double A = 15;
     private final double W = 0.05;
     private static int ID = 1;
+    private double t = rnd.nextInt();
 
     public PM10Simulator(String id, Buffer buffer) {
         super(id, "PM10", buffer);
@@ -17,23 +18,10 @@ public class PM10Simulator extends Simulator {
     }
 
     @Override
-    public void run() {
-
-        double i = rnd.nextInt();
-        long waitingTime;
-
-        while (!stopCondition) {
-
-            double pm10 = getPM10Value(i);
-            addMeasurement(pm10);
-
-            waitingTime = 200 + (int) (Math.random() * 200);
-            sensorSleep(waitingTime);
-
-            i += 0.2;
-
-        }
-
+    protected double nextValue() {
+        double pm10 = getPM10Value(t);
+        t += 0.2;
+        return pm10;
     }
 
     private double getPM10Value(double t) {
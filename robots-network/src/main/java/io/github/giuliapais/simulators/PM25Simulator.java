@@ -0,0 +1,29 @@
+package io.github.giuliapais.simulators;
+
+public class PM25Simulator extends Simulator {
+
+
+    private final double A = 8;
+    private final double W = 0.05;
+    private static int ID = 1;
+    private double t = rnd.nextInt();
+
+    public PM25Simulator(String id, Buffer buffer) {
+        super(id, "PM2_5", buffer);
+    }
+
+    public PM25Simulator(Buffer buffer) {
+        this("pm25-" + (ID++), buffer);
+    }
+
+    @Override
+    protected double nextValue() {
+        double pm25 = getPM25Value(t);
+        t += 0.2;
+        return pm25;
+    }
+
+    private double getPM25Value(double t) {
+        return Math.abs(A * Math.sin(W * t) + rnd.nextGaussian() * 0.1) + 8;
+    }
+}
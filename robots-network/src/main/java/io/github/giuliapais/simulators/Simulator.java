@@ -36,7 +36,35 @@ public abstract class Simulator extends Thread {
         }
     }
 
-    public abstract void run();
+    /**
+     * Takes a measurement and adds it to the buffer: what the thread of the simulator does in a loop, which a
+     * scheduler can do instead, sharing a thread among simulators.
+     *
+     * @return the milliseconds to wait before the next measurement
+     */
+    public long measure() {
+        addMeasurement(nextValue());
+        return nextDelay();
+    }
+
+    /**
+     * Returns the value of the next measurement.
+     */
+    protected abstract double nextValue();
+
+    /**
+     * Returns the milliseconds between a measurement and the next one.
+     */
+    protected long nextDelay() {
+        return 200 + (int) (Math.random() * 200);
+    }
+
+    @Override
+    public void run() {
+        while (!stopCondition) {
+            sensorSleep(measure());
+        }
+    }
 
     private long currentTime() {
         return System.currentTimeMillis();
@@ -0,0 +1,36 @@
+package io.github.giuliapais.simulators;
+
+public class TemperatureSimulator extends Simulator {
+
+
+    private final double A = 5;
+    private final double W = 0.01;
+    private static int ID = 1;
+    private double t = rnd.nextInt();
+
+    public TemperatureSimulator(String id, Buffer buffer) {
+        super(id, "TEMPERATURE", buffer);
+    }
+
+    public TemperatureSimulator(Buffer buffer) {
+        this("temperature-" + (ID++), buffer);
+    }
+
+    @Override
+    protected double nextValue() {
+        double temperature = getTemperatureValue(t);
+        t += 0.2;
+        return temperature;
+    }
+
+    // Degrees Celsius, can go below zero
+    private double getTemperatureValue(double t) {
+        return A * Math.sin(W * t) + rnd.nextGaussian() * 0.05 + 18;
+    }
+
+    @Override
+    protected long nextDelay() {
+        // Temperature changes slowly, it is read less often
+        return 1000 + (int) (Math.random() * 200);
+    }
+}
@@ -26,7 +26,7 @@ class ActivePeersTest {
 
     @BeforeEach
     void setup() {
-        activePeers = ActivePeers.getInstance();
+        activePeers = new ActivePeers();
     }
 
     @Test
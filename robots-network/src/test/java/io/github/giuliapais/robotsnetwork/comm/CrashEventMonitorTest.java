@@ -0,0 +1,78 @@
+package io.github.giuliapais.robotsnetwork.comm;
+
+import io.github.giuliapais.robotsnetwork.comm.p2p.CrashEventMonitor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CrashEventMonitorTest {
+
+    CrashEventMonitor monitor;
+    ExecutorService executor;
+    BlockingQueue<CrashEvent> handled;
+    AtomicInteger runs;
+
+    @BeforeEach
+    void setup() {
+        monitor = new CrashEventMonitor();
+        executor = Executors.newSingleThreadExecutor();
+        handled = new LinkedBlockingQueue<>();
+        runs = new AtomicInteger();
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    static CrashEvent crashOf(int crashedRobotId) {
+        return CrashEvent.newBuilder().setRobotId(1).setCrashedRobotId(crashedRobotId).setTimestamp(0).build();
+    }
+
+    /* Fails on the first event it takes, handles the others */
+    void failingOnce() {
+        CrashEvent event = monitor.pollCrashEvent();
+        if (runs.incrementAndGet() == 1) {
+            throw new IllegalStateException("Peer unreachable");
+        }
+        while (event != null) {
+            handled.add(event);
+            event = monitor.pollCrashEvent();
+        }
+    }
+
+    /* Waits for the handler runs submitted so far to end */
+    void awaitHandler() throws Exception {
+        executor.submit(() -> {
+        }).get(1, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void testHandlerRunsAgainAfterFailure() throws Exception {
+        monitor.setHandler(executor, this::failingOnce);
+        monitor.addCrashEvent(crashOf(2));
+        awaitHandler();
+        assertEquals(1, runs.get());
+        assertTrue(handled.isEmpty());
+        monitor.addCrashEvent(crashOf(3));
+        CrashEvent event = handled.poll(1, TimeUnit.SECONDS);
+        assertNotNull(event);
+        assertEquals(3, event.getCrashedRobotId());
+    }
+
+    @Test
+    void testEventsLeftByFailedHandler() throws Exception {
+        monitor.addCrashEvent(crashOf(2));
+        monitor.addCrashEvent(crashOf(3));
+        monitor.setHandler(executor, this::failingOnce);
+        CrashEvent event = handled.poll(1, TimeUnit.SECONDS);
+        assertNotNull(event);
+        assertEquals(3, event.getCrashedRobotId());
+        assertEquals(2, runs.get());
+    }
+}
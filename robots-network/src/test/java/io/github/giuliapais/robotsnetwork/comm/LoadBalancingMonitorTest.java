@@ -0,0 +1,53 @@
+package io.github.giuliapais.robotsnetwork.comm;
+
+import io.github.giuliapais.robotsnetwork.comm.p2p.LoadBalancingMonitor;
+import io.github.giuliapais.robotsnetwork.comm.p2p.LoadBalancingMonitor.LoadBalancingState;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LoadBalancingMonitorTest {
+
+    LoadBalancingMonitor monitor;
+    ExecutorService executor;
+    BlockingQueue<LoadBalancingState> handled;
+    AtomicInteger runs;
+
+    @BeforeEach
+    void setup() {
+        monitor = new LoadBalancingMonitor();
+        executor = Executors.newSingleThreadExecutor();
+        handled = new LinkedBlockingQueue<>();
+        runs = new AtomicInteger();
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void testHandlerRunsAgainAfterFailure() throws Exception {
+        monitor.setHandler(executor, () -> {
+            LoadBalancingState state = monitor.nextState();
+            if (runs.incrementAndGet() == 1) {
+                throw new IllegalStateException("Peer unreachable");
+            }
+            handled.add(state);
+            monitor.setState(LoadBalancingState.STEADY);
+        });
+        monitor.setState(LoadBalancingState.EVALUATING);
+        executor.submit(() -> {
+        }).get(1, TimeUnit.SECONDS);
+        assertEquals(1, runs.get());
+        assertTrue(handled.isEmpty());
+        monitor.setState(LoadBalancingState.REBALANCING);
+        assertEquals(LoadBalancingState.REBALANCING, handled.poll(1, TimeUnit.SECONDS));
+        assertEquals(2, runs.get());
+    }
+}
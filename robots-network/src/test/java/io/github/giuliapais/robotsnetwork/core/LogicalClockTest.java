@@ -14,7 +14,7 @@ class LogicalClockTest {
 
     @BeforeEach
     void setUp() {
-        logicalClock = LogicalClock.getInstance(1);
+        logicalClock = new LogicalClock(1);
     }
 
     @Test
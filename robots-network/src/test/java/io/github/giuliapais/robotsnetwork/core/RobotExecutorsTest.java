@@ -0,0 +1,115 @@
+package io.github.giuliapais.robotsnetwork.core;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RobotExecutorsTest {
+    private final RobotExecutors executors = new RobotExecutors();
+
+    @AfterEach
+    public void tearDown() {
+        executors.shutdown();
+    }
+
+    @Test
+    public void testSchedulerAndWorkers() throws InterruptedException {
+        AtomicReference<Thread> scheduled = new AtomicReference<>();
+        AtomicReference<Thread> onWorker = new AtomicReference<>();
+        CountDownLatch done = new CountDownLatch(2);
+        executors.schedule(() -> {
+            scheduled.set(Thread.currentThread());
+            done.countDown();
+        }, 10);
+        executors.scheduleOnWorker(() -> {
+            onWorker.set(Thread.currentThread());
+            done.countDown();
+        }, 10);
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertTrue(scheduled.get().isDaemon());
+        assertTrue(scheduled.get().getName().startsWith("robot-scheduler"));
+        assertTrue(onWorker.get().isDaemon());
+        assertTrue(onWorker.get().getName().startsWith("robot-worker"));
+    }
+
+    @Test
+    public void testCancelBeforeWorker() throws InterruptedException {
+        AtomicInteger runs = new AtomicInteger();
+        ScheduledFuture<?> cancelled = executors.scheduleOnWorker(runs::incrementAndGet, 50);
+        assertTrue(cancelled.cancel(false));
+        // Scheduled after the cancelled one: once it ran, the cancelled one would have run too
+        CountDownLatch later = new CountDownLatch(1);
+        executors.scheduleOnWorker(later::countDown, 100);
+        assertTrue(later.await(5, TimeUnit.SECONDS));
+        assertEquals(0, runs.get());
+        executors.shutdown();
+        assertThrows(RejectedExecutionException.class, () -> executors.execute(runs::incrementAndGet));
+    }
+
+    @Test
+    public void testShutdownLetsWorkersEnd() throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        AtomicInteger ended = new AtomicInteger();
+        executors.execute(() -> {
+            started.countDown();
+            try {
+                // As a disconnection from the MQTT broker, which an interrupt would abort
+                Thread.sleep(100);
+                ended.incrementAndGet();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        executors.shutdown();
+        assertEquals(1, ended.get());
+    }
+
+    @Test
+    public void testInvokeAll() throws InterruptedException, ExecutionException {
+        // The tasks must run at the same time: each one waits for all the others
+        int tasks = 8;
+        CountDownLatch started = new CountDownLatch(tasks);
+        AtomicInteger done = new AtomicInteger();
+        List<Runnable> all = new ArrayList<>();
+        for (int i = 0; i < tasks; i++) {
+            all.add(() -> {
+                started.countDown();
+                try {
+                    assertTrue(started.await(5, TimeUnit.SECONDS));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                done.incrementAndGet();
+            });
+        }
+        executors.invokeAll(all);
+        assertEquals(tasks, done.get());
+    }
+
+    @Test
+    public void testInvokeAllFailure() {
+        AtomicInteger done = new AtomicInteger();
+        List<Runnable> tasks = List.of(
+                done::incrementAndGet,
+                () -> {
+                    throw new IllegalStateException("peer unreachable");
+                },
+                done::incrementAndGet);
+        ExecutionException e = assertThrows(ExecutionException.class, () -> executors.invokeAll(tasks));
+        assertTrue(e.getCause() instanceof IllegalStateException);
+        // The other tasks are not stopped by the failure
+        assertEquals(2, done.get());
+    }
+}
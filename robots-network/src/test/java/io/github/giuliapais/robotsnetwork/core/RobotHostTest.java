@@ -0,0 +1,96 @@
+package io.github.giuliapais.robotsnetwork.core;
+
+import io.github.giuliapais.commons.DistrictBalancer;
+import io.github.giuliapais.robotsnetwork.comm.p2p.CrashEventMonitor.CrashEventMonitorType;
+import io.github.giuliapais.robotsnetwork.comm.p2p.P2PServiceManager;
+import io.github.giuliapais.robotsnetwork.comm.p2p.Peer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RobotHostTest {
+
+    RobotHost host;
+    RobotContext first;
+    RobotContext second;
+
+    @BeforeEach
+    void setUp() {
+        // No server: the calls to it are asynchronous and their failures ignored
+        host = new RobotHost("localhost:1", 1);
+        first = new RobotContext(1, host);
+        second = new RobotContext(2, host);
+    }
+
+    @AfterEach
+    void tearDown() {
+        host.shutdown();
+    }
+
+    static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    @Test
+    void testContextsShareOnlyTheHost() {
+        assertSame(first.getExecutors(), second.getExecutors());
+        assertSame(first.getRestServiceManager(), second.getRestServiceManager());
+        assertNotSame(first.getActivePeers(), second.getActivePeers());
+        assertNotSame(first.getLogicalClock(), second.getLogicalClock());
+        assertNotSame(first.getLoadBalancingMonitor(), second.getLoadBalancingMonitor());
+        assertNotSame(first.getCrashEventMonitor(CrashEventMonitorType.INCOMING),
+                second.getCrashEventMonitor(CrashEventMonitorType.INCOMING));
+        assertNotSame(first.getCrashEventMonitor(CrashEventMonitorType.OUTGOING),
+                second.getCrashEventMonitor(CrashEventMonitorType.OUTGOING));
+        assertNotSame(first.getChangeDistrictMonitor(), second.getChangeDistrictMonitor());
+    }
+
+    @Test
+    void testPeersAndClocksAreSeparate() {
+        first.getActivePeers().addPeer(new Peer(3, "localhost", 5003));
+        assertEquals(1, first.getActivePeers().getIds().size());
+        assertTrue(second.getActivePeers().isEmpty());
+
+        long secondTime = second.getLogicalClock().incrementAndGet();
+        first.getLogicalClock().compareAndAdjust(10_000);
+        first.getLogicalClock().incrementAndGet();
+        assertEquals(secondTime + 1, second.getLogicalClock().incrementAndGet());
+        assertEquals(1, first.getLogicalClock().getRobotId());
+        assertEquals(2, second.getLogicalClock().getRobotId());
+    }
+
+    @Test
+    void testCrashDetectedByPeer() throws Exception {
+        int firstPort = freePort();
+        int secondPort = freePort();
+        DistrictBalancer firstBalancer = new DistrictBalancer();
+        firstBalancer.addRobot(1);
+        firstBalancer.addRobot(2);
+        DistrictBalancer secondBalancer = new DistrictBalancer();
+        secondBalancer.addRobot(1);
+        secondBalancer.addRobot(2);
+        P2PServiceManager firstRobot = new P2PServiceManager(first, firstPort, "localhost", firstBalancer);
+        P2PServiceManager secondRobot = new P2PServiceManager(second, secondPort, "localhost", secondBalancer);
+        first.getActivePeers().addPeer(new Peer(2, "localhost", secondPort));
+        second.getActivePeers().addPeer(new Peer(1, "localhost", firstPort));
+
+        secondRobot.crash();
+        // The introduction can't reach the crashed robot: once out of retries, the crash is detected and handled
+        firstRobot.introduceMe();
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (first.getActivePeers().getIds().contains(2) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        assertFalse(first.getActivePeers().getIds().contains(2));
+        // The detection only changed the peers of the robot that made it
+        assertEquals(1, second.getActivePeers().getIds().size());
+        firstRobot.gracefulStop();
+    }
+}
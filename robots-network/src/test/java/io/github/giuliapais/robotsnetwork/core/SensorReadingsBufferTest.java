@@ -3,54 +3,38 @@ package io.github.giuliapais.robotsnetwork.core;
 import io.github.giuliapais.simulators.Measurement;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
-import org.mockito.Mockito;
-import org.mockito.stubbing.OngoingStubbing;
 
-import java.lang.reflect.Field;
-import java.util.LinkedList;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
-import static org.mockito.Mockito.when;
 
 class SensorReadingsBufferTest {
     private SensorReadingsBuffer buffer;
-    private Measurement mockMeasurement;
 
     @BeforeEach
     public void setup() {
         buffer = new SensorReadingsBuffer();
-        mockMeasurement = Mockito.mock(Measurement.class);
+    }
+
+    private static Measurement measurement(int i) {
+        return new Measurement("pm10-1", "PM10", i + 10.0, i);
     }
 
     @Test
     public void testNotificationOnBufferFull() throws InterruptedException {
-        final boolean[] wasNotified = new boolean[1];
+        final SensorReadingsBuffer.Window[] window = new SensorReadingsBuffer.Window[1];
 
         Thread waitingThread = new Thread(() -> {
-            synchronized (buffer) {
-                try {
-                    Field bufferField = SensorReadingsBuffer.class.getDeclaredField("buffer");
-                    bufferField.setAccessible(true);
-                    LinkedList<Measurement> internalBuffer = (LinkedList<Measurement>) bufferField.get(buffer);
-
-                    while (internalBuffer.size() < 8) {
-                        try {
-                            buffer.wait();
-                        } catch (InterruptedException e) {
-                            e.printStackTrace();
-                        }
-                    }
-                    wasNotified[0] = true;
-                } catch (IllegalAccessException | NoSuchFieldException e) {
-                    e.printStackTrace();
-                }
+            try {
+                window[0] = buffer.awaitWindow();
+            } catch (InterruptedException e) {
+                e.printStackTrace();
             }
         });
 
         Thread addingThread = new Thread(() -> {
             for (int i = 0; i < 8; i++) {
-                buffer.addMeasurement(mockMeasurement);
+                buffer.addMeasurement(measurement(i));
             }
         });
 
@@ -58,42 +42,50 @@ class SensorReadingsBufferTest {
         addingThread.start();
 
         addingThread.join();
-        waitingThread.join();
+        waitingThread.join(5000);
 
-        assertTrue(wasNotified[0]);
+        assertFalse(waitingThread.isAlive());
+        assertNotNull(window[0]);
+        assertEquals(8, window[0].size());
     }
 
     @Test
-    public void testReadAllAndClean() throws NoSuchFieldException, IllegalAccessException {
-        for (int i = 0; i < 8; i++) {
-            buffer.addMeasurement(mockMeasurement);
+    public void testAwaitWindowIsInterruptible() throws InterruptedException {
+        final boolean[] wasInterrupted = new boolean[1];
+        Thread waitingThread = new Thread(() -> {
+            try {
+                buffer.awaitWindow();
+            } catch (InterruptedException e) {
+                wasInterrupted[0] = true;
+            }
+        });
+        waitingThread.start();
+        waitingThread.interrupt();
+        waitingThread.join(5000);
+
+        assertFalse(waitingThread.isAlive());
+        assertTrue(wasInterrupted[0]);
+    }
+
+    @Test
+    public void testReadAllAndClean() {
+        for (int i = 0; i < 7; i++) {
+            buffer.addMeasurement(measurement(i));
         }
+        assertTrue(buffer.readAllAndClean().isEmpty());
+        buffer.addMeasurement(measurement(7));
 
         List<Measurement> measurements = buffer.readAllAndClean();
 
         assertEquals(8, measurements.size());
-
-        Field bufferField = SensorReadingsBuffer.class.getDeclaredField("buffer");
-        bufferField.setAccessible(true);
-        LinkedList<Measurement> internalBuffer = (LinkedList<Measurement>) bufferField.get(buffer);
-
-        assertEquals(4, internalBuffer.size());
+        assertEquals(4, buffer.size());
+        assertTrue(buffer.readAllAndClean().isEmpty());
     }
 
     @Test
-    public void testMorethanEight() throws NoSuchFieldException, IllegalAccessException, InterruptedException {
-        OngoingStubbing<Double> stubbing = when(mockMeasurement.getValue());
+    public void testMorethanEight() {
         for (int i = 0; i < 10; i++) {
-            stubbing = stubbing.thenReturn(i + 10.0);
-        }
-        Thread addingThread = new Thread(() -> {
-            for (int i = 0; i < 10; i++) {
-                buffer.addMeasurement(mockMeasurement);
-            }
-        });
-        addingThread.start();
-        synchronized (buffer) {
-            buffer.wait();
+            buffer.addMeasurement(measurement(i));
         }
         List<Measurement> measurements = buffer.readAllAndClean();
         assertEquals(8, measurements.size());
@@ -106,11 +98,73 @@ class SensorReadingsBufferTest {
             sumList += m.getValue();
         }
 
-        Field bufferField = SensorReadingsBuffer.class.getDeclaredField("buffer");
-        bufferField.setAccessible(true);
-        LinkedList<Measurement> internalBuffer = (LinkedList<Measurement>) bufferField.get(buffer);
-
-        assertEquals(6, internalBuffer.size()); // 4 left (overlap) + 2 remaining
+        assertEquals(6, buffer.size()); // 4 left (overlap) + 2 remaining
         assertEquals(sumList, sumFirst8);
+        assertEquals(sumFirst8 / 8, ((SensorReadingsBuffer.Window) measurements).average());
+    }
+
+    @Test
+    public void testWindowsOverlapAcrossTheRing() {
+        buffer = new SensorReadingsBuffer(16);
+        int added = 0;
+        for (int w = 0; w < 20; w++) {
+            while (added < 8 + 4 * w) {
+                buffer.addMeasurement(measurement(added++));
+            }
+            SensorReadingsBuffer.Window window = buffer.poll();
+            assertNotNull(window);
+            for (int i = 0; i < 8; i++) {
+                assertEquals(4 * w + i + 10.0, window.value(i));
+                assertEquals(4 * w + i, window.timestamp(i));
+                assertEquals("pm10-1", window.get(i).getId());
+            }
+            assertNull(buffer.poll());
+        }
+        assertEquals(0, buffer.getDropped());
+    }
+
+    @Test
+    public void testFullRingDropsNewReadings() {
+        buffer = new SensorReadingsBuffer(16);
+        for (int i = 0; i < 18; i++) {
+            buffer.addMeasurement(measurement(i));
+        }
+        assertEquals(2, buffer.getDropped());
+        SensorReadingsBuffer.Window window = buffer.poll();
+        assertEquals(10.0, window.value(0));
+        assertEquals(17.0, window.value(7));
+        // The window in use is not overwritten, its slots are freed when the next window is read
+        for (int i = 18; i < 22; i++) {
+            buffer.addMeasurement(measurement(i));
+        }
+        assertEquals(6, buffer.getDropped());
+        assertEquals(14.0, buffer.poll().value(0));
+        for (int i = 22; i < 26; i++) {
+            buffer.addMeasurement(measurement(i));
+        }
+        assertEquals(6, buffer.getDropped());
+        assertEquals(18.0, buffer.poll().value(0));
+        assertEquals(32.0, buffer.poll().value(4));
+        assertThrows(IllegalArgumentException.class, () -> new SensorReadingsBuffer(8));
+        assertThrows(IllegalArgumentException.class, () -> new SensorReadingsBuffer(24));
+    }
+
+    @Test
+    public void testConfigurableWindow() {
+        buffer = new SensorReadingsBuffer(6, 2);
+        for (int i = 0; i < 14; i++) {
+            buffer.addMeasurement(measurement(i));
+        }
+        // Windows start every 4 readings: 0, 4, 8
+        for (int start = 0; start <= 8; start += 4) {
+            SensorReadingsBuffer.Window window = buffer.poll();
+            assertEquals(6, window.size());
+            assertEquals(start + 10.0, window.value(0));
+            assertEquals(start + 15.0, window.value(5));
+        }
+        assertNull(buffer.poll());
+        assertEquals(2, buffer.size());
+        assertThrows(IllegalArgumentException.class, () -> new SensorReadingsBuffer(6, 6));
+        assertThrows(IllegalArgumentException.class, () -> new SensorReadingsBuffer(16, 16, 4));
     }
-}
\ No newline at end of file
+}
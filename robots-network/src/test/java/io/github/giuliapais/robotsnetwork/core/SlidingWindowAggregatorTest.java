@@ -0,0 +1,67 @@
+package io.github.giuliapais.robotsnetwork.core;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SlidingWindowAggregatorTest {
+
+    @Test
+    public void testEmptyWindow() {
+        SlidingWindowAggregator aggregator = new SlidingWindowAggregator(8, 0.2);
+        assertEquals(0, aggregator.getCount());
+        assertTrue(Double.isNaN(aggregator.getMean()));
+        assertTrue(Double.isNaN(aggregator.getMin()));
+        assertTrue(Double.isNaN(aggregator.getVariance()));
+        assertTrue(Double.isNaN(aggregator.getEwma()));
+        assertThrows(IllegalArgumentException.class, () -> new SlidingWindowAggregator(0, 0.2));
+        assertThrows(IllegalArgumentException.class, () -> new SlidingWindowAggregator(8, 0));
+    }
+
+    @Test
+    public void testSlidingWindow() {
+        SlidingWindowAggregator aggregator = new SlidingWindowAggregator(4, 0.5);
+        for (double value : new double[]{3, 1, 4, 1, 5}) {
+            aggregator.add(value);
+        }
+        // The window holds 1, 4, 1, 5
+        assertEquals(4, aggregator.getCount());
+        assertEquals(2.75, aggregator.getMean(), 1e-12);
+        assertEquals(1, aggregator.getMin());
+        assertEquals(5, aggregator.getMax());
+        assertEquals(3.1875, aggregator.getVariance(), 1e-12);
+        assertEquals(3.5, aggregator.getEwma(), 1e-12);
+    }
+
+    @Test
+    public void testMatchesWholeWindow() {
+        int windowSize = 7;
+        SlidingWindowAggregator aggregator = new SlidingWindowAggregator(windowSize, 0.3);
+        double[] values = new double[10_000];
+        Random random = new Random(42);
+        for (int n = 0; n < values.length; n++) {
+            // Few distinct values, to have ties for the minimum and maximum
+            values[n] = 15 + random.nextInt(20) / 2.0;
+            aggregator.add(values[n]);
+            int from = Math.max(0, n - windowSize + 1);
+            double sum = 0, min = Double.MAX_VALUE, max = -Double.MAX_VALUE;
+            for (int i = from; i <= n; i++) {
+                sum += values[i];
+                min = Math.min(min, values[i]);
+                max = Math.max(max, values[i]);
+            }
+            double mean = sum / (n - from + 1);
+            double squares = 0;
+            for (int i = from; i <= n; i++) {
+                squares += (values[i] - mean) * (values[i] - mean);
+            }
+            assertEquals(n - from + 1, aggregator.getCount());
+            assertEquals(mean, aggregator.getMean(), 1e-9);
+            assertEquals(min, aggregator.getMin());
+            assertEquals(max, aggregator.getMax());
+            assertEquals(squares / (n - from + 1), aggregator.getVariance(), 1e-9);
+        }
+    }
+}